@@ -0,0 +1,289 @@
+package com.giraone.imaging;
+
+import com.giraone.imaging.java2.ProviderJava2D;
+import com.giraone.imaging.pdf.PdfProvider;
+import com.giraone.imaging.pdf.PdfProviderPdfBox;
+import com.giraone.imaging.video.VideoProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Non-blocking facade for the {@link ThumbnailProvider} implementations (Java2D, PDFBox, Flexmark and ffmpeg).
+ * <p>
+ * Each request is split into stages, that run on two executors:
+ * <ul>
+ *   <li>The I/O executor - by default one virtual thread per task - detects the file type, reads the input into
+ *   memory, writes the outputs to their files or sinks and waits for external processes (ffmpeg).
+ *   Thousands of concurrent requests only cost parked virtual threads.</li>
+ *   <li>The CPU executor - by default a fork join pool with one thread per core - decodes, scales and encodes
+ *   from the buffered input into in-memory sinks. Requests exceeding the pool size are queued, so the cores are
+ *   not oversubscribed.</li>
+ * </ul>
+ * The image and PDF providers used for the MIME type based selection are private instances, whose parallel work
+ * (rendition encoding, resampling, PNG deflate, page rendering) also runs on the CPU executor. When the CPU executor
+ * is not a {@link ForkJoinPool}, this inner work runs in the calling thread, because joining subtasks on a bounded
+ * pool can deadlock.
+ * No calling thread is blocked. The returned futures complete exceptionally with the exception of the provider.
+ * </p>
+ */
+public class AsyncThumbnailProvider implements AutoCloseable {
+
+    private final Executor ioExecutor;
+    private final Executor cpuExecutor;
+    private final boolean ownedExecutors;
+    private final ProviderJava2D imagingProvider = new ProviderJava2D();
+    private final PdfProviderPdfBox pdfProvider = new PdfProviderPdfBox();
+
+    /**
+     * Create a new AsyncThumbnailProvider with a virtual thread per task executor for I/O and a fork join pool
+     * with {@link Runtime#availableProcessors()} threads for CPU work. The executors are shut down by {@link #close()}.
+     */
+    public AsyncThumbnailProvider() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new AsyncThumbnailProvider with a virtual thread per task executor for I/O and a fork join pool
+     * for CPU work. The executors are shut down by {@link #close()}.
+     * @param cpuThreads the number of threads for CPU work
+     */
+    public AsyncThumbnailProvider(int cpuThreads) {
+        this.ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.cpuExecutor = new ForkJoinPool(cpuThreads, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("imaging-cpu-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.ownedExecutors = true;
+        bindProviders();
+    }
+
+    /**
+     * Create a new AsyncThumbnailProvider using the given executors. The executors are not shut down by {@link #close()}.
+     * @param ioExecutor the executor for blocking I/O - should be a virtual thread executor
+     * @param cpuExecutor the executor for CPU work - should be a {@link ForkJoinPool} sized by the number of cores
+     */
+    public AsyncThumbnailProvider(Executor ioExecutor, Executor cpuExecutor) {
+        this.ioExecutor = ioExecutor;
+        this.cpuExecutor = cpuExecutor;
+        this.ownedExecutors = false;
+        bindProviders();
+    }
+
+    /**
+     * Create a thumbnail image for a given file asynchronously. The provider is selected by the detected MIME type.
+     * @param inputFile Input file.
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @return a future, that completes with the result, or exceptionally on any error opening the file,
+     * converting the file or writing to the output
+     */
+    public CompletableFuture<ThumbnailResult> createThumbnailAsync(File inputFile, ConversionCommand conversionCommand) {
+        return createThumbnailsAsync(inputFile, new ConversionCommand[] { conversionCommand });
+    }
+
+    /**
+     * Create multiple thumbnail images (e.g. different sizes) for a given file asynchronously. The provider is selected
+     * by the detected MIME type.
+     * @param inputFile Input file.
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @return a future, that completes with the result, or exceptionally on any error opening the file,
+     * converting the file or writing to the output
+     */
+    public CompletableFuture<ThumbnailResult> createThumbnailsAsync(File inputFile, ConversionCommand[] conversionCommands) {
+        final long start = System.nanoTime();
+        return CompletableFuture
+            .supplyAsync(() -> detectMimeType(inputFile), ioExecutor)
+            .thenCompose(mimeType -> convert(getThumbnailProvider(mimeType), inputFile, mimeType,
+                conversionCommands, start));
+    }
+
+    /**
+     * Create a thumbnail image for a given file of a known MIME type asynchronously.
+     * @param inputFile Input file.
+     * @param mimeType The MIME type of the input file used to select the provider.
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @return a future, that completes with the result, or exceptionally on any error opening the file,
+     * converting the file or writing to the output
+     */
+    public CompletableFuture<ThumbnailResult> createThumbnailAsync(File inputFile, String mimeType, ConversionCommand conversionCommand) {
+        return convert(getThumbnailProvider(mimeType), inputFile, mimeType,
+            new ConversionCommand[] { conversionCommand }, System.nanoTime());
+    }
+
+    /**
+     * Create multiple thumbnail images for a given file asynchronously using a specific provider.
+     * The parallel work inside the provider uses the provider's own executors.
+     * @param provider the thumbnail provider
+     * @param inputFile Input file.
+     * @param mimeType The MIME type of the input file - only used for the result.
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @return a future, that completes with the result, or exceptionally on any error opening the file,
+     * converting the file or writing to the output
+     */
+    public CompletableFuture<ThumbnailResult> createThumbnailsAsync(ThumbnailProvider provider, File inputFile, String mimeType,
+                                                                    ConversionCommand[] conversionCommands) {
+        return convert(provider, inputFile, mimeType, conversionCommands, System.nanoTime());
+    }
+
+    /**
+     * Shut down the executors, if they were created by this instance. Running requests are completed.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutors) {
+            ((ExecutorService) cpuExecutor).close();
+            ((ExecutorService) ioExecutor).close();
+        }
+    }
+
+    private void bindProviders() {
+        if (cpuExecutor instanceof ForkJoinPool forkJoinPool) {
+            imagingProvider.setForkJoinPool(forkJoinPool);
+            pdfProvider.getImagingProvider().setForkJoinPool(forkJoinPool);
+            pdfProvider.setRenderExecutor(forkJoinPool);
+        } else {
+            bindSequential(imagingProvider);
+            bindSequential(pdfProvider.getImagingProvider());
+            pdfProvider.setRenderParallelism(1);
+        }
+    }
+
+    private static void bindSequential(ProviderJava2D provider) {
+        provider.setEncodeExecutor(Runnable::run);
+        provider.setParallelResizeThreshold(Long.MAX_VALUE);
+        if (provider.getPngEncoder() != null) {
+            provider.getPngEncoder().setExecutor(null);
+        }
+    }
+
+    private ThumbnailProvider getThumbnailProvider(String mimeType) {
+        final ThumbnailProvider provider = ThumbnailProvider.getThumbnailProvider(mimeType);
+        if (provider instanceof PdfProvider) {
+            return pdfProvider;
+        } else if (provider instanceof ImagingProvider) {
+            return imagingProvider;
+        }
+        return provider;
+    }
+
+    private CompletableFuture<ThumbnailResult> convert(ThumbnailProvider provider, File inputFile, String mimeType,
+                                                       ConversionCommand[] conversionCommands, long start) {
+        if (provider instanceof VideoProvider) {
+            // ffmpeg runs in an external process - the Java thread only waits for it
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    provider.createThumbnails(inputFile, conversionCommands);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                return buildResult(inputFile, mimeType, conversionCommands, start);
+            }, ioExecutor);
+        }
+        return CompletableFuture
+            .supplyAsync(() -> readInput(inputFile), ioExecutor)
+            .thenApplyAsync(input -> render(provider, inputFile, input, conversionCommands), cpuExecutor)
+            .thenApplyAsync(sinks -> {
+                deliver(conversionCommands, sinks);
+                return buildResult(inputFile, mimeType, conversionCommands, start);
+            }, ioExecutor);
+    }
+
+    /**
+     * Read the input into memory. Large files are mapped and loaded into the page cache.
+     * @return the content or null for files larger than 2 GB, which are read by the provider itself
+     */
+    private static ByteBuffer readInput(File inputFile) {
+        try {
+            final ByteBuffer mapping = MemoryMappedFiles.mapIfLarge(inputFile, MemoryMappedFiles.DEFAULT_THRESHOLD);
+            if (mapping instanceof MappedByteBuffer mappedByteBuffer) {
+                mappedByteBuffer.load();
+                return mapping;
+            }
+            return inputFile.length() > Integer.MAX_VALUE ? null : ByteBuffer.wrap(Files.readAllBytes(inputFile.toPath()));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Convert the input into in-memory sinks, one per command.
+     */
+    private static ByteBufferOutputSink[] render(ThumbnailProvider provider, File inputFile, ByteBuffer input,
+                                                 ConversionCommand[] conversionCommands) {
+        final ByteBufferOutputSink[] sinks = new ByteBufferOutputSink[conversionCommands.length];
+        final ConversionCommand[] memoryCommands = new ConversionCommand[conversionCommands.length];
+        for (int i = 0; i < conversionCommands.length; i++) {
+            sinks[i] = new ByteBufferOutputSink();
+            memoryCommands[i] = new ConversionCommand(conversionCommands[i]);
+            memoryCommands[i].setOutputSink(sinks[i]);
+        }
+        try {
+            if (input != null) {
+                provider.createThumbnails(input, memoryCommands);
+            } else {
+                provider.createThumbnails(inputFile, memoryCommands);
+            }
+        } catch (Exception e) {
+            release(sinks);
+            throw new CompletionException(e);
+        }
+        for (int i = 0; i < conversionCommands.length; i++) {
+            conversionCommands[i].setSizeSearchResult(memoryCommands[i].getSizeSearchResult());
+        }
+        return sinks;
+    }
+
+    /**
+     * Write the in-memory outputs to the output files or sinks of the commands.
+     */
+    private static void deliver(ConversionCommand[] conversionCommands, ByteBufferOutputSink[] sinks) {
+        try {
+            for (int i = 0; i < conversionCommands.length; i++) {
+                try (OutputStream outputStream = conversionCommands[i].openOutputStream()) {
+                    sinks[i].writeTo(Channels.newChannel(outputStream));
+                }
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            release(sinks);
+        }
+    }
+
+    private static void release(ByteBufferOutputSink[] sinks) {
+        for (ByteBufferOutputSink sink : sinks) {
+            sink.release();
+        }
+    }
+
+    private static ThumbnailResult buildResult(File inputFile, String mimeType, ConversionCommand[] conversionCommands,
+                                               long start) {
+        final List<File> outputFiles = Arrays.stream(conversionCommands).map(ConversionCommand::getOutputFile).toList();
+        final List<OutputSink> outputSinks = Arrays.stream(conversionCommands).map(ConversionCommand::getOutputSink).toList();
+        return new ThumbnailResult(inputFile, mimeType, outputFiles, outputSinks, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static String detectMimeType(File inputFile) {
+        try {
+            return ImagingProvider.getInstance().fetchFileInfo(inputFile).getMimeType();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+}
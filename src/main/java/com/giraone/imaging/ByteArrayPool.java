@@ -0,0 +1,83 @@
+package com.giraone.imaging;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A small shared pool of byte arrays used as growable in-memory output buffers, so that writing the next thumbnail
+ * does not allocate and grow a new array. The pool is bounded by the total number of pooled bytes, so that it retains
+ * at most a few MB of heap, which is not accounted in the {@link MemoryBudget}.
+ */
+public final class ByteArrayPool {
+
+    /** The maximal number of bytes retained by all pooled arrays. */
+    public static final long MAX_POOLED_BYTES = 4L * 1024L * 1024L;
+    /** The maximal length of a pooled array - larger arrays are left to the garbage collector. */
+    public static final int MAX_POOLED_ARRAY_SIZE = 1024 * 1024;
+
+    private static final int MAX_POOLED_ARRAYS = 32;
+
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>();
+    private static long pooledBytes;
+
+    // Hide constructor
+    private ByteArrayPool() {
+    }
+
+    /**
+     * Take an array from the pool or allocate a new one. Pooled arrays, that are too small, stay in the pool.
+     * @param minCapacity the minimal length of the array
+     * @return the array - its content is undefined
+     */
+    public static byte[] acquire(int minCapacity) {
+        synchronized (POOL) {
+            final Iterator<byte[]> iterator = POOL.iterator();
+            while (iterator.hasNext()) {
+                final byte[] pooled = iterator.next();
+                if (pooled.length >= minCapacity) {
+                    iterator.remove();
+                    pooledBytes -= pooled.length;
+                    return pooled;
+                }
+            }
+        }
+        return new byte[Math.max(minCapacity, 16)];
+    }
+
+    /**
+     * Return an array to the pool. The array must not be used afterward. Arrays larger than
+     * {@link #MAX_POOLED_ARRAY_SIZE} or exceeding the bound of the pool are left to the garbage collector.
+     * @param array the array
+     */
+    public static void release(byte[] array) {
+        if (array.length > MAX_POOLED_ARRAY_SIZE) {
+            return;
+        }
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED_ARRAYS && pooledBytes + array.length <= MAX_POOLED_BYTES) {
+                POOL.addLast(array);
+                pooledBytes += array.length;
+            }
+        }
+    }
+
+    /**
+     * Get the number of bytes retained by the pooled arrays (gauge).
+     * @return the pooled bytes
+     */
+    public static long getPooledBytes() {
+        synchronized (POOL) {
+            return pooledBytes;
+        }
+    }
+
+    /**
+     * Remove all arrays from the pool.
+     */
+    public static void clear() {
+        synchronized (POOL) {
+            POOL.clear();
+            pooledBytes = 0L;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.giraone.imaging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * An {@link OutputSink}, that collects the output in memory using a growable byte array. The result can be handed off
+ * without a copy using {@link #toByteBuffer()} or {@link #writeTo(WritableByteChannel)}.
+ * <p>
+ * The backing arrays are taken from the {@link ByteArrayPool}. After the result has been consumed, {@link #release()}
+ * returns the array to the pool, so that the next thumbnail does not allocate and grow a new array.
+ * </p>
+ */
+public class ByteBufferOutputSink implements OutputSink {
+
+    /** The default initial capacity - large enough for a typical thumbnail. */
+    public static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+
+    private final int initialCapacity;
+    private byte[] buffer;
+    private int count;
+
+    /**
+     * Create a sink with the default initial capacity.
+     */
+    public ByteBufferOutputSink() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a sink.
+     * @param initialCapacity the initial capacity in bytes - the buffer grows as needed
+     */
+    public ByteBufferOutputSink(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * Open the stream, to which the output is written. Opening the stream again discards the previous output.
+     * @return the output stream
+     */
+    @Override
+    public synchronized OutputStream openStream() {
+        if (buffer == null) {
+            buffer = ByteArrayPool.acquire(initialCapacity);
+        }
+        count = 0;
+        return new SinkOutputStream();
+    }
+
+    /**
+     * Get the number of written bytes.
+     * @return the size of the output
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Return a read-only view of the output without copying. The view is valid until {@link #release()} is called.
+     * @return the output from position 0 to the limit {@link #size()}
+     */
+    public synchronized ByteBuffer toByteBuffer() {
+        if (buffer == null) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(buffer, 0, count).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Return a copy of the output.
+     * @return the output as a new byte array
+     */
+    public synchronized byte[] toByteArray() {
+        return buffer == null ? new byte[0] : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Write the output to a channel without copying.
+     * @param channel the channel - it is not closed
+     * @throws IOException on any error writing to the channel
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        final ByteBuffer output = toByteBuffer();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+    }
+
+    /**
+     * Return the backing array to the shared pool. The output and all views returned by {@link #toByteBuffer()} must
+     * not be used afterward.
+     */
+    public synchronized void release() {
+        if (buffer != null) {
+            final byte[] released = buffer;
+            buffer = null;
+            count = 0;
+            ByteArrayPool.release(released);
+        }
+    }
+
+    private synchronized void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    private synchronized void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Output exceeds 2 GB");
+        }
+        if (minCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The stream writing into the buffer of the sink.
+     */
+    private class SinkOutputStream extends OutputStream {
+
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            checkClosed();
+            ByteBufferOutputSink.this.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+            }
+            ByteBufferOutputSink.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private void checkClosed() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+    }
+}
@@ -2,27 +2,64 @@ package com.giraone.imaging;
 
 import java.awt.*;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Definition of an image conversion (command pattern).
  */
 public class ConversionCommand {
 
+    /**
+     * Default tolerance of {@link #setMaxOutputBytes(int)}: the quality search stops, when the output is at most 5%
+     * smaller than the maximal size.
+     */
+    public static final float DEFAULT_MAX_OUTPUT_BYTES_TOLERANCE = 0.05f;
+
     private File outputFile;
+    private OutputSink outputSink;
     private String outputFormat;
     private boolean compression;
     private int quality;
     private Dimension dimension;
     private boolean keepAspectRatio;
     private Float scale;
+    private SpeedHint speedHint;
+    private JpegEncoding jpegEncoding;
+    private int maxOutputBytes;
+    private float maxOutputBytesTolerance = DEFAULT_MAX_OUTPUT_BYTES_TOLERANCE;
+    private SizeSearchResult sizeSearchResult;
 
     /**
-     * Create a new ConversionCommand with default settings (compression=false, quality=0, keepAspectRatio=true).
+     * Create a new ConversionCommand with default settings (compression=false, quality=0, keepAspectRatio=true,
+     * speedHint=QUALITY, jpegEncoding=STANDARD).
      */
     public ConversionCommand() {
         this.compression = false;
         this.quality = 0;
         this.keepAspectRatio = true;
+        this.speedHint = SpeedHint.QUALITY;
+        this.jpegEncoding = JpegEncoding.STANDARD;
+    }
+
+    /**
+     * Create a copy of a ConversionCommand with the same output and settings.
+     * @param other the command to copy
+     */
+    public ConversionCommand(ConversionCommand other) {
+        this.outputFile = other.outputFile;
+        this.outputSink = other.outputSink;
+        this.outputFormat = other.outputFormat;
+        this.compression = other.compression;
+        this.quality = other.quality;
+        this.dimension = other.dimension != null ? new Dimension(other.dimension) : null;
+        this.keepAspectRatio = other.keepAspectRatio;
+        this.scale = other.scale;
+        this.speedHint = other.speedHint;
+        this.jpegEncoding = other.jpegEncoding;
+        this.maxOutputBytes = other.maxOutputBytes;
+        this.maxOutputBytesTolerance = other.maxOutputBytesTolerance;
     }
 
     /**
@@ -40,6 +77,40 @@ public class ConversionCommand {
         return outputFile;
     }
 
+    /**
+     * Set the output sink, to which the output is written instead of the output file, e.g. a
+     * {@link ByteBufferOutputSink} to create the output in memory.
+     * @param outputSink the output sink or null to write to the output file
+     */
+    public void setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    /**
+     * Get the output sink.
+     * @return the output sink or null, if the output is written to the output file
+     */
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * Open the stream, to which the output is written: the output sink, if defined, otherwise the output file.
+     * The caller must close the stream.
+     * @return the output stream
+     * @throws IOException on any error opening the stream
+     * @throws IllegalStateException if neither an output sink nor an output file is defined
+     */
+    public OutputStream openOutputStream() throws IOException {
+        if (outputSink != null) {
+            return outputSink.openStream();
+        }
+        if (outputFile == null) {
+            throw new IllegalStateException("Neither output sink nor output file defined!");
+        }
+        return new FileOutputStream(outputFile);
+    }
+
     /**
      * Set output format.
      * @param value Format given as MIME type.
@@ -92,6 +163,57 @@ public class ConversionCommand {
         return this.quality;
     }
 
+    /**
+     * Get the maximal size of the output.
+     * @return the maximal size in bytes or 0, if the size is not limited
+     */
+    public int getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    /**
+     * Set the maximal size of the output (target file size mode). For JPEG output, the quality is searched using
+     * binary search between the minimal quality and the quality of the command, so that the output is as large as
+     * possible, but not larger than the given size. The search is done in memory and ignored for other formats.
+     * @param maxOutputBytes the maximal size in bytes or 0 to use the quality of the command as it is (default)
+     */
+    public void setMaxOutputBytes(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    /**
+     * Get the tolerance of the quality search for {@link #setMaxOutputBytes(int)}.
+     * @return the tolerance as a fraction of the maximal size
+     */
+    public float getMaxOutputBytesTolerance() {
+        return maxOutputBytesTolerance;
+    }
+
+    /**
+     * Set the tolerance of the quality search for {@link #setMaxOutputBytes(int)}. The search stops, as soon as the
+     * output is not larger than the maximal size and not smaller than the maximal size minus the tolerance.
+     * @param maxOutputBytesTolerance the tolerance as a fraction of the maximal size, e.g. 0.05 for 5% (default)
+     */
+    public void setMaxOutputBytesTolerance(float maxOutputBytesTolerance) {
+        this.maxOutputBytesTolerance = maxOutputBytesTolerance;
+    }
+
+    /**
+     * Get the result of the quality search, after the command was executed with {@link #setMaxOutputBytes(int)}.
+     * @return the result or null, if there was no quality search
+     */
+    public SizeSearchResult getSizeSearchResult() {
+        return sizeSearchResult;
+    }
+
+    /**
+     * Set the result of the quality search - called by the providers.
+     * @param sizeSearchResult the result
+     */
+    public void setSizeSearchResult(SizeSearchResult sizeSearchResult) {
+        this.sizeSearchResult = sizeSearchResult;
+    }
+
     /**
      * Check whether compression is enabled.
      * @return true if compression is enabled, false otherwise
@@ -170,6 +292,39 @@ public class ConversionCommand {
         return scale;
     }
 
+    /**
+     * Get the speed/quality hint used to select the resampling algorithm.
+     * @return the speed hint
+     */
+    public SpeedHint getSpeedHint() {
+        return speedHint;
+    }
+
+    /**
+     * Set the speed/quality hint used to select the resampling algorithm, when the image is scaled.
+     * @param speedHint the speed hint - default is {@link SpeedHint#QUALITY}
+     */
+    public void setSpeedHint(SpeedHint speedHint) {
+        this.speedHint = speedHint;
+    }
+
+    /**
+     * Get the entropy coding and scan mode used for JPEG output.
+     * @return the JPEG encoding
+     */
+    public JpegEncoding getJpegEncoding() {
+        return jpegEncoding;
+    }
+
+    /**
+     * Set the entropy coding and scan mode used for JPEG output. Optimized Huffman tables and progressive mode
+     * reduce the output size without changing the image, but take more time to encode.
+     * @param jpegEncoding the JPEG encoding - default is {@link JpegEncoding#STANDARD}
+     */
+    public void setJpegEncoding(JpegEncoding jpegEncoding) {
+        this.jpegEncoding = jpegEncoding;
+    }
+
     /**
      * Return a new dimension that is calculated by the given original width and height and scaled
      * using the scale factor defined by {@link #setScale(float)}.
@@ -302,4 +457,79 @@ public class ConversionCommand {
          */
         LOSSY_SPEED
     }
-}
\ No newline at end of file
+
+    /**
+     * Enumeration for the trade-off between speed and quality, when an image is scaled.
+     * <ul>
+     *   <li>{@link #SPEED} - Nearest neighbor, no antialiasing</li>
+     *   <li>{@link #BALANCED} - Bilinear filter in one step</li>
+     *   <li>{@link #QUALITY} - Halving steps followed by one bilinear step</li>
+     *   <li>{@link #ULTRA_QUALITY} - Lanczos filter with three lobes</li>
+     * </ul>
+     */
+    public enum SpeedHint {
+        /**
+         * Fastest scaling by picking the nearest pixel. Visible aliasing for large scale factors.
+         */
+        SPEED,
+
+        /**
+         * Antialiased bilinear scaling in one step.
+         */
+        BALANCED,
+
+        /**
+         * Progressive bilinear scaling using halving steps. This is the default.
+         */
+        QUALITY,
+
+        /**
+         * Sharpest, but slowest scaling using a Lanczos filter.
+         */
+        ULTRA_QUALITY
+    }
+
+    /**
+     * Enumeration for the entropy coding and scan mode of JPEG output. The image data is the same for all values, only
+     * the size of the output and the encoding time differ.
+     * <ul>
+     *   <li>{@link #STANDARD} - Baseline with the standard Huffman tables</li>
+     *   <li>{@link #OPTIMIZED} - Baseline with Huffman tables optimized for the image</li>
+     *   <li>{@link #PROGRESSIVE} - Progressive scans with optimized Huffman tables</li>
+     *   <li>{@link #AUTO} - Selected by the size of the output image</li>
+     * </ul>
+     */
+    public enum JpegEncoding {
+        /**
+         * Baseline JPEG using the standard Huffman tables (one pass). This is the default.
+         */
+        STANDARD,
+
+        /**
+         * Baseline JPEG using Huffman tables computed for the image (two passes).
+         */
+        OPTIMIZED,
+
+        /**
+         * Progressive JPEG. The Huffman tables are always optimized in this mode.
+         */
+        PROGRESSIVE,
+
+        /**
+         * Optimized baseline for small thumbnails and progressive for larger images, where the progressive scans
+         * usually produce the smaller output.
+         */
+        AUTO
+    }
+
+    /**
+     * The result of the quality search for a maximal output size.
+     * @param quality the selected encoder quality between 0.0 and 1.0
+     * @param outputBytes the size of the written output
+     * @param iterations the number of encoder runs
+     * @param withinLimit true, if the output is not larger than the maximal size - false, if even the output
+     *                    with the minimal quality is too large
+     */
+    public record SizeSearchResult(float quality, int outputBytes, int iterations, boolean withinLimit) {
+    }
+}
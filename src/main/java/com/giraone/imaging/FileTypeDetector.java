@@ -98,6 +98,21 @@ public class FileTypeDetector {
         return getFileType(firstBytes);
     }
 
+    /**
+     * Determine the file type from the remaining bytes of a buffer, e.g. a memory-mapped file. Only the first
+     * bytes are read using absolute access, the position of the buffer is not changed.
+     * @param buffer a buffer providing the content of the file
+     * @return The detected file type or UNKNOWN, if detection fails
+     */
+    public FileType getFileType(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            return FileType.UNKNOWN;
+        }
+        final byte[] firstBytes = new byte[132];
+        buffer.get(buffer.position(), firstBytes, 0, Math.min(firstBytes.length, buffer.remaining()));
+        return getFileType(firstBytes);
+    }
+
     /**
      * Determine the file type.
      * @param firstBytes First 132 bytes of the file to be detected.
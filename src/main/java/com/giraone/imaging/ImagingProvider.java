@@ -5,7 +5,10 @@ import com.giraone.imaging.java2.ProviderJava2D;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -44,6 +47,35 @@ public interface ImagingProvider extends ThumbnailProvider {
         return fetchFileInfo(inputPath.toFile());
     }
 
+    /**
+     * Extract information about an image given as a byte buffer. Only the header is read.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * Implementing classes should override this and read the buffer directly.
+     * @param input the content of the image file from its position to its limit - the buffer's position is not changed
+     * @return The file information value object.
+     * @throws IOException on any error reading the input
+     * @throws FormatNotSupportedException if the file type is not supported
+     */
+    default FileInfo fetchFileInfo(ByteBuffer input) throws IOException, FormatNotSupportedException {
+        final Path tempFile = ThumbnailProvider.writeTempFile(input);
+        try {
+            return fetchFileInfo(tempFile.toFile());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Extract information about an image given as a byte array. Only the header is read.
+     * @param input the content of the image file
+     * @return The file information value object.
+     * @throws IOException on any error reading the input
+     * @throws FormatNotSupportedException if the file type is not supported
+     */
+    default FileInfo fetchFileInfo(byte[] input) throws IOException, FormatNotSupportedException {
+        return fetchFileInfo(ByteBuffer.wrap(input));
+    }
+
     /**
      * Convert an image to another image using image conversion functions.
      * @param inputFile Input file.
@@ -105,4 +137,54 @@ public interface ImagingProvider extends ThumbnailProvider {
             convertImage(inputPath, outputStream, command);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Convert an image given as a byte buffer to another image using image conversion functions.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * Implementing classes should override this and read the buffer directly.
+     * @param input the content of the image file from its position to its limit - the buffer's position is not changed
+     * @param outputStream OutputStream, to which the new image is written. Important: Stream is not closed!
+     * @param command An image conversion command.
+     * @throws IOException on any error reading the input or writing to the output
+     * @throws FormatNotSupportedException if the input or output format is not supported
+     * @throws ImageConversionException if an error occurs during image conversion or scaling
+     */
+    default void convertImage(ByteBuffer input, OutputStream outputStream, ConversionCommand command)
+        throws IOException, FormatNotSupportedException, ImageConversionException {
+
+        final Path tempFile = ThumbnailProvider.writeTempFile(input);
+        try {
+            convertImage(tempFile.toFile(), outputStream, command);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Convert an image given as a byte array to another image using image conversion functions.
+     * @param input the content of the image file
+     * @param outputStream OutputStream, to which the new image is written. Important: Stream is not closed!
+     * @param command An image conversion command.
+     * @throws IOException on any error reading the input or writing to the output
+     * @throws FormatNotSupportedException if the input or output format is not supported
+     * @throws ImageConversionException if an error occurs during image conversion or scaling
+     */
+    default void convertImage(byte[] input, OutputStream outputStream, ConversionCommand command)
+        throws IOException, FormatNotSupportedException, ImageConversionException {
+        convertImage(ByteBuffer.wrap(input), outputStream, command);
+    }
+
+    /**
+     * Convert an image given as an input stream to another image using image conversion functions.
+     * @param input the stream with the content of the image file - the stream is read to its end, but not closed
+     * @param outputStream OutputStream, to which the new image is written. Important: Stream is not closed!
+     * @param command An image conversion command.
+     * @throws IOException on any error reading the input or writing to the output
+     * @throws FormatNotSupportedException if the input or output format is not supported
+     * @throws ImageConversionException if an error occurs during image conversion or scaling
+     */
+    default void convertImage(InputStream input, OutputStream outputStream, ConversionCommand command)
+        throws IOException, FormatNotSupportedException, ImageConversionException {
+        convertImage(ByteBuffer.wrap(input.readAllBytes()), outputStream, command);
+    }
+}
@@ -0,0 +1,326 @@
+package com.giraone.imaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for memory intensive conversions. Before decoding, a conversion estimates its peak pixel memory
+ * from the header dimensions and reserves it from the budget. When the budget is exhausted, the conversion waits
+ * until other conversions release their reservations, or fails fast with a {@link MemoryBudgetExceededException}.
+ * <p>
+ * A single request larger than the whole capacity is admitted alone, when no other reservation exists.
+ * Waiting requests are admitted in arrival order (FIFO): new requests queue behind waiting ones, even if they would
+ * fit, so that large requests are not starved by a steady stream of small ones.
+ * The current usage can be monitored using {@link #getUsedBytes()} and the other getters.
+ * </p>
+ */
+public class MemoryBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryBudget.class);
+
+    /** The default maximal waiting time for a reservation. */
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+
+    private static final MemoryBudget GLOBAL = new MemoryBudget(Runtime.getRuntime().maxMemory() / 2);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private long capacityBytes;
+    private long usedBytes;
+    private long peakUsedBytes;
+    private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+    private long rejectedCount;
+    private Policy policy = Policy.WAIT;
+    private Duration maxWait = DEFAULT_MAX_WAIT;
+
+    /**
+     * Create a new budget.
+     * @param capacityBytes the number of bytes, that can be reserved concurrently
+     */
+    public MemoryBudget(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Get the global budget shared by all providers. Its default capacity is half of the maximal heap size.
+     * @return the global budget
+     */
+    public static MemoryBudget getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Reserve memory. The reservation must be closed, when the memory is no longer used.
+     * @param bytes the estimated number of bytes
+     * @return the reservation
+     * @throws MemoryBudgetExceededException if the policy is {@link Policy#FAIL_FAST} and the memory is not available,
+     * or the memory did not become available within the maximal waiting time
+     */
+    public Reservation reserve(long bytes) throws MemoryBudgetExceededException {
+
+        lock.lock();
+        try {
+            // an oversized request gets the whole capacity
+            final long amount = Math.max(0L, Math.min(bytes, capacityBytes));
+            if (!waiters.isEmpty() || usedBytes + amount > capacityBytes) {
+                if (policy == Policy.FAIL_FAST) {
+                    rejectedCount++;
+                    throw new MemoryBudgetExceededException("Cannot reserve " + bytes + " bytes, "
+                        + (capacityBytes - usedBytes) + " of " + capacityBytes + " bytes available!");
+                }
+                waitFor(bytes);
+            }
+            // the capacity may have changed while waiting
+            final long admitted = Math.max(0L, Math.min(bytes, capacityBytes));
+            usedBytes += admitted;
+            peakUsedBytes = Math.max(peakUsedBytes, usedBytes);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("MemoryBudget: reserved {} bytes, used {} of {} bytes", admitted, usedBytes, capacityBytes);
+            }
+            return new Reservation(admitted);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserve memory without waiting, independent of the policy. The reservation must be closed, when the memory
+     * is no longer used.
+     * @param bytes the estimated number of bytes
+     * @return the reservation or null, if the memory is not available now or other requests are waiting
+     */
+    public Reservation tryReserve(long bytes) {
+
+        lock.lock();
+        try {
+            final long amount = Math.max(0L, Math.min(bytes, capacityBytes));
+            if (!waiters.isEmpty() || usedBytes + amount > capacityBytes) {
+                return null;
+            }
+            usedBytes += amount;
+            peakUsedBytes = Math.max(peakUsedBytes, usedBytes);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("MemoryBudget: reserved {} bytes, used {} of {} bytes", amount, usedBytes, capacityBytes);
+            }
+            return new Reservation(amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait in arrival order, until this request is the first waiting one and fits into the budget.
+     */
+    private void waitFor(long bytes) throws MemoryBudgetExceededException {
+        long nanos = maxWait.toNanos();
+        final Object ticket = new Object();
+        waiters.addLast(ticket);
+        try {
+            while (waiters.peekFirst() != ticket || usedBytes + Math.max(0L, Math.min(bytes, capacityBytes)) > capacityBytes) {
+                if (nanos <= 0L) {
+                    rejectedCount++;
+                    throw new MemoryBudgetExceededException("Cannot reserve " + bytes + " bytes within "
+                        + maxWait.toMillis() + " msecs, " + (capacityBytes - usedBytes) + " of " + capacityBytes + " bytes available!");
+                }
+                nanos = released.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount++;
+            throw new MemoryBudgetExceededException("Interrupted while waiting to reserve " + bytes + " bytes!", e);
+        } finally {
+            waiters.remove(ticket);
+            // the next waiter may fit now
+            released.signalAll();
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            usedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes, that can be reserved concurrently.
+     * @return the capacity in bytes
+     */
+    public long getCapacityBytes() {
+        lock.lock();
+        try {
+            return capacityBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the number of bytes, that can be reserved concurrently. Existing reservations are kept.
+     * @param capacityBytes the capacity in bytes
+     */
+    public void setCapacityBytes(long capacityBytes) {
+        lock.lock();
+        try {
+            this.capacityBytes = capacityBytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of currently reserved bytes (gauge).
+     * @return the used bytes
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes, that can be reserved without waiting (gauge).
+     * @return the available bytes
+     */
+    public long getAvailableBytes() {
+        lock.lock();
+        try {
+            return Math.max(0L, capacityBytes - usedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the maximal number of reserved bytes since the creation of the budget.
+     * @return the peak of the used bytes
+     */
+    public long getPeakUsedBytes() {
+        lock.lock();
+        try {
+            return peakUsedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests currently waiting for a reservation (gauge).
+     * @return the number of waiting requests
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of rejected reservations since the creation of the budget.
+     * @return the number of rejected reservations
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the policy used, when the budget is exhausted.
+     * @return the policy
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Set the policy used, when the budget is exhausted.
+     * @param policy {@link Policy#WAIT} (default) or {@link Policy#FAIL_FAST}
+     */
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Get the maximal waiting time of the {@link Policy#WAIT} policy.
+     * @return the maximal waiting time
+     */
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Set the maximal waiting time of the {@link Policy#WAIT} policy.
+     * @param maxWait the maximal waiting time - default is {@link #DEFAULT_MAX_WAIT}
+     */
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Behavior, when the budget is exhausted.
+     */
+    public enum Policy {
+        /**
+         * Wait until enough memory is released or the maximal waiting time is reached.
+         */
+        WAIT,
+
+        /**
+         * Fail immediately with a {@link MemoryBudgetExceededException}.
+         */
+        FAIL_FAST
+    }
+
+    /**
+     * A reservation of memory, that is released when it is closed.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Get the reserved number of bytes.
+         * @return the reserved bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Release the reserved memory. Calling close more than once has no effect.
+         */
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.giraone.imaging;
+
+import java.io.Serial;
+
+/**
+ * Exception thrown, when a conversion cannot reserve the estimated pixel memory from the {@link MemoryBudget}
+ * - either immediately (fail fast) or within the maximal waiting time.
+ */
+public class MemoryBudgetExceededException extends ImageConversionException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new MemoryBudgetExceededException with the specified detail message.
+     * @param message the detail message with the requested and available bytes
+     */
+    public MemoryBudgetExceededException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new MemoryBudgetExceededException with the specified detail message and cause.
+     * @param message the detail message with the requested and available bytes
+     * @param cause the cause, e.g. an InterruptedException while waiting
+     */
+    public MemoryBudgetExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
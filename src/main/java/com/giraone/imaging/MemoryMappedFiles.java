@@ -0,0 +1,72 @@
+package com.giraone.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapping of large input files. A file is mapped once read-only and the mapping is shared by the file type
+ * detection, the image reader ({@link com.giraone.imaging.java2.ByteBufferImageInputStream}) and PDFBox
+ * ({@code RandomAccessReadBuffer}), so the content is read directly from the page cache without copying it
+ * through heap buffers.
+ * <p>
+ * The mapping is released, when the returned buffer is garbage collected. On Windows, the file cannot be deleted
+ * before. Files larger than 2 GB cannot be mapped into one buffer and are read as before.
+ * </p>
+ */
+public final class MemoryMappedFiles {
+
+    /**
+     * Default minimal size of a file, that is memory-mapped: 16 MB. Small files are read faster using streams.
+     */
+    public static final long DEFAULT_THRESHOLD = 16L * 1024L * 1024L;
+
+    /**
+     * Threshold value, that disables memory mapping.
+     */
+    public static final long DISABLED = -1L;
+
+    // Hide constructor
+    private MemoryMappedFiles() {
+    }
+
+    /**
+     * Map the whole file read-only.
+     * @param path the file
+     * @return the mapping positioned at the start of the file
+     * @throws IOException on errors opening or mapping the file or if the file is larger than 2 GB
+     */
+    public static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File \"" + path + "\" is too large to be mapped: " + size + " bytes!");
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+    }
+
+    /**
+     * Map the whole file read-only, if it is large enough.
+     * @param file the file
+     * @param threshold the minimal size of the file in bytes or {@link #DISABLED}
+     * @return the mapping positioned at the start of the file or null, if the file is smaller than the threshold,
+     * larger than 2 GB or if mapping is disabled
+     * @throws IOException on errors opening or mapping the file
+     */
+    public static ByteBuffer mapIfLarge(File file, long threshold) throws IOException {
+        if (threshold < 0L) {
+            return null;
+        }
+        final long size = file.length();
+        if (size < threshold || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        return map(file.toPath());
+    }
+}
@@ -0,0 +1,57 @@
+package com.giraone.imaging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The target, to which a thumbnail or converted image is written. A sink is set on a {@link ConversionCommand} using
+ * {@link ConversionCommand#setOutputSink(OutputSink)} and replaces the output file, so thumbnails can be produced in
+ * memory or streamed directly to a storage without a local file.
+ * <p>
+ * The interface is functional: any supplier of an output stream, e.g. {@code () -> storage.openUpload(key)}, is a sink.
+ * </p>
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+    /**
+     * Open the stream, to which the output is written. The stream is closed by the provider after writing.
+     * @return a new output stream
+     * @throws IOException on any error opening the stream
+     */
+    OutputStream openStream() throws IOException;
+
+    /**
+     * Create a sink writing to a file.
+     * @param file the output file
+     * @return the sink
+     */
+    static OutputSink toFile(File file) {
+        return () -> new FileOutputStream(file);
+    }
+
+    /**
+     * Create a sink writing to a channel, e.g. a socket or a file channel. Each write passes the encoder's buffer to the
+     * channel without an additional copy. Closing the stream does not close the channel.
+     * @param channel the channel - owned and closed by the caller
+     * @return the sink
+     */
+    static OutputSink toChannel(WritableByteChannel channel) {
+        return () -> new FilterOutputStream(Channels.newOutputStream(channel)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+}
@@ -5,7 +5,13 @@ import com.giraone.imaging.text.MarkdownProvider;
 import com.giraone.imaging.video.VideoProvider;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static com.giraone.imaging.MimeTypes.*;
 
@@ -78,6 +84,94 @@ public interface ThumbnailProvider {
         createThumbnail(inputPath.toFile(), ConversionCommand.buildConversionCommand(outputPath.toFile(), format, width, height, quality));
     }
 
+    /**
+     * Create a thumbnail image from the content of a file given as a byte buffer.
+     * @param input the content of the input file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnail(ByteBuffer input, ConversionCommand conversionCommand) throws Exception {
+        createThumbnails(input, new ConversionCommand[] { conversionCommand });
+    }
+
+    /**
+     * Create a thumbnail image from the content of a file given as a byte array.
+     * @param input the content of the input file
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnail(byte[] input, ConversionCommand conversionCommand) throws Exception {
+        createThumbnails(ByteBuffer.wrap(input), new ConversionCommand[] { conversionCommand });
+    }
+
+    /**
+     * Create a thumbnail image from the content of a file given as an input stream.
+     * @param input the stream with the content of the input file - the stream is read to its end, but not closed
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnail(InputStream input, ConversionCommand conversionCommand) throws Exception {
+        createThumbnails(ByteBuffer.wrap(input.readAllBytes()), new ConversionCommand[] { conversionCommand });
+    }
+
+    /**
+     * Create multiple thumbnail images from the content of a file given as a byte array.
+     * @param input the content of the input file
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnails(byte[] input, ConversionCommand[] conversionCommands) throws Exception {
+        createThumbnails(ByteBuffer.wrap(input), conversionCommands);
+    }
+
+    /**
+     * Create multiple thumbnail images from the content of a file given as an input stream.
+     * @param input the stream with the content of the input file - the stream is read to its end, but not closed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnails(InputStream input, ConversionCommand[] conversionCommands) throws Exception {
+        createThumbnails(ByteBuffer.wrap(input.readAllBytes()), conversionCommands);
+    }
+
+    /**
+     * Create multiple thumbnail images from the content of a file given as a byte buffer.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * Implementing classes should override this and read the buffer directly. The only bundled provider using the
+     * temporary file is {@link com.giraone.imaging.video.VideoProviderFfmpeg}, because ffmpeg needs a seekable input.
+     * @param input the content of the input file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    default void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+        final Path tempFile = writeTempFile(input);
+        try {
+            createThumbnails(tempFile.toFile(), conversionCommands);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Write the content of a byte buffer to a new temporary file.
+     * @param input the content from its position to its limit - the buffer's position is not changed
+     * @return the temporary file, which must be deleted by the caller
+     * @throws IOException on any error writing the file
+     */
+    static Path writeTempFile(ByteBuffer input) throws IOException {
+        final Path tempFile = Files.createTempFile("imaging-input-", ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = input.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
     /**
      * Return default ThumbnailProvider for a given MIME type.
      * @param mimeType MIME to get the provider for
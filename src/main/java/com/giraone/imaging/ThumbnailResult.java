@@ -0,0 +1,114 @@
+package com.giraone.imaging;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of an asynchronous thumbnail creation using {@link AsyncThumbnailProvider}.
+ */
+public class ThumbnailResult {
+
+    private final File inputFile;
+    private final String mimeType;
+    private final List<File> outputFiles;
+    private final List<OutputSink> outputSinks;
+    private final Duration duration;
+
+    /**
+     * Create a new ThumbnailResult.
+     * @param inputFile the input file
+     * @param mimeType the MIME type of the input file
+     * @param outputFiles the created thumbnail files in the order of the conversion commands
+     * @param duration the time from the submission to the completion of the request
+     */
+    public ThumbnailResult(File inputFile, String mimeType, List<File> outputFiles, Duration duration) {
+        this(inputFile, mimeType, outputFiles, Collections.nCopies(outputFiles.size(), null), duration);
+    }
+
+    /**
+     * Create a new ThumbnailResult for commands writing to files or output sinks.
+     * @param inputFile the input file
+     * @param mimeType the MIME type of the input file
+     * @param outputFiles the created thumbnail files in the order of the conversion commands - null for commands with an output sink
+     * @param outputSinks the output sinks in the order of the conversion commands - null for commands writing to a file
+     * @param duration the time from the submission to the completion of the request
+     */
+    public ThumbnailResult(File inputFile, String mimeType, List<File> outputFiles, List<OutputSink> outputSinks,
+                           Duration duration) {
+        this.inputFile = inputFile;
+        this.mimeType = mimeType;
+        this.outputFiles = Collections.unmodifiableList(new ArrayList<>(outputFiles));
+        this.outputSinks = Collections.unmodifiableList(new ArrayList<>(outputSinks));
+        this.duration = duration;
+    }
+
+    /**
+     * Get the input file.
+     * @return the input file
+     */
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * Get the MIME type of the input file, that was used to select the thumbnail provider.
+     * @return the MIME type (e.g. "image/jpeg", "application/pdf")
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Get the created thumbnail files.
+     * @return the output files in the order of the conversion commands - null for commands with an output sink
+     */
+    public List<File> getOutputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Get the first (or only) created thumbnail file.
+     * @return the output file of the first conversion command or null, if it has an output sink
+     */
+    public File getOutputFile() {
+        return outputFiles.get(0);
+    }
+
+    /**
+     * Get the output sinks, to which the thumbnails were written, e.g. a {@link ByteBufferOutputSink} holding the result.
+     * @return the output sinks in the order of the conversion commands - null for commands writing to a file
+     */
+    public List<OutputSink> getOutputSinks() {
+        return outputSinks;
+    }
+
+    /**
+     * Get the output sink of the first (or only) conversion command.
+     * @return the output sink of the first conversion command or null, if it writes to a file
+     */
+    public OutputSink getOutputSink() {
+        return outputSinks.get(0);
+    }
+
+    /**
+     * Get the time from the submission to the completion of the request including waiting times.
+     * @return the duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "ThumbnailResult{" +
+            "inputFile=" + inputFile +
+            ", mimeType='" + mimeType + '\'' +
+            ", outputFiles=" + outputFiles +
+            ", outputSinks=" + outputSinks +
+            ", duration=" + duration +
+            '}';
+    }
+}
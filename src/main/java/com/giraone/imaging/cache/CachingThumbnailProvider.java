@@ -0,0 +1,454 @@
+package com.giraone.imaging.cache;
+
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.ThumbnailProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Caching decorator for a {@link ThumbnailProvider}. The thumbnails are stored in a content-addressed directory.
+ * The cache key is the SHA-256 hash of the input bytes combined with the normalized conversion command
+ * (format, dimension, quality, compression, keepAspectRatio, scale, speed hint). The output file of the command is not
+ * part of the key. On a cache hit, the cached thumbnail is copied to the output file or output sink of the command
+ * without decoding the input. On a miss, the output of the delegate is written to the target and the cache at once.
+ * <p>
+ * The cached files are stored in a two level sharded directory structure (e.g. {@code ab/cd/abcd...ef.jpg}).
+ * New entries are written to a temporary file and then renamed, so concurrent workers (threads or processes using the
+ * same directory) never see partial files. The total size is bounded - the least recently used entries are evicted,
+ * where a hit updates the last modified time of the cached file, so the LRU order survives a restart.
+ * </p>
+ */
+public class CachingThumbnailProvider implements ThumbnailProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingThumbnailProvider.class);
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final ThumbnailProvider delegate;
+    private final Path cacheDirectory;
+    private final long maxCacheBytes;
+
+    private final Map<Path, Long> entrySizes = new ConcurrentHashMap<>();
+    private final AtomicLong cacheBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Create a new caching provider. Existing entries in the cache directory are reused.
+     * @param delegate the provider, that creates the thumbnails on a cache miss
+     * @param cacheDirectory the cache directory - created, if it does not exist
+     * @param maxCacheBytes the maximal total size of all cached files in bytes
+     * @throws IOException if the cache directory cannot be created or read
+     */
+    public CachingThumbnailProvider(ThumbnailProvider delegate, Path cacheDirectory, long maxCacheBytes) throws IOException {
+        this.delegate = delegate;
+        this.cacheDirectory = cacheDirectory;
+        this.maxCacheBytes = maxCacheBytes;
+        Files.createDirectories(cacheDirectory);
+        loadIndex();
+        evict();
+    }
+
+    /**
+     * Create a thumbnail image for a given file. On a cache hit, the cached thumbnail is copied to the output file.
+     * @param inputFile Input file.
+     * @param conversionCommand The command with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error opening the file, converting the file or writing to the output.
+     */
+    @Override
+    public void createThumbnail(File inputFile, ConversionCommand conversionCommand) throws Exception {
+        createThumbnails(inputFile, new ConversionCommand[] { conversionCommand });
+    }
+
+    /**
+     * Create multiple thumbnail images for a given file. The input is hashed once. Only the commands, that are not
+     * in the cache, are passed to the delegate - in one call, so that the input is still decoded only once.
+     * @param inputFile Input file.
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error opening the file, converting the file or writing to the output.
+     */
+    @Override
+    public void createThumbnails(File inputFile, ConversionCommand[] conversionCommands) throws Exception {
+        createThumbnails(hashInput(inputFile.toPath()), conversionCommands, misses -> {
+            if (misses.length == 1) {
+                delegate.createThumbnail(inputFile, misses[0]);
+            } else {
+                delegate.createThumbnails(inputFile, misses);
+            }
+        });
+    }
+
+    /**
+     * Create multiple thumbnail images for the content of a file given as a byte buffer. The buffer is hashed directly
+     * and only the commands, that are not in the cache, are passed to the delegate.
+     * @param input the content of the input file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    @Override
+    public void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+        final MessageDigest digest = newDigest();
+        digest.update(input.duplicate());
+        createThumbnails(digest.digest(), conversionCommands, misses -> delegate.createThumbnails(input, misses));
+    }
+
+    private void createThumbnails(byte[] inputHash, ConversionCommand[] conversionCommands, MissHandler missHandler) throws Exception {
+
+        final List<ConversionCommand> misses = new ArrayList<>(conversionCommands.length);
+        final List<ConversionCommand> originals = new ArrayList<>(conversionCommands.length);
+        final List<Path> missEntries = new ArrayList<>(conversionCommands.length);
+        final List<Path> tempFiles = new ArrayList<>(conversionCommands.length);
+        try {
+            for (ConversionCommand conversionCommand : conversionCommands) {
+                final Path entry = getEntryPath(inputHash, conversionCommand);
+                if (copyFromCache(entry, conversionCommand)) {
+                    hitCount.incrementAndGet();
+                } else {
+                    missCount.incrementAndGet();
+                    // the output is written to the original target and a temporary file in the cache at the same time
+                    final Path tempFile = createTempFile(entry);
+                    tempFiles.add(tempFile);
+                    final ConversionCommand teeCommand = new ConversionCommand(conversionCommand);
+                    teeCommand.setOutputSink(() -> new TeeOutputStream(conversionCommand.openOutputStream(), Files.newOutputStream(tempFile)));
+                    misses.add(teeCommand);
+                    originals.add(conversionCommand);
+                    missEntries.add(entry);
+                }
+            }
+            if (misses.isEmpty()) {
+                return;
+            }
+            missHandler.create(misses.toArray(new ConversionCommand[0]));
+            for (int i = 0; i < misses.size(); i++) {
+                store(tempFiles.get(i), missEntries.get(i));
+                originals.get(i).setSizeSearchResult(misses.get(i).getSizeSearchResult());
+            }
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Remove all entries from the cache.
+     * @throws IOException on any error deleting the cached files
+     */
+    public void clear() throws IOException {
+        for (Path entry : new ArrayList<>(entrySizes.keySet())) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Get the cache directory.
+     * @return the cache directory
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Get the maximal total size of all cached files.
+     * @return the maximal size in bytes
+     */
+    public long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    /**
+     * Get the total size of all cached files.
+     * @return the size in bytes
+     */
+    public long getCacheBytes() {
+        return cacheBytes.get();
+    }
+
+    /**
+     * Get the number of cached files.
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return entrySizes.size();
+    }
+
+    /**
+     * Get the number of thumbnails served from the cache.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of thumbnails, that had to be created by the delegate.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of cached files removed to keep the size bound.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Build the normalized text representation of a conversion command, that is used for the cache key.
+     * The output file is not part of it.
+     * @param command the conversion command
+     * @return the normalized command
+     */
+    static String normalize(ConversionCommand command) {
+        final Dimension dimension = command.getDimension();
+        final String format = command.getOutputFormat() != null ? command.getOutputFormat().toLowerCase() : "";
+        return "format=" + format
+            + ";dimension=" + (dimension != null ? dimension.width + "x" + dimension.height : "")
+            + ";quality=" + command.getQuality()
+            + ";compression=" + command.useCompression()
+            + ";keepAspectRatio=" + command.isKeepAspectRatio()
+            + ";scale=" + (command.getScale() != null ? command.getScale() : "")
+            + ";speedHint=" + (command.getSpeedHint() != null ? command.getSpeedHint() : "")
+            // only added, when used, so that the keys of existing entries do not change
+            + (command.getJpegEncoding() != null && command.getJpegEncoding() != ConversionCommand.JpegEncoding.STANDARD
+                ? ";jpegEncoding=" + command.getJpegEncoding() : "")
+            + (command.getMaxOutputBytes() > 0
+                ? ";maxOutputBytes=" + command.getMaxOutputBytes() + ";tolerance=" + command.getMaxOutputBytesTolerance() : "");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private Path getEntryPath(byte[] inputHash, ConversionCommand command) {
+        final MessageDigest digest = newDigest();
+        digest.update(inputHash);
+        digest.update(normalize(command).getBytes(StandardCharsets.UTF_8));
+        final String key = HexFormat.of().formatHex(digest.digest());
+        return cacheDirectory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4))
+            .resolve(key + getExtension(command.getOutputFormat()));
+    }
+
+    private boolean copyFromCache(Path entry, ConversionCommand command) throws IOException {
+        final InputStream in;
+        try {
+            in = Files.newInputStream(entry);
+        } catch (NoSuchFileException e) {
+            // not cached or evicted concurrently
+            if (entrySizes.remove(entry) instanceof Long size) {
+                cacheBytes.addAndGet(-size);
+            }
+            return false;
+        }
+        final long size;
+        try (in; OutputStream out = command.openOutputStream()) {
+            size = in.transferTo(out);
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.debug("CachingThumbnailProvider: cannot touch {}", entry, e);
+        }
+        if (!entrySizes.containsKey(entry)) {
+            // created by another process using the same directory
+            register(entry, size);
+        }
+        return true;
+    }
+
+    private static Path createTempFile(Path entry) throws IOException {
+        final Path shard = entry.getParent();
+        Files.createDirectories(shard);
+        return Files.createTempFile(shard, entry.getFileName().toString(), TEMP_FILE_SUFFIX);
+    }
+
+    private void store(Path tempFile, Path entry) throws IOException {
+        final long size = Files.size(tempFile);
+        try {
+            Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+        register(entry, size);
+    }
+
+    private void register(Path entry, long size) {
+        final Long previous = entrySizes.put(entry, size);
+        cacheBytes.addAndGet(size - (previous != null ? previous : 0L));
+    }
+
+    private void remove(Path entry) throws IOException {
+        final Long size = entrySizes.remove(entry);
+        if (size != null) {
+            cacheBytes.addAndGet(-size);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    /**
+     * Remove the least recently used entries, until the total size is within the bound.
+     */
+    private synchronized void evict() throws IOException {
+        if (cacheBytes.get() <= maxCacheBytes) {
+            return;
+        }
+        final List<LruEntry> entries = new ArrayList<>(entrySizes.size());
+        for (Path entry : entrySizes.keySet()) {
+            try {
+                entries.add(new LruEntry(entry, Files.getLastModifiedTime(entry).toMillis()));
+            } catch (NoSuchFileException e) {
+                remove(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong(LruEntry::lastAccess));
+        for (LruEntry entry : entries) {
+            if (cacheBytes.get() <= maxCacheBytes) {
+                break;
+            }
+            LOGGER.debug("CachingThumbnailProvider: evict {}", entry.path);
+            remove(entry.path);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Register all existing files in the cache directory and delete left over temporary files.
+     */
+    private void loadIndex() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            files.forEach(file -> {
+                try {
+                    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile()) {
+                        return;
+                    }
+                    if (file.getFileName().toString().endsWith(TEMP_FILE_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        register(file, attributes.size());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        LOGGER.info("CachingThumbnailProvider: {} entries with {} bytes in {}", entrySizes.size(), cacheBytes.get(), cacheDirectory);
+    }
+
+    private static byte[] hashInput(Path inputFile) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(inputFile)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getExtension(String mimeType) {
+        if (mimeType == null) {
+            return "";
+        }
+        final int slash = mimeType.lastIndexOf('/');
+        return "." + (slash >= 0 ? mimeType.substring(slash + 1) : mimeType).toLowerCase();
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A cached file with its last access time used for sorting.
+     */
+    private record LruEntry(Path path, long lastAccess) {
+    }
+
+    /**
+     * An output stream writing to two streams.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+
+        private final OutputStream first;
+        private final OutputStream second;
+
+        private TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (first; second) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Creates the thumbnails, that are not in the cache, using the delegate.
+     */
+    @FunctionalInterface
+    private interface MissHandler {
+        void create(ConversionCommand[] misses) throws Exception;
+    }
+}
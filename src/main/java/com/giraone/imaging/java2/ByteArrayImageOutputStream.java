@@ -0,0 +1,162 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ByteArrayPool;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An {@link javax.imageio.stream.ImageOutputStream} collecting the encoded image in a growable byte array taken from
+ * the {@link ByteArrayPool}. On {@link #commit()}, which is called after the image writer succeeded, the whole content
+ * is written to the target stream with one call. On {@link #close()}, the array is returned to the pool, so that a
+ * failed encoding writes nothing to the target. Neither a cache file nor the chunk list of
+ * {@link javax.imageio.stream.MemoryCacheImageOutputStream} is needed.
+ */
+public class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+    private final OutputStream target;
+    private byte[] buffer;
+    private int length;
+
+    /**
+     * Create a stream.
+     * @param target the stream, to which the content is written on {@link #commit()} - it is flushed, but not
+     *               closed - or null to keep the content only in memory
+     * @param initialCapacity the initial capacity in bytes - the buffer grows as needed
+     */
+    public ByteArrayImageOutputStream(OutputStream target, int initialCapacity) {
+        this.target = target;
+        this.buffer = ByteArrayPool.acquire(initialCapacity);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buffer[(int) streamPos++] = (byte) b;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+        }
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buffer, (int) streamPos, len);
+        streamPos += len;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        return buffer[(int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        final long remaining = length - streamPos;
+        if (remaining <= 0) {
+            return -1;
+        }
+        final int count = (int) Math.min(len, remaining);
+        System.arraycopy(buffer, (int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+
+    /**
+     * Write the content to the target stream. Call it once after the image writer succeeded.
+     * @throws IOException on any error writing to the target stream
+     */
+    public void commit() throws IOException {
+        checkClosed();
+        if (target != null) {
+            writeTo(target);
+        }
+    }
+
+    /**
+     * Return the buffer to the pool. Content, that is not committed, is discarded.
+     * @throws IOException never
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        ByteArrayPool.release(buffer);
+        buffer = null;
+        super.close();
+    }
+
+    /**
+     * Discard the content, so that the buffer can be used for the next image.
+     */
+    void discard() {
+        streamPos = 0L;
+        bitOffset = 0;
+        flushedPos = 0L;
+        length = 0;
+    }
+
+    /**
+     * Write the current content to a stream.
+     * @param outputStream the stream - it is flushed, but not closed
+     * @throws IOException on any error writing to the stream
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, length);
+        outputStream.flush();
+    }
+
+    /**
+     * Return a copy of the current content.
+     * @return the content
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void ensureCapacity(long minCapacity) {
+        if (minCapacity > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Output exceeds 2 GB");
+        }
+        if (minCapacity > buffer.length) {
+            final byte[] grown = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(minCapacity, (long) buffer.length << 1)));
+            ByteArrayPool.release(buffer);
+            buffer = grown;
+        }
+    }
+}
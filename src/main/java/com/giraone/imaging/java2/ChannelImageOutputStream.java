@@ -0,0 +1,176 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ByteArrayPool;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link javax.imageio.stream.ImageOutputStream} writing directly to a file channel. The channel supports random
+ * access, so neither a cache file nor a memory cache is needed. The stream starts at the current position of the
+ * channel and, on {@link #close()}, the position of the channel is moved to the end of the written content.
+ * The channel itself is not closed.
+ * <p>
+ * Consecutive writes are collected in a block from the {@link ByteArrayPool}, which is written to the channel, when it
+ * is full, when a write is not adjacent to it, before reading and on {@link #flushBefore(long)} and {@link #close()}.
+ * So the small chunks of the image writers do not cause one system call each.
+ * </p>
+ */
+public class ChannelImageOutputStream extends ImageOutputStreamImpl {
+
+    /** The size of the write block in bytes. */
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long base;
+    private long length;
+    private byte[] block;
+    private long blockStart;
+    private int blockLength;
+    private boolean closed;
+
+    /**
+     * Create a stream.
+     * @param channel the file channel, e.g. of a {@link java.io.FileOutputStream}
+     * @throws IOException if the position of the channel cannot be read
+     */
+    public ChannelImageOutputStream(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.base = channel.position();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        flushBits();
+        prepareBlock(1);
+        block[(int) (streamPos - blockStart)] = (byte) b;
+        advance(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        flushBits();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+        }
+        if (len >= BLOCK_SIZE) {
+            // large chunks are written without copying
+            flushBlock();
+            writeFully(ByteBuffer.wrap(b, off, len), streamPos);
+            streamPos += len;
+            length = Math.max(length, streamPos);
+            return;
+        }
+        prepareBlock(len);
+        System.arraycopy(b, off, block, (int) (streamPos - blockStart), len);
+        advance(len);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len + ", length=" + b.length);
+        }
+        flushBlock();
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        final long remaining = length - streamPos;
+        if (remaining <= 0) {
+            return -1;
+        }
+        final int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), base + streamPos);
+        if (count > 0) {
+            streamPos += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Write the collected block to the channel.
+     * @param pos the position, before which the content may be discarded
+     * @throws IOException on any error writing to the channel
+     */
+    @Override
+    public void flushBefore(long pos) throws IOException {
+        flushBlock();
+        super.flushBefore(pos);
+    }
+
+    /**
+     * Write the collected block and move the position of the channel to the end of the written content.
+     * @throws IOException on any error writing to the channel or setting the position
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            channel.position(base + length);
+        } finally {
+            if (block != null) {
+                ByteArrayPool.release(block);
+                block = null;
+            }
+            super.close();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Make sure, that the block can take len bytes at the stream position.
+     */
+    private void prepareBlock(int len) throws IOException {
+        if (block == null) {
+            block = ByteArrayPool.acquire(BLOCK_SIZE);
+        }
+        if (blockLength > 0
+            && (streamPos < blockStart || streamPos > blockStart + blockLength || streamPos + len > blockStart + block.length)) {
+            flushBlock();
+        }
+        if (blockLength == 0) {
+            blockStart = streamPos;
+        }
+    }
+
+    private void advance(int len) {
+        streamPos += len;
+        blockLength = Math.max(blockLength, (int) (streamPos - blockStart));
+        length = Math.max(length, streamPos);
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockLength > 0) {
+            writeFully(ByteBuffer.wrap(block, 0, blockLength), blockStart);
+            blockLength = 0;
+        }
+    }
+
+    private void writeFully(ByteBuffer source, long position) throws IOException {
+        long target = base + position;
+        while (source.hasRemaining()) {
+            target += channel.write(source, target);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.giraone.imaging.java2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory cache of decoded images, so that a new size of an image decoded shortly before can be created
+ * without reading and decoding the file again. The entries are keyed by the absolute path, the last modified time and
+ * the size of the file plus the subsampling factor used for decoding. A request with a subsampling factor can be served
+ * by an entry decoded with a smaller factor (more pixels).
+ * <p>
+ * The strong tier is bounded by the total pixel bytes of the cached images and evicted in LRU order. Evicted images are
+ * moved to a soft reference tier, so they can still be reused until the garbage collector needs the memory.
+ * </p>
+ * <p>
+ * The cached images are shared between conversions and must be treated as read-only.
+ * </p>
+ */
+public class DecodedImageCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecodedImageCache.class);
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, ImagePlusInfo> strongEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, SoftEntry> softEntries = new HashMap<>();
+    private final ReferenceQueue<ImagePlusInfo> softQueue = new ReferenceQueue<>();
+
+    private long bytes;
+    private long hitCount;
+    private long softHitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Create a new cache.
+     * @param maxBytes the maximal total pixel bytes of the strongly referenced images
+     */
+    public DecodedImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a cached image.
+     * @param fileKey the identity of the image file
+     * @param subsampling the requested subsampling factor - entries with a smaller factor are accepted, too
+     * @return the cached image plus information or null, if not cached
+     */
+    public ImagePlusInfo get(FileKey fileKey, int subsampling) {
+        lock.lock();
+        try {
+            expungeSoftEntries();
+            for (int s = Math.max(1, subsampling); s >= 1; s--) {
+                final Key key = new Key(fileKey, s);
+                final ImagePlusInfo strong = strongEntries.get(key);
+                if (strong != null) {
+                    hitCount++;
+                    return strong;
+                }
+                final SoftEntry softEntry = softEntries.remove(key);
+                final ImagePlusInfo soft = softEntry != null ? softEntry.get() : null;
+                if (soft != null) {
+                    softHitCount++;
+                    putStrong(key, soft);
+                    return soft;
+                }
+            }
+            missCount++;
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a decoded image to the cache.
+     * @param fileKey the identity of the image file, that was read before decoding
+     * @param subsampling the subsampling factor used for decoding
+     * @param imagePlusInfo the decoded image plus information
+     */
+    public void put(FileKey fileKey, int subsampling, ImagePlusInfo imagePlusInfo) {
+        lock.lock();
+        try {
+            expungeSoftEntries();
+            final Key key = new Key(fileKey, Math.max(1, subsampling));
+            softEntries.remove(key);
+            putStrong(key, imagePlusInfo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all entries from both tiers.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            strongEntries.clear();
+            softEntries.clear();
+            bytes = 0L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the maximal total pixel bytes of the strongly referenced images.
+     * @return the bound in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get the total pixel bytes of the strongly referenced images.
+     * @return the used bytes
+     */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of strongly referenced images.
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        lock.lock();
+        try {
+            return strongEntries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests served from the strong tier.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests served from the soft reference tier.
+     * @return the number of soft hits
+     */
+    public long getSoftHitCount() {
+        lock.lock();
+        try {
+            return softHitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of requests, that were not cached.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of images moved from the strong tier to the soft reference tier.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of bytes used by the pixel data of an image.
+     * @param image the image
+     * @return the size of the data buffer in bytes
+     */
+    static long getPixelBytes(BufferedImage image) {
+        final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void putStrong(Key key, ImagePlusInfo imagePlusInfo) {
+        final long size = getPixelBytes(imagePlusInfo.getImage());
+        if (size > maxBytes) {
+            // never kept strongly, but may still be reused until the next GC needs the memory
+            softEntries.put(key, new SoftEntry(key, imagePlusInfo, softQueue));
+            return;
+        }
+        final ImagePlusInfo previous = strongEntries.put(key, imagePlusInfo);
+        if (previous != null) {
+            bytes -= getPixelBytes(previous.getImage());
+        }
+        bytes += size;
+        final Iterator<Map.Entry<Key, ImagePlusInfo>> iterator = strongEntries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Key, ImagePlusInfo> eldest = iterator.next();
+            iterator.remove();
+            bytes -= getPixelBytes(eldest.getValue().getImage());
+            softEntries.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue(), softQueue));
+            evictionCount++;
+            LOGGER.debug("DecodedImageCache: evict {}", eldest.getKey());
+        }
+    }
+
+    private void expungeSoftEntries() {
+        Reference<? extends ImagePlusInfo> reference;
+        while ((reference = softQueue.poll()) != null) {
+            final SoftEntry softEntry = (SoftEntry) reference;
+            softEntries.remove(softEntry.key, softEntry);
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The identity of an image file: a changed file gets a new key.
+     * @param path the absolute path of the file
+     * @param lastModified the last modified time in milliseconds
+     * @param size the size in bytes
+     */
+    public record FileKey(Path path, long lastModified, long size) {
+
+        /**
+         * Read the identity of a file.
+         * @param file the file
+         * @return the key
+         * @throws IOException if the attributes of the file cannot be read
+         */
+        public static FileKey of(File file) throws IOException {
+            final Path path = file.toPath().toAbsolutePath();
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileKey(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+        }
+    }
+
+    private record Key(FileKey fileKey, int subsampling) {
+    }
+
+    private static final class SoftEntry extends SoftReference<ImagePlusInfo> {
+
+        private final Key key;
+
+        private SoftEntry(Key key, ImagePlusInfo imagePlusInfo, ReferenceQueue<ImagePlusInfo> queue) {
+            super(imagePlusInfo, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.FileInfo;
+import com.giraone.imaging.FileTypeDetector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+import static com.giraone.imaging.MimeTypes.*;
+
+/**
+ * Read image information (dimension, bits per pixel, compression) from the image header without decoding pixels.
+ * JPEG SOF markers, the PNG IHDR chunk and the GIF logical screen descriptor are parsed directly.
+ * For all other cases the ImageIO {@link ImageReader} is asked for the dimension without calling read().
+ */
+public class ImageHeaderReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageHeaderReader.class);
+
+    private static final int PNG_SIGNATURE_LENGTH = 8;
+    private static final int PNG_CHUNK_IHDR = 0x49484452;
+    private static final int GIF_SIGNATURE_LENGTH = 6;
+
+    // Hide constructor
+    private ImageHeaderReader() {
+    }
+
+    /**
+     * Read the file information of a JPEG, PNG or GIF image file from its header.
+     * @param file the image file
+     * @param fileType the already detected file type
+     * @return the file information or null, if the file type is not supported
+     * @throws IOException on any error opening or reading the image file
+     */
+    public static FileInfo readFileInfo(File file, FileTypeDetector.FileType fileType) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(file)) {
+            if (imageInputStream == null) {
+                throw new IOException("Cannot open \"" + file + "\" for reading!");
+            }
+            return readFileInfo(imageInputStream, fileType, file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Read the file information of a JPEG, PNG or GIF image file or buffer from its header.
+     * @param input the image file or buffer
+     * @param fileType the already detected file type
+     * @return the file information or null, if the file type is not supported
+     * @throws IOException on any error opening or reading the image
+     */
+    static FileInfo readFileInfo(ImageInput input, FileTypeDetector.FileType fileType) throws IOException {
+        try (ImageInputStream imageInputStream = input.openStream()) {
+            return readFileInfo(imageInputStream, fileType, input.getName());
+        }
+    }
+
+    /**
+     * Read the file information of a JPEG, PNG or GIF image from its header.
+     * @param imageInputStream the stream positioned at the start of the image - the stream is not closed
+     * @param fileType the already detected file type
+     * @param name a name used in error messages
+     * @return the file information or null, if the file type is not supported
+     * @throws IOException on any error reading the image
+     */
+    static FileInfo readFileInfo(ImageInputStream imageInputStream, FileTypeDetector.FileType fileType, String name) throws IOException {
+
+        final FileInfo fileInfo = new FileInfo();
+        fileInfo.setProviderFormat(fileType.toString());
+        switch (fileType) {
+            case JPEG:
+                fileInfo.setMimeType(IMAGE_JPEG);
+                fileInfo.setCompressionFormat(FileInfo.COMPRESSION_FORMAT_JPEG);
+                break;
+            case PNG:
+                fileInfo.setMimeType(IMAGE_PNG);
+                fileInfo.setCompressionFormat(FileInfo.COMPRESSION_FORMAT_LZ77);
+                break;
+            case GIF:
+                fileInfo.setMimeType(IMAGE_GIF);
+                fileInfo.setCompressionFormat(FileInfo.COMPRESSION_FORMAT_LZW);
+                break;
+            default:
+                return null;
+        }
+
+        final long start = imageInputStream.getStreamPosition();
+        final ByteOrder byteOrder = imageInputStream.getByteOrder();
+        try {
+            final boolean parsed = switch (fileType) {
+                case JPEG -> parseJpeg(imageInputStream, fileInfo);
+                case PNG -> parsePng(imageInputStream, fileInfo);
+                default -> parseGif(imageInputStream, fileInfo);
+            };
+            if (parsed) {
+                return fileInfo;
+            }
+        } catch (EOFException eof) {
+            LOGGER.debug("ImageHeaderReader: premature end of header in {}", name);
+        } finally {
+            imageInputStream.setByteOrder(byteOrder);
+        }
+
+        imageInputStream.seek(start);
+        readUsingImageReader(imageInputStream, fileInfo, name);
+        return fileInfo;
+    }
+
+    /**
+     * Scan the JPEG markers until a start of frame (SOF) marker is found.
+     */
+    private static boolean parseJpeg(ImageInputStream in, FileInfo fileInfo) throws IOException {
+        in.setByteOrder(ByteOrder.BIG_ENDIAN);
+        if (in.readUnsignedShort() != 0xFFD8) {
+            return false;
+        }
+        while (true) {
+            int marker = in.readUnsignedByte();
+            if (marker != 0xFF) {
+                return false;
+            }
+            // skip fill bytes
+            while (marker == 0xFF) {
+                marker = in.readUnsignedByte();
+            }
+            // stand-alone markers without length: TEM, RST0-RST7
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            // EOI or SOS before SOF: no frame header
+            if (marker == 0xD9 || marker == 0xDA) {
+                return false;
+            }
+            final int length = in.readUnsignedShort();
+            if (isStartOfFrame(marker)) {
+                final int precision = in.readUnsignedByte();
+                final int height = in.readUnsignedShort();
+                final int width = in.readUnsignedShort();
+                final int components = in.readUnsignedByte();
+                fileInfo.setWidth(width);
+                fileInfo.setHeight(height);
+                fileInfo.setBitsPerPixel(precision * components);
+                return width > 0 && height > 0;
+            }
+            if (length < 2) {
+                return false;
+            }
+            in.skipBytes(length - 2);
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0-SOF15 without DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * Parse the PNG IHDR chunk, which must be the first chunk.
+     */
+    private static boolean parsePng(ImageInputStream in, FileInfo fileInfo) throws IOException {
+        in.setByteOrder(ByteOrder.BIG_ENDIAN);
+        in.skipBytes(PNG_SIGNATURE_LENGTH);
+        in.readInt(); // chunk length
+        if (in.readInt() != PNG_CHUNK_IHDR) {
+            return false;
+        }
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final int bitDepth = in.readUnsignedByte();
+        final int colorType = in.readUnsignedByte();
+        final int samplesPerPixel = switch (colorType) {
+            case 0, 3 -> 1; // gray, palette
+            case 2 -> 3; // RGB
+            case 4 -> 2; // gray + alpha
+            case 6 -> 4; // RGB + alpha
+            default -> 0;
+        };
+        fileInfo.setWidth(width);
+        fileInfo.setHeight(height);
+        fileInfo.setBitsPerPixel(bitDepth * samplesPerPixel);
+        return width > 0 && height > 0 && samplesPerPixel > 0;
+    }
+
+    /**
+     * Parse the GIF logical screen descriptor following the signature.
+     */
+    private static boolean parseGif(ImageInputStream in, FileInfo fileInfo) throws IOException {
+        in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        in.skipBytes(GIF_SIGNATURE_LENGTH);
+        final int width = in.readUnsignedShort();
+        final int height = in.readUnsignedShort();
+        fileInfo.setWidth(width);
+        fileInfo.setHeight(height);
+        // GIF pixels are always indices into a color table with max. 256 entries
+        fileInfo.setBitsPerPixel(8);
+        return width > 0 && height > 0;
+    }
+
+    private static void readUsingImageReader(ImageInputStream imageInputStream, FileInfo fileInfo, String name) throws IOException {
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageIO reader found for \"" + name + "\"!");
+        }
+        final ImageReader reader = readers.next();
+        try {
+            reader.setInput(imageInputStream, true, true);
+            fileInfo.setWidth(reader.getWidth(0));
+            fileInfo.setHeight(reader.getHeight(0));
+            final ImageTypeSpecifier rawImageType = reader.getRawImageType(0);
+            if (rawImageType != null) {
+                fileInfo.setBitsPerPixel(rawImageType.getColorModel().getPixelSize());
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+}
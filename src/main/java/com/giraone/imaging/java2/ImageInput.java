@@ -0,0 +1,90 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.FileTypeDetector;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The input of an image conversion: either a file, the content of a file in a byte buffer or a file together with
+ * its memory mapping. A mapped input is read only through the mapping.
+ */
+final class ImageInput {
+
+    private final File file;
+    private final ByteBuffer buffer;
+
+    private ImageInput(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static ImageInput of(File file) {
+        return new ImageInput(file, null);
+    }
+
+    static ImageInput of(ByteBuffer buffer) {
+        return new ImageInput(null, buffer.slice());
+    }
+
+    static ImageInput mapped(File file, ByteBuffer mapping) {
+        return new ImageInput(file, mapping);
+    }
+
+    /**
+     * Return the file.
+     * @return the file or null, if the input is a byte buffer without a file
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Return a name of the input used in log and error messages.
+     * @return the absolute path of the file or a description of the buffer
+     */
+    String getName() {
+        return file != null ? file.getAbsolutePath() : "<buffer of " + buffer.remaining() + " bytes>";
+    }
+
+    /**
+     * Detect the file type from the first bytes of the input.
+     * @return the file type
+     * @throws IOException on any error reading the file
+     */
+    FileTypeDetector.FileType detectFileType() throws IOException {
+        if (buffer != null) {
+            return FileTypeDetector.getInstance().getFileType(buffer);
+        }
+        return FileTypeDetector.getInstance().getFileType(file);
+    }
+
+    /**
+     * Open a new image input stream positioned at the start of the input. The caller must close it.
+     * @return the stream
+     * @throws IOException on any error opening the file
+     */
+    ImageInputStream openStream() throws IOException {
+        if (buffer != null) {
+            return new ByteBufferImageInputStream(buffer);
+        }
+        final ImageInputStream imageInputStream = ImageIO.createImageInputStream(file);
+        if (imageInputStream == null) {
+            throw new IOException("Cannot open \"" + file + "\" for reading!");
+        }
+        return imageInputStream;
+    }
+
+    /**
+     * Return a copy of the whole input as a byte array - only needed for the AWT toolkit.
+     * @return the bytes
+     */
+    byte[] toByteArray() {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(0, bytes);
+        return bytes;
+    }
+}
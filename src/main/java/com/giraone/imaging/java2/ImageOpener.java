@@ -5,12 +5,24 @@ import com.giraone.imaging.FileTypeDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
 import java.awt.image.ImageObserver;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.Iterator;
 
 import static com.giraone.imaging.MimeTypes.*;
 
@@ -25,106 +37,246 @@ public class ImageOpener {
 
     /**
      * Open an image file and return the buffered image plus some image information.
+     * The image is decoded using the default {@link DecodeEngine#IMAGE_IO} engine.
      * @param file the image file to open
      * @return the image and information tupel
      * @throws IOException on any error opening the image file
      */
     public static ImagePlusInfo openImage(File file) throws IOException {
+        return openImage(file, DecodeEngine.IMAGE_IO);
+    }
+
+    /**
+     * Open an image file and return the buffered image plus some image information.
+     * @param file the image file to open
+     * @param decodeEngine the engine used to decode the image
+     * @return the image and information tupel
+     * @throws IOException on any error opening the image file
+     */
+    public static ImagePlusInfo openImage(File file, DecodeEngine decodeEngine) throws IOException {
+        return openImage(file, decodeEngine, SubsamplingPolicy.NONE);
+    }
+
+    /**
+     * Open an image file and return the buffered image plus some image information.
+     * When the {@link DecodeEngine#IMAGE_IO} engine is used, the image dimensions are read from the header first
+     * and the image is decoded with the source subsampling returned by the given policy.
+     * The file information contains always the dimensions of the original image.
+     * @param file the image file to open
+     * @param decodeEngine the engine used to decode the image
+     * @param subsamplingPolicy the policy to determine the subsampling factor from the original image dimensions
+     * @return the image and information tupel
+     * @throws IOException on any error opening the image file
+     */
+    public static ImagePlusInfo openImage(File file, DecodeEngine decodeEngine, SubsamplingPolicy subsamplingPolicy) throws IOException {
         final FileTypeDetector.FileType fileType = FileTypeDetector.getInstance().getFileType(file);
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("openImage (using File): fileType = {}", fileType);
+            LOGGER.debug("openImage (using File): fileType = {}, decodeEngine = {}", fileType, decodeEngine);
         }
-        return openImage(file, fileType);
+        return openImage(file, fileType, decodeEngine, subsamplingPolicy);
     }
 
     /**
      * Open an image file and return the buffered image plus some image information.
+     * The image is decoded using the default {@link DecodeEngine#IMAGE_IO} engine.
      * @param path the image path to open
      * @return the image and information tupel
      * @throws IOException on any error opening the image file
      */
     public static ImagePlusInfo openImage(Path path) throws IOException {
+        return openImage(path, DecodeEngine.IMAGE_IO);
+    }
+
+    /**
+     * Open an image file and return the buffered image plus some image information.
+     * @param path the image path to open
+     * @param decodeEngine the engine used to decode the image
+     * @return the image and information tupel
+     * @throws IOException on any error opening the image file
+     */
+    public static ImagePlusInfo openImage(Path path, DecodeEngine decodeEngine) throws IOException {
         final FileTypeDetector.FileType fileType = FileTypeDetector.getInstance().getFileType(path);
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("openImage (using Path): fileType = {}", fileType);
+            LOGGER.debug("openImage (using Path): fileType = {}, decodeEngine = {}", fileType, decodeEngine);
         }
-        return openImage(path, fileType);
+        return openImage(path, fileType, decodeEngine);
     }
 
-    static ImagePlusInfo openImage(File file, FileTypeDetector.FileType fileType) {
-        BufferedImage image;
-        FileInfo fileInfo;
-        switch (fileType) {
-            case JPEG:
-                image = loadImageUsingToolkit(file);
-                fileInfo = getFileInfo(image, IMAGE_JPEG, FileTypeDetector.FileType.JPEG);
-                break;
-            case GIF:
-                image = loadImageUsingToolkit(file);
-                fileInfo = getFileInfo(image, IMAGE_GIF, FileTypeDetector.FileType.GIF);
-                break;
-            case PNG:
-                image = loadImageUsingToolkit(file);
-                fileInfo = getFileInfo(image, IMAGE_PNG, FileTypeDetector.FileType.PNG);
-                break;
-            /*
-            case TIFF:
-                fileInfo = new FileInfo();
-                fileInfo.setMimeType("image/tiff");
-                fileInfo.setProviderFormat(FileTypeDetector.FileType.TIFF.toString());
-                try (FileInputStream in = new FileInputStream(file)) {
-                    MemoryImageSource imageSource = Decoder_tiff.getImageSource(in, fileInfo);
-                    image = new BufferedImage(fileInfo.getWidth(), fileInfo.getHeight(), BufferedImage.TYPE_INT_RGB);
-                    Image image2 = Toolkit.getDefaultToolkit().createImage(imageSource);
-                    Graphics g = image.getGraphics();
-                    g.drawImage(image2, 0, 0, LoggerImageObserver.getInstance());
-                }
-                break;
-            */
-            default:
-                LOGGER.warn("ImageOpener|openImage (using File): {} -> unknown fileType = {}", file, fileType);
-                return null;
+    /**
+     * Open an image given as the content of an image file in a byte buffer and return the buffered image plus some
+     * image information. The buffer is read directly - no temporary file is written.
+     * @param buffer the content of the image file from its position to its limit - the buffer's position is not changed
+     * @param decodeEngine the engine used to decode the image
+     * @param subsamplingPolicy the policy to determine the subsampling factor from the original image dimensions
+     * @return the image and information tupel or null, if the image type is not supported
+     * @throws IOException on any error decoding the image
+     */
+    public static ImagePlusInfo openImage(ByteBuffer buffer, DecodeEngine decodeEngine, SubsamplingPolicy subsamplingPolicy) throws IOException {
+        final ImageInput input = ImageInput.of(buffer);
+        final FileTypeDetector.FileType fileType = input.detectFileType();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("openImage (using ByteBuffer): fileType = {}, decodeEngine = {}", fileType, decodeEngine);
         }
-        return new ImagePlusInfo(image, fileInfo);
+        return openImage(input, fileType, decodeEngine, subsamplingPolicy);
     }
 
-    static ImagePlusInfo openImage(Path path, FileTypeDetector.FileType fileType) {
-        BufferedImage image;
-        FileInfo fileInfo;
-        switch (fileType) {
-            case JPEG:
-                image = loadImageUsingToolkit(path);
-                fileInfo = getFileInfo(image, IMAGE_JPEG, FileTypeDetector.FileType.JPEG);
-                break;
-            case GIF:
-                image = loadImageUsingToolkit(path);
-                fileInfo = getFileInfo(image, IMAGE_GIF, FileTypeDetector.FileType.GIF);
-                break;
-            case PNG:
-                image = loadImageUsingToolkit(path);
-                fileInfo = getFileInfo(image, IMAGE_PNG, FileTypeDetector.FileType.PNG);
-                break;
-            /*
-            case TIFF:
-                fileInfo = new FileInfo();
-                fileInfo.setMimeType("image/tiff");
-                fileInfo.setProviderFormat(FileTypeDetector.FileType.TIFF.toString());
-                try (FileInputStream in = new FileInputStream(file)) {
-                    MemoryImageSource imageSource = Decoder_tiff.getImageSource(in, fileInfo);
-                    image = new BufferedImage(fileInfo.getWidth(), fileInfo.getHeight(), BufferedImage.TYPE_INT_RGB);
-                    Image image2 = Toolkit.getDefaultToolkit().createImage(imageSource);
-                    Graphics g = image.getGraphics();
-                    g.drawImage(image2, 0, 0, LoggerImageObserver.getInstance());
+    static ImagePlusInfo openImage(File file, FileTypeDetector.FileType fileType, DecodeEngine decodeEngine) throws IOException {
+        return openImage(file, fileType, decodeEngine, SubsamplingPolicy.NONE);
+    }
+
+    static ImagePlusInfo openImage(File file, FileTypeDetector.FileType fileType, DecodeEngine decodeEngine,
+                                   SubsamplingPolicy subsamplingPolicy) throws IOException {
+        return openImage(ImageInput.of(file), fileType, decodeEngine, subsamplingPolicy);
+    }
+
+    static ImagePlusInfo openImage(ImageInput input, FileTypeDetector.FileType fileType, DecodeEngine decodeEngine,
+                                   SubsamplingPolicy subsamplingPolicy) throws IOException {
+        final String mimeType = getMimeType(fileType);
+        if (mimeType == null) {
+            LOGGER.warn("ImageOpener|openImage: {} -> unknown fileType = {}", input.getName(), fileType);
+            return null;
+        }
+        if (decodeEngine == DecodeEngine.TOOLKIT) {
+            final BufferedImage image = input.getFile() != null
+                ? loadImageUsingToolkit(input.getFile()) : loadImageUsingToolkit(input.toByteArray());
+            return new ImagePlusInfo(image, getFileInfo(image, mimeType, fileType));
+        }
+        return loadImageUsingImageIo(input, mimeType, fileType, subsamplingPolicy);
+    }
+
+    static ImagePlusInfo openImage(Path path, FileTypeDetector.FileType fileType, DecodeEngine decodeEngine) throws IOException {
+        final String mimeType = getMimeType(fileType);
+        if (mimeType == null) {
+            LOGGER.warn("ImageOpener|openImage (using Path): {} -> unknown fileType = {}", path, fileType);
+            return null;
+        }
+        if (decodeEngine == DecodeEngine.TOOLKIT) {
+            final BufferedImage image = loadImageUsingToolkit(path);
+            return new ImagePlusInfo(image, getFileInfo(image, mimeType, fileType));
+        }
+        return loadImageUsingImageIo(ImageInput.of(path.toFile()), mimeType, fileType, SubsamplingPolicy.NONE);
+    }
+
+    private static String getMimeType(FileTypeDetector.FileType fileType) {
+        return switch (fileType) {
+            case JPEG -> IMAGE_JPEG;
+            case GIF -> IMAGE_GIF;
+            case PNG -> IMAGE_PNG;
+            default -> null;
+        };
+    }
+
+    //--- ImageIO ------------------------------------------------------------------------------------------------------
+
+    /**
+     * Load PNG, GIF or JPEG using an ImageIO {@link ImageReader}.
+     * @param input the input image file or buffer
+     * @param mimeType the MIME type of the image file
+     * @param fileType the detected file type of the image file
+     * @param subsamplingPolicy the policy to determine the subsampling factor
+     * @return the loaded buffered image object plus the file information of the original image
+     * @throws IOException on any error reading or decoding the image file
+     */
+    private static ImagePlusInfo loadImageUsingImageIo(ImageInput input, String mimeType, FileTypeDetector.FileType fileType,
+                                                       SubsamplingPolicy subsamplingPolicy) throws IOException {
+        try (ImageInputStream imageInputStream = input.openStream()) {
+            final ImageReader reader = getImageReader(imageInputStream, input.getName());
+            try {
+                reader.setInput(imageInputStream, true, true);
+                final int width = reader.getWidth(0);
+                final int height = reader.getHeight(0);
+                final int subsampling = Math.max(1, subsamplingPolicy.getSubsampling(width, height));
+                final BufferedImage image = decode(reader, width, height, subsampling);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("loadImageUsingImageIo: {}x{} with subsampling {} -> {}x{}",
+                        width, height, subsampling, image.getWidth(), image.getHeight());
                 }
-                break;
-            */
+                final FileInfo fileInfo = getFileInfo(image, mimeType, fileType);
+                fileInfo.setWidth(width);
+                fileInfo.setHeight(height);
+                return new ImagePlusInfo(image, fileInfo);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decode the first image of the reader's input in the native pixel layout of the decoder. JPEG and true color PNG
+     * are decoded to {@link BufferedImage#TYPE_3BYTE_BGR}, gray images to {@link BufferedImage#TYPE_BYTE_GRAY} and
+     * images with alpha channel keep it. Only indexed images and uncommon layouts (e.g. 16 bit samples) are converted,
+     * see {@link #toNativeLayout(BufferedImage)}. The conversion required by the output format is done once by the encoder.
+     * @param reader the reader with its input already set
+     * @param width the width of the original image
+     * @param height the height of the original image
+     * @param subsampling the source subsampling factor used for both axes (1 = no subsampling)
+     * @return the decoded image
+     * @throws IOException on any error reading or decoding the image
+     */
+    static BufferedImage decode(ImageReader reader, int width, int height, int subsampling) throws IOException {
+        final ImageReadParam param = reader.getDefaultReadParam();
+        if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        return toNativeLayout(reader.read(0, param));
+    }
+
+    private static ImageReader getImageReader(ImageInputStream imageInputStream, String name) throws IOException {
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageIO reader found for \"" + name + "\"!");
+        }
+        return readers.next();
+    }
+
+    /**
+     * Return the image, if its layout is supported by the resamplers and encoders without conversion:
+     * {@link BufferedImage#TYPE_3BYTE_BGR}, {@link BufferedImage#TYPE_BYTE_GRAY}, {@link BufferedImage#TYPE_INT_RGB},
+     * {@link BufferedImage#TYPE_INT_ARGB} or {@link BufferedImage#TYPE_4BYTE_ABGR}. Otherwise, the image is converted
+     * to {@link BufferedImage#TYPE_BYTE_GRAY} (gray), {@link BufferedImage#TYPE_INT_ARGB} (with alpha, including
+     * transparent palette images) or {@link BufferedImage#TYPE_3BYTE_BGR}.
+     * @param image the decoded image
+     * @return the image itself or a converted copy
+     */
+    static BufferedImage toNativeLayout(BufferedImage image) {
+        final int targetType;
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_INT_RGB,
+                 BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR:
+                return image;
             default:
-                LOGGER.warn("ImageOpener|openImage (using Path): {} -> unknown fileType = {}", path, fileType);
-                return null;
+                final ColorModel colorModel = image.getColorModel();
+                if (colorModel.hasAlpha()) {
+                    targetType = BufferedImage.TYPE_INT_ARGB;
+                } else if (colorModel.getNumColorComponents() == 1 && !(colorModel instanceof IndexColorModel)) {
+                    targetType = BufferedImage.TYPE_BYTE_GRAY;
+                } else {
+                    targetType = BufferedImage.TYPE_3BYTE_BGR;
+                }
+        }
+        return convert(image, targetType);
+    }
+
+    static BufferedImage toIntRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        return convert(image, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static BufferedImage convert(BufferedImage image, int targetType) {
+        final BufferedImage bufferedImage = new BufferedImage(image.getWidth(), image.getHeight(), targetType);
+        final Graphics2D graphics2D = bufferedImage.createGraphics();
+        try {
+            graphics2D.drawImage(image, 0, 0, null);
+        } finally {
+            graphics2D.dispose();
         }
-        return new ImagePlusInfo(image, fileInfo);
+        return bufferedImage;
     }
 
+    //--- Toolkit ------------------------------------------------------------------------------------------------------
+
     /**
      * Get Image (PNG, GIF or JPEG) using default toolkit.
      * @param imageFile the input image file
@@ -163,6 +315,15 @@ public class ImageOpener {
         return buildBufferedImage(image, imagePath.toString());
     }
 
+    /**
+     * Load PNG, GIF or JPEG from the content of an image file using default toolkit.
+     * @param imageData the content of the image file
+     * @return the loaded buffered image object
+     */
+    private static BufferedImage loadImageUsingToolkit(byte[] imageData) {
+        final Image image = Toolkit.getDefaultToolkit().createImage(imageData);
+        return buildBufferedImage(image, "<" + imageData.length + " bytes>");
+    }
 
     private static BufferedImage buildBufferedImage(Image image, String filePath) {
         final MediaTracker mediaTracker = new MediaTracker(new Container());
@@ -177,10 +338,28 @@ public class ImageOpener {
         final int height = image.getHeight(imageObserver);
 
         // draw image to gui object
-        final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         final Graphics2D graphics2D = bufferedImage.createGraphics();
         graphics2D.drawImage(image, 0, 0, width, height, imageObserver);
-        return bufferedImage;
+        graphics2D.dispose();
+        return dropOpaqueAlpha(bufferedImage);
+    }
+
+    /**
+     * Return a {@link BufferedImage#TYPE_INT_RGB} view sharing the pixels of an image, whose alpha values are all opaque.
+     * @param image an image of type {@link BufferedImage#TYPE_INT_ARGB}
+     * @return the view or the image itself, if it has transparent pixels
+     */
+    private static BufferedImage dropOpaqueAlpha(BufferedImage image) {
+        final DataBufferInt dataBuffer = (DataBufferInt) image.getRaster().getDataBuffer();
+        for (int pixel : dataBuffer.getData()) {
+            if ((pixel >>> 24) != 0xFF) {
+                return image;
+            }
+        }
+        final WritableRaster raster = Raster.createPackedRaster(dataBuffer, image.getWidth(), image.getHeight(),
+            image.getWidth(), new int[] { 0x00FF0000, 0x0000FF00, 0x000000FF }, null);
+        return new BufferedImage(new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF), raster, false, null);
     }
 
     private static FileInfo getFileInfo(BufferedImage bufferedImage, String mimeType, FileTypeDetector.FileType providerType) {
@@ -208,4 +387,40 @@ public class ImageOpener {
         }
         return fileInfo;
     }
-}
\ No newline at end of file
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Policy to determine the source subsampling factor, when the dimensions of the original image are known.
+     */
+    @FunctionalInterface
+    public interface SubsamplingPolicy {
+
+        /**
+         * Policy for decoding the image in full resolution.
+         */
+        SubsamplingPolicy NONE = (width, height) -> 1;
+
+        /**
+         * Return the subsampling factor for both axes.
+         * @param width the width of the original image
+         * @param height the height of the original image
+         * @return the subsampling factor - 1 means every pixel is decoded, 2 every second pixel, etc.
+         */
+        int getSubsampling(int width, int height);
+    }
+
+    /**
+     * Enumeration of the available engines to decode bitmap images.
+     */
+    public enum DecodeEngine {
+        /**
+         * Decode using an ImageIO {@link ImageReader} directly into the destination raster (default).
+         */
+        IMAGE_IO,
+        /**
+         * Decode using the AWT toolkit and a {@link MediaTracker}. Kept as an opt-in fallback.
+         */
+        TOOLKIT
+    }
+}
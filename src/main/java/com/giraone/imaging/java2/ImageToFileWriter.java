@@ -1,15 +1,19 @@
 package com.giraone.imaging.java2;
 
+import com.giraone.imaging.ConversionCommand;
+
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.FileCacheImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.image.BufferedImage;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Iterator;
 
 import static com.giraone.imaging.MimeTypes.IMAGE_GIF;
 import static com.giraone.imaging.MimeTypes.IMAGE_PNG;
@@ -23,12 +27,27 @@ public class ImageToFileWriter {
     private static final String OUTPUT_FORMAT_PNG = "png";
     private static final String OUTPUT_FORMAT_GIF = "gif";
 
-    private static final ThreadLocal<ImageWriter> ImageWriterThreadLocal = ThreadLocal.withInitial(() -> {
-        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(OUTPUT_FORMAT_JPEG);
-        if (!writers.hasNext())
-            throw new IllegalStateException("No ImageIO writers found");
-        return writers.next();
-    });
+    /**
+     * Raster size in bytes, up to which {@link OutputStreamStrategy#AUTO} writes the encoded image into a pooled buffer
+     * instead of a cache file or a channel: 16 MB, e.g. 2300 x 2300 RGB pixels.
+     */
+    public static final long DEFAULT_IN_MEMORY_THRESHOLD = 16L * 1024L * 1024L;
+
+    /**
+     * Lowest JPEG quality used by the search for a maximal output size.
+     */
+    public static final float MIN_SEARCH_QUALITY = 0.05f;
+
+    /**
+     * Minimal pixel count of an image, for which {@link ConversionCommand.JpegEncoding#AUTO} selects progressive mode.
+     * Smaller images use optimized Huffman tables in baseline mode.
+     */
+    public static final long PROGRESSIVE_MIN_PIXELS = 320L * 320L;
+
+    private static final int MAX_SEARCH_ITERATIONS = 8;
+    private static final float MIN_SEARCH_QUALITY_STEP = 0.01f;
+    private static final int MIN_BUFFER_CAPACITY = 16 * 1024;
+    private static final int MAX_INITIAL_BUFFER_CAPACITY = 1024 * 1024;
 
     // Hide constructor
     private ImageToFileWriter() {
@@ -48,20 +67,128 @@ public class ImageToFileWriter {
      * @throws IOException On any IO exception
      */
     public static void saveJpeg(BufferedImage bufferedImage, OutputStream outputStream, float quality) throws IOException {
+        saveJpeg(bufferedImage, outputStream, quality, ConversionCommand.JpegEncoding.STANDARD, OutputStreamStrategy.AUTO);
+    }
+
+    /**
+     * Save a bitmap as an JPEG image using a specific strategy for the image output stream.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param quality 0.0-1.0 setting of desired quality level.
+     * @param strategy the strategy for the image output stream used by the writer
+     * @throws IOException On any IO exception
+     */
+    public static void saveJpeg(BufferedImage bufferedImage, OutputStream outputStream, float quality,
+                                OutputStreamStrategy strategy) throws IOException {
+        saveJpeg(bufferedImage, outputStream, quality, ConversionCommand.JpegEncoding.STANDARD, strategy);
+    }
+
+    /**
+     * Save a bitmap as an JPEG image using optimized Huffman tables or progressive mode.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param quality 0.0-1.0 setting of desired quality level.
+     * @param jpegEncoding the entropy coding and scan mode
+     * @param strategy the strategy for the image output stream used by the writer
+     * @throws IOException On any IO exception
+     */
+    public static void saveJpeg(BufferedImage bufferedImage, OutputStream outputStream, float quality,
+                                ConversionCommand.JpegEncoding jpegEncoding, OutputStreamStrategy strategy) throws IOException {
 
         // See also: http://www.java2s.com/Code/Java/2D-Graphics-GUI/WritesanimagetoanoutputstreamasaJPEGfileTheJPEGqualitycanbespecifiedinpercent.htm
-        final ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream);
+        // Performance: the writers and their JPEGImageWriteParam are re-used using a pool
+        try (ImageWriterPool.Lease lease = ImageWriterPool.getJpegPool().borrow()) {
+            final ImageWriteParam jpegParams = lease.getWriteParam();
+            setJpegParams(jpegParams, jpegEncoding, bufferedImage);
+            jpegParams.setCompressionQuality(quality);
+            write(lease, bufferedImage, outputStream, jpegParams, strategy);
+        }
+    }
 
-        final JPEGImageWriteParam jpegParams = new JPEGImageWriteParam(null);
-        jpegParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        jpegParams.setCompressionQuality(quality);
+    /**
+     * Save a bitmap as an JPEG image, that is not larger than a maximal size (target file size mode). The quality is
+     * searched using binary search between {@link #MIN_SEARCH_QUALITY} and the given quality. The image is encoded
+     * in memory using the same writer and buffer for all iterations and only the selected result is written to the
+     * output stream. The search stops early, when the size is within the tolerance below the maximal size.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param maxQuality 0.0-1.0 the highest quality used - if the image is small enough with this quality, it is used
+     * @param maxOutputBytes the maximal size of the output in bytes
+     * @param tolerance the tolerance as a fraction of maxOutputBytes, e.g. 0.05
+     * @return the selected quality, the output size and the number of encoder runs - if even the lowest quality
+     * exceeds maxOutputBytes, the output with the lowest quality is written
+     * @throws IOException On any IO exception
+     */
+    public static ConversionCommand.SizeSearchResult saveJpeg(BufferedImage bufferedImage, OutputStream outputStream,
+                                                              float maxQuality, int maxOutputBytes, float tolerance) throws IOException {
+        return saveJpeg(bufferedImage, outputStream, maxQuality, maxOutputBytes, tolerance, ConversionCommand.JpegEncoding.STANDARD);
+    }
 
-        // Performance: we may re-use our ImageWriters
-        final ImageWriter writer = ImageWriterThreadLocal.get();
-        writer.setOutput(ios);
-        writer.write(/* IIOMetadata */ null, new IIOImage(bufferedImage, /* thumbnails */ null, /* IIOMetadata */ null), jpegParams);
-        //writer.dispose(); // We do not dispose, because of the re-use!!!
-        outputStream.flush();
+    /**
+     * Save a bitmap as an JPEG image, that is not larger than a maximal size, using optimized Huffman tables or
+     * progressive mode - see {@link #saveJpeg(BufferedImage, OutputStream, float, int, float)}.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param maxQuality 0.0-1.0 the highest quality used - if the image is small enough with this quality, it is used
+     * @param maxOutputBytes the maximal size of the output in bytes
+     * @param tolerance the tolerance as a fraction of maxOutputBytes, e.g. 0.05
+     * @param jpegEncoding the entropy coding and scan mode
+     * @return the selected quality, the output size and the number of encoder runs
+     * @throws IOException On any IO exception
+     */
+    public static ConversionCommand.SizeSearchResult saveJpeg(BufferedImage bufferedImage, OutputStream outputStream,
+                                                              float maxQuality, int maxOutputBytes, float tolerance,
+                                                              ConversionCommand.JpegEncoding jpegEncoding) throws IOException {
+
+        final int minAcceptedBytes = (int) (maxOutputBytes * (1.0f - Math.max(0.0f, tolerance)));
+        final IIOImage iioImage = new IIOImage(bufferedImage, /* thumbnails */ null, /* IIOMetadata */ null);
+        // sized like the other pooled buffers, the buffer grows only, if an iteration needs it
+        final int initialCapacity = Math.min(getInitialBufferCapacity(getRasterBytes(bufferedImage)),
+            Math.max(MIN_BUFFER_CAPACITY, maxOutputBytes));
+        try (ImageWriterPool.Lease lease = ImageWriterPool.getJpegPool().borrow();
+             ByteArrayImageOutputStream ios = new ByteArrayImageOutputStream(null, initialCapacity)) {
+            final ImageWriter writer = lease.getWriter();
+            final ImageWriteParam jpegParams = lease.getWriteParam();
+            setJpegParams(jpegParams, jpegEncoding, bufferedImage);
+
+            // the highest quality is used, if it fits
+            int size = encode(writer, iioImage, jpegParams, maxQuality, ios);
+            int iterations = 1;
+            if (size <= maxOutputBytes) {
+                ios.writeTo(outputStream);
+                return new ConversionCommand.SizeSearchResult(maxQuality, size, iterations, true);
+            }
+            float low = MIN_SEARCH_QUALITY;
+            float high = maxQuality;
+            byte[] best = null;
+            float bestQuality = 0.0f;
+            while (iterations < MAX_SEARCH_ITERATIONS && high - low >= MIN_SEARCH_QUALITY_STEP) {
+                final float quality = (low + high) / 2.0f;
+                size = encode(writer, iioImage, jpegParams, quality, ios);
+                iterations++;
+                if (size > maxOutputBytes) {
+                    high = quality;
+                } else if (size >= minAcceptedBytes) {
+                    // within tolerance - stop early
+                    ios.writeTo(outputStream);
+                    return new ConversionCommand.SizeSearchResult(quality, size, iterations, true);
+                } else {
+                    best = ios.toByteArray();
+                    bestQuality = quality;
+                    low = quality;
+                }
+            }
+            if (best == null) {
+                // no result fits so far: use the lowest quality, even if it is still too large
+                size = encode(writer, iioImage, jpegParams, MIN_SEARCH_QUALITY, ios);
+                iterations++;
+                ios.writeTo(outputStream);
+                return new ConversionCommand.SizeSearchResult(MIN_SEARCH_QUALITY, size, iterations, size <= maxOutputBytes);
+            }
+            outputStream.write(best);
+            outputStream.flush();
+            return new ConversionCommand.SizeSearchResult(bestQuality, best.length, iterations, true);
+        }
     }
 
     /**
@@ -72,8 +199,36 @@ public class ImageToFileWriter {
      * @throws IOException On any IO exception
      */
     public static void savePng(BufferedImage bufferedImage, OutputStream outputStream) throws IOException {
-        ImageIO.write(bufferedImage, OUTPUT_FORMAT_PNG, outputStream);
-        outputStream.flush();
+        savePng(bufferedImage, outputStream, OutputStreamStrategy.AUTO);
+    }
+
+    /**
+     * Save a bitmap as a PNG image using a specific strategy for the image output stream.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param strategy the strategy for the image output stream used by the writer
+     * @throws IOException On any IO exception
+     */
+    public static void savePng(BufferedImage bufferedImage, OutputStream outputStream, OutputStreamStrategy strategy) throws IOException {
+        try (ImageWriterPool.Lease lease = ImageWriterPool.getPngPool().borrow()) {
+            write(lease, bufferedImage, outputStream, null, strategy);
+        }
+    }
+
+    /**
+     * Save a bitmap as a PNG image using the Java {@link PngEncoder}, which writes the output directly to the stream.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param pngEncoder the encoder with its compression level, row filter and parallelism or null to use the ImageIO
+     *                   writer with {@link OutputStreamStrategy#AUTO}
+     * @throws IOException On any IO exception
+     */
+    public static void savePng(BufferedImage bufferedImage, OutputStream outputStream, PngEncoder pngEncoder) throws IOException {
+        if (pngEncoder == null) {
+            savePng(bufferedImage, outputStream, OutputStreamStrategy.AUTO);
+        } else {
+            pngEncoder.encode(bufferedImage, outputStream);
+        }
     }
 
     /**
@@ -84,8 +239,20 @@ public class ImageToFileWriter {
      * @throws IOException On any IO exception
      */
     public static void saveGif(BufferedImage bufferedImage, OutputStream outputStream) throws IOException {
-        ImageIO.write(bufferedImage, OUTPUT_FORMAT_GIF, outputStream);
-        outputStream.flush();
+        saveGif(bufferedImage, outputStream, OutputStreamStrategy.AUTO);
+    }
+
+    /**
+     * Save a bitmap as a GIF image using a specific strategy for the image output stream.
+     * @param bufferedImage the image bitmap to be saved
+     * @param outputStream Stream to write the image to. Stream is flushed, but not closed.
+     * @param strategy the strategy for the image output stream used by the writer
+     * @throws IOException On any IO exception
+     */
+    public static void saveGif(BufferedImage bufferedImage, OutputStream outputStream, OutputStreamStrategy strategy) throws IOException {
+        try (ImageWriterPool.Lease lease = ImageWriterPool.getGifPool().borrow()) {
+            write(lease, bufferedImage, outputStream, null, strategy);
+        }
     }
 
     public static String mimeTypeToIoWriteFormat(String imageMimeType) {
@@ -95,4 +262,130 @@ public class ImageToFileWriter {
             default -> OUTPUT_FORMAT_JPEG;
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolve {@link ConversionCommand.JpegEncoding#AUTO} using the size of the image.
+     * @param jpegEncoding the requested encoding
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the encoding used for the image - never AUTO
+     */
+    public static ConversionCommand.JpegEncoding resolveJpegEncoding(ConversionCommand.JpegEncoding jpegEncoding, int width, int height) {
+        if (jpegEncoding == null) {
+            return ConversionCommand.JpegEncoding.STANDARD;
+        }
+        if (jpegEncoding != ConversionCommand.JpegEncoding.AUTO) {
+            return jpegEncoding;
+        }
+        return (long) width * height >= PROGRESSIVE_MIN_PIXELS
+            ? ConversionCommand.JpegEncoding.PROGRESSIVE : ConversionCommand.JpegEncoding.OPTIMIZED;
+    }
+
+    private static void setJpegParams(ImageWriteParam jpegParams, ConversionCommand.JpegEncoding jpegEncoding,
+                                      BufferedImage bufferedImage) {
+        // all values are set, because the parameters are re-used by the pool
+        final ConversionCommand.JpegEncoding resolved = resolveJpegEncoding(jpegEncoding,
+            bufferedImage.getWidth(), bufferedImage.getHeight());
+        jpegParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        jpegParams.setProgressiveMode(resolved == ConversionCommand.JpegEncoding.PROGRESSIVE
+            ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        if (jpegParams instanceof JPEGImageWriteParam jpegImageWriteParam) {
+            jpegImageWriteParam.setOptimizeHuffmanTables(resolved != ConversionCommand.JpegEncoding.STANDARD);
+        }
+    }
+
+    private static int encode(ImageWriter writer, IIOImage iioImage, ImageWriteParam jpegParams, float quality,
+                              ByteArrayImageOutputStream ios) throws IOException {
+        jpegParams.setCompressionQuality(quality);
+        ios.discard();
+        writer.setOutput(ios);
+        writer.write(/* IIOMetadata */ null, iioImage, jpegParams);
+        ios.flush();
+        return (int) ios.length();
+    }
+
+    /**
+     * Create the image output stream, to which an image writer writes the encoded image.
+     * @param outputStream the target stream - it is not closed, when the image output stream is closed
+     * @param strategy the strategy
+     * @param rasterBytes the size of the raster of the image to be written, used by {@link OutputStreamStrategy#AUTO}
+     * @return the image output stream - the caller must close it to complete the output and must call
+     * {@link ByteArrayImageOutputStream#commit()} before, when a {@link ByteArrayImageOutputStream} is returned
+     * @throws IOException on any error creating the stream
+     */
+    public static ImageOutputStream createImageOutputStream(OutputStream outputStream, OutputStreamStrategy strategy,
+                                                            long rasterBytes) throws IOException {
+        switch (strategy) {
+            case MEMORY_CACHED:
+                return new MemoryCacheImageOutputStream(outputStream);
+            case POOLED_BUFFER:
+                return new ByteArrayImageOutputStream(outputStream, getInitialBufferCapacity(rasterBytes));
+            case DIRECT:
+                if (outputStream instanceof FileOutputStream fileOutputStream) {
+                    return new ChannelImageOutputStream(fileOutputStream.getChannel());
+                }
+                return new MemoryCacheImageOutputStream(outputStream);
+            case FILE_CACHED:
+                return new FileCacheImageOutputStream(outputStream, ImageIO.getCacheDirectory());
+            default:
+                if (rasterBytes <= DEFAULT_IN_MEMORY_THRESHOLD) {
+                    return new ByteArrayImageOutputStream(outputStream, getInitialBufferCapacity(rasterBytes));
+                }
+                if (outputStream instanceof FileOutputStream fileOutputStream) {
+                    return new ChannelImageOutputStream(fileOutputStream.getChannel());
+                }
+                // the global ImageIO setting decides about caching large images in a file
+                return ImageIO.getUseCache()
+                    ? new FileCacheImageOutputStream(outputStream, ImageIO.getCacheDirectory())
+                    : new MemoryCacheImageOutputStream(outputStream);
+        }
+    }
+
+    private static int getInitialBufferCapacity(long rasterBytes) {
+        // the encoded image is usually much smaller than the raster
+        return (int) Math.max(MIN_BUFFER_CAPACITY, Math.min(MAX_INITIAL_BUFFER_CAPACITY, rasterBytes / 8));
+    }
+
+    private static long getRasterBytes(BufferedImage bufferedImage) {
+        return (long) bufferedImage.getWidth() * bufferedImage.getHeight() * bufferedImage.getRaster().getNumBands();
+    }
+
+    private static void write(ImageWriterPool.Lease lease, BufferedImage bufferedImage, OutputStream outputStream,
+                              ImageWriteParam writeParam, OutputStreamStrategy strategy) throws IOException {
+        // closing the image output stream completes the output and deletes a cache file, but does not close the output stream
+        try (ImageOutputStream ios = createImageOutputStream(outputStream, strategy, getRasterBytes(bufferedImage))) {
+            final ImageWriter writer = lease.getWriter();
+            writer.setOutput(ios);
+            writer.write(/* IIOMetadata */ null, new IIOImage(bufferedImage, /* thumbnails */ null, /* IIOMetadata */ null), writeParam);
+            // the pooled buffer is written only after a successful encoding
+            if (ios instanceof ByteArrayImageOutputStream byteArrayImageOutputStream) {
+                byteArrayImageOutputStream.commit();
+            }
+        }
+        outputStream.flush();
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The kind of {@link ImageOutputStream} used by the image writers. The streams created by
+     * {@link ImageIO#createImageOutputStream(Object)} write each image to a file in java.io.tmpdir first, when
+     * {@link ImageIO#getUseCache()} is true (the default).
+     */
+    public enum OutputStreamStrategy {
+        /**
+         * Images with a raster up to {@link ImageToFileWriter#DEFAULT_IN_MEMORY_THRESHOLD} use {@link #POOLED_BUFFER}. Larger images
+         * use {@link #DIRECT} for file output streams, otherwise a cache file or a memory cache depending on
+         * {@link ImageIO#getUseCache()}. The default.
+         */
+        AUTO,
+        /** Cache the output in memory chunks using a {@link MemoryCacheImageOutputStream}. */
+        MEMORY_CACHED,
+        /** Write directly to the channel of a {@link FileOutputStream} without caching - other streams are memory cached. */
+        DIRECT,
+        /** Collect the output in a pooled byte array, that is written to the output stream with one call. */
+        POOLED_BUFFER,
+        /** Cache the output in a temporary file in the {@link ImageIO#getCacheDirectory()}. */
+        FILE_CACHED
+    }
+}
@@ -0,0 +1,207 @@
+package com.giraone.imaging.java2;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of ImageIO writers for one output format. The service provider is looked up once, so borrowing a writer
+ * neither queries the SPI registry nor allocates a new writer and write parameter, if an idle writer is available.
+ * <p>
+ * The pool is not bound to threads, so it works for platform and virtual threads alike. Borrowing never blocks:
+ * if no idle writer is available, a new one is created. On return, the writer is reset (output and listeners are
+ * cleared) and kept, if less than {@link #getMaxIdle()} writers are idle, otherwise it is disposed.
+ * </p>
+ */
+public class ImageWriterPool {
+
+    /**
+     * Default maximal number of idle writers per format.
+     */
+    public static final int DEFAULT_MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final ImageWriterPool JPEG = new ImageWriterPool("jpeg", DEFAULT_MAX_IDLE);
+    private static final ImageWriterPool PNG = new ImageWriterPool("png", DEFAULT_MAX_IDLE);
+    private static final ImageWriterPool GIF = new ImageWriterPool("gif", DEFAULT_MAX_IDLE);
+
+    private final String formatName;
+    private final ImageWriterSpi writerSpi;
+    private final BlockingQueue<Lease> idle;
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * Create a new pool.
+     * @param formatName the ImageIO format name, e.g. "jpeg", "png" or "gif"
+     * @param maxIdle the maximal number of idle writers kept for reuse
+     * @throws IllegalStateException if there is no ImageIO writer for the format
+     */
+    public ImageWriterPool(String formatName, int maxIdle) {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No ImageIO writers found for " + formatName);
+        }
+        final ImageWriter writer = writers.next();
+        this.formatName = formatName;
+        this.writerSpi = writer.getOriginatingProvider();
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+        if (this.writerSpi == null) {
+            writer.dispose();
+        } else {
+            // the writer from the lookup is the first pooled writer
+            this.idle.offer(new Lease(writer));
+            createdCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the shared pool of JPEG writers.
+     * @return the pool
+     */
+    public static ImageWriterPool getJpegPool() {
+        return JPEG;
+    }
+
+    /**
+     * Get the shared pool of PNG writers.
+     * @return the pool
+     */
+    public static ImageWriterPool getPngPool() {
+        return PNG;
+    }
+
+    /**
+     * Get the shared pool of GIF writers.
+     * @return the pool
+     */
+    public static ImageWriterPool getGifPool() {
+        return GIF;
+    }
+
+    /**
+     * Borrow a writer. The caller must close the lease to return the writer.
+     * @return the lease holding the writer and its write parameter
+     * @throws IOException if a new writer cannot be created
+     */
+    public Lease borrow() throws IOException {
+        final Lease lease = idle.poll();
+        if (lease != null) {
+            reusedCount.incrementAndGet();
+            lease.returned = false;
+            return lease;
+        }
+        createdCount.incrementAndGet();
+        return new Lease(createWriter());
+    }
+
+    /**
+     * Get the ImageIO format name of the writers.
+     * @return the format name
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * Get the maximal number of idle writers kept for reuse.
+     * @return the bound
+     */
+    public int getMaxIdle() {
+        return idle.size() + idle.remainingCapacity();
+    }
+
+    /**
+     * Get the number of idle writers.
+     * @return the number of writers, that can be borrowed without creating a new one
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Get the number of writers created by this pool.
+     * @return the number of created writers
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Get the number of borrow calls served by an idle writer.
+     * @return the number of reused writers
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private ImageWriter createWriter() throws IOException {
+        if (writerSpi != null) {
+            return writerSpi.createWriterInstance();
+        }
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No ImageIO writers found for " + formatName);
+        }
+        return writers.next();
+    }
+
+    private void giveBack(Lease lease) {
+        lease.writer.reset();
+        if (!idle.offer(lease)) {
+            lease.writer.dispose();
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A borrowed writer together with its cached write parameter. Closing the lease returns the writer to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final ImageWriter writer;
+        private final ImageWriteParam writeParam;
+        private boolean returned;
+
+        private Lease(ImageWriter writer) {
+            this.writer = writer;
+            this.writeParam = writer.getDefaultWriteParam();
+        }
+
+        /**
+         * Get the writer.
+         * @return the writer - must not be used after the lease is closed
+         */
+        public ImageWriter getWriter() {
+            return writer;
+        }
+
+        /**
+         * Get the write parameter of the writer. It is reused for all calls using this writer, so each caller has to set
+         * all values it depends on, e.g. the compression mode and quality.
+         * @return the write parameter
+         */
+        public ImageWriteParam getWriteParam() {
+            return writeParam;
+        }
+
+        /**
+         * Reset the writer and return it to the pool. Further calls are ignored.
+         */
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                giveBack(this);
+            }
+        }
+    }
+}
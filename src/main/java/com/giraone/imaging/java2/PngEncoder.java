@@ -0,0 +1,685 @@
+package com.giraone.imaging.java2;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoder written in Java, that replaces the ImageIO PNG writer for large renditions. In contrast to the ImageIO
+ * writer it offers
+ * <ul>
+ *   <li>a selectable deflate level, e.g. {@link Deflater#BEST_SPEED} for fast or {@link Deflater#BEST_COMPRESSION}
+ *   for small output,</li>
+ *   <li>a fixed row filter or the adaptive selection per row (minimal sum of absolute differences),</li>
+ *   <li>parallel filtering and deflating of independent chunks of about {@link #DEFAULT_CHUNK_BYTES}. Like pigz, each
+ *   chunk is compressed using the last 32 KB of the previous chunk as dictionary and ends with a sync flush, so the
+ *   concatenated chunks form one zlib stream. The Adler-32 checksums of the chunks are combined.</li>
+ *   <li>8-bit grayscale or palette output, when the image is gray or uses at most 256 colors.</li>
+ * </ul>
+ * All output is written with a bit depth of 8. An encoder instance can be shared by multiple threads.
+ */
+public class PngEncoder {
+
+    /**
+     * Default size of the uncompressed chunks deflated in parallel: 128 KB.
+     */
+    public static final int DEFAULT_CHUNK_BYTES = 128 * 1024;
+
+    /**
+     * Default deflate level: 4, the same as the ImageIO PNG writer. Higher levels produce only slightly smaller output,
+     * but take much longer.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 4;
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+    private static final byte[] PLTE = { 'P', 'L', 'T', 'E' };
+    private static final byte[] TRNS = { 't', 'R', 'N', 'S' };
+    private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+    private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int DICTIONARY_BYTES = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    private Filter filter = Filter.ADAPTIVE;
+    private boolean colorReduction = true;
+    private int chunkBytes = DEFAULT_CHUNK_BYTES;
+    private Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Get the deflate level.
+     * @return the level from 0 (no compression) to 9 (smallest output) or -1 for the zlib default (6)
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Define the deflate level.
+     * @param compressionLevel the level from {@link Deflater#BEST_SPEED} (1) to {@link Deflater#BEST_COMPRESSION} (9),
+     *                         {@link Deflater#NO_COMPRESSION}, {@link Deflater#DEFAULT_COMPRESSION} of zlib or
+     *                         {@link #DEFAULT_COMPRESSION_LEVEL} (default)
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Get the row filter.
+     * @return the filter
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Define the row filter. Palette images are never filtered in adaptive mode.
+     * @param filter a fixed filter for all rows or {@link Filter#ADAPTIVE} (default)
+     */
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Check, whether images with gray pixels or at most 256 colors are written as grayscale or palette PNG.
+     * @return true, if enabled (default)
+     */
+    public boolean isColorReduction() {
+        return colorReduction;
+    }
+
+    /**
+     * Define, whether images with gray pixels or at most 256 colors are written as grayscale or palette PNG.
+     * The check needs an additional pass over the pixels. Images of type {@link BufferedImage#TYPE_BYTE_GRAY} and
+     * 8-bit indexed images are always written as grayscale or palette PNG.
+     * @param colorReduction true to check the pixels
+     */
+    public void setColorReduction(boolean colorReduction) {
+        this.colorReduction = colorReduction;
+    }
+
+    /**
+     * Get the size of the uncompressed chunks deflated in parallel.
+     * @return the size in bytes
+     */
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    /**
+     * Define the size of the uncompressed chunks deflated in parallel. Smaller chunks allow more parallelism, but
+     * produce slightly larger output.
+     * @param chunkBytes the size in bytes, at least 32 KB
+     */
+    public void setChunkBytes(int chunkBytes) {
+        this.chunkBytes = Math.max(DICTIONARY_BYTES, chunkBytes);
+    }
+
+    /**
+     * Get the executor used for the parallel chunks.
+     * @return the executor or null, if all chunks are processed by the calling thread
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Define the executor used for the parallel chunks.
+     * @param executor the executor (default is the common pool) or null to process all chunks in the calling thread
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Encode an image as PNG.
+     * @param image the image
+     * @param outputStream the stream, to which the PNG is written - it is flushed, but not closed
+     * @throws IOException on any error writing to the stream or if the image is too large (more than 2 GB of pixel data)
+     */
+    public void encode(BufferedImage image, OutputStream outputStream) throws IOException {
+
+        final Layout layout = Layout.of(image, colorReduction);
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final long rowBytes = 1L + (long) width * layout.bytesPerPixel;
+        if (rowBytes * height > Integer.MAX_VALUE - 8) {
+            throw new IOException("Image of " + width + "x" + height + " pixels is too large for the PNG encoder");
+        }
+        final Filter rowFilter = filter == Filter.ADAPTIVE && layout.colorType == COLOR_TYPE_PALETTE ? Filter.NONE : filter;
+
+        // phase 1: filter the rows in bands
+        final byte[] filtered = new byte[(int) (rowBytes * height)];
+        final int rowsPerChunk = (int) Math.max(1L, chunkBytes / rowBytes);
+        final List<Runnable> filterTasks = new ArrayList<>();
+        for (int y = 0; y < height; y += rowsPerChunk) {
+            final int rowStart = y;
+            final int rowEnd = Math.min(height, y + rowsPerChunk);
+            filterTasks.add(() -> filterRows(image, layout, rowFilter, filtered, (int) rowBytes, rowStart, rowEnd));
+        }
+        runAll(filterTasks);
+
+        // phase 2: deflate the chunks
+        final int chunkCount = (int) ((filtered.length + (long) chunkBytes - 1) / chunkBytes);
+        final Chunk[] chunks = new Chunk[chunkCount];
+        final List<Runnable> deflateTasks = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            final int index = i;
+            deflateTasks.add(() -> chunks[index] = deflateChunk(filtered, index * chunkBytes,
+                Math.min(chunkBytes, filtered.length - index * chunkBytes), index == chunkCount - 1,
+                rowFilter != Filter.NONE));
+        }
+        runAll(deflateTasks);
+
+        long adler = 1L;
+        for (Chunk chunk : chunks) {
+            adler = combineAdler32(adler, chunk.adler, chunk.length);
+        }
+
+        outputStream.write(SIGNATURE);
+        writeChunk(outputStream, IHDR, buildHeader(width, height, layout.colorType));
+        if (layout.palette != null) {
+            writeChunk(outputStream, PLTE, layout.palette);
+            if (layout.paletteAlpha != null) {
+                writeChunk(outputStream, TRNS, layout.paletteAlpha);
+            }
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            final byte[] prefix = i == 0 ? getZlibHeader(compressionLevel) : new byte[0];
+            final byte[] suffix = i == chunkCount - 1 ? toBigEndian((int) adler) : new byte[0];
+            writeChunk(outputStream, IDAT, prefix, chunks[i].data, suffix);
+        }
+        writeChunk(outputStream, IEND);
+        outputStream.flush();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void runAll(List<Runnable> tasks) {
+        if (executor == null || tasks.size() == 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < tasks.size(); i++) {
+            futures[i] = CompletableFuture.runAsync(tasks.get(i), executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static void filterRows(BufferedImage image, Layout layout, Filter rowFilter, byte[] filtered, int rowBytes,
+                                   int rowStart, int rowEnd) {
+        final int length = rowBytes - 1;
+        final int bpp = layout.bytesPerPixel;
+        byte[] previous = new byte[length];
+        byte[] current = new byte[length];
+        final int[] argb = new int[image.getWidth()];
+        if (rowStart > 0) {
+            layout.readRow(image, rowStart - 1, previous, argb);
+        }
+        final byte[][] candidates = rowFilter == Filter.ADAPTIVE ? new byte[5][length] : null;
+        for (int y = rowStart; y < rowEnd; y++) {
+            layout.readRow(image, y, current, argb);
+            final int offset = y * rowBytes;
+            if (rowFilter == Filter.ADAPTIVE) {
+                int best = 0;
+                long bestSum = Long.MAX_VALUE;
+                for (int type = 0; type < 5; type++) {
+                    final long sum = applyFilter(type, current, previous, bpp, candidates[type], 0);
+                    if (sum < bestSum) {
+                        bestSum = sum;
+                        best = type;
+                    }
+                }
+                filtered[offset] = (byte) best;
+                System.arraycopy(candidates[best], 0, filtered, offset + 1, length);
+            } else {
+                filtered[offset] = (byte) rowFilter.type;
+                applyFilter(rowFilter.type, current, previous, bpp, filtered, offset + 1);
+            }
+            final byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    /**
+     * Apply a PNG filter on a row.
+     * @return the sum of the absolute values of the filtered bytes taken as signed values
+     */
+    static long applyFilter(int type, byte[] row, byte[] prior, int bpp, byte[] target, int targetOffset) {
+        final int length = row.length;
+        switch (type) {
+            case 1:
+                for (int i = 0; i < bpp; i++) {
+                    target[targetOffset + i] = row[i];
+                }
+                for (int i = bpp; i < length; i++) {
+                    target[targetOffset + i] = (byte) (row[i] - row[i - bpp]);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < length; i++) {
+                    target[targetOffset + i] = (byte) (row[i] - prior[i]);
+                }
+                break;
+            case 3:
+                for (int i = 0; i < bpp; i++) {
+                    target[targetOffset + i] = (byte) (row[i] - ((prior[i] & 0xFF) >>> 1));
+                }
+                for (int i = bpp; i < length; i++) {
+                    target[targetOffset + i] = (byte) (row[i] - (((row[i - bpp] & 0xFF) + (prior[i] & 0xFF)) >>> 1));
+                }
+                break;
+            case 4:
+                for (int i = 0; i < bpp; i++) {
+                    // the Paeth predictor of the first pixel is the pixel above
+                    target[targetOffset + i] = (byte) (row[i] - prior[i]);
+                }
+                for (int i = bpp; i < length; i++) {
+                    target[targetOffset + i] = (byte) (row[i]
+                        - paeth(row[i - bpp] & 0xFF, prior[i] & 0xFF, prior[i - bpp] & 0xFF));
+                }
+                break;
+            default:
+                System.arraycopy(row, 0, target, targetOffset, length);
+        }
+        long sum = 0L;
+        for (int i = targetOffset, end = targetOffset + length; i < end; i++) {
+            sum += Math.abs(target[i]);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private Chunk deflateChunk(byte[] data, int offset, int length, boolean last, boolean filteredData) {
+        final Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setStrategy(filteredData ? Deflater.FILTERED : Deflater.DEFAULT_STRATEGY);
+            if (offset > 0) {
+                final int dictionaryLength = Math.min(DICTIONARY_BYTES, offset);
+                deflater.setDictionary(data, offset - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(data, offset, length);
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 2));
+            final byte[] buffer = new byte[Math.min(64 * 1024, Math.max(1024, length))];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    final int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } else {
+                // the sync flush ends the chunk at a byte boundary without the final block marker; the first call
+                // may only apply the strategy without consuming the input
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length || !deflater.needsInput());
+            }
+            final Adler32 adler32 = new Adler32();
+            adler32.update(data, offset, length);
+            return new Chunk(compressed.toByteArray(), adler32.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Combine two Adler-32 checksums like adler32_combine of zlib.
+     * @param adler1 the checksum of the first part
+     * @param adler2 the checksum of the second part
+     * @param length2 the length of the second part
+     * @return the checksum of both parts
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static byte[] getZlibHeader(int compressionLevel) {
+        // CMF = deflate with 32K window, FLG = compression level hint with valid check bits
+        if (compressionLevel == 0 || compressionLevel == 1) {
+            return new byte[] { 0x78, 0x01 };
+        } else if (compressionLevel >= 2 && compressionLevel <= 5) {
+            return new byte[] { 0x78, 0x5E };
+        } else if (compressionLevel >= 7) {
+            return new byte[] { 0x78, (byte) 0xDA };
+        }
+        return new byte[] { 0x78, (byte) 0x9C };
+    }
+
+    private static byte[] buildHeader(int width, int height, int colorType) {
+        final byte[] header = new byte[13];
+        System.arraycopy(toBigEndian(width), 0, header, 0, 4);
+        System.arraycopy(toBigEndian(height), 0, header, 4, 4);
+        header[8] = 8; // bit depth
+        header[9] = (byte) colorType;
+        // compression method, filter method and interlace method are 0
+        return header;
+    }
+
+    private static void writeChunk(OutputStream outputStream, byte[] type, byte[]... parts) throws IOException {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        outputStream.write(toBigEndian(length));
+        outputStream.write(type);
+        for (byte[] part : parts) {
+            crc.update(part);
+            outputStream.write(part);
+        }
+        outputStream.write(toBigEndian((int) crc.getValue()));
+    }
+
+    private static byte[] toBigEndian(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The row filters of PNG.
+     */
+    public enum Filter {
+        /** No filter - the best choice for palette images. */
+        NONE(0),
+        /** Difference to the left pixel. */
+        SUB(1),
+        /** Difference to the pixel above. */
+        UP(2),
+        /** Difference to the average of the left pixel and the pixel above. */
+        AVERAGE(3),
+        /** Difference to the Paeth predictor of the left, above and upper left pixel. */
+        PAETH(4),
+        /** The filter with the minimal sum of absolute differences is selected for each row. The default. */
+        ADAPTIVE(-1);
+
+        private final int type;
+
+        Filter(int type) {
+            this.type = type;
+        }
+    }
+
+    private record Chunk(byte[] data, long adler, int length) {
+    }
+
+    /**
+     * The PNG color type of an image and how its rows are read.
+     */
+    private static final class Layout {
+
+        private final int colorType;
+        private final int bytesPerPixel;
+        private final boolean direct;
+        private final byte[] palette;
+        private final byte[] paletteAlpha;
+        private final IntToIndex colorIndex;
+
+        private Layout(int colorType, int bytesPerPixel, boolean direct, byte[] palette, byte[] paletteAlpha,
+                       IntToIndex colorIndex) {
+            this.colorType = colorType;
+            this.bytesPerPixel = bytesPerPixel;
+            this.direct = direct;
+            this.palette = palette;
+            this.paletteAlpha = paletteAlpha;
+            this.colorIndex = colorIndex;
+        }
+
+        static Layout of(BufferedImage image, boolean colorReduction) {
+            final ColorModel colorModel = image.getColorModel();
+            final boolean singleByteBand = image.getRaster().getNumBands() == 1
+                && image.getRaster().getTransferType() == DataBuffer.TYPE_BYTE
+                && colorModel.getPixelSize() == 8;
+            if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                return new Layout(COLOR_TYPE_GRAY, 1, true, null, null, null);
+            }
+            if (singleByteBand && colorModel instanceof IndexColorModel indexColorModel) {
+                final int size = indexColorModel.getMapSize();
+                final int[] rgbs = new int[size];
+                indexColorModel.getRGBs(rgbs);
+                return buildPalette(rgbs, size, null, true);
+            }
+            if (colorReduction) {
+                final Layout reduced = reduce(image);
+                if (reduced != null) {
+                    return reduced;
+                }
+            }
+            return colorModel.hasAlpha()
+                ? new Layout(COLOR_TYPE_RGBA, 4, false, null, null, null)
+                : new Layout(COLOR_TYPE_RGB, 3, false, null, null, null);
+        }
+
+        /**
+         * Check, whether all pixels are opaque gray or at most 256 colors are used.
+         * @return the reduced layout or null
+         */
+        private static Layout reduce(BufferedImage image) {
+            final int width = image.getWidth();
+            final int[] argb = new int[width];
+            final IntToIndex colors = new IntToIndex(256);
+            boolean gray = true;
+            boolean palette = true;
+            for (int y = 0; y < image.getHeight() && (gray || palette); y++) {
+                readArgb(image, y, argb);
+                for (int x = 0; x < width; x++) {
+                    final int pixel = argb[x];
+                    if (gray) {
+                        final int r = (pixel >>> 16) & 0xFF;
+                        gray = (pixel >>> 24) == 0xFF && r == ((pixel >>> 8) & 0xFF) && r == (pixel & 0xFF);
+                    }
+                    if (palette && colors.indexOf(pixel) < 0) {
+                        palette = colors.add(pixel);
+                    }
+                    if (!gray && !palette) {
+                        break;
+                    }
+                }
+            }
+            if (gray) {
+                return new Layout(COLOR_TYPE_GRAY, 1, false, null, null, null);
+            }
+            if (palette) {
+                return buildPalette(colors.values(), colors.size(), colors, false);
+            }
+            return null;
+        }
+
+        private static Layout buildPalette(int[] rgbs, int size, IntToIndex colorIndex, boolean direct) {
+            final byte[] palette = new byte[size * 3];
+            final byte[] alpha = new byte[size];
+            int alphaLength = 0;
+            for (int i = 0; i < size; i++) {
+                palette[i * 3] = (byte) (rgbs[i] >>> 16);
+                palette[i * 3 + 1] = (byte) (rgbs[i] >>> 8);
+                palette[i * 3 + 2] = (byte) rgbs[i];
+                alpha[i] = (byte) (rgbs[i] >>> 24);
+                if ((rgbs[i] >>> 24) != 0xFF) {
+                    alphaLength = i + 1;
+                }
+            }
+            // trailing opaque entries are omitted from the tRNS chunk
+            return new Layout(COLOR_TYPE_PALETTE, 1, direct, palette,
+                alphaLength > 0 ? Arrays.copyOf(alpha, alphaLength) : null, colorIndex);
+        }
+
+        void readRow(BufferedImage image, int y, byte[] row, int[] argb) {
+            if (direct) {
+                // gray or index bytes as stored in the raster
+                image.getRaster().getDataElements(0, y, image.getWidth(), 1, row);
+                return;
+            }
+            readArgb(image, y, argb);
+            final int width = image.getWidth();
+            switch (colorType) {
+                case COLOR_TYPE_GRAY:
+                    for (int x = 0; x < width; x++) {
+                        row[x] = (byte) argb[x];
+                    }
+                    break;
+                case COLOR_TYPE_PALETTE:
+                    for (int x = 0; x < width; x++) {
+                        row[x] = (byte) colorIndex.indexOf(argb[x]);
+                    }
+                    break;
+                case COLOR_TYPE_RGBA:
+                    for (int x = 0, i = 0; x < width; x++, i += 4) {
+                        final int pixel = argb[x];
+                        row[i] = (byte) (pixel >>> 16);
+                        row[i + 1] = (byte) (pixel >>> 8);
+                        row[i + 2] = (byte) pixel;
+                        row[i + 3] = (byte) (pixel >>> 24);
+                    }
+                    break;
+                default:
+                    for (int x = 0, i = 0; x < width; x++, i += 3) {
+                        final int pixel = argb[x];
+                        row[i] = (byte) (pixel >>> 16);
+                        row[i + 1] = (byte) (pixel >>> 8);
+                        row[i + 2] = (byte) pixel;
+                    }
+            }
+        }
+
+        private static void readArgb(BufferedImage image, int y, int[] argb) {
+            final int width = image.getWidth();
+            switch (image.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                    image.getRaster().getDataElements(0, y, width, 1, argb);
+                    for (int x = 0; x < width; x++) {
+                        argb[x] |= 0xFF000000;
+                    }
+                    break;
+                case BufferedImage.TYPE_INT_ARGB:
+                    image.getRaster().getDataElements(0, y, width, 1, argb);
+                    break;
+                default:
+                    image.getRGB(0, y, width, 1, argb, 0, width);
+            }
+        }
+    }
+
+    /**
+     * Small open addressing hash map from ARGB values to palette indexes.
+     */
+    private static final class IntToIndex {
+
+        private final int capacity;
+        private final int[] keys;
+        private final int[] indexes;
+        private final int[] values;
+        private int size;
+
+        private IntToIndex(int capacity) {
+            this.capacity = capacity;
+            this.keys = new int[capacity * 4];
+            this.indexes = new int[capacity * 4];
+            this.values = new int[capacity];
+            Arrays.fill(indexes, -1);
+        }
+
+        int indexOf(int key) {
+            int slot = hash(key);
+            while (indexes[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return indexes[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return -1;
+        }
+
+        /**
+         * Add a new key.
+         * @return false, if the capacity is exceeded
+         */
+        boolean add(int key) {
+            if (size == capacity) {
+                return false;
+            }
+            int slot = hash(key);
+            while (indexes[slot] >= 0) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            indexes[slot] = size;
+            values[size++] = key;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] values() {
+            return values;
+        }
+
+        private int hash(int key) {
+            final int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (keys.length - 1);
+        }
+    }
+}
@@ -6,13 +6,31 @@ import com.giraone.imaging.FileTypeDetector;
 import com.giraone.imaging.FormatNotSupportedException;
 import com.giraone.imaging.ImageConversionException;
 import com.giraone.imaging.ImagingProvider;
+import com.giraone.imaging.MemoryBudget;
+import com.giraone.imaging.MemoryMappedFiles;
+import com.giraone.imaging.java2.resample.AbstractResampler;
+import com.giraone.imaging.java2.resample.PixelFormats;
+import com.giraone.imaging.java2.resample.Resampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.giraone.imaging.MimeTypes.*;
 
@@ -21,19 +39,129 @@ import static com.giraone.imaging.MimeTypes.*;
  */
 public class ProviderJava2D implements ImagingProvider {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderJava2D.class);
+
+    /**
+     * A subsampled image should have at least this factor of the target pixel count,
+     * so that the final resize still has enough information to produce a smooth result.
+     */
+    static final int SUBSAMPLING_MIN_PIXEL_FACTOR = 2;
+
+    /**
+     * Bytes per pixel of the intermediate buffers of the resamplers (packed ARGB int).
+     */
+    static final int BYTES_PER_INTERMEDIATE_PIXEL = 4;
+
     /**
-     * Create a new ProviderJava2D instance.
+     * Bytes per pixel of a rendition: the packed result plus the converted copy passed to the encoder.
+     */
+    static final int BYTES_PER_RENDITION_PIXEL = 8;
+
+    private final ImageOpener.DecodeEngine decodeEngine;
+    private boolean subsampledDecoding = true;
+    private Executor encodeExecutor = ForkJoinPool.commonPool();
+    private MemoryBudget memoryBudget = MemoryBudget.getGlobal();
+    private DecodedImageCache decodedImageCache;
+    private long mappedInputThreshold = MemoryMappedFiles.DEFAULT_THRESHOLD;
+    private ImageToFileWriter.OutputStreamStrategy outputStreamStrategy = ImageToFileWriter.OutputStreamStrategy.AUTO;
+    private PngEncoder pngEncoder = new PngEncoder();
+    private final Map<ConversionCommand.SpeedHint, Resampler> resamplers = new EnumMap<>(ConversionCommand.SpeedHint.class);
+
+    /**
+     * Create a new ProviderJava2D instance, that uses the {@link ImageOpener.DecodeEngine#IMAGE_IO} decode engine.
      */
     public ProviderJava2D() {
+        this(ImageOpener.DecodeEngine.IMAGE_IO);
+    }
+
+    /**
+     * Create a new ProviderJava2D instance using a specific decode engine.
+     * @param decodeEngine the engine used to decode JPEG, PNG and GIF images,
+     *                     e.g. {@link ImageOpener.DecodeEngine#TOOLKIT} as a fallback
+     */
+    public ProviderJava2D(ImageOpener.DecodeEngine decodeEngine) {
+        this.decodeEngine = decodeEngine;
+        for (ConversionCommand.SpeedHint speedHint : ConversionCommand.SpeedHint.values()) {
+            resamplers.put(speedHint, Resampler.forSpeedHint(speedHint));
+        }
+    }
+
+    /**
+     * Get the engine used to decode bitmap images.
+     * @return the decode engine
+     */
+    public ImageOpener.DecodeEngine getDecodeEngine() {
+        return decodeEngine;
+    }
+
+    /**
+     * Check, whether subsampled decoding is used.
+     * @return true, if images are decoded with source subsampling, when the target is much smaller than the source
+     */
+    public boolean isSubsampledDecoding() {
+        return subsampledDecoding;
+    }
+
+    /**
+     * Define, whether subsampled decoding is used. Only the {@link ImageOpener.DecodeEngine#IMAGE_IO} engine
+     * supports subsampling. If enabled (the default), the image dimensions are read from the header first and the
+     * image is decoded with a subsampling factor, so that not much more than twice the target pixel count is
+     * materialized. A final resize produces the exact output size.
+     * @param subsampledDecoding true = decode with subsampling, false = decode always in full resolution
+     */
+    public void setSubsampledDecoding(boolean subsampledDecoding) {
+        this.subsampledDecoding = subsampledDecoding;
+    }
+
+    /**
+     * Get the resampler used to scale images for a speed hint.
+     * @param speedHint the speed hint of a conversion command
+     * @return the resampler
+     */
+    public Resampler getResampler(ConversionCommand.SpeedHint speedHint) {
+        return resamplers.get(speedHint);
+    }
+
+    /**
+     * Replace the resampler used to scale images for a speed hint, e.g. by a custom implementation.
+     * @param speedHint the speed hint of a conversion command
+     * @param resampler the resampler
+     */
+    public void setResampler(ConversionCommand.SpeedHint speedHint, Resampler resampler) {
+        resamplers.put(speedHint, resampler);
+    }
+
+    /**
+     * Set the number of source pixels, from which on all built-in resamplers scale the image in parallel
+     * row bands on the common fork join pool. The result is bit-identical to the sequential mode.
+     * @param parallelResizeThreshold the pixel threshold (default {@link AbstractResampler#DEFAULT_PARALLEL_THRESHOLD}),
+     *                                {@link Long#MAX_VALUE} disables the parallel mode
+     */
+    public void setParallelResizeThreshold(long parallelResizeThreshold) {
+        for (Resampler resampler : resamplers.values()) {
+            if (resampler instanceof AbstractResampler abstractResampler) {
+                abstractResampler.setParallelThreshold(parallelResizeThreshold);
+            }
+        }
     }
 
     public FileInfo fetchFileInfo(File file) throws IOException, FormatNotSupportedException {
+        return fetchFileInfo(openInput(file));
+    }
+
+    @Override
+    public FileInfo fetchFileInfo(ByteBuffer input) throws IOException, FormatNotSupportedException {
+        return fetchFileInfo(ImageInput.of(input));
+    }
 
-        final FileTypeDetector.FileType fileType = FileTypeDetector.getInstance().getFileType(file);
+    private FileInfo fetchFileInfo(ImageInput input) throws IOException, FormatNotSupportedException {
+
+        final FileTypeDetector.FileType fileType = input.detectFileType();
         if (FileTypeDetector.getInstance().isSupportedImage(fileType)) {
-            final ImagePlusInfo imagePlusInfo = ImageOpener.openImage(file, fileType);
-            if (imagePlusInfo != null)
-                return imagePlusInfo.getFileInfo();
+            // Only the header is read - no pixels are decoded
+            final FileInfo fileInfo = ImageHeaderReader.readFileInfo(input, fileType);
+            if (fileInfo != null)
+                return fileInfo;
             else
                 throw new FormatNotSupportedException("Unknown image format: " + fileType + "!");
         } else if (FileTypeDetector.FileType.PDF == fileType) {
@@ -55,25 +183,135 @@ public class ProviderJava2D implements ImagingProvider {
 
     /**
      * Create multiple thumbnail images (e.g. different sizes) for a given file.
-     * This implementation reads the input only once!
+     * This implementation reads the input only once! The commands are sorted by their target size and each smaller
+     * rendition is derived from the next larger one using the resampler of the command. The encoding of the renditions is done
+     * in parallel using the encode executor.
      * @param inputFile Input file.
      * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
      * @throws Exception on any error opening the file, converting the file or writing to the output.
      */
     public void createThumbnails(File inputFile, ConversionCommand[] conversionCommands) throws Exception {
+        createThumbnails(openInput(inputFile), conversionCommands);
+    }
+
+    /**
+     * Create multiple thumbnail images (e.g. different sizes) for an image given as a byte buffer.
+     * The buffer is read directly by the image reader - no temporary file is written.
+     * @param input the content of the image file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error decoding the input, converting it or writing to the output.
+     */
+    @Override
+    public void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+        createThumbnails(ImageInput.of(input), conversionCommands);
+    }
+
+    private void createThumbnails(ImageInput input, ConversionCommand[] conversionCommands) throws Exception {
+
+        final DecodeRequest decodeRequest = prepareDecode(input, conversionCommands);
+        try (MemoryBudget.Reservation ignored = reserveMemory(decodeRequest, conversionCommands)) {
+            final ImagePlusInfo imagePlusInfo = openImage(input, decodeRequest);
+            if (imagePlusInfo == null) {
+                throw new FormatNotSupportedException("Unsupported input file type for " + input.getName());
+            }
+            final FileInfo fileInfo = imagePlusInfo.getFileInfo();
+            createRenditions(imagePlusInfo.getImage(), fileInfo.getWidth(), fileInfo.getHeight(), conversionCommands);
+        }
+    }
+
+    /**
+     * Create multiple renditions of a decoded image. The commands are sorted by their target pixel count. Each rendition
+     * is derived from the smallest already created rendition, that is not smaller than the target, using the resampler
+     * selected by the speed hint of the command.
+     * The renditions are encoded in parallel using the encode executor.
+     * @param image the decoded image - may be a subsampled version of the original image
+     * @param originalWidth the width of the original image used to calculate the target dimensions
+     * @param originalHeight the height of the original image used to calculate the target dimensions
+     * @param conversionCommands the commands with the definition of the outputs
+     * @throws Exception on any error converting the image or writing to the outputs
+     */
+    void createRenditions(BufferedImage image, int originalWidth, int originalHeight, ConversionCommand[] conversionCommands)
+        throws Exception {
+
+        final List<Rendition> renditions = new ArrayList<>(conversionCommands.length);
+        for (ConversionCommand conversionCommand : conversionCommands) {
+            final Dimension dimension = conversionCommand.getTargetDimension(originalWidth, originalHeight);
+            renditions.add(new Rendition(conversionCommand, dimension));
+        }
+        renditions.sort(Comparator.comparingLong((Rendition r) -> (long) r.dimension.width * r.dimension.height).reversed());
+
+        final List<CompletableFuture<Void>> encodings = new ArrayList<>(renditions.size());
+        final AtomicBoolean failed = new AtomicBoolean();
+        // only the smallest rendition is kept as the source of the next one - not the whole pyramid
+        BufferedImage smallest = null;
+        try {
+            for (Rendition rendition : renditions) {
+                final BufferedImage source = smallest != null && smallest.getWidth() >= rendition.dimension.width
+                    && smallest.getHeight() >= rendition.dimension.height ? smallest : image;
+                final BufferedImage scaled = scale(source, rendition.dimension, rendition.command);
+                if (scaled.getWidth() <= image.getWidth() && scaled.getHeight() <= image.getHeight()) {
+                    smallest = scaled;
+                }
+                if (renditions.size() == 1) {
+                    writeRendition(scaled, rendition.command);
+                } else {
+                    encodings.add(CompletableFuture.runAsync(() -> {
+                        if (failed.get()) {
+                            return;
+                        }
+                        try {
+                            writeRendition(scaled, rendition.command);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, encodeExecutor));
+                }
+            }
+        } catch (Throwable t) {
+            // no output is written after the failure is reported: pending encodings are skipped, running ones are awaited
+            failed.set(true);
+            awaitQuietly(encodings);
+            throw t;
+        }
+        try {
+            CompletableFuture.allOf(encodings.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-        final ImagePlusInfo imagePlusInfo = ImageOpener.openImage(inputFile);
-        if (imagePlusInfo == null) {
-            throw new FormatNotSupportedException("Unsupported input file type for file " + inputFile);
+    private void writeRendition(BufferedImage scaled, ConversionCommand conversionCommand) throws IOException, FormatNotSupportedException {
+        try (final OutputStream outputStream = conversionCommand.openOutputStream()) {
+            writeImage(scaled, outputStream, conversionCommand);
         }
-        final BufferedImage bufferedImage = imagePlusInfo.getImage();
-        for (ConversionCommand conversionCommand: conversionCommands) {
-            try (final FileOutputStream outputStream = new FileOutputStream(conversionCommand.getOutputFile())) {
-                convertAndWriteImage(bufferedImage, outputStream, conversionCommand);
+    }
+
+    private static void awaitQuietly(List<CompletableFuture<Void>> encodings) {
+        for (CompletableFuture<Void> encoding : encodings) {
+            try {
+                encoding.join();
+            } catch (CompletionException | CancellationException ignored) {
+                // the first failure is reported
             }
         }
     }
 
+    /**
+     * Scale an image to a target dimension using the resampler selected by the speed hint of the command.
+     * @param source the image to scale
+     * @param dimension the target dimension
+     * @param command the conversion command
+     * @return the scaled image or the source itself, when it has already the target size
+     */
+    private BufferedImage scale(BufferedImage source, Dimension dimension, ConversionCommand command) {
+        final ConversionCommand.SpeedHint speedHint = command.getSpeedHint() != null
+            ? command.getSpeedHint() : ConversionCommand.SpeedHint.QUALITY;
+        return resamplers.get(speedHint).resample(source, dimension.width, dimension.height);
+    }
+
     /**
      * Create a thumbnail image for a given file.
      * @param inputFile Input file.
@@ -95,13 +333,38 @@ public class ProviderJava2D implements ImagingProvider {
      * @throws ImageConversionException if an error occurs during image conversion or scaling
      */
     public void convertImage(File inputFile, OutputStream outputStream, ConversionCommand command) throws IOException, FormatNotSupportedException {
+        convertImage(openInput(inputFile), outputStream, command);
+    }
+
+    /**
+     * Convert an image given as a byte buffer to another image using image conversion functions.
+     * The buffer is read directly by the image reader - no temporary file is written.
+     * @param input the content of the image file from its position to its limit - the buffer's position is not changed
+     * @param outputStream OutputStream, to which the new image is written. Important: Stream is not closed!
+     * @param command An image conversion command.
+     * @throws IOException on any error reading the input or writing to the output
+     * @throws FormatNotSupportedException if the input or output format is not supported
+     * @throws ImageConversionException if an error occurs during image conversion or scaling
+     */
+    @Override
+    public void convertImage(ByteBuffer input, OutputStream outputStream, ConversionCommand command) throws IOException, FormatNotSupportedException {
+        convertImage(ImageInput.of(input), outputStream, command);
+    }
+
+    private void convertImage(ImageInput input, OutputStream outputStream, ConversionCommand command) throws IOException, FormatNotSupportedException {
 
-        final ImagePlusInfo imagePlusInfo = ImageOpener.openImage(inputFile);
-        if (imagePlusInfo == null) {
-            throw new FormatNotSupportedException("Unsupported input file type for file " + inputFile);
+        final ConversionCommand[] commands = new ConversionCommand[] { command };
+        final DecodeRequest decodeRequest = prepareDecode(input, commands);
+        try (MemoryBudget.Reservation ignored = reserveMemory(decodeRequest, commands)) {
+            final ImagePlusInfo imagePlusInfo = openImage(input, decodeRequest);
+            if (imagePlusInfo == null) {
+                throw new FormatNotSupportedException("Unsupported input file type for " + input.getName());
+            }
+            final BufferedImage bufferedImage = imagePlusInfo.getImage();
+            final FileInfo fileInfo = imagePlusInfo.getFileInfo();
+            final Dimension dimension = command.getTargetDimension(fileInfo.getWidth(), fileInfo.getHeight());
+            convertAndWriteImage(bufferedImage, dimension, outputStream, command);
         }
-        final BufferedImage bufferedImage = imagePlusInfo.getImage();
-        convertAndWriteImage(bufferedImage, outputStream, command);
     }
 
     /**
@@ -118,26 +381,65 @@ public class ProviderJava2D implements ImagingProvider {
         throws IOException, FormatNotSupportedException {
 
         final Dimension dimension = command.getTargetDimension(bufferedImage.getWidth(), bufferedImage.getHeight());
-        Image targetImage = bufferedImage;
+        convertAndWriteImage(bufferedImage, dimension, out, command);
+    }
+
+    /**
+     * Scale a buffered image to the given dimension and write it in the output format of the command.
+     * @param bufferedImage the image to convert and save - may be a subsampled version of the original image
+     * @param dimension the target dimension - calculated from the dimension of the original image
+     * @param out OutputStream, to which the new image is written. Important: Stream is not closed!
+     * @param command the image conversion command
+     * @throws IOException on any error opening the file, converting the file or writing to the output
+     * @throws FormatNotSupportedException if the output format is not supported
+     */
+    private void convertAndWriteImage(BufferedImage bufferedImage, Dimension dimension, OutputStream out, ConversionCommand command)
+        throws IOException, FormatNotSupportedException {
+
         if (dimension != null) {
-            targetImage = targetImage.getScaledInstance(dimension.width, dimension.height, Image.SCALE_DEFAULT);
-            bufferedImage = new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
-            Graphics g = bufferedImage.getGraphics();
-            g.drawImage(targetImage, 0, 0, LoggerImageObserver.getInstance());
+            bufferedImage = scale(bufferedImage, dimension, command);
         }
+        writeImage(bufferedImage, out, command);
+    }
+
+    /**
+     * Write an already scaled image in the output format of the command.
+     * @param bufferedImage the image to write
+     * @param out OutputStream, to which the image is written. Important: Stream is not closed!
+     * @param command the image conversion command
+     * @throws IOException on any error writing to the output
+     * @throws FormatNotSupportedException if the output format is not supported
+     */
+    private void writeImage(BufferedImage bufferedImage, OutputStream out, ConversionCommand command)
+        throws IOException, FormatNotSupportedException {
 
+        // the image is converted only, if the output format requires it: JPEG has no alpha channel
         final String outputFormat = command.getOutputFormat();
         switch (outputFormat) {
             case IMAGE_JPEG:
                 final int normedQuality = command.getQuality();
                 final float internalQuality = this.getInternalQuality(normedQuality);
-                ImageToFileWriter.saveJpeg(bufferedImage, out, internalQuality);
+                final BufferedImage jpegImage = PixelFormats.toBgrOrGray(bufferedImage);
+                if (command.getMaxOutputBytes() > 0) {
+                    final ConversionCommand.SizeSearchResult result = ImageToFileWriter.saveJpeg(jpegImage,
+                        out, internalQuality, command.getMaxOutputBytes(), command.getMaxOutputBytesTolerance(), command.getJpegEncoding());
+                    LOGGER.debug("ProviderJava2D: JPEG quality {} for max. {} bytes: {} bytes after {} iterations",
+                        result.quality(), command.getMaxOutputBytes(), result.outputBytes(), result.iterations());
+                    command.setSizeSearchResult(result);
+                } else {
+                    ImageToFileWriter.saveJpeg(jpegImage, out, internalQuality, command.getJpegEncoding(), outputStreamStrategy);
+                }
                 break;
             case IMAGE_PNG:
-                ImageToFileWriter.savePng(bufferedImage, out);
+                if (pngEncoder != null) {
+                    ImageToFileWriter.savePng(bufferedImage, out, pngEncoder);
+                } else {
+                    ImageToFileWriter.savePng(bufferedImage, out, outputStreamStrategy);
+                }
                 break;
             case IMAGE_GIF:
-                ImageToFileWriter.saveGif(bufferedImage, out);
+                ImageToFileWriter.saveGif(bufferedImage.getColorModel().hasAlpha() ? bufferedImage : ImageOpener.toIntRgb(bufferedImage),
+                    out, outputStreamStrategy);
                 break;
             default:
                 throw new FormatNotSupportedException("Unsupported output format: " + outputFormat +
@@ -162,6 +464,265 @@ public class ProviderJava2D implements ImagingProvider {
         convertAndWriteImage(bufferedImage, out, command);
     }
 
+    /**
+     * Get the executor, that is used to encode multiple renditions in parallel.
+     * @return the encode executor
+     */
+    public Executor getEncodeExecutor() {
+        return encodeExecutor;
+    }
+
+    /**
+     * Define the executor, that is used to encode multiple renditions in {@link #createThumbnails(File, ConversionCommand[])}
+     * in parallel. The default is the common fork join pool.
+     * @param encodeExecutor the encode executor
+     */
+    public void setEncodeExecutor(Executor encodeExecutor) {
+        this.encodeExecutor = encodeExecutor;
+    }
+
+    /**
+     * Use one pool for all parallel work of the provider: the encoding of the renditions, the row bands of the
+     * built-in resamplers and the deflate chunks of the {@link PngEncoder}. This bounds the number of busy cores,
+     * e.g. to the CPU pool of an {@link com.giraone.imaging.AsyncThumbnailProvider}.
+     * @param forkJoinPool the pool - the default is the common fork join pool
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.encodeExecutor = forkJoinPool;
+        if (pngEncoder != null) {
+            pngEncoder.setExecutor(forkJoinPool);
+        }
+        for (Resampler resampler : resamplers.values()) {
+            if (resampler instanceof AbstractResampler abstractResampler) {
+                abstractResampler.setForkJoinPool(forkJoinPool);
+            }
+        }
+    }
+
+    /**
+     * Get the memory budget, from which each conversion reserves its estimated peak pixel memory.
+     * @return the memory budget
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Define the memory budget, from which each conversion reserves its estimated peak pixel memory before decoding.
+     * The default is the global budget {@link MemoryBudget#getGlobal()} shared by all providers.
+     * @param memoryBudget the memory budget
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the cache of decoded images.
+     * @return the cache or null, if decoded images are not cached (the default)
+     */
+    public DecodedImageCache getDecodedImageCache() {
+        return decodedImageCache;
+    }
+
+    /**
+     * Define a cache of decoded images, so that repeated conversions of the same unchanged file do not decode it again.
+     * @param decodedImageCache the cache or null to switch off caching
+     */
+    public void setDecodedImageCache(DecodedImageCache decodedImageCache) {
+        this.decodedImageCache = decodedImageCache;
+    }
+
+    /**
+     * Get the minimal size of input files, that are memory-mapped.
+     * @return the threshold in bytes or {@link MemoryMappedFiles#DISABLED}
+     */
+    public long getMappedInputThreshold() {
+        return mappedInputThreshold;
+    }
+
+    /**
+     * Define the minimal size of input files, that are memory-mapped. The mapping is used for the file type detection,
+     * the header and the image reader, so large files are not copied through heap buffers.
+     * The default is {@link MemoryMappedFiles#DEFAULT_THRESHOLD}.
+     * @param mappedInputThreshold the threshold in bytes or {@link MemoryMappedFiles#DISABLED} to read all files using streams
+     */
+    public void setMappedInputThreshold(long mappedInputThreshold) {
+        this.mappedInputThreshold = mappedInputThreshold;
+    }
+
+    /**
+     * Get the strategy for the image output streams used by the encoders.
+     * @return the strategy
+     */
+    public ImageToFileWriter.OutputStreamStrategy getOutputStreamStrategy() {
+        return outputStreamStrategy;
+    }
+
+    /**
+     * Define the strategy for the image output streams used by the encoders. The default
+     * {@link ImageToFileWriter.OutputStreamStrategy#AUTO} writes thumbnails into a pooled buffer - no cache file is written.
+     * @param outputStreamStrategy the strategy
+     */
+    public void setOutputStreamStrategy(ImageToFileWriter.OutputStreamStrategy outputStreamStrategy) {
+        this.outputStreamStrategy = outputStreamStrategy;
+    }
+
+    /**
+     * Get the encoder used for PNG output.
+     * @return the encoder or null, if the ImageIO writer is used
+     */
+    public PngEncoder getPngEncoder() {
+        return pngEncoder;
+    }
+
+    /**
+     * Define the encoder used for PNG output. The default encoder uses the default deflate level, adaptive row filters,
+     * parallel deflating and writes grayscale or palette PNGs, when possible.
+     * @param pngEncoder the encoder or null to use the ImageIO writer with the output stream strategy
+     */
+    public void setPngEncoder(PngEncoder pngEncoder) {
+        this.pngEncoder = pngEncoder;
+    }
+
+    private ImageInput openInput(File file) throws IOException {
+        final ByteBuffer mapping = MemoryMappedFiles.mapIfLarge(file, mappedInputThreshold);
+        return mapping != null ? ImageInput.mapped(file, mapping) : ImageInput.of(file);
+    }
+
+    /**
+     * Detect the file type and read the image dimensions from the header to determine the subsampling factor.
+     * @param input the image file or buffer
+     * @param commands the commands, that are applied on the decoded image
+     * @return the decode request
+     * @throws IOException on any error reading the header
+     */
+    private DecodeRequest prepareDecode(ImageInput input, ConversionCommand[] commands) throws IOException {
+        final FileTypeDetector.FileType fileType = input.detectFileType();
+        final FileInfo header = FileTypeDetector.getInstance().isSupportedImage(fileType)
+            ? ImageHeaderReader.readFileInfo(input, fileType) : null;
+        final int subsampling = header != null && decodeEngine == ImageOpener.DecodeEngine.IMAGE_IO
+            ? Math.max(1, getSubsamplingPolicy(commands).getSubsampling(header.getWidth(), header.getHeight())) : 1;
+        return new DecodeRequest(fileType, header, subsampling);
+    }
+
+    /**
+     * Reserve the estimated peak memory of the conversion.
+     * @param decodeRequest the decode request with the image dimensions from the header
+     * @param commands the commands, that are applied on the decoded image
+     * @return the reservation, that must be closed after the conversion
+     * @throws com.giraone.imaging.MemoryBudgetExceededException if the memory cannot be reserved
+     */
+    private MemoryBudget.Reservation reserveMemory(DecodeRequest decodeRequest, ConversionCommand[] commands)
+        throws IOException {
+        final FileInfo header = decodeRequest.header;
+        if (header == null) {
+            // the decoder reports the unsupported format
+            return memoryBudget.reserve(0L);
+        }
+        return memoryBudget.reserve(estimatePeakBytes(header.getWidth(), header.getHeight(), decodeRequest.subsampling,
+            getDecodedBytesPerPixel(decodeRequest.fileType, header.getBitsPerPixel()), commands));
+    }
+
+    /**
+     * Decode an image or take it from the decoded image cache. Only file inputs are cached.
+     * @param input the image file or buffer
+     * @param decodeRequest the decode request
+     * @return the image plus information or null, if the file type is not supported
+     * @throws IOException on any error reading or decoding the image
+     */
+    private ImagePlusInfo openImage(ImageInput input, DecodeRequest decodeRequest) throws IOException {
+        final ImageOpener.SubsamplingPolicy subsamplingPolicy = (width, height) -> decodeRequest.subsampling;
+        final DecodedImageCache cache = decodedImageCache;
+        if (cache == null || decodeRequest.header == null || input.getFile() == null) {
+            return ImageOpener.openImage(input, decodeRequest.fileType, decodeEngine, subsamplingPolicy);
+        }
+        final DecodedImageCache.FileKey fileKey = DecodedImageCache.FileKey.of(input.getFile());
+        final ImagePlusInfo cached = cache.get(fileKey, decodeRequest.subsampling);
+        if (cached != null) {
+            return cached;
+        }
+        final ImagePlusInfo imagePlusInfo = ImageOpener.openImage(input, decodeRequest.fileType, decodeEngine, subsamplingPolicy);
+        if (imagePlusInfo != null) {
+            cache.put(fileKey, decodeRequest.subsampling, imagePlusInfo);
+        }
+        return imagePlusInfo;
+    }
+
+    /**
+     * Estimate the peak pixel memory of a conversion: the decoded (subsampled) image, an intermediate buffer of
+     * the same size used by the resampler and all renditions with their encoder copies.
+     * @param width the width of the original image
+     * @param height the height of the original image
+     * @param subsampling the subsampling factor used for decoding
+     * @param decodedBytesPerPixel the bytes per pixel of the decoded image - see {@link #getDecodedBytesPerPixel}
+     * @param commands the commands, that are applied on the decoded image
+     * @return the estimated number of bytes
+     */
+    public static long estimatePeakBytes(int width, int height, int subsampling, int decodedBytesPerPixel, ConversionCommand[] commands) {
+        final long decodedPixels = (long) ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+        long bytes = decodedPixels * (decodedBytesPerPixel + BYTES_PER_INTERMEDIATE_PIXEL);
+        for (ConversionCommand command : commands) {
+            final Dimension dimension = command.getTargetDimension(width, height);
+            bytes += (long) dimension.width * dimension.height * BYTES_PER_RENDITION_PIXEL;
+        }
+        return bytes;
+    }
+
+    /**
+     * Return the bytes per pixel of the image decoded in its native layout, see {@link ImageOpener#toNativeLayout}:
+     * 1 for gray JPEG images ({@link BufferedImage#TYPE_BYTE_GRAY}), 3 for other images with up to 24 bits per pixel
+     * ({@link BufferedImage#TYPE_3BYTE_BGR} or a smaller gray or palette image, which is converted) and 4 for images
+     * with alpha channel or 16 bit samples and for unknown layouts.
+     * @param fileType the file type of the image
+     * @param bitsPerPixel the bits per pixel from the header - 0, if unknown
+     * @return the bytes per pixel
+     */
+    static int getDecodedBytesPerPixel(FileTypeDetector.FileType fileType, int bitsPerPixel) {
+        if (fileType == FileTypeDetector.FileType.JPEG && bitsPerPixel == 8) {
+            return 1;
+        }
+        return bitsPerPixel > 0 && bitsPerPixel <= 24 ? 3 : 4;
+    }
+
+    /**
+     * Return the subsampling policy for decoding an image, from which all given commands are produced.
+     * The smallest subsampling factor of all commands is used.
+     * @param commands the commands, that are applied on the decoded image
+     * @return the subsampling policy
+     */
+    private ImageOpener.SubsamplingPolicy getSubsamplingPolicy(ConversionCommand[] commands) {
+        if (!subsampledDecoding) {
+            return ImageOpener.SubsamplingPolicy.NONE;
+        }
+        return (width, height) -> {
+            int subsampling = Integer.MAX_VALUE;
+            for (ConversionCommand command : commands) {
+                final Dimension dimension = command.getTargetDimension(width, height);
+                subsampling = Math.min(subsampling, getSubsampling(width, height, dimension.width, dimension.height));
+            }
+            return subsampling;
+        };
+    }
+
+    /**
+     * Calculate the source subsampling factor for a target dimension. The subsampled image is never smaller than
+     * the target in any direction and has about {@link #SUBSAMPLING_MIN_PIXEL_FACTOR} times the target pixel count.
+     * @param width the width of the original image
+     * @param height the height of the original image
+     * @param targetWidth the width of the target image
+     * @param targetHeight the height of the target image
+     * @return the subsampling factor (1 = no subsampling)
+     */
+    static int getSubsampling(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        final double pixelRatio = ((double) width * height) / ((double) targetWidth * targetHeight * SUBSAMPLING_MIN_PIXEL_FACTOR);
+        final int byPixelCount = (int) Math.sqrt(pixelRatio);
+        final int byWidthAndHeight = Math.min(width / targetWidth, height / targetHeight);
+        return Math.max(1, Math.min(byPixelCount, byWidthAndHeight));
+    }
+
     /**
      * Return internal quality value, when normed value is given
      * <ul>
@@ -181,4 +742,18 @@ public class ProviderJava2D implements ImagingProvider {
         else
             return 1.0f - (normedQuality * 0.8f / 100.0f);
     }
-}
\ No newline at end of file
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A conversion command together with its target dimension.
+     */
+    private record Rendition(ConversionCommand command, Dimension dimension) {
+    }
+
+    /**
+     * The detected file type, the image header (null, if not a supported image) and the subsampling factor used for decoding.
+     */
+    private record DecodeRequest(FileTypeDetector.FileType fileType, FileInfo header, int subsampling) {
+    }
+}
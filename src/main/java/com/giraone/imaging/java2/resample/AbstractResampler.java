@@ -0,0 +1,208 @@
+package com.giraone.imaging.java2.resample;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Base class for resamplers, that work on packed ARGB pixels.
+ * The base class handles the access to the raster data of the source and the creation of the result image.
+ * Images with alpha channel are processed with premultiplied alpha, if the algorithm requires it. Gray images
+ * ({@link BufferedImage#TYPE_BYTE_GRAY}) are returned as gray images, all other images as packed RGB or ARGB images.
+ * <p>
+ * For images with at least {@link #getParallelThreshold()} source pixels the rows are split into bands, that are
+ * processed in parallel on a {@link ForkJoinPool}. Each output pixel is computed exactly like in the sequential mode,
+ * so the result is bit-identical.
+ * </p>
+ */
+public abstract class AbstractResampler implements Resampler {
+
+    /** Default number of source pixels, from which on the resampling is done in parallel. */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 8_000_000L;
+
+    /** Minimal number of rows processed by one parallel task. */
+    static final int MIN_BAND_ROWS = 16;
+    /** Number of bands per thread of the pool - more bands than threads give a better load balancing. */
+    private static final int BANDS_PER_THREAD = 4;
+
+    private static final int[] RGB_MASKS = { 0x00ff0000, 0x0000ff00, 0x000000ff };
+    private static final int[] ARGB_MASKS = { 0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000 };
+    private static final ColorModel RGB_COLOR_MODEL = new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]);
+
+    private long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private PixelKernels pixelKernels = PixelKernels.getInstance();
+
+    /**
+     * Get the number of source pixels, from which on the resampling is done in parallel.
+     * @return the pixel threshold
+     */
+    public long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Set the number of source pixels, from which on the resampling is done in parallel.
+     * @param parallelThreshold the pixel threshold - {@link Long#MAX_VALUE} disables the parallel mode
+     */
+    public void setParallelThreshold(long parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Get the pool used for the parallel mode.
+     * @return the fork join pool
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Set the pool used for the parallel mode. The default is the common pool.
+     * @param forkJoinPool the fork join pool
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    @Override
+    public BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            throw new IllegalArgumentException("Invalid target size " + targetWidth + "x" + targetHeight + "!");
+        }
+        if (source.getWidth() == targetWidth && source.getHeight() == targetHeight) {
+            return source;
+        }
+        final boolean premultiplied = isPremultipliedRequired();
+        final PixelSource pixelSource = PixelSource.of(source, premultiplied, pixelKernels);
+        final int[] pixels = resample(pixelSource, targetWidth, targetHeight);
+        if (pixelSource.hasAlpha() && premultiplied) {
+            pixelKernels.unpremultiply(pixels, 0, pixels.length);
+        }
+        if (source.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return createGrayImage(pixels, targetWidth, targetHeight);
+        }
+        return createImage(pixels, targetWidth, targetHeight, pixelSource.hasAlpha());
+    }
+
+    PixelKernels getPixelKernels() {
+        return pixelKernels;
+    }
+
+    /**
+     * Replace the kernels selected for the runtime - used to compare the implementations.
+     */
+    void setPixelKernels(PixelKernels pixelKernels) {
+        this.pixelKernels = pixelKernels;
+    }
+
+    /**
+     * Check, whether the algorithm needs pixels with premultiplied alpha.
+     * @return true for filtering algorithms, that combine multiple pixels
+     */
+    protected boolean isPremultipliedRequired() {
+        return true;
+    }
+
+    /**
+     * Resample the packed ARGB pixels of a source.
+     * @param source the source pixels
+     * @param targetWidth the width of the result in pixels
+     * @param targetHeight the height of the result in pixels
+     * @return the packed ARGB pixels of the result (premultiplied, if {@link #isPremultipliedRequired()} is true)
+     */
+    protected abstract int[] resample(PixelSource source, int targetWidth, int targetHeight);
+
+    /**
+     * Process the rows from rowStart (inclusive) to rowEnd (exclusive) - in parallel bands, if the source pixel count
+     * reaches the parallel threshold.
+     * @param rowStart the first row
+     * @param rowEnd the row after the last row
+     * @param sourcePixels the number of pixels of the source image
+     * @param task the task processing a band of rows
+     */
+    protected void forEachRowBand(int rowStart, int rowEnd, long sourcePixels, RowBandTask task) {
+        final int rows = rowEnd - rowStart;
+        final int parallelism = forkJoinPool.getParallelism();
+        if (sourcePixels < parallelThreshold || parallelism < 2 || rows < 2 * MIN_BAND_ROWS) {
+            task.process(rowStart, rowEnd);
+            return;
+        }
+        final int bandRows = Math.max(MIN_BAND_ROWS, rows / (parallelism * BANDS_PER_THREAD));
+        forkJoinPool.invoke(new RowBandAction(task, rowStart, rowEnd, bandRows));
+    }
+
+    /**
+     * Wrap packed pixels into a {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB} image
+     * without copying them.
+     */
+    static BufferedImage createImage(int[] pixels, int width, int height, boolean alpha) {
+        final DataBufferInt dataBuffer = new DataBufferInt(pixels, width * height);
+        final WritableRaster raster = Raster.createPackedRaster(dataBuffer, width, height, width,
+            alpha ? ARGB_MASKS : RGB_MASKS, null);
+        return new BufferedImage(alpha ? ColorModel.getRGBdefault() : RGB_COLOR_MODEL, raster, false, null);
+    }
+
+    /**
+     * Create a {@link BufferedImage#TYPE_BYTE_GRAY} image from packed pixels of a gray source - all color components
+     * are equal, so the blue component is taken.
+     */
+    static BufferedImage createGrayImage(int[] pixels, int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final byte[] bytes = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) pixels[i];
+        }
+        return image;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Processing of a band of rows.
+     */
+    @FunctionalInterface
+    protected interface RowBandTask {
+
+        /**
+         * Process the rows from rowStart (inclusive) to rowEnd (exclusive).
+         * @param rowStart the first row
+         * @param rowEnd the row after the last row
+         */
+        void process(int rowStart, int rowEnd);
+    }
+
+    /**
+     * Recursive split of a row range into bands of at most bandRows rows.
+     */
+    private static final class RowBandAction extends RecursiveAction {
+
+        private final transient RowBandTask task;
+        private final int rowStart;
+        private final int rowEnd;
+        private final int bandRows;
+
+        RowBandAction(RowBandTask task, int rowStart, int rowEnd, int bandRows) {
+            this.task = task;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (rowEnd - rowStart <= bandRows) {
+                task.process(rowStart, rowEnd);
+            } else {
+                final int middle = (rowStart + rowEnd) >>> 1;
+                invokeAll(new RowBandAction(task, rowStart, middle, bandRows), new RowBandAction(task, middle, rowEnd, bandRows));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Resampler using a triangle (bilinear) filter. When downscaling, the filter is stretched to cover all
+ * source pixels, so the result is antialiased also for large scale factors.
+ */
+public class BilinearResampler extends SeparableResampler {
+
+    private static final Filter TRIANGLE = new Filter() {
+        @Override
+        public double getSupport() {
+            return 1.0;
+        }
+
+        @Override
+        public double apply(double x) {
+            x = Math.abs(x);
+            return x < 1.0 ? 1.0 - x : 0.0;
+        }
+    };
+
+    @Override
+    protected Filter getFilter() {
+        return TRIANGLE;
+    }
+}
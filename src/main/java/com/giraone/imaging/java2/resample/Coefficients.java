@@ -0,0 +1,96 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Fixed point filter weights for one dimension of a separable resampling.
+ * For each output pixel the index of the first input pixel, the number of input pixels and their weights are stored.
+ */
+final class Coefficients {
+
+    /** Number of fraction bits of the fixed point weights - leaves 8 bits for the sample and 2 bits for overshoot. */
+    static final int PRECISION_BITS = 32 - 8 - 2;
+    /** Initial value of the sum for rounding. */
+    static final int ROUNDING = 1 << (PRECISION_BITS - 1);
+
+    /** Number of output pixels. */
+    final int outSize;
+    /** Maximal number of input pixels contributing to one output pixel - the stride in {@link #weights}. */
+    final int kernelSize;
+    /** Index of first contributing input pixel per output pixel. */
+    final int[] start;
+    /** Number of contributing input pixels per output pixel. */
+    final int[] count;
+    /** Weights with {@link #PRECISION_BITS} fraction bits, kernelSize per output pixel. */
+    final int[] weights;
+
+    private Coefficients(int outSize, int kernelSize, int[] start, int[] count, int[] weights) {
+        this.outSize = outSize;
+        this.kernelSize = kernelSize;
+        this.start = start;
+        this.count = count;
+        this.weights = weights;
+    }
+
+    /**
+     * Compute the coefficients of a filter for a resampling from inSize to outSize pixels.
+     * When downscaling, the filter is stretched by the scale factor, so that all input pixels contribute (antialiasing).
+     * @param filter the filter
+     * @param inSize the number of input pixels
+     * @param outSize the number of output pixels
+     * @return the computed coefficients
+     */
+    static Coefficients compute(SeparableResampler.Filter filter, int inSize, int outSize) {
+
+        final double scale = (double) inSize / outSize;
+        final double filterScale = Math.max(scale, 1.0);
+        final double support = filter.getSupport() * filterScale;
+        final int kernelSize = (int) Math.ceil(support) * 2 + 1;
+
+        final int[] start = new int[outSize];
+        final int[] count = new int[outSize];
+        final int[] weights = new int[outSize * kernelSize];
+        final double[] k = new double[kernelSize];
+
+        for (int xx = 0; xx < outSize; xx++) {
+            final double center = (xx + 0.5) * scale;
+            final int xmin = Math.max(0, (int) (center - support + 0.5));
+            final int xmax = Math.min(inSize, (int) (center + support + 0.5));
+            final int n = Math.min(xmax - xmin, kernelSize);
+            double sum = 0.0;
+            for (int x = 0; x < n; x++) {
+                final double w = filter.apply((x + xmin - center + 0.5) / filterScale);
+                k[x] = w;
+                sum += w;
+            }
+            final int offset = xx * kernelSize;
+            for (int x = 0; x < n; x++) {
+                final double w = sum != 0.0 ? k[x] / sum : 0.0;
+                weights[offset + x] = (int) Math.round(w * (1 << PRECISION_BITS));
+            }
+            start[xx] = xmin;
+            count[xx] = n;
+        }
+        return new Coefficients(outSize, kernelSize, start, count, weights);
+    }
+
+    /**
+     * Return the index of the first input pixel needed by any output pixel.
+     */
+    int first() {
+        return start[0];
+    }
+
+    /**
+     * Return the index after the last input pixel needed by any output pixel.
+     */
+    int last() {
+        return start[outSize - 1] + count[outSize - 1];
+    }
+
+    /**
+     * Shift the fixed point sum back and clamp it to the range 0 to 255.
+     */
+    static int clip8(int sum) {
+        final int v = sum >> PRECISION_BITS;
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
@@ -0,0 +1,32 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Resampler using a Lanczos filter with three lobes. This is the slowest, but sharpest of the resamplers.
+ */
+public class Lanczos3Resampler extends SeparableResampler {
+
+    private static final Filter LANCZOS3 = new Filter() {
+        @Override
+        public double getSupport() {
+            return 3.0;
+        }
+
+        @Override
+        public double apply(double x) {
+            return x > -3.0 && x < 3.0 ? sinc(x) * sinc(x / 3.0) : 0.0;
+        }
+    };
+
+    @Override
+    protected Filter getFilter() {
+        return LANCZOS3;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0.0) {
+            return 1.0;
+        }
+        x *= Math.PI;
+        return Math.sin(x) / x;
+    }
+}
@@ -0,0 +1,47 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Resampler picking the nearest source pixel for each target pixel. Fastest, but without any antialiasing.
+ */
+public class NearestNeighborResampler extends AbstractResampler {
+
+    @Override
+    protected boolean isPremultipliedRequired() {
+        return false;
+    }
+
+    @Override
+    protected int[] resample(PixelSource source, int targetWidth, int targetHeight) {
+
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final int[] xIndex = new int[targetWidth];
+        for (int xx = 0; xx < targetWidth; xx++) {
+            xIndex[xx] = Math.min(width - 1, (int) ((xx + 0.5) * width / targetWidth));
+        }
+        final int[] target = new int[targetWidth * targetHeight];
+        final int[] direct = source.getDirectPixels();
+        forEachRowBand(0, targetHeight, (long) width * height, (rowStart, rowEnd) -> {
+            final int[] row = direct != null ? direct : new int[width];
+            int lastY = -1;
+            for (int yy = rowStart; yy < rowEnd; yy++) {
+                final int y = Math.min(height - 1, (int) ((yy + 0.5) * height / targetHeight));
+                final int srcOffset;
+                if (direct != null) {
+                    srcOffset = y * width;
+                } else {
+                    if (y != lastY) {
+                        source.getRow(y, row);
+                        lastY = y;
+                    }
+                    srcOffset = 0;
+                }
+                final int dstOffset = yy * targetWidth;
+                for (int xx = 0; xx < targetWidth; xx++) {
+                    target[dstOffset + xx] = row[srcOffset + xIndex[xx]];
+                }
+            }
+        });
+        return target;
+    }
+}
@@ -0,0 +1,61 @@
+package com.giraone.imaging.java2.resample;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Conversion of images into the pixel formats expected by the encoders.
+ */
+public final class PixelFormats {
+
+    // Hide constructor
+    private PixelFormats() {
+    }
+
+    /**
+     * Convert an image to {@link BufferedImage#TYPE_3BYTE_BGR} - the native pixel layout of the JPEG encoder.
+     * An alpha channel is removed by blending the image onto black.
+     * @param image the image to convert - it is not modified
+     * @return a new image or the image itself, when it is already of type {@link BufferedImage#TYPE_3BYTE_BGR}
+     */
+    public static BufferedImage toBgr(BufferedImage image) {
+        return toBgr(image, PixelKernels.getInstance());
+    }
+
+    /**
+     * Convert an image to the pixel layout of the JPEG encoder, like {@link #toBgr(BufferedImage)}, but keep gray images
+     * of type {@link BufferedImage#TYPE_BYTE_GRAY}, which are written as grayscale JPEG.
+     * @param image the image to convert - it is not modified
+     * @return a new image or the image itself, when it is of type {@link BufferedImage#TYPE_3BYTE_BGR} or
+     * {@link BufferedImage#TYPE_BYTE_GRAY}
+     */
+    public static BufferedImage toBgrOrGray(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        return toBgr(image, PixelKernels.getInstance());
+    }
+
+    static BufferedImage toBgr(BufferedImage image, PixelKernels kernels) {
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        final byte[] bytes = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        // premultiplied alpha is the color blended onto black
+        final PixelSource source = PixelSource.of(image, true, kernels);
+        final int[] direct = source.getDirectPixels();
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            if (direct != null) {
+                kernels.packedToBgr(direct, y * width, bytes, y * width * 3, width);
+            } else {
+                source.getRow(y, row);
+                kernels.packedToBgr(row, 0, bytes, y * width * 3, width);
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,111 @@
+package com.giraone.imaging.java2.resample;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The inner loops of resampling and pixel format conversion working on one row of packed ARGB pixels.
+ * There is a scalar implementation and one based on the Vector API ({@code jdk.incubator.vector}). The vector
+ * implementation is used, when the module is available at runtime (JVM option {@code --add-modules jdk.incubator.vector})
+ * and it is not disabled using the system property {@value #PROPERTY_VECTOR} = false. Both implementations produce
+ * bit-identical results.
+ */
+interface PixelKernels {
+
+    /** System property to disable the Vector API kernels. */
+    String PROPERTY_VECTOR = "imaging.kit.vector";
+
+    /**
+     * Return the kernels selected for the runtime.
+     * @return the vector kernels, if available, otherwise the scalar kernels
+     */
+    static PixelKernels getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Filter one row horizontally.
+     * @param src the source pixels
+     * @param srcOffset the index of the first pixel of the source row
+     * @param dst the target pixels
+     * @param dstOffset the index of the first pixel of the target row
+     * @param coefficients the horizontal coefficients
+     * @param alpha true, if the alpha channel is filtered, false if it is set to opaque
+     */
+    void convolveHorizontal(int[] src, int srcOffset, int[] dst, int dstOffset, Coefficients coefficients, boolean alpha);
+
+    /**
+     * Filter one row vertically.
+     * @param src the source pixels
+     * @param width the scanline stride of source and target
+     * @param srcOffset the index of the first pixel of the first contributing source row
+     * @param count the number of contributing source rows
+     * @param weights the weights
+     * @param weightOffset the index of the first weight
+     * @param dst the target pixels
+     * @param dstOffset the index of the first pixel of the target row
+     * @param alpha true, if the alpha channel is filtered, false if it is set to opaque
+     */
+    void convolveVertical(int[] src, int width, int srcOffset, int count, int[] weights, int weightOffset,
+                          int[] dst, int dstOffset, boolean alpha);
+
+    /**
+     * Convert packed ARGB pixels to premultiplied alpha in place.
+     * @param pixels the pixels
+     * @param offset the index of the first pixel
+     * @param length the number of pixels
+     */
+    void premultiply(int[] pixels, int offset, int length);
+
+    /**
+     * Convert packed ARGB pixels with premultiplied alpha back to straight alpha in place.
+     * @param pixels the pixels
+     * @param offset the index of the first pixel
+     * @param length the number of pixels
+     */
+    void unpremultiply(int[] pixels, int offset, int length);
+
+    /**
+     * Repack packed (A)RGB pixels into 3 bytes per pixel in the order blue, green, red - the layout of
+     * {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR}. The alpha byte is dropped.
+     * @param src the packed pixels
+     * @param srcOffset the index of the first pixel
+     * @param dst the target bytes
+     * @param dstOffset the index of the first target byte
+     * @param length the number of pixels
+     */
+    void packedToBgr(int[] src, int srcOffset, byte[] dst, int dstOffset, int length);
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Lazy selection of the kernels on first use.
+     */
+    final class Holder {
+
+        private static final Logger LOGGER = LoggerFactory.getLogger(PixelKernels.class);
+        private static final String VECTOR_MODULE = "jdk.incubator.vector";
+        private static final String VECTOR_KERNELS_CLASS = "com.giraone.imaging.java2.resample.VectorPixelKernels";
+
+        static final PixelKernels INSTANCE = select();
+
+        // Hide constructor
+        private Holder() {
+        }
+
+        private static PixelKernels select() {
+            if (Boolean.parseBoolean(System.getProperty(PROPERTY_VECTOR, "true"))
+                && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+                try {
+                    // loaded by name, so that the class is never linked, when the module is missing
+                    final PixelKernels kernels = (PixelKernels) Class.forName(VECTOR_KERNELS_CLASS).getDeclaredConstructor().newInstance();
+                    LOGGER.info("PixelKernels: using Vector API kernels");
+                    return kernels;
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    LOGGER.warn("PixelKernels: cannot load Vector API kernels, using scalar kernels", e);
+                }
+            }
+            return new ScalarPixelKernels();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.giraone.imaging.java2.resample;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Row based access to the pixels of a {@link BufferedImage} as packed ARGB values.
+ * Packed integer rasters are used directly without copying. Byte interleaved rasters are packed row by row.
+ * All other image types are read using {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ */
+final class PixelSource {
+
+    private enum Layout { INT_DIRECT, INT_ARGB, BYTE_BGR, BYTE_ABGR, BYTE_GRAY, GENERIC }
+
+    private final BufferedImage image;
+    private final Layout layout;
+    private final int width;
+    private final int height;
+    private final boolean alpha;
+    private final boolean premultiplied;
+    private final int[] intPixels;
+    private final byte[] bytePixels;
+    private final PixelKernels kernels;
+
+    private PixelSource(BufferedImage image, Layout layout, int width, int height, boolean alpha, boolean premultiplied,
+                        int[] intPixels, byte[] bytePixels, PixelKernels kernels) {
+        this.kernels = kernels;
+        this.image = image;
+        this.layout = layout;
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+        this.premultiplied = premultiplied;
+        this.intPixels = intPixels;
+        this.bytePixels = bytePixels;
+    }
+
+    /**
+     * Create a pixel source for an image.
+     * @param image the image
+     * @param premultiplied true, if rows of images with alpha channel should be returned with premultiplied alpha
+     * @param kernels the kernels used for the premultiplication
+     * @return the pixel source
+     */
+    static PixelSource of(BufferedImage image, boolean premultiplied, PixelKernels kernels) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final Raster raster = image.getRaster();
+        final boolean plain = raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1
+            && raster.getDataBuffer().getOffset() == 0;
+        if (plain) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                    if (isPlainPacked(raster, width)) {
+                        return new PixelSource(image, Layout.INT_DIRECT, width, height, false, premultiplied, intData(raster), null, kernels);
+                    }
+                    break;
+                case BufferedImage.TYPE_INT_ARGB:
+                    if (isPlainPacked(raster, width)) {
+                        return new PixelSource(image, Layout.INT_ARGB, width, height, true, premultiplied, intData(raster), null, kernels);
+                    }
+                    break;
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    if (isPlainInterleaved(raster, width, 3)) {
+                        return new PixelSource(image, Layout.BYTE_BGR, width, height, false, premultiplied, null, byteData(raster), kernels);
+                    }
+                    break;
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    if (isPlainInterleaved(raster, width, 4)) {
+                        return new PixelSource(image, Layout.BYTE_ABGR, width, height, true, premultiplied, null, byteData(raster), kernels);
+                    }
+                    break;
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    if (isPlainInterleaved(raster, width, 1)) {
+                        return new PixelSource(image, Layout.BYTE_GRAY, width, height, false, premultiplied, null, byteData(raster), kernels);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new PixelSource(image, Layout.GENERIC, width, height, image.getColorModel().hasAlpha(), premultiplied, null, null, kernels);
+    }
+
+    /**
+     * Create a pixel source for packed ARGB pixels, that are already premultiplied, if there is an alpha channel.
+     * @param pixels the packed pixels (scanline stride = width)
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @param alpha true, if the pixels have an alpha channel
+     * @return the pixel source
+     */
+    static PixelSource of(int[] pixels, int width, int height, boolean alpha) {
+        return new PixelSource(null, Layout.INT_DIRECT, width, height, alpha, true, pixels, null, null);
+    }
+
+    private static boolean isPlainPacked(Raster raster, int width) {
+        return raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+            && sampleModel.getScanlineStride() == width;
+    }
+
+    private static boolean isPlainInterleaved(Raster raster, int width, int pixelStride) {
+        return raster.getSampleModel() instanceof ComponentSampleModel sampleModel
+            && sampleModel.getPixelStride() == pixelStride
+            && sampleModel.getScanlineStride() == width * pixelStride;
+    }
+
+    private static int[] intData(Raster raster) {
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    private static byte[] byteData(Raster raster) {
+        return ((DataBufferByte) raster.getDataBuffer()).getData();
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    boolean hasAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Return the packed pixel array, if the rows can be used directly - without conversion.
+     * @return the array with scanline stride = width or null, if {@link #getRow(int, int[])} must be used
+     */
+    int[] getDirectPixels() {
+        return layout == Layout.INT_DIRECT ? intPixels : null;
+    }
+
+    /**
+     * Read one row of packed ARGB pixels. For sources with alpha channel the values are premultiplied,
+     * if the source was created with premultiplied = true.
+     * @param y the row index
+     * @param row the buffer for at least width pixels
+     */
+    void getRow(int y, int[] row) {
+        switch (layout) {
+            case INT_DIRECT, INT_ARGB -> System.arraycopy(intPixels, y * width, row, 0, width);
+            case BYTE_BGR -> {
+                int i = y * width * 3;
+                for (int x = 0; x < width; x++, i += 3) {
+                    row[x] = 0xff000000 | (bytePixels[i + 2] & 0xff) << 16 | (bytePixels[i + 1] & 0xff) << 8 | (bytePixels[i] & 0xff);
+                }
+            }
+            case BYTE_ABGR -> {
+                int i = y * width * 4;
+                for (int x = 0; x < width; x++, i += 4) {
+                    row[x] = (bytePixels[i] & 0xff) << 24 | (bytePixels[i + 3] & 0xff) << 16
+                        | (bytePixels[i + 2] & 0xff) << 8 | (bytePixels[i + 1] & 0xff);
+                }
+            }
+            case BYTE_GRAY -> {
+                int i = y * width;
+                for (int x = 0; x < width; x++, i++) {
+                    final int g = bytePixels[i] & 0xff;
+                    row[x] = 0xff000000 | g << 16 | g << 8 | g;
+                }
+            }
+            default -> image.getRGB(0, y, width, 1, row, 0, width);
+        }
+        if (alpha && premultiplied && layout != Layout.INT_DIRECT) {
+            kernels.premultiply(row, 0, width);
+        }
+    }
+}
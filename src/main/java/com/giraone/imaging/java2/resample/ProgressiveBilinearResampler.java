@@ -0,0 +1,89 @@
+package com.giraone.imaging.java2.resample;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Resampler halving the image in multiple steps, as long as the result is not smaller than the target,
+ * followed by one final bilinear step to the exact target size. Each halving step averages 2x2 pixels.
+ * This gives nearly the quality of a large bilinear filter, with much less work for large scale factors.
+ */
+public class ProgressiveBilinearResampler extends AbstractResampler {
+
+    private final BilinearResampler finalStep = new BilinearResampler();
+
+    @Override
+    public void setParallelThreshold(long parallelThreshold) {
+        super.setParallelThreshold(parallelThreshold);
+        finalStep.setParallelThreshold(parallelThreshold);
+    }
+
+    @Override
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        super.setForkJoinPool(forkJoinPool);
+        finalStep.setForkJoinPool(forkJoinPool);
+    }
+
+    @Override
+    void setPixelKernels(PixelKernels pixelKernels) {
+        super.setPixelKernels(pixelKernels);
+        finalStep.setPixelKernels(pixelKernels);
+    }
+
+    @Override
+    protected int[] resample(PixelSource source, int targetWidth, int targetHeight) {
+
+        PixelSource current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = halve(current);
+        }
+        if (current.getWidth() == targetWidth && current.getHeight() == targetHeight) {
+            // at least one halving step was done, because the base class returns early for an unchanged size
+            return current.getDirectPixels();
+        }
+        return finalStep.resample(current, targetWidth, targetHeight);
+    }
+
+    /**
+     * Halve width and height of the source by averaging 2x2 pixels. An odd last row or column is dropped.
+     */
+    PixelSource halve(PixelSource source) {
+        final int width = source.getWidth();
+        final int halfWidth = width / 2;
+        final int halfHeight = source.getHeight() / 2;
+        final boolean alpha = source.hasAlpha();
+        final int[] target = new int[halfWidth * halfHeight];
+        final int[] direct = source.getDirectPixels();
+        forEachRowBand(0, halfHeight, (long) width * source.getHeight(), (rowStart, rowEnd) -> {
+            final int[] row0 = direct != null ? direct : new int[width];
+            final int[] row1 = direct != null ? direct : new int[width];
+            for (int yy = rowStart; yy < rowEnd; yy++) {
+                final int offset0;
+                final int offset1;
+                if (direct != null) {
+                    offset0 = 2 * yy * width;
+                    offset1 = offset0 + width;
+                } else {
+                    source.getRow(2 * yy, row0);
+                    source.getRow(2 * yy + 1, row1);
+                    offset0 = 0;
+                    offset1 = 0;
+                }
+                final int dstOffset = yy * halfWidth;
+                for (int xx = 0; xx < halfWidth; xx++) {
+                    final int i0 = offset0 + 2 * xx;
+                    final int i1 = offset1 + 2 * xx;
+                    target[dstOffset + xx] = average(row0[i0], row0[i0 + 1], row1[i1], row1[i1 + 1], alpha);
+                }
+            }
+        });
+        return PixelSource.of(target, halfWidth, halfHeight, alpha);
+    }
+
+    private static int average(int p0, int p1, int p2, int p3, boolean alpha) {
+        final int a = alpha ? ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2 : 0xff;
+        final int r = (((p0 >> 16) & 0xff) + ((p1 >> 16) & 0xff) + ((p2 >> 16) & 0xff) + ((p3 >> 16) & 0xff) + 2) >> 2;
+        final int g = (((p0 >> 8) & 0xff) + ((p1 >> 8) & 0xff) + ((p2 >> 8) & 0xff) + ((p3 >> 8) & 0xff) + 2) >> 2;
+        final int b = ((p0 & 0xff) + (p1 & 0xff) + (p2 & 0xff) + (p3 & 0xff) + 2) >> 2;
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+}
@@ -0,0 +1,41 @@
+package com.giraone.imaging.java2.resample;
+
+import com.giraone.imaging.ConversionCommand;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Interface for algorithms, that resample (scale) a bitmap image to a new size.
+ * Implementations work directly on the {@code int[]} or {@code byte[]} raster data of the image.
+ */
+public interface Resampler {
+
+    /**
+     * Resample an image to the given size.
+     * @param source the source image - it is not modified
+     * @param targetWidth the width of the result in pixels
+     * @param targetHeight the height of the result in pixels
+     * @return the resampled image or the source itself, when it has already the target size
+     */
+    BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight);
+
+    /**
+     * Return a new resampler for a speed/quality hint.
+     * <ul>
+     *   <li>{@link ConversionCommand.SpeedHint#SPEED}: {@link NearestNeighborResampler}</li>
+     *   <li>{@link ConversionCommand.SpeedHint#BALANCED}: {@link BilinearResampler}</li>
+     *   <li>{@link ConversionCommand.SpeedHint#QUALITY}: {@link ProgressiveBilinearResampler}</li>
+     *   <li>{@link ConversionCommand.SpeedHint#ULTRA_QUALITY}: {@link Lanczos3Resampler}</li>
+     * </ul>
+     * @param speedHint the speed/quality hint
+     * @return a new resampler instance
+     */
+    static Resampler forSpeedHint(ConversionCommand.SpeedHint speedHint) {
+        return switch (speedHint) {
+            case SPEED -> new NearestNeighborResampler();
+            case BALANCED -> new BilinearResampler();
+            case QUALITY -> new ProgressiveBilinearResampler();
+            case ULTRA_QUALITY -> new Lanczos3Resampler();
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Plain Java implementation of the pixel kernels.
+ */
+class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public void convolveHorizontal(int[] src, int srcOffset, int[] dst, int dstOffset, Coefficients coefficients, boolean alpha) {
+        convolveHorizontal(src, srcOffset, dst, dstOffset, coefficients, alpha, 0, coefficients.outSize);
+    }
+
+    /**
+     * Filter the target pixels from xStart (inclusive) to xEnd (exclusive) of one row horizontally.
+     */
+    static void convolveHorizontal(int[] src, int srcOffset, int[] dst, int dstOffset, Coefficients coefficients, boolean alpha,
+                                   int xStart, int xEnd) {
+        final int[] weights = coefficients.weights;
+        final int kernelSize = coefficients.kernelSize;
+        for (int xx = xStart; xx < xEnd; xx++) {
+            final int base = srcOffset + coefficients.start[xx];
+            final int n = coefficients.count[xx];
+            final int w0 = xx * kernelSize;
+            int a = Coefficients.ROUNDING;
+            int r = Coefficients.ROUNDING;
+            int g = Coefficients.ROUNDING;
+            int b = Coefficients.ROUNDING;
+            for (int k = 0; k < n; k++) {
+                final int p = src[base + k];
+                final int w = weights[w0 + k];
+                a += (p >>> 24) * w;
+                r += ((p >> 16) & 0xff) * w;
+                g += ((p >> 8) & 0xff) * w;
+                b += (p & 0xff) * w;
+            }
+            dst[dstOffset + xx] = (alpha ? Coefficients.clip8(a) << 24 : 0xff000000)
+                | Coefficients.clip8(r) << 16 | Coefficients.clip8(g) << 8 | Coefficients.clip8(b);
+        }
+    }
+
+    @Override
+    public void convolveVertical(int[] src, int width, int srcOffset, int count, int[] weights, int weightOffset,
+                                 int[] dst, int dstOffset, boolean alpha) {
+        convolveVertical(src, width, srcOffset, count, weights, weightOffset, dst, dstOffset, alpha, 0, width);
+    }
+
+    /**
+     * Filter the target pixels from xStart (inclusive) to xEnd (exclusive) of one row vertically.
+     */
+    static void convolveVertical(int[] src, int width, int srcOffset, int count, int[] weights, int weightOffset,
+                                 int[] dst, int dstOffset, boolean alpha, int xStart, int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
+            int a = Coefficients.ROUNDING;
+            int r = Coefficients.ROUNDING;
+            int g = Coefficients.ROUNDING;
+            int b = Coefficients.ROUNDING;
+            int i = srcOffset + x;
+            for (int k = 0; k < count; k++, i += width) {
+                final int p = src[i];
+                final int w = weights[weightOffset + k];
+                a += (p >>> 24) * w;
+                r += ((p >> 16) & 0xff) * w;
+                g += ((p >> 8) & 0xff) * w;
+                b += (p & 0xff) * w;
+            }
+            dst[dstOffset + x] = (alpha ? Coefficients.clip8(a) << 24 : 0xff000000)
+                | Coefficients.clip8(r) << 16 | Coefficients.clip8(g) << 8 | Coefficients.clip8(b);
+        }
+    }
+
+    @Override
+    public void premultiply(int[] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final int p = pixels[i];
+            final int a = p >>> 24;
+            if (a == 0) {
+                pixels[i] = 0;
+            } else if (a != 255) {
+                pixels[i] = a << 24 | mul255((p >> 16) & 0xff, a) << 16 | mul255((p >> 8) & 0xff, a) << 8 | mul255(p & 0xff, a);
+            }
+        }
+    }
+
+    @Override
+    public void unpremultiply(int[] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final int p = pixels[i];
+            final int a = p >>> 24;
+            if (a == 0) {
+                pixels[i] = 0;
+            } else if (a != 255) {
+                pixels[i] = a << 24 | div255((p >> 16) & 0xff, a) << 16 | div255((p >> 8) & 0xff, a) << 8 | div255(p & 0xff, a);
+            }
+        }
+    }
+
+    @Override
+    public void packedToBgr(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = srcOffset, end = srcOffset + length, j = dstOffset; i < end; i++, j += 3) {
+            final int p = src[i];
+            dst[j] = (byte) p;
+            dst[j + 1] = (byte) (p >> 8);
+            dst[j + 2] = (byte) (p >> 16);
+        }
+    }
+
+    /**
+     * Return round(c * a / 255) without division.
+     */
+    static int mul255(int c, int a) {
+        final int t = c * a + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+    /**
+     * Return min(255, round(c * 255 / a)).
+     */
+    static int div255(int c, int a) {
+        final int v = (c * 255 + (a >> 1)) / a;
+        return Math.min(v, 255);
+    }
+}
@@ -0,0 +1,155 @@
+package com.giraone.imaging.java2.resample;
+
+/**
+ * Base class for resamplers using a separable convolution filter. The image is filtered in two passes using an
+ * intermediate buffer. Both passes use fixed point integer arithmetic on packed ARGB pixels and are split into
+ * row bands for the parallel mode.
+ * <p>
+ * When the source pixels are available as one packed array, the vertical pass is done first. Then the pass over the
+ * full source works on contiguous pixels of adjacent rows, which is the most efficient case for the vector kernels.
+ * Otherwise, the source rows are converted one by one in the horizontal pass. The order depends only on the source,
+ * so all kernel implementations produce the same result.
+ * </p>
+ */
+public abstract class SeparableResampler extends AbstractResampler {
+
+    /**
+     * Return the filter used for both passes.
+     * @return the filter
+     */
+    protected abstract Filter getFilter();
+
+    @Override
+    protected int[] resample(PixelSource source, int targetWidth, int targetHeight) {
+
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final boolean alpha = source.hasAlpha();
+        final Filter filter = getFilter();
+        final long sourcePixels = (long) width * height;
+
+        if (height == targetHeight) {
+            final Coefficients horizontal = Coefficients.compute(filter, width, targetWidth);
+            final int[] target = new int[targetWidth * targetHeight];
+            forEachRowBand(0, targetHeight, sourcePixels,
+                (rowStart, rowEnd) -> horizontalPass(source, horizontal, target, 0, rowStart, rowEnd));
+            return target;
+        }
+
+        final Coefficients vertical = Coefficients.compute(filter, height, targetHeight);
+        final int[] direct = source.getDirectPixels();
+        if (direct != null && width != targetWidth) {
+            final int[] buffer = new int[width * targetHeight];
+            forEachRowBand(0, targetHeight, sourcePixels,
+                (rowStart, rowEnd) -> verticalPass(direct, width, 0, vertical, buffer, alpha, rowStart, rowEnd));
+            final PixelSource intermediate = PixelSource.of(buffer, width, targetHeight, alpha);
+            final Coefficients horizontal = Coefficients.compute(filter, width, targetWidth);
+            final int[] target = new int[targetWidth * targetHeight];
+            forEachRowBand(0, targetHeight, sourcePixels,
+                (rowStart, rowEnd) -> horizontalPass(intermediate, horizontal, target, 0, rowStart, rowEnd));
+            return target;
+        }
+
+        final int[] intermediate;
+        final int rowOffset;
+        if (width == targetWidth) {
+            intermediate = direct != null ? direct : copyRows(source, sourcePixels);
+            rowOffset = 0;
+        } else {
+            // only the rows needed by the vertical pass are filtered horizontally
+            final Coefficients horizontal = Coefficients.compute(filter, width, targetWidth);
+            final int first = vertical.first();
+            final int last = vertical.last();
+            final int[] buffer = new int[targetWidth * (last - first)];
+            forEachRowBand(first, last, sourcePixels,
+                (rowStart, rowEnd) -> horizontalPass(source, horizontal, buffer, first, rowStart, rowEnd));
+            intermediate = buffer;
+            rowOffset = first;
+        }
+        final int[] target = new int[targetWidth * targetHeight];
+        forEachRowBand(0, targetHeight, sourcePixels,
+            (rowStart, rowEnd) -> verticalPass(intermediate, targetWidth, rowOffset, vertical, target, alpha, rowStart, rowEnd));
+        return target;
+    }
+
+    /**
+     * Filter the source rows from rowStart (inclusive) to rowEnd (exclusive) horizontally.
+     * @param source the source pixels
+     * @param coefficients the horizontal coefficients
+     * @param target the target buffer with a scanline stride of coefficients.outSize
+     * @param rowOffset the source row stored as the first row of target
+     * @param rowStart the first source row
+     * @param rowEnd the source row after the last row
+     */
+    void horizontalPass(PixelSource source, Coefficients coefficients, int[] target, int rowOffset, int rowStart, int rowEnd) {
+        final PixelKernels kernels = getPixelKernels();
+        final int width = source.getWidth();
+        final int targetWidth = coefficients.outSize;
+        final int[] direct = source.getDirectPixels();
+        final int[] row = direct != null ? direct : new int[width];
+        for (int y = rowStart; y < rowEnd; y++) {
+            final int srcOffset;
+            if (direct != null) {
+                srcOffset = y * width;
+            } else {
+                source.getRow(y, row);
+                srcOffset = 0;
+            }
+            kernels.convolveHorizontal(row, srcOffset, target, (y - rowOffset) * targetWidth, coefficients, source.hasAlpha());
+        }
+    }
+
+    /**
+     * Filter the target rows from rowStart (inclusive) to rowEnd (exclusive) vertically.
+     * @param source the horizontally filtered pixels
+     * @param width the scanline stride of source and target
+     * @param rowOffset the row index of the first row in source
+     * @param coefficients the vertical coefficients
+     * @param target the target buffer
+     * @param alpha true, if the alpha channel is filtered, false if it is set to opaque
+     * @param rowStart the first target row
+     * @param rowEnd the target row after the last row
+     */
+    void verticalPass(int[] source, int width, int rowOffset, Coefficients coefficients, int[] target, boolean alpha,
+                      int rowStart, int rowEnd) {
+        final PixelKernels kernels = getPixelKernels();
+        for (int yy = rowStart; yy < rowEnd; yy++) {
+            kernels.convolveVertical(source, width, (coefficients.start[yy] - rowOffset) * width, coefficients.count[yy],
+                coefficients.weights, yy * coefficients.kernelSize, target, yy * width, alpha);
+        }
+    }
+
+    private int[] copyRows(PixelSource source, long sourcePixels) {
+        final int width = source.getWidth();
+        final int[] pixels = new int[width * source.getHeight()];
+        forEachRowBand(0, source.getHeight(), sourcePixels, (rowStart, rowEnd) -> {
+            final int[] row = new int[width];
+            for (int y = rowStart; y < rowEnd; y++) {
+                source.getRow(y, row);
+                System.arraycopy(row, 0, pixels, y * width, width);
+            }
+        });
+        return pixels;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A symmetric one-dimensional filter kernel.
+     */
+    public interface Filter {
+
+        /**
+         * Return the support (radius) of the filter for a scale factor of 1.
+         * @return the radius in pixels
+         */
+        double getSupport();
+
+        /**
+         * Return the filter weight at a distance from the center.
+         * @param x the distance in pixels
+         * @return the (not normalized) weight
+         */
+        double apply(double x);
+    }
+}
@@ -0,0 +1,176 @@
+package com.giraone.imaging.java2.resample;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.ASHR;
+import static jdk.incubator.vector.VectorOperators.F2I;
+import static jdk.incubator.vector.VectorOperators.I2F;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+
+/**
+ * Implementation of the pixel kernels using the Vector API. The lanes of a vector are adjacent pixels - for the
+ * horizontal convolution the source pixels contributing to one target pixel, otherwise adjacent target pixels.
+ * The four channels are extracted into separate vectors and computed with the same integer arithmetic as the scalar
+ * kernels. Gather loads are avoided. Remaining pixels at the end of a row are processed by the {@link ScalarPixelKernels}.
+ * <p>
+ * This class must only be loaded, when the module {@code jdk.incubator.vector} is available - see {@link PixelKernels}.
+ * </p>
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTE = VectorSpecies.of(byte.class, INT.vectorShape());
+    private static final int LANES = INT.length();
+    private static final ScalarPixelKernels SCALAR = new ScalarPixelKernels();
+    /** Moves the bytes B, G, R of each little endian ARGB int to the front and drops A. */
+    private static final VectorShuffle<Byte> BGR_SHUFFLE = VectorShuffle.fromOp(BYTE, i -> i < 3 * LANES ? (i / 3) * 4 + i % 3 : 0);
+
+    @Override
+    public void convolveHorizontal(int[] src, int srcOffset, int[] dst, int dstOffset, Coefficients coefficients, boolean alpha) {
+
+        final int[] start = coefficients.start;
+        final int[] count = coefficients.count;
+        final int[] weights = coefficients.weights;
+        final int kernelSize = coefficients.kernelSize;
+        if (kernelSize < LANES) {
+            // for short kernels the lane reductions cost more than the scalar loop
+            SCALAR.convolveHorizontal(src, srcOffset, dst, dstOffset, coefficients, alpha);
+            return;
+        }
+        for (int xx = 0; xx < coefficients.outSize; xx++) {
+            // the lanes are the contributing source pixels - both they and their weights are contiguous
+            final int base = srcOffset + start[xx];
+            final int w0 = xx * kernelSize;
+            final int n = count[xx];
+            IntVector a = IntVector.zero(INT);
+            IntVector r = a;
+            IntVector g = a;
+            IntVector b = a;
+            for (int k = 0; k < n; k += LANES) {
+                final VectorMask<Integer> inRange = INT.indexInRange(k, n);
+                final IntVector p = IntVector.fromArray(INT, src, base + k, inRange);
+                final IntVector w = IntVector.fromArray(INT, weights, w0 + k, inRange);
+                if (alpha) {
+                    a = a.add(p.lanewise(LSHR, 24).mul(w));
+                }
+                r = r.add(p.lanewise(LSHR, 16).and(0xff).mul(w));
+                g = g.add(p.lanewise(LSHR, 8).and(0xff).mul(w));
+                b = b.add(p.and(0xff).mul(w));
+            }
+            final int sumA = alpha ? Coefficients.clip8(Coefficients.ROUNDING + a.reduceLanes(ADD)) << 24 : 0xff000000;
+            dst[dstOffset + xx] = sumA
+                | Coefficients.clip8(Coefficients.ROUNDING + r.reduceLanes(ADD)) << 16
+                | Coefficients.clip8(Coefficients.ROUNDING + g.reduceLanes(ADD)) << 8
+                | Coefficients.clip8(Coefficients.ROUNDING + b.reduceLanes(ADD));
+        }
+    }
+
+    @Override
+    public void convolveVertical(int[] src, int width, int srcOffset, int count, int[] weights, int weightOffset,
+                                 int[] dst, int dstOffset, boolean alpha) {
+
+        final int upperBound = INT.loopBound(width);
+        int x = 0;
+        for (; x < upperBound; x += LANES) {
+            IntVector a = IntVector.broadcast(INT, Coefficients.ROUNDING);
+            IntVector r = a;
+            IntVector g = a;
+            IntVector b = a;
+            int i = srcOffset + x;
+            for (int k = 0; k < count; k++, i += width) {
+                final IntVector p = IntVector.fromArray(INT, src, i);
+                final int w = weights[weightOffset + k];
+                if (alpha) {
+                    a = a.add(p.lanewise(LSHR, 24).mul(w));
+                }
+                r = r.add(p.lanewise(LSHR, 16).and(0xff).mul(w));
+                g = g.add(p.lanewise(LSHR, 8).and(0xff).mul(w));
+                b = b.add(p.and(0xff).mul(w));
+            }
+            pack(a, r, g, b, alpha).intoArray(dst, dstOffset + x);
+        }
+        ScalarPixelKernels.convolveVertical(src, width, srcOffset, count, weights, weightOffset, dst, dstOffset, alpha, x, width);
+    }
+
+    @Override
+    public void premultiply(int[] pixels, int offset, int length) {
+
+        final int upperBound = INT.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            final IntVector p = IntVector.fromArray(INT, pixels, offset + i);
+            final IntVector a = p.lanewise(LSHR, 24);
+            // for a = 0 and a = 255 the formula gives the same result as the special cases of the scalar kernel
+            final IntVector r = mul255(p.lanewise(LSHR, 16).and(0xff), a);
+            final IntVector g = mul255(p.lanewise(LSHR, 8).and(0xff), a);
+            final IntVector b = mul255(p.and(0xff), a);
+            a.lanewise(LSHL, 24).or(r.lanewise(LSHL, 16)).or(g.lanewise(LSHL, 8)).or(b).intoArray(pixels, offset + i);
+        }
+        SCALAR.premultiply(pixels, offset + i, length - i);
+    }
+
+    @Override
+    public void unpremultiply(int[] pixels, int offset, int length) {
+
+        final int upperBound = INT.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += LANES) {
+            final IntVector p = IntVector.fromArray(INT, pixels, offset + i);
+            final IntVector a = p.lanewise(LSHR, 24);
+            final VectorMask<Integer> transparent = a.eq(0);
+            final FloatVector af = (FloatVector) a.convert(I2F, 0);
+            final IntVector half = a.lanewise(ASHR, 1);
+            final IntVector r = div255(p.lanewise(LSHR, 16).and(0xff), half, af);
+            final IntVector g = div255(p.lanewise(LSHR, 8).and(0xff), half, af);
+            final IntVector b = div255(p.and(0xff), half, af);
+            a.lanewise(LSHL, 24).or(r.lanewise(LSHL, 16)).or(g.lanewise(LSHL, 8)).or(b)
+                .blend(0, transparent)
+                .intoArray(pixels, offset + i);
+        }
+        SCALAR.unpremultiply(pixels, offset + i, length - i);
+    }
+
+    @Override
+    public void packedToBgr(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+
+        // every store writes 4 bytes per pixel, the last byte of each group is overwritten by the next store
+        int i = 0;
+        for (; 3 * i + 4 * LANES <= 3 * length; i += LANES) {
+            IntVector.fromArray(INT, src, srcOffset + i)
+                .reinterpretAsBytes()
+                .rearrange(BGR_SHUFFLE)
+                .intoArray(dst, dstOffset + 3 * i);
+        }
+        SCALAR.packedToBgr(src, srcOffset + i, dst, dstOffset + 3 * i, length - i);
+    }
+
+    private static IntVector pack(IntVector a, IntVector r, IntVector g, IntVector b, boolean alpha) {
+        final IntVector rgb = clip8(r).lanewise(LSHL, 16).or(clip8(g).lanewise(LSHL, 8)).or(clip8(b));
+        return alpha ? rgb.or(clip8(a).lanewise(LSHL, 24)) : rgb.or(0xff000000);
+    }
+
+    private static IntVector clip8(IntVector sum) {
+        return sum.lanewise(ASHR, Coefficients.PRECISION_BITS).max(0).min(255);
+    }
+
+    private static IntVector mul255(IntVector c, IntVector a) {
+        final IntVector t = c.mul(a).add(128);
+        return t.add(t.lanewise(ASHR, 8)).lanewise(ASHR, 8);
+    }
+
+    /**
+     * The integer division is done in float - numerator and denominator are exact and the distance of an
+     * inexact quotient to the next integer is at least 1/255, so truncating the float quotient is exact.
+     */
+    private static IntVector div255(IntVector c, IntVector half, FloatVector af) {
+        final FloatVector numerator = (FloatVector) c.mul(255).add(half).convert(I2F, 0);
+        return ((IntVector) numerator.div(af).convert(F2I, 0)).min(255);
+    }
+}
@@ -3,6 +3,7 @@ package com.giraone.imaging.os;
 public class OsCommandResult {
     int code;
     String output;
+    byte[] binaryOutput;
     Exception exception;
 
     public OsCommandResult(int code, String output) {
@@ -11,6 +12,12 @@ public class OsCommandResult {
         this.output = output;
     }
 
+    public OsCommandResult(int code, byte[] binaryOutput) {
+        super();
+        this.code = code;
+        this.binaryOutput = binaryOutput;
+    }
+
     public OsCommandResult(int code, Exception exception) {
         super();
         this.code = code;
@@ -33,6 +40,14 @@ public class OsCommandResult {
         this.output = output;
     }
 
+    public byte[] getBinaryOutput() {
+        return binaryOutput;
+    }
+
+    public void setBinaryOutput(byte[] binaryOutput) {
+        this.binaryOutput = binaryOutput;
+    }
+
     public Exception getException() {
         return exception;
     }
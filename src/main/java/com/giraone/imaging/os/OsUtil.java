@@ -5,7 +5,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -58,6 +62,54 @@ public class OsUtil {
         }
     }
 
+    /**
+     * Run a command and read its standard output as bytes, e.g. an image written by the command to stdout.
+     * The output is read while the command is running, so the command is never blocked by a full pipe.
+     * The standard error output is discarded.
+     * @param command the command and its arguments
+     * @param maxWaitTimeInSeconds the maximal runtime of the command
+     * @return the result with the exit code and the binary output or the exit code and an exception
+     */
+    public static OsCommandResult runCommandAndReadBinaryOutput(String[] command, int maxWaitTimeInSeconds) {
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("OsCommandResult.runCommandAndReadBinaryOutput: {}", commandStringFromArray(command));
+        }
+        final long start = System.currentTimeMillis();
+        final Process p;
+        try {
+            p = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        } catch (IOException e) {
+            return new OsCommandResult(-1, e);
+        }
+        final CompletableFuture<byte[]> output = CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = p.getInputStream()) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, runnable -> Thread.ofVirtual().start(runnable));
+        try {
+            if (!p.waitFor(maxWaitTimeInSeconds, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                return new OsCommandResult(-3, "Command " + commandStringFromArray(command) + " timed out after "
+                    + maxWaitTimeInSeconds + " seconds!");
+            }
+            final byte[] bytes = output.get();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("OsCommandResult.runCommandAndReadBinaryOutput: ExitCode = {}, Bytes = {}, Time = {}ms",
+                    p.exitValue(), bytes.length, System.currentTimeMillis() - start);
+            }
+            return new OsCommandResult(p.exitValue(), bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.destroyForcibly();
+            return new OsCommandResult(-2, e);
+        } catch (ExecutionException e) {
+            return new OsCommandResult(p.exitValue(), e.getCause() instanceof Exception cause ? cause : e);
+        }
+    }
+
     private static String commandStringFromArray(String[] command) {
         StringBuilder ret = new StringBuilder();
         for (int i = 0; i < command.length; i++) {
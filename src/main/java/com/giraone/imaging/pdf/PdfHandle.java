@@ -0,0 +1,146 @@
+package com.giraone.imaging.pdf;
+
+import com.giraone.imaging.ConversionCommand;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A PDF document, that is loaded once for multiple operations, e.g. counting the pages, reading the document
+ * information and creating thumbnails. Without the handle, each of these operations parses the cross-reference table
+ * and the object graph again. Create it using {@link PdfProviderPdfBox#open(java.io.File)} and close it after use.
+ * <p>
+ * A handle must not be used by multiple threads at the same time, because PDFBox documents are not thread safe.
+ * </p>
+ */
+public final class PdfHandle implements AutoCloseable {
+
+    private final PdfProviderPdfBox provider;
+    private final PDDocument document;
+    private PDFRenderer renderer;
+    private PdfDocumentInformation documentInformation;
+    private List<PageSize> pageSizes;
+
+    PdfHandle(PdfProviderPdfBox provider, PDDocument document) {
+        this.provider = provider;
+        this.document = document;
+    }
+
+    /**
+     * Get the number of pages.
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /**
+     * Get the document information (title, author, subject, keywords, etc.).
+     * @return the document information
+     */
+    public PdfDocumentInformation getDocumentInformation() {
+        if (documentInformation == null) {
+            documentInformation = PdfDocumentInformation.build(document.getDocumentInformation());
+        }
+        return documentInformation;
+    }
+
+    /**
+     * Get the size of all pages as they are rendered.
+     * @return the unmodifiable list of page sizes in page order
+     */
+    public List<PageSize> getPageSizes() {
+        if (pageSizes == null) {
+            final List<PageSize> sizes = new ArrayList<>(getPageCount());
+            for (PDPage page : document.getPages()) {
+                sizes.add(PageSize.of(page));
+            }
+            pageSizes = Collections.unmodifiableList(sizes);
+        }
+        return pageSizes;
+    }
+
+    /**
+     * Get the size of one page as it is rendered.
+     * @param pageIndex the index of the page (0 = first page)
+     * @return the page size
+     */
+    public PageSize getPageSize(int pageIndex) {
+        return PageSize.of(document.getPage(pageIndex));
+    }
+
+    /**
+     * Create multiple thumbnail images (e.g. different sizes) of the first page. The page is rendered once at the
+     * resolution of the largest rendition.
+     * @param conversionCommands the commands with the definitions of the output (output, format, width, height and quality)
+     * @throws Exception on any error converting the page or writing to the output
+     */
+    public void createThumbnails(ConversionCommand... conversionCommands) throws Exception {
+        createPageThumbnails(0, conversionCommands);
+    }
+
+    /**
+     * Create multiple thumbnail images (e.g. different sizes) of a page. The page is rendered once at the
+     * resolution of the largest rendition.
+     * @param pageIndex the index of the page (0 = first page)
+     * @param conversionCommands the commands with the definitions of the output (output, format, width, height and quality)
+     * @throws Exception on any error converting the page or writing to the output
+     */
+    public void createPageThumbnails(int pageIndex, ConversionCommand... conversionCommands) throws Exception {
+        if (renderer == null) {
+            // the renderer caches resources shared by the pages
+            renderer = new PDFRenderer(document);
+        }
+        provider.renderAndWritePage(renderer, document.getPage(pageIndex), pageIndex, conversionCommands);
+    }
+
+    /**
+     * Close the document.
+     * @throws IOException on any error closing the document
+     */
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The size of a page in points (1/72 inch) with the page rotation applied.
+     * @param width the width in points
+     * @param height the height in points
+     */
+    public record PageSize(float width, float height) {
+
+        static PageSize of(PDPage page) {
+            final PDRectangle cropBox = page.getCropBox();
+            return page.getRotation() % 180 != 0
+                ? new PageSize(cropBox.getHeight(), cropBox.getWidth())
+                : new PageSize(cropBox.getWidth(), cropBox.getHeight());
+        }
+
+        /**
+         * Get the width in pixels at a resolution.
+         * @param dpi the resolution in dots per inch
+         * @return the width in pixels, as rendered by PDFBox
+         */
+        public int getWidth(float dpi) {
+            return (int) Math.max(Math.floor(width * dpi / 72.0f), 1);
+        }
+
+        /**
+         * Get the height in pixels at a resolution.
+         * @param dpi the resolution in dots per inch
+         * @return the height in pixels, as rendered by PDFBox
+         */
+        public int getHeight(float dpi) {
+            return (int) Math.max(Math.floor(height * dpi / 72.0f), 1);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.giraone.imaging.pdf;
 
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.FormatNotSupportedException;
 import com.giraone.imaging.ThumbnailProvider;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
 
 /**
  * Interface for thumbnail generation operations on PDFs.
@@ -37,6 +44,154 @@ public interface PdfProvider extends ThumbnailProvider {
      */
     int countPages(File pdfFile) throws Exception;
 
+    /**
+     * Extract metadata information from a PDF document given as a byte buffer.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * Implementing classes should override this and read the buffer directly.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @return the document information containing title, author, subject, keywords, etc.
+     * @throws Exception on any error reading the PDF document
+     */
+    default PdfDocumentInformation getDocumentInformation(ByteBuffer pdfContent) throws Exception {
+        final Path tempFile = ThumbnailProvider.writeTempFile(pdfContent);
+        try {
+            return getDocumentInformation(tempFile.toFile());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Extract metadata information from a PDF document given as a byte array.
+     * @param pdfContent the content of the PDF file
+     * @return the document information containing title, author, subject, keywords, etc.
+     * @throws Exception on any error reading the PDF document
+     */
+    default PdfDocumentInformation getDocumentInformation(byte[] pdfContent) throws Exception {
+        return getDocumentInformation(ByteBuffer.wrap(pdfContent));
+    }
+
+    /**
+     * Extract metadata information from a PDF document given as an input stream.
+     * @param pdfContent the stream with the content of the PDF file - the stream is read to its end, but not closed
+     * @return the document information containing title, author, subject, keywords, etc.
+     * @throws Exception on any error reading the PDF document
+     */
+    default PdfDocumentInformation getDocumentInformation(InputStream pdfContent) throws Exception {
+        return getDocumentInformation(ByteBuffer.wrap(pdfContent.readAllBytes()));
+    }
+
+    /**
+     * Count the number of pages in a PDF document given as a byte buffer.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * Implementing classes should override this and read the buffer directly.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @return the number of pages in the PDF
+     * @throws Exception on any error reading the PDF document
+     */
+    default int countPages(ByteBuffer pdfContent) throws Exception {
+        final Path tempFile = ThumbnailProvider.writeTempFile(pdfContent);
+        try {
+            return countPages(tempFile.toFile());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Count the number of pages in a PDF document given as a byte array.
+     * @param pdfContent the content of the PDF file
+     * @return the number of pages in the PDF
+     * @throws Exception on any error reading the PDF document
+     */
+    default int countPages(byte[] pdfContent) throws Exception {
+        return countPages(ByteBuffer.wrap(pdfContent));
+    }
+
+    /**
+     * Count the number of pages in a PDF document given as an input stream.
+     * @param pdfContent the stream with the content of the PDF file - the stream is read to its end, but not closed
+     * @return the number of pages in the PDF
+     * @throws Exception on any error reading the PDF document
+     */
+    default int countPages(InputStream pdfContent) throws Exception {
+        return countPages(ByteBuffer.wrap(pdfContent.readAllBytes()));
+    }
+
+    /**
+     * Create a thumbnail for each page of a page range. The pages are rendered in parallel and each page is written
+     * to its command, as soon as it is rendered. The default implementation throws a {@link FormatNotSupportedException}.
+     * @param pdfFile the PDF file
+     * @param firstPage the index of the first page (0 = first page of the document)
+     * @param maxPages the maximal number of pages or {@link Integer#MAX_VALUE} for all pages from the first page on
+     * @param commandForPage the function returning the command (output, format, width, height and quality) for a page index
+     * @return the number of rendered pages
+     * @throws Exception on any error reading the PDF file, converting a page or writing to the output
+     */
+    default int createPageThumbnails(File pdfFile, int firstPage, int maxPages, IntFunction<ConversionCommand> commandForPage) throws Exception {
+        throw new FormatNotSupportedException("Page thumbnails are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Create a thumbnail for each page of a page range of a PDF document given as a byte buffer.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @param firstPage the index of the first page (0 = first page of the document)
+     * @param maxPages the maximal number of pages or {@link Integer#MAX_VALUE} for all pages from the first page on
+     * @param commandForPage the function returning the command (output, format, width, height and quality) for a page index
+     * @return the number of rendered pages
+     * @throws Exception on any error reading the PDF document, converting a page or writing to the output
+     */
+    default int createPageThumbnails(ByteBuffer pdfContent, int firstPage, int maxPages, IntFunction<ConversionCommand> commandForPage) throws Exception {
+        final Path tempFile = ThumbnailProvider.writeTempFile(pdfContent);
+        try {
+            return createPageThumbnails(tempFile.toFile(), firstPage, maxPages, commandForPage);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Create one contact sheet image with the pages of a page range in a grid. The pages are rendered in parallel
+     * directly into their tile of the sheet. The default implementation throws a {@link FormatNotSupportedException}.
+     * @param pdfFile the PDF file
+     * @param firstPage the index of the first page (0 = first page of the document)
+     * @param maxPages the maximal number of pages or {@link Integer#MAX_VALUE} for all pages from the first page on
+     * @param columns the number of columns of the grid
+     * @param tileSize the maximal width and height of a page in pixels
+     * @param conversionCommand the command with the definitions of the output (output, format and quality) - if the
+     *                          command has a dimension, the sheet is scaled to it
+     * @return the number of pages on the sheet
+     * @throws Exception on any error reading the PDF file, converting the pages or writing to the output
+     */
+    default int createContactSheet(File pdfFile, int firstPage, int maxPages, int columns, int tileSize,
+                                   ConversionCommand conversionCommand) throws Exception {
+        throw new FormatNotSupportedException("Contact sheets are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Create one contact sheet image with the pages of a page range of a PDF document given as a byte buffer.
+     * The default implementation writes the input to a temporary file, which is deleted afterward.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @param firstPage the index of the first page (0 = first page of the document)
+     * @param maxPages the maximal number of pages or {@link Integer#MAX_VALUE} for all pages from the first page on
+     * @param columns the number of columns of the grid
+     * @param tileSize the maximal width and height of a page in pixels
+     * @param conversionCommand the command with the definitions of the output (output, format and quality) - if the
+     *                          command has a dimension, the sheet is scaled to it
+     * @return the number of pages on the sheet
+     * @throws Exception on any error reading the PDF document, converting the pages or writing to the output
+     */
+    default int createContactSheet(ByteBuffer pdfContent, int firstPage, int maxPages, int columns, int tileSize,
+                                   ConversionCommand conversionCommand) throws Exception {
+        final Path tempFile = ThumbnailProvider.writeTempFile(pdfContent);
+        try {
+            return createContactSheet(tempFile.toFile(), firstPage, maxPages, columns, tileSize, conversionCommand);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
     /**
      * Create a PDF document from multiple image files.
      * Each image will be placed on a separate page.
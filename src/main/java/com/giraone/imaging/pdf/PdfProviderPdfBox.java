@@ -3,8 +3,11 @@ package com.giraone.imaging.pdf;
 import com.giraone.imaging.ConversionCommand;
 import com.giraone.imaging.FileInfo;
 import com.giraone.imaging.FormatNotSupportedException;
+import com.giraone.imaging.MemoryBudget;
+import com.giraone.imaging.MemoryMappedFiles;
 import com.giraone.imaging.java2.ProviderJava2D;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -13,18 +16,46 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 /**
  * Interface for imaging operation on PDFs.
  */
 public class PdfProviderPdfBox implements PdfProvider {
 
+    /**
+     * Maximal resolution used to render a page. Larger renditions are scaled up from this resolution.
+     */
+    public static final float MAX_RENDER_DPI = 600.0f;
+
+    /**
+     * Gap in pixels between the pages of a contact sheet.
+     */
+    public static final int CONTACT_SHEET_GAP = 8;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PdfProviderPdfBox.class);
+
+    private static final float RENDER_SCALE_EPSILON = 1.0e-4f;
+    // pages are rendered to TYPE_INT_RGB
+    private static final int BYTES_PER_RENDERED_PIXEL = 4;
+    private static final ConversionCommand[] NO_COMMANDS = new ConversionCommand[0];
+
     private static final PdfProviderPdfBox _THIS = new PdfProviderPdfBox();
 
     /**
@@ -37,11 +68,111 @@ public class PdfProviderPdfBox implements PdfProvider {
     }
 
     private final ProviderJava2D imagingProvider = new ProviderJava2D();
+    private long mappedInputThreshold = MemoryMappedFiles.DEFAULT_THRESHOLD;
+    private Executor renderExecutor = ForkJoinPool.commonPool();
+    private int renderParallelism = Runtime.getRuntime().availableProcessors();
+    private PdfStreamCachePolicy streamCachePolicy = new PdfStreamCachePolicy();
+    private boolean trailerReading = true;
 
     public PdfProviderPdfBox() {
         System.setProperty("sun.java2d.cmm", "sun.java2d.cmm.kcms.KcmsServiceProvider");
     }
 
+    /**
+     * Get the minimal size of PDF files, that are memory-mapped.
+     * @return the threshold in bytes or {@link MemoryMappedFiles#DISABLED}
+     */
+    public long getMappedInputThreshold() {
+        return mappedInputThreshold;
+    }
+
+    /**
+     * Define the minimal size of PDF files, that are memory-mapped and read by PDFBox directly from the mapping.
+     * The default is {@link MemoryMappedFiles#DEFAULT_THRESHOLD}.
+     * @param mappedInputThreshold the threshold in bytes or {@link MemoryMappedFiles#DISABLED} to read all files using PDFBox's buffered file access
+     */
+    public void setMappedInputThreshold(long mappedInputThreshold) {
+        this.mappedInputThreshold = mappedInputThreshold;
+    }
+
+    /**
+     * Get the executor used to render multiple pages in parallel.
+     * @return the render executor
+     */
+    public Executor getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * Define the executor used to render multiple pages in {@link #createPageThumbnails(File, int, int, IntFunction)}
+     * and {@link #createContactSheet(File, int, int, int, int, ConversionCommand)}. The default is the common fork join pool.
+     * @param renderExecutor the render executor
+     */
+    public void setRenderExecutor(Executor renderExecutor) {
+        this.renderExecutor = renderExecutor;
+    }
+
+    /**
+     * Get the imaging provider, that scales and encodes the rendered pages. It can be configured, e.g. using
+     * {@link ProviderJava2D#setForkJoinPool(ForkJoinPool)}.
+     * @return the imaging provider
+     */
+    public ProviderJava2D getImagingProvider() {
+        return imagingProvider;
+    }
+
+    /**
+     * Get the maximal number of pages rendered in parallel.
+     * @return the number of render workers
+     */
+    public int getRenderParallelism() {
+        return renderParallelism;
+    }
+
+    /**
+     * Define the maximal number of pages rendered in parallel. Each worker loads its own instance of the document,
+     * because PDFBox documents and renderers must not be shared by threads. The default is the number of processors.
+     * @param renderParallelism the number of render workers - 1 renders all pages in the calling thread
+     */
+    public void setRenderParallelism(int renderParallelism) {
+        this.renderParallelism = Math.max(1, renderParallelism);
+    }
+
+    /**
+     * Get the memory policy for the stream buffers of the loaded and created documents.
+     * @return the stream cache policy
+     */
+    public PdfStreamCachePolicy getStreamCachePolicy() {
+        return streamCachePolicy;
+    }
+
+    /**
+     * Define the memory policy for the stream buffers of the loaded and created documents: the maximal main memory
+     * per document, the directory of the scratch files and the memory budget shared by concurrent loads.
+     * @param streamCachePolicy the stream cache policy
+     */
+    public void setStreamCachePolicy(PdfStreamCachePolicy streamCachePolicy) {
+        this.streamCachePolicy = streamCachePolicy;
+    }
+
+    /**
+     * Check, whether the page count and the document information are read using the {@link PdfTrailerReader}.
+     * @return true, if the trailer reader is used first
+     */
+    public boolean isTrailerReading() {
+        return trailerReading;
+    }
+
+    /**
+     * Define, whether {@link #countPages(File)} and {@link #getDocumentInformation(File)} read only the trailer,
+     * the cross-reference sections and the needed objects using the {@link PdfTrailerReader}. Encrypted and damaged
+     * documents are loaded using PDFBox. The default is true.
+     * @param trailerReading true to use the trailer reader first, false to always load the document using PDFBox
+     */
+    public void setTrailerReading(boolean trailerReading) {
+        this.trailerReading = trailerReading;
+    }
+
     /**
      * Create multiple thumbnail images (e.g. different sizes) for a given file.
      * This implementation reads the input only once!
@@ -50,18 +181,259 @@ public class PdfProviderPdfBox implements PdfProvider {
      * @throws Exception on any error opening the file, converting the file or writing to the output.
      */
     public void createThumbnails(File inputFile, ConversionCommand[] conversionCommands) throws Exception {
-        try (final PDDocument document = Loader.loadPDF(inputFile)) {
-            PDFRenderer renderer = new PDFRenderer(document);
-            // Page 1, do not scale DPIs and use RGB
-            final BufferedImage image = renderer.renderImage(0, 1.0f, ImageType.RGB);
+        try (final PdfHandle handle = open(inputFile)) {
+            handle.createThumbnails(conversionCommands);
+        }
+    }
+
+    /**
+     * Create multiple thumbnail images (e.g. different sizes) for a PDF document given as a byte buffer.
+     * The buffer is read directly by PDFBox - no temporary file is written.
+     * @param input the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error reading the input, converting it or writing to the output.
+     */
+    @Override
+    public void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+        try (final PdfHandle handle = open(input)) {
+            handle.createThumbnails(conversionCommands);
+        }
+    }
+
+    /**
+     * Load a PDF file once for multiple operations: page count, document information, page sizes and thumbnails.
+     * Large files are memory-mapped.
+     * @param pdfFile the PDF file
+     * @return the handle, that must be closed after use
+     * @throws IOException on any error reading or parsing the file
+     */
+    public PdfHandle open(File pdfFile) throws IOException {
+        return new PdfHandle(this, loadDocument(pdfFile));
+    }
+
+    /**
+     * Load a PDF document given as a byte buffer once for multiple operations.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @return the handle, that must be closed after use
+     * @throws IOException on any error parsing the document
+     */
+    public PdfHandle open(ByteBuffer pdfContent) throws IOException {
+        return new PdfHandle(this, Loader.loadPDF(new RandomAccessReadBuffer(pdfContent.slice()), streamCachePolicy));
+    }
+
+    /**
+     * Render a page once at the resolution of the largest rendition and scale the smaller ones from it.
+     * The estimated memory of the page and its renditions is reserved from the budget of the imaging provider.
+     */
+    void renderAndWritePage(PDFRenderer renderer, PDPage page, int pageIndex, ConversionCommand[] conversionCommands)
+        throws Exception {
+        final float scale = getRenderScale(page, conversionCommands);
+        try (MemoryBudget.Reservation ignored = reserveRenderMemory(page, scale, conversionCommands)) {
+            final BufferedImage image = renderer.renderImage(pageIndex, scale, ImageType.RGB);
+            LOGGER.debug("PdfProviderPdfBox: page {} rendered with scale {} to {}x{}", pageIndex, scale, image.getWidth(), image.getHeight());
             for (ConversionCommand conversionCommand: conversionCommands) {
-                try (final FileOutputStream outputStream = new FileOutputStream(conversionCommand.getOutputFile())) {
+                try (final OutputStream outputStream = conversionCommand.openOutputStream()) {
                      imagingProvider.convertAndWriteImage(image, outputStream, conversionCommand);
                 }
             }
         }
     }
 
+    /**
+     * Reserve the estimated memory of rendering a page and converting it from the budget of the imaging provider.
+     * @param page the page
+     * @param scale the render scale
+     * @param conversionCommands the commands applied on the rendered page
+     * @return the reservation, that must be closed after the page is converted
+     * @throws com.giraone.imaging.MemoryBudgetExceededException if the memory cannot be reserved
+     */
+    private MemoryBudget.Reservation reserveRenderMemory(PDPage page, float scale, ConversionCommand[] conversionCommands)
+        throws IOException {
+        final Dimension size = getRenderSize(page, scale);
+        return imagingProvider.getMemoryBudget().reserve(
+            ProviderJava2D.estimatePeakBytes(size.width, size.height, 1, BYTES_PER_RENDERED_PIXEL, conversionCommands));
+    }
+
+    @Override
+    public int createPageThumbnails(File pdfFile, int firstPage, int maxPages, IntFunction<ConversionCommand> commandForPage)
+        throws Exception {
+        return createPageThumbnails(getDocumentLoader(pdfFile), firstPage, maxPages, commandForPage);
+    }
+
+    @Override
+    public int createPageThumbnails(ByteBuffer pdfContent, int firstPage, int maxPages, IntFunction<ConversionCommand> commandForPage)
+        throws Exception {
+        return createPageThumbnails(getDocumentLoader(pdfContent), firstPage, maxPages, commandForPage);
+    }
+
+    private int createPageThumbnails(DocumentLoader documentLoader, int firstPage, int maxPages,
+                                     IntFunction<ConversionCommand> commandForPage) throws Exception {
+        return renderPages(documentLoader, firstPage, maxPages, pageCount -> (renderer, page, pageIndex) ->
+            renderAndWritePage(renderer, page, pageIndex, new ConversionCommand[] { commandForPage.apply(pageIndex) }));
+    }
+
+    @Override
+    public int createContactSheet(File pdfFile, int firstPage, int maxPages, int columns, int tileSize,
+                                  ConversionCommand conversionCommand) throws Exception {
+        return createContactSheet(getDocumentLoader(pdfFile), firstPage, maxPages, columns, tileSize, conversionCommand);
+    }
+
+    @Override
+    public int createContactSheet(ByteBuffer pdfContent, int firstPage, int maxPages, int columns, int tileSize,
+                                  ConversionCommand conversionCommand) throws Exception {
+        return createContactSheet(getDocumentLoader(pdfContent), firstPage, maxPages, columns, tileSize, conversionCommand);
+    }
+
+    private int createContactSheet(DocumentLoader documentLoader, int firstPage, int maxPages, int columns, int tileSize,
+                                   ConversionCommand conversionCommand) throws Exception {
+        if (columns < 1 || tileSize < 1) {
+            throw new IllegalArgumentException("Invalid contact sheet grid: " + columns + " columns of size " + tileSize);
+        }
+        final ContactSheet[] sheet = new ContactSheet[1];
+        final int pageCount = renderPages(documentLoader, firstPage, maxPages, count -> {
+            sheet[0] = new ContactSheet(firstPage, count, columns, tileSize);
+            return (renderer, page, pageIndex) -> {
+                final float scale = getRenderScale(page, sheet[0].tileCommand);
+                try (MemoryBudget.Reservation ignored = reserveRenderMemory(page, scale, NO_COMMANDS)) {
+                    sheet[0].drawPage(renderer, pageIndex, scale);
+                }
+            };
+        });
+        if (pageCount > 0) {
+            try (final OutputStream outputStream = conversionCommand.openOutputStream()) {
+                imagingProvider.convertAndWriteImage(sheet[0].image, outputStream, conversionCommand);
+            }
+        }
+        return pageCount;
+    }
+
+    /**
+     * Render the pages of a page range in parallel. Each worker loads its own document instance and takes the next
+     * page index from a shared counter, so the pages are started in order and at most one rendered page per worker is
+     * held in memory. The page tasks reserve the memory of their page, so that the budget of the imaging provider
+     * limits the number of pages rendered at the same time. The calling thread is the first worker. If a page fails, the other workers stop after their
+     * current page.
+     * @param documentLoader the loader of the document instances
+     * @param firstPage the index of the first page
+     * @param maxPages the maximal number of pages
+     * @param taskForPageCount creates the task rendering one page, when the number of pages in the range is known
+     * @return the number of rendered pages
+     * @throws Exception the first error of all workers
+     */
+    private int renderPages(DocumentLoader documentLoader, int firstPage, int maxPages, IntFunction<PageTask> taskForPageCount)
+        throws Exception {
+        if (firstPage < 0 || maxPages < 0) {
+            throw new IllegalArgumentException("Invalid page range: " + maxPages + " pages from page " + firstPage);
+        }
+        final PDDocument firstDocument = documentLoader.load();
+        final int pageCount;
+        final PageTask pageTask;
+        try {
+            pageCount = Math.max(0, Math.min(firstDocument.getNumberOfPages() - firstPage, maxPages));
+            pageTask = taskForPageCount.apply(pageCount);
+        } catch (RuntimeException e) {
+            firstDocument.close();
+            throw e;
+        }
+        final int endPage = firstPage + pageCount;
+        final AtomicInteger nextPage = new AtomicInteger(firstPage);
+        final int workers = Math.min(renderParallelism, pageCount);
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i < workers; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try (PDDocument document = documentLoader.load()) {
+                    renderPages(document, nextPage, endPage, pageTask);
+                } catch (Exception e) {
+                    nextPage.set(endPage);
+                    throw new CompletionException(e);
+                }
+            }, renderExecutor));
+        }
+        Exception failure = null;
+        try (firstDocument) {
+            renderPages(firstDocument, nextPage, endPage, pageTask);
+        } catch (Exception e) {
+            nextPage.set(endPage);
+            failure = e;
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (failure == null) {
+                failure = e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return pageCount;
+    }
+
+    private static void renderPages(PDDocument document, AtomicInteger nextPage, int endPage, PageTask pageTask) throws Exception {
+        final PDFRenderer renderer = new PDFRenderer(document);
+        int pageIndex;
+        while ((pageIndex = nextPage.getAndIncrement()) < endPage) {
+            pageTask.render(renderer, document.getPage(pageIndex), pageIndex);
+        }
+    }
+
+    private DocumentLoader getDocumentLoader(File pdfFile) throws IOException {
+        final ByteBuffer mapping = MemoryMappedFiles.mapIfLarge(pdfFile, mappedInputThreshold);
+        if (mapping != null) {
+            // each document instance reads the shared mapping with its own position
+            return () -> Loader.loadPDF(new RandomAccessReadBuffer(mapping.duplicate()), streamCachePolicy);
+        }
+        return () -> Loader.loadPDF(pdfFile, streamCachePolicy);
+    }
+
+    private DocumentLoader getDocumentLoader(ByteBuffer pdfContent) {
+        return () -> Loader.loadPDF(new RandomAccessReadBuffer(pdfContent.slice()), streamCachePolicy);
+    }
+
+    /**
+     * Calculate the scale for rendering a page, so that the largest rendition of the commands is rasterized at exactly
+     * its target resolution. A scale of 1 is 72 DPI.
+     * @param page the page
+     * @param conversionCommands the commands - commands without a dimension need the page size at 72 DPI
+     * @return the scale, at most {@link #MAX_RENDER_DPI} / 72
+     */
+    static float getRenderScale(PDPage page, ConversionCommand[] conversionCommands) {
+        final PDRectangle cropBox = page.getCropBox();
+        final boolean rotated = page.getRotation() % 180 != 0;
+        final float pageWidth = rotated ? cropBox.getHeight() : cropBox.getWidth();
+        final float pageHeight = rotated ? cropBox.getWidth() : cropBox.getHeight();
+        float scale = 0.0f;
+        for (ConversionCommand conversionCommand : conversionCommands) {
+            final Dimension dimension = conversionCommand.getDimension();
+            final float commandScale;
+            if (dimension == null) {
+                commandScale = 1.0f;
+            } else if (conversionCommand.isKeepAspectRatio()) {
+                commandScale = Math.min(dimension.width / pageWidth, dimension.height / pageHeight);
+            } else {
+                // both sides must be at least as large as the target
+                commandScale = Math.max(dimension.width / pageWidth, dimension.height / pageHeight);
+            }
+            scale = Math.max(scale, commandScale);
+        }
+        // the renderer truncates the pixel size, so the scale is rounded up a bit to reach the target size exactly
+        return Math.min(scale * (1.0f + RENDER_SCALE_EPSILON), MAX_RENDER_DPI / 72.0f);
+    }
+
+    /**
+     * Calculate the pixel size of a rendered page like {@link PDFRenderer#renderImage(int, float)}.
+     * @param page the page
+     * @param scale the render scale
+     * @return the width and height in pixels
+     */
+    static Dimension getRenderSize(PDPage page, float scale) {
+        final PDRectangle cropBox = page.getCropBox();
+        final boolean rotated = page.getRotation() % 180 != 0;
+        final int width = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+        final int height = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+        return rotated ? new Dimension(height, width) : new Dimension(width, height);
+    }
+
     /**
      * Create a thumbnail image for a given file.
      * @param inputFile Input file.
@@ -76,24 +448,65 @@ public class PdfProviderPdfBox implements PdfProvider {
     @Override
     public int countPages(File pdfFile) throws Exception {
 
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            return document.getPages().getCount();
+        final Integer pageCount = trailerReading ? PdfTrailerReader.readPageCount(pdfFile) : null;
+        if (pageCount != null) {
+            return pageCount;
+        }
+        try (PdfHandle handle = open(pdfFile)) {
+            return handle.getPageCount();
         }
     }
 
     @Override
     public PdfDocumentInformation getDocumentInformation(File pdfFile) throws Exception {
 
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            return PdfDocumentInformation.build(document.getDocumentInformation());
+        final PdfDocumentInformation documentInformation = trailerReading
+            ? PdfTrailerReader.readDocumentInformation(pdfFile) : null;
+        if (documentInformation != null) {
+            return documentInformation;
+        }
+        try (PdfHandle handle = open(pdfFile)) {
+            return handle.getDocumentInformation();
+        }
+    }
+
+    @Override
+    public int countPages(ByteBuffer pdfContent) throws Exception {
+
+        final Integer pageCount = trailerReading ? PdfTrailerReader.readPageCount(pdfContent) : null;
+        if (pageCount != null) {
+            return pageCount;
+        }
+        try (PdfHandle handle = open(pdfContent)) {
+            return handle.getPageCount();
+        }
+    }
+
+    @Override
+    public PdfDocumentInformation getDocumentInformation(ByteBuffer pdfContent) throws Exception {
+
+        final PdfDocumentInformation documentInformation = trailerReading
+            ? PdfTrailerReader.readDocumentInformation(pdfContent) : null;
+        if (documentInformation != null) {
+            return documentInformation;
+        }
+        try (PdfHandle handle = open(pdfContent)) {
+            return handle.getDocumentInformation();
         }
     }
 
+    private PDDocument loadDocument(File pdfFile) throws IOException {
+        final ByteBuffer mapping = MemoryMappedFiles.mapIfLarge(pdfFile, mappedInputThreshold);
+        return mapping != null
+            ? Loader.loadPDF(new RandomAccessReadBuffer(mapping), streamCachePolicy)
+            : Loader.loadPDF(pdfFile, streamCachePolicy);
+    }
+
     @Override
     public void createPdfFromImages(File[] imageFiles, PdfDocumentInformation documentInformation,
                                     File outputPdfFile) throws Exception {
 
-        try (PDDocument document = new PDDocument()) {
+        try (PDDocument document = new PDDocument(streamCachePolicy)) {
             PDDocumentInformation pdDocumentInformation = documentInformation.build();
             document.setDocumentInformation(pdDocumentInformation);
             for (File imageFile : imageFiles) {
@@ -113,7 +526,7 @@ public class PdfProviderPdfBox implements PdfProvider {
     public void createPdfFromImages(byte[][] imageFileByteArrays, PdfDocumentInformation documentInformation,
                                     int width, int height, OutputStream outputStream) throws Exception {
 
-        try (PDDocument document = new PDDocument()) {
+        try (PDDocument document = new PDDocument(streamCachePolicy)) {
             PDDocumentInformation pdDocumentInformation = documentInformation.build();
             document.setDocumentInformation(pdDocumentInformation);
             int imageNumber = 0; // only for error messages
@@ -134,4 +547,72 @@ public class PdfProviderPdfBox implements PdfProvider {
         final FileInfo imageInfo = imagingProvider.fetchFileInfo(imageFile);
         return new PDRectangle(0, 0, imageInfo.getWidth(), imageInfo.getHeight());
     }
-}
\ No newline at end of file
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Loads a new instance of a document.
+     */
+    @FunctionalInterface
+    private interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
+
+    /**
+     * Renders one page of a page range.
+     */
+    @FunctionalInterface
+    private interface PageTask {
+        void render(PDFRenderer renderer, PDPage page, int pageIndex) throws Exception;
+    }
+
+    /**
+     * Grid of pages with a gap around each tile on a white background.
+     */
+    private static final class ContactSheet {
+
+        private final BufferedImage image;
+        private final int firstPage;
+        private final int columns;
+        private final int tileSize;
+        private final ConversionCommand[] tileCommand;
+
+        ContactSheet(int firstPage, int pageCount, int columns, int tileSize) {
+            final int usedColumns = Math.max(1, Math.min(columns, pageCount));
+            final int rows = Math.max(1, (pageCount + columns - 1) / columns);
+            this.image = new BufferedImage(usedColumns * (tileSize + CONTACT_SHEET_GAP) + CONTACT_SHEET_GAP,
+                rows * (tileSize + CONTACT_SHEET_GAP) + CONTACT_SHEET_GAP, BufferedImage.TYPE_INT_RGB);
+            this.firstPage = firstPage;
+            this.columns = columns;
+            this.tileSize = tileSize;
+            final ConversionCommand command = new ConversionCommand();
+            command.setDimension(new Dimension(tileSize, tileSize));
+            this.tileCommand = new ConversionCommand[] { command };
+            final Graphics2D graphics2D = image.createGraphics();
+            try {
+                graphics2D.setColor(Color.WHITE);
+                graphics2D.fillRect(0, 0, image.getWidth(), image.getHeight());
+            } finally {
+                graphics2D.dispose();
+            }
+        }
+
+        void drawPage(PDFRenderer renderer, int pageIndex, float scale) throws IOException {
+            final BufferedImage pageImage = renderer.renderImage(pageIndex, scale, ImageType.RGB);
+            final int tile = pageIndex - firstPage;
+            final int x = CONTACT_SHEET_GAP + (tile % columns) * (tileSize + CONTACT_SHEET_GAP)
+                + Math.max(0, tileSize - pageImage.getWidth()) / 2;
+            final int y = CONTACT_SHEET_GAP + (tile / columns) * (tileSize + CONTACT_SHEET_GAP)
+                + Math.max(0, tileSize - pageImage.getHeight()) / 2;
+            // the tiles are disjoint, but the sheet's raster is not guarded against concurrent writes
+            synchronized (image) {
+                final Graphics2D graphics2D = image.createGraphics();
+                try {
+                    graphics2D.drawImage(pageImage, x, y, null);
+                } finally {
+                    graphics2D.dispose();
+                }
+            }
+        }
+    }
+}
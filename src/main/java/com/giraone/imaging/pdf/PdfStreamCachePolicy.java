@@ -0,0 +1,156 @@
+package com.giraone.imaging.pdf;
+
+import com.giraone.imaging.MemoryBudget;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Memory policy for the stream buffers of loaded and created PDF documents. Each document buffers up to
+ * {@link #getMaxMainMemoryBytes()} in main memory and spills the rest to a scratch file. The main memory of all open
+ * documents is reserved from a shared {@link MemoryBudget}. When the budget is exhausted, further documents use
+ * scratch files only, so that huge documents degrade to disk I/O instead of exhausting the heap.
+ * <p>
+ * The maximum is reserved, when the document is loaded, and released, when it is closed, because PDFBox does not
+ * report the growth of its buffers. Therefore, the default budget {@link #getSharedBudget()} is separate from the
+ * global budget of the image conversions, which would otherwise wait for memory, that is reserved but not used.
+ * </p>
+ */
+public class PdfStreamCachePolicy implements RandomAccessStreamCache.StreamCacheCreateFunction {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PdfStreamCachePolicy.class);
+
+    /** The default maximal main memory per document. */
+    public static final long DEFAULT_MAX_MAIN_MEMORY_BYTES = 64L * 1024L * 1024L;
+
+    private static final MemoryBudget SHARED_BUDGET = new MemoryBudget(Runtime.getRuntime().maxMemory() / 8);
+
+    private volatile long maxMainMemoryBytes = DEFAULT_MAX_MAIN_MEMORY_BYTES;
+    private volatile File scratchDirectory;
+    private volatile MemoryBudget memoryBudget = SHARED_BUDGET;
+
+    /**
+     * Get the budget shared by the PDF documents of all providers. Its default capacity is an eighth of the maximal
+     * heap size.
+     * @return the shared PDF budget
+     */
+    public static MemoryBudget getSharedBudget() {
+        return SHARED_BUDGET;
+    }
+
+    /**
+     * Get the maximal main memory buffered per document.
+     * @return the maximal main memory in bytes
+     */
+    public long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+    /**
+     * Define the maximal main memory buffered per document. The default is {@link #DEFAULT_MAX_MAIN_MEMORY_BYTES}.
+     * @param maxMainMemoryBytes the maximal main memory in bytes - 0 uses scratch files only
+     */
+    public void setMaxMainMemoryBytes(long maxMainMemoryBytes) {
+        this.maxMainMemoryBytes = Math.max(0L, maxMainMemoryBytes);
+    }
+
+    /**
+     * Get the directory of the scratch files.
+     * @return the scratch directory or null for the default temporary directory
+     */
+    public File getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Define the directory of the scratch files. The default is the directory of the system property "java.io.tmpdir".
+     * @param scratchDirectory the scratch directory or null for the default temporary directory
+     */
+    public void setScratchDirectory(File scratchDirectory) {
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    /**
+     * Get the budget, from which the main memory of the documents is reserved.
+     * @return the memory budget or null, if the main memory is not capped globally
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Define the budget, from which the main memory of the documents is reserved. The default is
+     * {@link #getSharedBudget()}. The reservations never wait.
+     * @param memoryBudget the memory budget or null, to cap the main memory per document only
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Create the stream cache of one document. Called by PDFBox, when a document is loaded or created.
+     * @return the stream cache, that releases its main memory reservation when it is closed
+     * @throws IOException on any error creating the scratch file
+     */
+    @Override
+    public RandomAccessStreamCache create() throws IOException {
+
+        final long maxBytes = maxMainMemoryBytes;
+        final MemoryBudget budget = memoryBudget;
+        MemoryBudget.Reservation reservation = null;
+        long mainMemoryBytes = maxBytes;
+        if (maxBytes > 0L && budget != null) {
+            reservation = budget.tryReserve(maxBytes);
+            mainMemoryBytes = reservation != null ? reservation.getBytes() : 0L;
+            if (reservation == null) {
+                LOGGER.info("PdfStreamCachePolicy: memory budget exhausted, using scratch file only");
+            }
+        }
+        final MemoryUsageSetting setting = mainMemoryBytes > 0L
+            ? MemoryUsageSetting.setupMixed(mainMemoryBytes)
+            : MemoryUsageSetting.setupTempFileOnly();
+        setting.setTempDir(scratchDirectory);
+        final RandomAccessStreamCache cache;
+        try {
+            cache = setting.streamCache.create();
+        } catch (IOException | RuntimeException e) {
+            if (reservation != null) {
+                reservation.close();
+            }
+            throw e;
+        }
+        return reservation != null ? new ReservedStreamCache(cache, reservation) : cache;
+    }
+
+    // ----------------------------------------------------------------------------
+
+    private static final class ReservedStreamCache implements RandomAccessStreamCache {
+
+        private final RandomAccessStreamCache cache;
+        private final MemoryBudget.Reservation reservation;
+
+        ReservedStreamCache(RandomAccessStreamCache cache, MemoryBudget.Reservation reservation) {
+            this.cache = cache;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public RandomAccess createBuffer() throws IOException {
+            return cache.createBuffer();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                cache.close();
+            } finally {
+                reservation.close();
+            }
+        }
+    }
+}
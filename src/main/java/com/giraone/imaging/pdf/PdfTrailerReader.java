@@ -0,0 +1,1030 @@
+package com.giraone.imaging.pdf;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read the page count and the document information of a PDF without building the PDFBox object model.
+ * Only the trailer, the cross-reference sections and the objects on the path to {@code /Root /Pages /Count} and
+ * {@code /Info} are read, so the latency does not depend on the size of the document.
+ * Cross-reference tables, cross-reference streams, object streams and incremental updates are supported.
+ * <p>
+ * Encrypted and damaged documents are not read. In these cases null is returned and the caller falls back to PDFBox,
+ * which can repair damaged documents.
+ * </p>
+ */
+public class PdfTrailerReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PdfTrailerReader.class);
+
+    private static final int TAIL_BYTES = 4096;
+    private static final int BLOCK_BYTES = 8192;
+    private static final int XREF_ENTRY_BYTES = 20;
+    private static final int MAX_XREF_SECTIONS = 256;
+    private static final int MAX_RESOLVE_DEPTH = 32;
+    private static final int MAX_NESTING_DEPTH = 64;
+    private static final int MAX_STREAM_BYTES = 16 * 1024 * 1024;
+    private static final byte[] STARTXREF = "startxref".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] INFO_KEYS = {
+        "Title", "Author", "Subject", "Keywords", "Creator", "Producer", "CreationDate", "ModDate"
+    };
+
+    private final Bytes source;
+    private final List<XrefSection> sections = new ArrayList<>();
+    private final Map<Integer, ObjectStream> objectStreams = new HashMap<>();
+    private final Set<Integer> loadingObjectStreams = new HashSet<>();
+    private Map<String, Object> trailer;
+
+    private PdfTrailerReader(Bytes source) {
+        this.source = source;
+    }
+
+    /**
+     * Read the number of pages of a PDF file.
+     * @param pdfFile the PDF file
+     * @return the number of pages or null, if the document is encrypted or cannot be read without repair
+     */
+    public static Integer readPageCount(File pdfFile) {
+        try (FileChannel channel = FileChannel.open(pdfFile.toPath(), StandardOpenOption.READ)) {
+            return readPageCount(new ChannelBytes(channel), pdfFile.getName());
+        } catch (IOException e) {
+            LOGGER.debug("PdfTrailerReader: cannot open {}: {}", pdfFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the number of pages of a PDF document given as a byte buffer.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @return the number of pages or null, if the document is encrypted or cannot be read without repair
+     */
+    public static Integer readPageCount(ByteBuffer pdfContent) {
+        return readPageCount(new BufferBytes(pdfContent.slice()), "buffer");
+    }
+
+    /**
+     * Read the document information (title, author, subject, keywords, etc.) of a PDF file.
+     * @param pdfFile the PDF file
+     * @return the document information or null, if the document is encrypted or cannot be read without repair
+     */
+    public static PdfDocumentInformation readDocumentInformation(File pdfFile) {
+        try (FileChannel channel = FileChannel.open(pdfFile.toPath(), StandardOpenOption.READ)) {
+            return readDocumentInformation(new ChannelBytes(channel), pdfFile.getName());
+        } catch (IOException e) {
+            LOGGER.debug("PdfTrailerReader: cannot open {}: {}", pdfFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the document information (title, author, subject, keywords, etc.) of a PDF document given as a byte buffer.
+     * @param pdfContent the content of the PDF file from its position to its limit - the buffer's position is not changed
+     * @return the document information or null, if the document is encrypted or cannot be read without repair
+     */
+    public static PdfDocumentInformation readDocumentInformation(ByteBuffer pdfContent) {
+        return readDocumentInformation(new BufferBytes(pdfContent.slice()), "buffer");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static Integer readPageCount(Bytes source, String name) {
+        try {
+            final PdfTrailerReader reader = new PdfTrailerReader(source);
+            return reader.readTrailer() ? reader.getPageCount() : null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("PdfTrailerReader: cannot read page count of {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static PdfDocumentInformation readDocumentInformation(Bytes source, String name) {
+        try {
+            final PdfTrailerReader reader = new PdfTrailerReader(source);
+            return reader.readTrailer() ? reader.getDocumentInformation() : null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("PdfTrailerReader: cannot read document information of {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read all cross-reference sections starting with the last one.
+     * @return false, if the document is encrypted
+     */
+    private boolean readTrailer() throws IOException {
+
+        long offset = findStartXref();
+        final Set<Long> visited = new HashSet<>();
+        while (offset >= 0L) {
+            if (!visited.add(offset) || visited.size() > MAX_XREF_SECTIONS) {
+                throw new IOException("Cyclic or too many cross-reference sections");
+            }
+            final Parser parser = new Parser(source, offset);
+            final Map<String, Object> sectionTrailer;
+            if (parser.skipKeyword("xref")) {
+                final XrefTable table = readXrefTable(parser);
+                sectionTrailer = table.trailer;
+                // hybrid files: objects in object streams are free or missing in the table and are listed in the
+                // cross-reference stream of the same section
+                if (sectionTrailer.get("XRefStm") instanceof Long xrefStmOffset) {
+                    table.hiddenObjects = readXrefStream(xrefStmOffset);
+                }
+                sections.add(table);
+            } else {
+                final XrefStream stream = readXrefStream(offset);
+                sectionTrailer = stream.dictionary;
+                sections.add(stream);
+            }
+            if (trailer == null) {
+                trailer = sectionTrailer;
+            }
+            offset = sectionTrailer.get("Prev") instanceof Long prev ? prev : -1L;
+        }
+        return !trailer.containsKey("Encrypt");
+    }
+
+    private long findStartXref() throws IOException {
+
+        final long length = source.length();
+        final long start = Math.max(0L, length - TAIL_BYTES);
+        for (long position = length - STARTXREF.length; position >= start; position--) {
+            if (matches(source, position, STARTXREF)) {
+                final Object offset = new Parser(source, position + STARTXREF.length).parseObject();
+                if (offset instanceof Long value && value > 0L && value < length) {
+                    return value;
+                }
+                break;
+            }
+        }
+        throw new IOException("No valid startxref in the last " + TAIL_BYTES + " bytes");
+    }
+
+    private XrefTable readXrefTable(Parser parser) throws IOException {
+
+        final List<long[]> subsections = new ArrayList<>();
+        while (!parser.skipKeyword("trailer")) {
+            final long first = parser.parseInteger();
+            final long count = parser.parseInteger();
+            parser.skipWhitespace();
+            subsections.add(new long[] { first, count, parser.position });
+            parser.position += count * XREF_ENTRY_BYTES;
+        }
+        return new XrefTable(subsections, asDictionary(parser.parseObject()));
+    }
+
+    private XrefStream readXrefStream(long offset) throws IOException {
+
+        final Object object = new Parser(source, offset).parseIndirectObject(-1);
+        if (!(object instanceof Stream stream) || !isName(stream.dictionary.get("Type"), "XRef")) {
+            throw new IOException("No cross-reference stream at " + offset);
+        }
+        final List<?> widths = asArray(stream.dictionary.get("W"));
+        final int[] w = new int[3];
+        for (int i = 0; i < 3; i++) {
+            w[i] = (int) asInteger(widths.get(i));
+        }
+        final List<Object> index = stream.dictionary.containsKey("Index")
+            ? new ArrayList<>(asArray(stream.dictionary.get("Index")))
+            : List.of(0L, stream.dictionary.get("Size"));
+        final long[] ranges = new long[index.size()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = asInteger(index.get(i));
+        }
+        return new XrefStream(stream.dictionary, readStreamData(stream), w, ranges);
+    }
+
+    private int getPageCount() throws IOException {
+
+        final Map<String, Object> catalog = asDictionary(resolve(trailer.get("Root")));
+        final Map<String, Object> pages = asDictionary(resolve(catalog.get("Pages")));
+        final long count = asInteger(resolve(pages.get("Count")));
+        if (count < 0L || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid page count " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Read the document information.
+     * @return the document information or null, if the trailer references an information dictionary, that cannot be read
+     */
+    private PdfDocumentInformation getDocumentInformation() throws IOException {
+
+        final COSDictionary cosDictionary = new COSDictionary();
+        final Object infoReference = trailer.get("Info");
+        final Object info = resolve(infoReference);
+        if (infoReference != null && !(info instanceof Map<?, ?>)) {
+            LOGGER.debug("PdfTrailerReader: information dictionary {} not found", infoReference);
+            return null;
+        }
+        if (info instanceof Map<?, ?> infoDictionary) {
+            for (String key : INFO_KEYS) {
+                if (resolve(infoDictionary.get(key)) instanceof byte[] value) {
+                    cosDictionary.setItem(COSName.getPDFName(key), new COSString(value));
+                }
+            }
+        }
+        return PdfDocumentInformation.build(new PDDocumentInformation(cosDictionary));
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private Object resolve(Object object) throws IOException {
+
+        int depth = 0;
+        while (object instanceof Ref ref) {
+            if (++depth > MAX_RESOLVE_DEPTH) {
+                throw new IOException("Too many indirections resolving " + ref);
+            }
+            object = loadObject(ref.number);
+        }
+        return object;
+    }
+
+    private Object loadObject(int number) throws IOException {
+
+        final long[] entry = lookup(number);
+        if (entry == null || entry[0] == 0L) {
+            // missing or free entry: the object was deleted
+            return null;
+        }
+        if (entry[0] == 1L) {
+            return new Parser(source, entry[1]).parseIndirectObject(number);
+        }
+        return getObjectStream((int) entry[1]).getObject(number, (int) entry[2]);
+    }
+
+    private long[] lookup(int number) throws IOException {
+
+        for (XrefSection section : sections) {
+            final long[] entry = section.lookup(number);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private ObjectStream getObjectStream(int number) throws IOException {
+
+        ObjectStream objectStream = objectStreams.get(number);
+        if (objectStream == null) {
+            if (!loadingObjectStreams.add(number)) {
+                throw new IOException("Cyclic reference to object stream " + number);
+            }
+            try {
+                // object streams must not be stored in object streams
+                final long[] entry = lookup(number);
+                if (entry == null || entry[0] != 1L) {
+                    throw new IOException("Object stream " + number + " is not stored at a file offset");
+                }
+                if (!(new Parser(source, entry[1]).parseIndirectObject(number) instanceof Stream stream)) {
+                    throw new IOException("Object " + number + " is not an object stream");
+                }
+                objectStream = new ObjectStream(readStreamData(stream), (int) asInteger(stream.dictionary.get("N")),
+                    (int) asInteger(stream.dictionary.get("First")));
+                objectStreams.put(number, objectStream);
+            } finally {
+                loadingObjectStreams.remove(number);
+            }
+        }
+        return objectStream;
+    }
+
+    private byte[] readStreamData(Stream stream) throws IOException {
+
+        final long length = asInteger(resolve(stream.dictionary.get("Length")));
+        if (length < 0L || length > MAX_STREAM_BYTES || stream.dataStart + length > source.length()) {
+            throw new IOException("Invalid stream length " + length);
+        }
+        final byte[] data = new byte[(int) length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) source.at(stream.dataStart + i);
+        }
+
+        Object filter = stream.dictionary.get("Filter");
+        Object decodeParms = stream.dictionary.get("DecodeParms");
+        if (filter instanceof List<?> filters) {
+            if (filters.size() > 1) {
+                throw new IOException("Unsupported filter chain " + filters);
+            }
+            filter = filters.isEmpty() ? null : filters.get(0);
+            decodeParms = decodeParms instanceof List<?> parms && !parms.isEmpty() ? parms.get(0) : null;
+        }
+        if (filter == null) {
+            return data;
+        }
+        if (!isName(filter, "FlateDecode")) {
+            throw new IOException("Unsupported filter " + filter);
+        }
+        final byte[] inflated = inflate(data);
+        return decodeParms instanceof Map<?, ?> parms ? unpredict(inflated, parms) : inflated;
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[BLOCK_BYTES];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // truncated streams are accepted like PDFBox does
+                    break;
+                }
+                out.write(buffer, 0, count);
+                if (out.size() > MAX_STREAM_BYTES) {
+                    throw new IOException("Decoded stream exceeds " + MAX_STREAM_BYTES + " bytes");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid flate stream", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reverse the PNG predictors (10 - 15) used by cross-reference and object streams.
+     */
+    private static byte[] unpredict(byte[] data, Map<?, ?> parms) throws IOException {
+
+        final int predictor = parms.get("Predictor") instanceof Long value ? value.intValue() : 1;
+        if (predictor == 1) {
+            return data;
+        }
+        if (predictor < 10) {
+            throw new IOException("Unsupported predictor " + predictor);
+        }
+        final int colors = parms.get("Colors") instanceof Long value ? value.intValue() : 1;
+        final int bits = parms.get("BitsPerComponent") instanceof Long value ? value.intValue() : 8;
+        final int columns = parms.get("Columns") instanceof Long value ? value.intValue() : 1;
+        final int bytesPerPixel = Math.max(1, (colors * bits + 7) / 8);
+        final int rowBytes = (columns * colors * bits + 7) / 8;
+        if (rowBytes <= 0) {
+            throw new IOException("Invalid predictor columns " + columns);
+        }
+        final int rows = data.length / (rowBytes + 1);
+        final byte[] out = new byte[rows * rowBytes];
+        for (int row = 0; row < rows; row++) {
+            final int in = row * (rowBytes + 1);
+            final int filterType = data[in];
+            final int start = row * rowBytes;
+            for (int i = 0; i < rowBytes; i++) {
+                final int raw = data[in + 1 + i] & 0xFF;
+                final int left = i >= bytesPerPixel ? out[start + i - bytesPerPixel] & 0xFF : 0;
+                final int up = row > 0 ? out[start - rowBytes + i] & 0xFF : 0;
+                final int upLeft = row > 0 && i >= bytesPerPixel ? out[start - rowBytes + i - bytesPerPixel] & 0xFF : 0;
+                final int value = switch (filterType) {
+                    case 0 -> raw;
+                    case 1 -> raw + left;
+                    case 2 -> raw + up;
+                    case 3 -> raw + ((left + up) >> 1);
+                    case 4 -> raw + paeth(left, up, upLeft);
+                    default -> throw new IOException("Invalid PNG filter type " + filterType);
+                };
+                out[start + i] = (byte) value;
+            }
+        }
+        return out;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        final int p = left + up - upLeft;
+        final int pa = Math.abs(p - left);
+        final int pb = Math.abs(p - up);
+        final int pc = Math.abs(p - upLeft);
+        return pa <= pb && pa <= pc ? left : pb <= pc ? up : upLeft;
+    }
+
+    private static boolean matches(Bytes bytes, long position, byte[] expected) throws IOException {
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes.at(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isName(Object object, String name) {
+        return object instanceof Name value && value.name.equals(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDictionary(Object object) throws IOException {
+        if (object instanceof Map<?, ?> dictionary) {
+            return (Map<String, Object>) dictionary;
+        }
+        if (object instanceof Stream stream) {
+            return stream.dictionary;
+        }
+        throw new IOException("Dictionary expected, but found " + object);
+    }
+
+    private static List<?> asArray(Object object) throws IOException {
+        if (object instanceof List<?> array) {
+            return array;
+        }
+        throw new IOException("Array expected, but found " + object);
+    }
+
+    private static long asInteger(Object object) throws IOException {
+        if (object instanceof Long value) {
+            return value;
+        }
+        throw new IOException("Integer expected, but found " + object);
+    }
+
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Random access to the bytes of the document.
+     */
+    private interface Bytes {
+
+        /**
+         * Get the byte at a position.
+         * @return the unsigned byte or -1 outside the document
+         */
+        int at(long position) throws IOException;
+
+        long length() throws IOException;
+    }
+
+    private static final class BufferBytes implements Bytes {
+
+        private final ByteBuffer buffer;
+
+        BufferBytes(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int at(long position) {
+            return position >= 0L && position < buffer.limit() ? buffer.get((int) position) & 0xFF : -1;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+
+    /**
+     * File access with a single block cache - the reader only visits a few small regions of the file.
+     */
+    private static final class ChannelBytes implements Bytes {
+
+        private final FileChannel channel;
+        private final long length;
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+        private long blockStart = -1L;
+
+        ChannelBytes(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        @Override
+        public int at(long position) throws IOException {
+            if (position < 0L || position >= length) {
+                return -1;
+            }
+            if (blockStart < 0L || position < blockStart || position >= blockStart + block.limit()) {
+                blockStart = position - position % BLOCK_BYTES;
+                block.clear();
+                while (block.hasRemaining() && blockStart + block.position() < length) {
+                    if (channel.read(block, blockStart + block.position()) < 0) {
+                        break;
+                    }
+                }
+                block.flip();
+            }
+            return block.get((int) (position - blockStart)) & 0xFF;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    private static final class ArrayBytes implements Bytes {
+
+        private final byte[] bytes;
+
+        ArrayBytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int at(long position) {
+            return position >= 0L && position < bytes.length ? bytes[(int) position] & 0xFF : -1;
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+    }
+
+    private record Name(String name) {
+    }
+
+    private record Ref(int number, int generation) {
+    }
+
+    private record Keyword(String keyword) {
+    }
+
+    private record Stream(Map<String, Object> dictionary, long dataStart) {
+    }
+
+    private interface XrefSection {
+
+        /**
+         * Look up an object.
+         * @return the entry {type, field 2, field 3} or null, if the object is not contained in the section
+         */
+        long[] lookup(int number) throws IOException;
+    }
+
+    /**
+     * A cross-reference table. The entries are read on demand, because each entry has a fixed size of 20 bytes.
+     */
+    private final class XrefTable implements XrefSection {
+
+        private final List<long[]> subsections;
+        private final Map<String, Object> trailer;
+        /** The cross-reference stream of a hybrid file given by /XRefStm or null. */
+        private XrefStream hiddenObjects;
+
+        XrefTable(List<long[]> subsections, Map<String, Object> trailer) {
+            this.subsections = subsections;
+            this.trailer = trailer;
+        }
+
+        @Override
+        public long[] lookup(int number) throws IOException {
+            final long[] entry = lookupTable(number);
+            if ((entry == null || entry[0] == 0L) && hiddenObjects != null) {
+                final long[] hiddenEntry = hiddenObjects.lookup(number);
+                if (hiddenEntry != null) {
+                    return hiddenEntry;
+                }
+            }
+            return entry;
+        }
+
+        private long[] lookupTable(int number) throws IOException {
+            for (long[] subsection : subsections) {
+                if (number >= subsection[0] && number < subsection[0] + subsection[1]) {
+                    final Parser parser = new Parser(source, subsection[2] + (number - subsection[0]) * XREF_ENTRY_BYTES);
+                    final long offset = parser.parseInteger();
+                    final long generation = parser.parseInteger();
+                    final Object type = parser.parseObject();
+                    if (!(type instanceof Keyword keyword) || !(keyword.keyword.equals("n") || keyword.keyword.equals("f"))) {
+                        throw new IOException("Invalid cross-reference entry for object " + number);
+                    }
+                    return new long[] { keyword.keyword.equals("n") ? 1L : 0L, offset, generation };
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class XrefStream implements XrefSection {
+
+        private final Map<String, Object> dictionary;
+        private final byte[] data;
+        private final int[] widths;
+        private final long[] ranges;
+
+        XrefStream(Map<String, Object> dictionary, byte[] data, int[] widths, long[] ranges) {
+            this.dictionary = dictionary;
+            this.data = data;
+            this.widths = widths;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public long[] lookup(int number) throws IOException {
+            final int rowBytes = widths[0] + widths[1] + widths[2];
+            long row = 0L;
+            for (int i = 0; i + 1 < ranges.length; i += 2) {
+                if (number >= ranges[i] && number < ranges[i] + ranges[i + 1]) {
+                    int position = (int) ((row + number - ranges[i]) * rowBytes);
+                    if (position + rowBytes > data.length) {
+                        throw new IOException("Truncated cross-reference stream");
+                    }
+                    final long[] entry = new long[3];
+                    for (int field = 0; field < 3; field++) {
+                        long value = 0L;
+                        for (int b = 0; b < widths[field]; b++) {
+                            value = (value << 8) | (data[position++] & 0xFF);
+                        }
+                        entry[field] = value;
+                    }
+                    // the type defaults to 1, when its width is 0
+                    if (widths[0] == 0) {
+                        entry[0] = 1L;
+                    }
+                    return entry;
+                }
+                row += ranges[i + 1];
+            }
+            return null;
+        }
+    }
+
+    private static final class ObjectStream {
+
+        private final byte[] data;
+        private final int count;
+        private final int first;
+
+        ObjectStream(byte[] data, int count, int first) {
+            this.data = data;
+            this.count = count;
+            this.first = first;
+        }
+
+        Object getObject(int number, int index) throws IOException {
+            if (index < 0 || index >= count) {
+                throw new IOException("Invalid index " + index + " in object stream");
+            }
+            final Parser parser = new Parser(new ArrayBytes(data), 0L);
+            for (int i = 0; i < index; i++) {
+                parser.parseInteger();
+                parser.parseInteger();
+            }
+            if (parser.parseInteger() != number) {
+                throw new IOException("Object " + number + " not found in object stream");
+            }
+            final long offset = parser.parseInteger();
+            parser.position = first + offset;
+            return parser.parseObject();
+        }
+    }
+
+    /**
+     * A minimal parser for the PDF object syntax. Dictionaries are parsed as maps, arrays as lists, strings as byte
+     * arrays and numbers as Long or Double.
+     */
+    private static final class Parser {
+
+        private final Bytes bytes;
+        private long position;
+        private int depth;
+
+        Parser(Bytes bytes, long position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        Object parseIndirectObject(int expectedNumber) throws IOException {
+            final long number = parseInteger();
+            parseInteger();
+            if (!(parseObject() instanceof Keyword keyword) || !keyword.keyword.equals("obj")) {
+                throw new IOException("No object at " + position);
+            }
+            if (expectedNumber >= 0 && number != expectedNumber) {
+                throw new IOException("Object " + expectedNumber + " expected, but found " + number);
+            }
+            final Object object = parseObject();
+            if (object instanceof Map<?, ?> && skipKeyword("stream")) {
+                // the keyword is followed by CRLF or LF
+                if (bytes.at(position) == '\r') {
+                    position++;
+                }
+                if (bytes.at(position) == '\n') {
+                    position++;
+                }
+                @SuppressWarnings("unchecked") final Map<String, Object> dictionary = (Map<String, Object>) object;
+                return new Stream(dictionary, position);
+            }
+            return object;
+        }
+
+        long parseInteger() throws IOException {
+            final Object object = parseObject();
+            if (object instanceof Long value) {
+                return value;
+            }
+            throw new IOException("Integer expected, but found " + object);
+        }
+
+        boolean skipKeyword(String keyword) throws IOException {
+            skipWhitespace();
+            for (int i = 0; i < keyword.length(); i++) {
+                if (bytes.at(position + i) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            if (!isDelimiter(bytes.at(position + keyword.length()))) {
+                return false;
+            }
+            position += keyword.length();
+            return true;
+        }
+
+        void skipWhitespace() throws IOException {
+            while (true) {
+                final int c = bytes.at(position);
+                if (c == '%') {
+                    int d;
+                    while ((d = bytes.at(position)) != '\r' && d != '\n' && d != -1) {
+                        position++;
+                    }
+                } else if (isWhitespace(c)) {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        Object parseObject() throws IOException {
+            skipWhitespace();
+            final int c = bytes.at(position);
+            switch (c) {
+                case -1:
+                    throw new IOException("Unexpected end of data");
+                case '/':
+                    position++;
+                    return new Name(parseName());
+                case '(':
+                    position++;
+                    return parseLiteralString();
+                case '[':
+                    position++;
+                    return parseArray();
+                case '<':
+                    if (bytes.at(position + 1) == '<') {
+                        position += 2;
+                        return parseDictionary();
+                    }
+                    position++;
+                    return parseHexString();
+                default:
+                    if (c == '+' || c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                        return parseNumberOrRef();
+                    }
+                    return parseKeyword();
+            }
+        }
+
+        private Map<String, Object> parseDictionary() throws IOException {
+            enter();
+            final Map<String, Object> dictionary = new LinkedHashMap<>();
+            while (true) {
+                skipWhitespace();
+                if (bytes.at(position) == '>' && bytes.at(position + 1) == '>') {
+                    position += 2;
+                    depth--;
+                    return dictionary;
+                }
+                if (!(parseObject() instanceof Name key)) {
+                    throw new IOException("Name expected as dictionary key at " + position);
+                }
+                final Object value = parseObject();
+                if (value != null) {
+                    dictionary.put(key.name, value);
+                }
+            }
+        }
+
+        private List<Object> parseArray() throws IOException {
+            enter();
+            final List<Object> array = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (bytes.at(position) == ']') {
+                    position++;
+                    depth--;
+                    return array;
+                }
+                array.add(parseObject());
+            }
+        }
+
+        private void enter() throws IOException {
+            if (++depth > MAX_NESTING_DEPTH) {
+                throw new IOException("Objects nested deeper than " + MAX_NESTING_DEPTH + " levels at " + position);
+            }
+        }
+
+        private Object parseNumberOrRef() throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = bytes.at(position)) == '+' || c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                sb.append((char) c);
+                position++;
+            }
+            final String text = sb.toString();
+            if (text.indexOf('.') >= 0) {
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid number " + text, e);
+                }
+            }
+            final long value;
+            try {
+                value = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number " + text, e);
+            }
+            // "n g R" is a reference
+            final long afterNumber = position;
+            skipWhitespace();
+            final long generationStart = position;
+            while ((c = bytes.at(position)) >= '0' && c <= '9') {
+                position++;
+            }
+            if (position > generationStart && position - generationStart < 6) {
+                final long generationEnd = position;
+                skipWhitespace();
+                if (bytes.at(position) == 'R' && isDelimiter(bytes.at(position + 1)) && value >= 0L && value <= Integer.MAX_VALUE) {
+                    position++;
+                    int generation = 0;
+                    for (long p = generationStart; p < generationEnd; p++) {
+                        generation = generation * 10 + (bytes.at(p) - '0');
+                    }
+                    return new Ref((int) value, generation);
+                }
+            }
+            position = afterNumber;
+            return value;
+        }
+
+        private Object parseKeyword() throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            int c;
+            while (!isDelimiter(c = bytes.at(position))) {
+                sb.append((char) c);
+                position++;
+            }
+            if (sb.isEmpty()) {
+                throw new IOException("Unexpected character " + (char) c + " at " + position);
+            }
+            final String keyword = sb.toString();
+            return switch (keyword) {
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                case "null" -> null;
+                default -> new Keyword(keyword);
+            };
+        }
+
+        private String parseName() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int c;
+            while (!isDelimiter(c = bytes.at(position))) {
+                if (c == '#' && isHexDigit(bytes.at(position + 1)) && isHexDigit(bytes.at(position + 2))) {
+                    out.write(hexValue(bytes.at(position + 1)) << 4 | hexValue(bytes.at(position + 2)));
+                    position += 3;
+                } else {
+                    out.write(c);
+                    position++;
+                }
+            }
+            return out.toString(StandardCharsets.ISO_8859_1);
+        }
+
+        private byte[] parseLiteralString() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int depth = 1;
+            while (true) {
+                int c = bytes.at(position++);
+                switch (c) {
+                    case -1:
+                        throw new IOException("Unterminated string");
+                    case '(':
+                        depth++;
+                        out.write(c);
+                        break;
+                    case ')':
+                        if (--depth == 0) {
+                            return out.toByteArray();
+                        }
+                        out.write(c);
+                        break;
+                    case '\r':
+                        // end of line markers are read as LF
+                        if (bytes.at(position) == '\n') {
+                            position++;
+                        }
+                        out.write('\n');
+                        break;
+                    case '\\':
+                        parseEscape(out);
+                        break;
+                    default:
+                        out.write(c);
+                }
+            }
+        }
+
+        private void parseEscape(ByteArrayOutputStream out) throws IOException {
+            final int c = bytes.at(position++);
+            switch (c) {
+                case 'n' -> out.write('\n');
+                case 'r' -> out.write('\r');
+                case 't' -> out.write('\t');
+                case 'b' -> out.write('\b');
+                case 'f' -> out.write('\f');
+                case '\r' -> {
+                    // line continuation
+                    if (bytes.at(position) == '\n') {
+                        position++;
+                    }
+                }
+                case '\n' -> {
+                    // line continuation
+                }
+                case -1 -> throw new IOException("Unterminated string");
+                default -> {
+                    if (c >= '0' && c <= '7') {
+                        int value = c - '0';
+                        for (int i = 0; i < 2 && bytes.at(position) >= '0' && bytes.at(position) <= '7'; i++) {
+                            value = value * 8 + bytes.at(position++) - '0';
+                        }
+                        out.write(value);
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+
+        private byte[] parseHexString() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int high = -1;
+            while (true) {
+                final int c = bytes.at(position++);
+                if (c == '>') {
+                    break;
+                }
+                if (c == -1) {
+                    throw new IOException("Unterminated hex string");
+                }
+                if (isHexDigit(c)) {
+                    if (high < 0) {
+                        high = hexValue(c);
+                    } else {
+                        out.write(high << 4 | hexValue(c));
+                        high = -1;
+                    }
+                } else if (!isWhitespace(c)) {
+                    throw new IOException("Invalid character in hex string");
+                }
+            }
+            if (high >= 0) {
+                out.write(high << 4);
+            }
+            return out.toByteArray();
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+        }
+
+        private static boolean isDelimiter(int c) {
+            return c == -1 || isWhitespace(c) || c == '(' || c == ')' || c == '<' || c == '>' || c == '['
+                || c == ']' || c == '{' || c == '}' || c == '/' || c == '%';
+        }
+
+        private static boolean isHexDigit(int c) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private static int hexValue(int c) {
+            return c <= '9' ? c - '0' : (c | 0x20) - 'a' + 10;
+        }
+    }
+}
@@ -18,11 +18,12 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 
@@ -222,15 +223,35 @@ public class MarkdownProviderFlexmark implements MarkdownProvider {
     @Override
     public void createThumbnail(File inputFile, ConversionCommand conversionCommand) throws Exception {
 
-        try (final OutputStream outputStream = new FileOutputStream(conversionCommand.getOutputFile())) {
-            final BufferedImage image;
-            // 0. Prepare reader
-            try (final FileReader reader = new FileReader(inputFile)) {
-                // 1. Markdown to HTML
-                // 2. Wrap HTML with CSS for consistent rendering
-                // 3. Render HTML to BufferedImage
-                image = createThumbnailAsBufferedImage(reader, conversionCommand.getDimension());
-            }
+        // 0. Prepare reader
+        try (final FileReader reader = new FileReader(inputFile)) {
+            createThumbnail(reader, conversionCommand);
+        }
+    }
+
+    /**
+     * Create multiple thumbnail images for a Markdown document given as UTF-8 bytes in a byte buffer.
+     * The document is decoded once in memory and passed to the Markdown parser - no temporary file is written.
+     * @param input the content of the Markdown file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error converting the input or writing to the output.
+     */
+    @Override
+    public void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+
+        final String markdown = StandardCharsets.UTF_8.decode(input.duplicate()).toString();
+        for (ConversionCommand conversionCommand : conversionCommands) {
+            createThumbnail(new StringReader(markdown), conversionCommand);
+        }
+    }
+
+    private void createThumbnail(Reader reader, ConversionCommand conversionCommand) throws IOException {
+
+        try (final OutputStream outputStream = conversionCommand.openOutputStream()) {
+            // 1. Markdown to HTML
+            // 2. Wrap HTML with CSS for consistent rendering
+            // 3. Render HTML to BufferedImage
+            final BufferedImage image = createThumbnailAsBufferedImage(reader, conversionCommand.getDimension());
             // 4. Write image
             ImageIO.write(image, ImageToFileWriter.mimeTypeToIoWriteFormat(conversionCommand.getOutputFormat()), outputStream);
         }
@@ -3,10 +3,14 @@ package com.giraone.imaging.video;
 import com.giraone.imaging.ConversionCommand;
 import com.giraone.imaging.ImagingFactory;
 import com.giraone.imaging.ImagingProvider;
+import com.giraone.imaging.ThumbnailProvider;
 import com.giraone.imaging.os.OsCommandResult;
 import com.giraone.imaging.os.OsUtil;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class VideoProviderFfmpeg implements VideoProvider {
 
@@ -18,16 +22,17 @@ public class VideoProviderFfmpeg implements VideoProvider {
 
     private static final String SECONDS = "SECONDS";
     private static final String INFILE = "INFILE";
-    private static final String OUTFILE = "OUTFILE";
 
     // -ss 1            Seeks position (1 seconds) - must be given before -i
     // -i <input>       The input video
     // -frames:v 1      Stop writing to the stream after 1 frame
-    // -q:v 2           Use fixed quality scale (VBR)
     // -v quiet         log level "quiet"
-    // -y               overwrite files
+    // -f image2pipe    Write the frame as a single PNG image ...
+    // -c:v png
+    // pipe:1           ... to stdout, so no temporary PNG file is needed
 
-    private static final String[] COMMAND = new String[]{FFMPEG_BIN, "-ss", SECONDS, "-i", INFILE, "-frames:v", "1", "-q:v", "2", "-v", "quiet", "-y", OUTFILE};
+    private static final String[] COMMAND = new String[]{FFMPEG_BIN, "-ss", SECONDS, "-i", INFILE, "-frames:v", "1",
+        "-v", "quiet", "-f", "image2pipe", "-c:v", "png", "pipe:1"};
 
     static {
         if (FFMPEG_SEEK_SECONDS == null || FFMPEG_SEEK_SECONDS.trim().isEmpty()) {
@@ -49,25 +54,21 @@ public class VideoProviderFfmpeg implements VideoProvider {
             throw new IllegalStateException("Environment variable \"" + FFMPEG_BIN_ENV + "\" not set!");
         }
 
-        final File tempPngFileInOriginalSize = File.createTempFile("v2png", ".png");
         final String[] ffmpegCommands = COMMAND.clone();
         for (int i = 0; i < ffmpegCommands.length; i++) {
             if (SECONDS.equals(ffmpegCommands[i])) {
                 ffmpegCommands[i] = FFMPEG_SEEK_SECONDS;
             } else if (INFILE.equals(ffmpegCommands[i])) {
                 ffmpegCommands[i] = inputFile.getAbsolutePath();
-            } else if (OUTFILE.equals(ffmpegCommands[i])) {
-                ffmpegCommands[i] = tempPngFileInOriginalSize.getAbsolutePath();
             }
         }
 
-        final OsCommandResult result = OsUtil.runCommandAndReadOutput(ffmpegCommands, 60);
-        if (result.getCode() >= 0) {
-            if (tempPngFileInOriginalSize.length() > 100L) {
-                for (ConversionCommand conversionCommand: conversionCommands) {
-                    imagingProvider.createThumbnail(tempPngFileInOriginalSize, conversionCommand);
-                }
-                tempPngFileInOriginalSize.delete();
+        final OsCommandResult result = OsUtil.runCommandAndReadBinaryOutput(ffmpegCommands, 60);
+        if (result.getCode() >= 0 && result.getException() == null) {
+            final byte[] pngInOriginalSize = result.getBinaryOutput();
+            if (pngInOriginalSize != null && pngInOriginalSize.length > 100) {
+                // the frame is decoded only once for all commands
+                imagingProvider.createThumbnails(pngInOriginalSize, conversionCommands);
             } else {
                 throw new RuntimeException("Cannot create thumbnail for video \"" + inputFile + "\"! Empty PNG output from ffmpeg.");
             }
@@ -80,6 +81,25 @@ public class VideoProviderFfmpeg implements VideoProvider {
         }
     }
 
+    /**
+     * Create multiple thumbnail images from the content of a video file given as a byte buffer.
+     * This is a deliberate exception from reading the buffer directly: the input is written to a temporary file,
+     * because ffmpeg cannot read MP4 files with the moov atom at the end (the default of most encoders) from a pipe.
+     * Only the extracted frame is passed in memory.
+     * @param input the content of the video file from its position to its limit - the buffer's position is not changed
+     * @param conversionCommands Array of commands. Each with the definitions of the output (path, format, width, height and quality).
+     * @throws Exception on any error writing the temporary file, converting the video or writing to the output.
+     */
+    @Override
+    public void createThumbnails(ByteBuffer input, ConversionCommand[] conversionCommands) throws Exception {
+        final Path tempFile = ThumbnailProvider.writeTempFile(input);
+        try {
+            createThumbnails(tempFile.toFile(), conversionCommands);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
     /**
      * Create a thumbnail image for a given file.
      * @param inputFile Input file.
@@ -0,0 +1,167 @@
+package com.giraone.imaging;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.giraone.imaging.MimeTypes.APPLICATION_PDF;
+import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
+import static com.giraone.imaging.MimeTypes.IMAGE_PNG;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the asynchronous thumbnail facade.
+ */
+class AsyncThumbnailProviderTest {
+
+    private static final String TEST_FILE_JPEG_01 = "image-01.jpg";
+    private static final String TEST_FILE_PNG_01 = "image-01.png";
+    private static final String TEST_FILE_PDF_01 = "document-01-PDF-1.3.pdf";
+    private static final String TEST_FILE_TEXT = "text.txt";
+
+    private static final String[] ALL_TEST_FILES = { TEST_FILE_JPEG_01, TEST_FILE_PNG_01, TEST_FILE_PDF_01, TEST_FILE_TEXT };
+
+    private static Map<String, File> testFiles;
+    private static AsyncThumbnailProvider asyncProvider;
+
+    // -----------------------------------------------------------------------
+
+    @BeforeAll
+    static void initializeTestFiles() {
+        testFiles = TestFileHelper.cloneTestFiles(Arrays.stream(ALL_TEST_FILES));
+        asyncProvider = new AsyncThumbnailProvider(2);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        asyncProvider.close();
+    }
+
+    @Test
+    void createThumbnailAsync_works_for_image_and_pdf() throws Exception {
+
+        /// arrange
+        ConversionCommand jpegCommand = buildCommand(IMAGE_JPEG, ".jpg");
+        ConversionCommand pdfCommand = buildCommand(IMAGE_PNG, ".png");
+
+        /// act
+        CompletableFuture<ThumbnailResult> jpegFuture = asyncProvider.createThumbnailAsync(testFiles.get(TEST_FILE_JPEG_01), jpegCommand);
+        CompletableFuture<ThumbnailResult> pdfFuture = asyncProvider.createThumbnailAsync(testFiles.get(TEST_FILE_PDF_01), pdfCommand);
+        ThumbnailResult jpegResult = jpegFuture.get(30, TimeUnit.SECONDS);
+        ThumbnailResult pdfResult = pdfFuture.get(30, TimeUnit.SECONDS);
+
+        /// assert
+        assertThat(jpegResult.getMimeType()).isEqualTo(IMAGE_JPEG);
+        assertThat(jpegResult.getOutputFile()).isEqualTo(jpegCommand.getOutputFile());
+        assertThat(jpegResult.getOutputFile()).isNotEmpty();
+        assertThat(jpegResult.getDuration()).isPositive();
+        assertThat(pdfResult.getMimeType()).isEqualTo(APPLICATION_PDF);
+        assertThat(pdfResult.getOutputFile()).isNotEmpty();
+    }
+
+    @Test
+    void createThumbnailsAsync_completes_many_concurrent_requests() throws Exception {
+
+        /// arrange
+        List<CompletableFuture<ThumbnailResult>> futures = new ArrayList<>();
+
+        /// act
+        for (int i = 0; i < 50; i++) {
+            File input = testFiles.get(i % 2 == 0 ? TEST_FILE_JPEG_01 : TEST_FILE_PNG_01);
+            ConversionCommand[] commands = { buildCommand(IMAGE_JPEG, ".jpg"), buildCommand(IMAGE_PNG, ".png") };
+            futures.add(asyncProvider.createThumbnailsAsync(input, commands));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+        /// assert
+        for (CompletableFuture<ThumbnailResult> future : futures) {
+            ThumbnailResult result = future.get();
+            assertThat(result.getOutputFiles()).hasSize(2);
+            assertThat(result.getOutputFiles()).allSatisfy(file -> assertThat(file).isNotEmpty());
+        }
+    }
+
+    @Test
+    void createThumbnailAsync_completes_exceptionally_for_unknown_format() throws IOException {
+
+        /// arrange
+        ConversionCommand command = buildCommand(IMAGE_JPEG, ".jpg");
+
+        /// act
+        CompletableFuture<ThumbnailResult> future = asyncProvider.createThumbnailAsync(testFiles.get(TEST_FILE_TEXT), command);
+
+        /// assert
+        assertThatThrownBy(() -> future.get(30, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(FormatNotSupportedException.class);
+    }
+
+    @Test
+    void createThumbnailAsync_returns_sink_and_delivers_on_io_executor() throws Exception {
+
+        /// arrange
+        ByteBufferOutputSink memory = new ByteBufferOutputSink();
+        AtomicReference<Thread> deliveringThread = new AtomicReference<>();
+        OutputSink sink = () -> {
+            deliveringThread.set(Thread.currentThread());
+            return memory.openStream();
+        };
+        ConversionCommand command = buildCommand(IMAGE_JPEG, ".jpg");
+        command.setOutputFile(null);
+        command.setOutputSink(sink);
+
+        /// act
+        ThumbnailResult result = asyncProvider.createThumbnailAsync(testFiles.get(TEST_FILE_JPEG_01), command)
+            .get(30, TimeUnit.SECONDS);
+
+        /// assert
+        assertThat(result.getOutputFile()).isNull();
+        assertThat(result.getOutputSink()).isSameAs(sink);
+        assertThat(memory.size()).isPositive();
+        assertThat(deliveringThread.get().isVirtual()).isTrue();
+        memory.release();
+    }
+
+    @Test
+    void createThumbnailsAsync_does_not_deadlock_on_single_thread_cpu_executor() throws Exception {
+
+        /// arrange
+        ExecutorService cpuExecutor = Executors.newSingleThreadExecutor();
+        try (ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             AsyncThumbnailProvider provider = new AsyncThumbnailProvider(ioExecutor, cpuExecutor)) {
+            ConversionCommand[] imageCommands = { buildCommand(IMAGE_JPEG, ".jpg"), buildCommand(IMAGE_PNG, ".png") };
+            ConversionCommand[] pdfCommands = { buildCommand(IMAGE_JPEG, ".jpg"), buildCommand(IMAGE_PNG, ".png") };
+
+            /// act
+            CompletableFuture<ThumbnailResult> imageFuture = provider.createThumbnailsAsync(testFiles.get(TEST_FILE_PNG_01), imageCommands);
+            CompletableFuture<ThumbnailResult> pdfFuture = provider.createThumbnailsAsync(testFiles.get(TEST_FILE_PDF_01), pdfCommands);
+
+            /// assert
+            assertThat(imageFuture.get(30, TimeUnit.SECONDS).getOutputFiles()).allSatisfy(file -> assertThat(file).isNotEmpty());
+            assertThat(pdfFuture.get(30, TimeUnit.SECONDS).getOutputFiles()).allSatisfy(file -> assertThat(file).isNotEmpty());
+        } finally {
+            cpuExecutor.shutdownNow();
+        }
+    }
+
+    private static ConversionCommand buildCommand(String format, String suffix) throws IOException {
+        File outputFile = File.createTempFile("async-thumbnail-", suffix);
+        outputFile.deleteOnExit();
+        return ConversionCommand.buildConversionCommand(outputFile, format, 120, 120,
+            ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+    }
+}
@@ -0,0 +1,61 @@
+package com.giraone.imaging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the shared pool of output buffers.
+ */
+class ByteArrayPoolTest {
+
+    @BeforeEach
+    void clearPool() {
+        ByteArrayPool.clear();
+    }
+
+    @Test
+    void released_array_is_reused() {
+
+        /// arrange
+        byte[] array = ByteArrayPool.acquire(1000);
+        ByteArrayPool.release(array);
+
+        /// act
+        byte[] reused = ByteArrayPool.acquire(500);
+
+        /// assert
+        assertThat(reused).isSameAs(array);
+        assertThat(ByteArrayPool.getPooledBytes()).isZero();
+    }
+
+    @Test
+    void undersized_arrays_stay_in_pool() {
+
+        /// arrange
+        byte[] small = new byte[1000];
+        ByteArrayPool.release(small);
+
+        /// act
+        byte[] large = ByteArrayPool.acquire(100_000);
+
+        /// assert
+        assertThat(large).isNotSameAs(small).hasSizeGreaterThanOrEqualTo(100_000);
+        assertThat(ByteArrayPool.getPooledBytes()).isEqualTo(1000L);
+        assertThat(ByteArrayPool.acquire(1000)).isSameAs(small);
+    }
+
+    @Test
+    void pool_is_bounded_by_total_bytes() {
+
+        /// act
+        for (int i = 0; i < 20; i++) {
+            ByteArrayPool.release(new byte[ByteArrayPool.MAX_POOLED_ARRAY_SIZE]);
+        }
+        ByteArrayPool.release(new byte[ByteArrayPool.MAX_POOLED_ARRAY_SIZE + 1]);
+
+        /// assert
+        assertThat(ByteArrayPool.getPooledBytes()).isEqualTo(ByteArrayPool.MAX_POOLED_BYTES);
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -128,6 +129,17 @@ class FileTypeDetectorTest {
         assertThat(detectedFileType).isEqualTo(JPEG);
     }
 
+    @Test
+    void pdfIsDetectedUsingMemoryMappedFile() throws IOException {
+        /// arrange
+        ByteBuffer mapping = MemoryMappedFiles.map(Path.of("src/test/resources", TEST_FILE_PDF_01));
+        /// act
+        FileTypeDetector.FileType detectedFileType = FileTypeDetector.getInstance().getFileType(mapping);
+        /// assert
+        assertThat(detectedFileType).isEqualTo(PDF);
+        assertThat(mapping.position()).isZero();
+    }
+
     @Test
     void allTypesAsStrings() {
         /// act
@@ -0,0 +1,198 @@
+package com.giraone.imaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the memory budget used for admission control.
+ */
+class MemoryBudgetTest {
+
+    @Test
+    void reserve_updates_gauges_and_close_releases() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+
+        /// act
+        MemoryBudget.Reservation reservation1 = memoryBudget.reserve(300L);
+        MemoryBudget.Reservation reservation2 = memoryBudget.reserve(500L);
+
+        /// assert
+        assertThat(memoryBudget.getUsedBytes()).isEqualTo(800L);
+        assertThat(memoryBudget.getAvailableBytes()).isEqualTo(200L);
+        reservation1.close();
+        reservation1.close(); // idempotent
+        assertThat(memoryBudget.getUsedBytes()).isEqualTo(500L);
+        reservation2.close();
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getPeakUsedBytes()).isEqualTo(800L);
+    }
+
+    @Test
+    void reserve_fails_fast_when_exhausted() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+        memoryBudget.setPolicy(MemoryBudget.Policy.FAIL_FAST);
+
+        /// act
+        try (MemoryBudget.Reservation ignored = memoryBudget.reserve(800L)) {
+            /// assert
+            assertThatThrownBy(() -> memoryBudget.reserve(300L)).isInstanceOf(MemoryBudgetExceededException.class);
+        }
+        assertThat(memoryBudget.getRejectedCount()).isEqualTo(1L);
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void tryReserve_does_not_wait_when_exhausted() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+
+        /// act
+        try (MemoryBudget.Reservation first = memoryBudget.reserve(800L)) {
+            MemoryBudget.Reservation second = memoryBudget.tryReserve(300L);
+            MemoryBudget.Reservation third = memoryBudget.tryReserve(200L);
+
+            /// assert
+            assertThat(first.getBytes()).isEqualTo(800L);
+            assertThat(second).isNull();
+            assertThat(third).isNotNull();
+            assertThat(memoryBudget.getUsedBytes()).isEqualTo(1000L);
+            third.close();
+        }
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void reserve_waits_until_memory_is_released() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+        MemoryBudget.Reservation first = memoryBudget.reserve(800L);
+
+        /// act
+        CompletableFuture<MemoryBudget.Reservation> second = reserveAsync(memoryBudget, 300L);
+        awaitWaitingCount(memoryBudget, 1);
+
+        /// assert
+        assertThat(memoryBudget.getWaitingCount()).isEqualTo(1);
+        assertThat(second).isNotDone();
+        first.close();
+        second.get(10, TimeUnit.SECONDS).close();
+        awaitUsedBytes(memoryBudget, 0L);
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getWaitingCount()).isZero();
+    }
+
+    @Test
+    void reserve_times_out() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+        memoryBudget.setMaxWait(Duration.ofMillis(50));
+
+        /// act
+        try (MemoryBudget.Reservation ignored = memoryBudget.reserve(1000L)) {
+            /// assert
+            assertThatThrownBy(() -> memoryBudget.reserve(1L)).isInstanceOf(MemoryBudgetExceededException.class);
+        }
+        assertThat(memoryBudget.getRejectedCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void oversized_request_is_admitted_alone() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+
+        /// act
+        try (MemoryBudget.Reservation reservation = memoryBudget.reserve(5000L)) {
+            /// assert
+            assertThat(reservation.getBytes()).isEqualTo(1000L);
+            assertThat(memoryBudget.getAvailableBytes()).isZero();
+        }
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void reserve_admits_waiting_requests_in_arrival_order() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+        MemoryBudget.Reservation first = memoryBudget.reserve(600L);
+
+        /// act
+        CompletableFuture<MemoryBudget.Reservation> large = reserveAsync(memoryBudget, 5000L);
+        awaitWaitingCount(memoryBudget, 1);
+        // fits, but must not overtake the waiting large request
+        CompletableFuture<MemoryBudget.Reservation> small = reserveAsync(memoryBudget, 300L);
+        awaitWaitingCount(memoryBudget, 2);
+
+        /// assert
+        assertThat(memoryBudget.tryReserve(100L)).isNull();
+        assertThat(small).isNotDone();
+        first.close();
+        MemoryBudget.Reservation largeReservation = large.get(10, TimeUnit.SECONDS);
+        assertThat(largeReservation.getBytes()).isEqualTo(1000L);
+        assertThat(small).isNotDone();
+        largeReservation.close();
+        small.get(10, TimeUnit.SECONDS).close();
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getWaitingCount()).isZero();
+    }
+
+    @Test
+    void negative_estimate_does_not_reduce_used_bytes() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1000L);
+
+        /// act
+        try (MemoryBudget.Reservation first = memoryBudget.reserve(800L);
+             MemoryBudget.Reservation negative = memoryBudget.reserve(-500L)) {
+
+            /// assert
+            assertThat(negative.getBytes()).isZero();
+            assertThat(memoryBudget.getUsedBytes()).isEqualTo(800L);
+            assertThat(memoryBudget.tryReserve(300L)).isNull();
+        }
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static CompletableFuture<MemoryBudget.Reservation> reserveAsync(MemoryBudget memoryBudget, long bytes) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return memoryBudget.reserve(bytes);
+            } catch (MemoryBudgetExceededException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void awaitWaitingCount(MemoryBudget memoryBudget, int waitingCount) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (memoryBudget.getWaitingCount() != waitingCount && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(memoryBudget.getWaitingCount()).isEqualTo(waitingCount);
+    }
+
+    private static void awaitUsedBytes(MemoryBudget memoryBudget, long usedBytes) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (memoryBudget.getUsedBytes() != usedBytes && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.giraone.imaging;
 
+import com.giraone.imaging.java2.ImageOpener;
+import com.giraone.imaging.java2.ImagePlusInfo;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -38,6 +40,7 @@ class ProviderBitmapImageTest {
     private static final String TEST_FILE_JPEG_EXIF_03 = "image-exif-03.jpg";
     private static final String TEST_FILE_PNG_01 = "image-01.png";
     private static final String TEST_FILE_PNG_02 = "image-02.png";
+    private static final String TEST_FILE_GIF_01 = "image-01.gif";
 
     private static final String TEST_FILE_JPEG_SMALL = "small.jpg";
     private static final String TEST_FILE_PNG_SMALL = "small.png";
@@ -449,6 +452,71 @@ class ProviderBitmapImageTest {
         assertThat(outputInfo.getHeight()).isEqualTo(inputInfo.getHeight());
     }
 
+    @ParameterizedTest
+    @MethodSource("provideTestFiles")
+    void openImage_toolkit_and_imageio_decode_engines_are_equal(File file) throws Exception {
+        /// act
+        ImagePlusInfo toolkitImage = ImageOpener.openImage(file, ImageOpener.DecodeEngine.TOOLKIT);
+        ImagePlusInfo imageIoImage = ImageOpener.openImage(file, ImageOpener.DecodeEngine.IMAGE_IO);
+
+        /// assert
+        FileInfo toolkitFileInfo = toolkitImage.getFileInfo();
+        FileInfo imageIoFileInfo = imageIoImage.getFileInfo();
+        assertThat(imageIoFileInfo.getMimeType()).isEqualTo(toolkitFileInfo.getMimeType());
+        assertThat(imageIoFileInfo.getWidth()).isEqualTo(toolkitFileInfo.getWidth());
+        assertThat(imageIoFileInfo.getHeight()).isEqualTo(toolkitFileInfo.getHeight());
+        // both engines keep their native pixel layout, but neither drops the alpha channel
+        assertThat(imageIoImage.getImage().getColorModel().hasAlpha()).isEqualTo(toolkitImage.getImage().getColorModel().hasAlpha());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideTestFiles")
+    void fetchFileInfo_from_header_is_equal_to_decoded_image(File file) throws Exception {
+        /// act
+        FileInfo fileInfo = providerUnderTest.fetchFileInfo(file);
+        ImagePlusInfo imagePlusInfo = ImageOpener.openImage(file);
+
+        /// assert
+        assertThat(fileInfo.getMimeType()).isEqualTo(imagePlusInfo.getFileInfo().getMimeType());
+        assertThat(fileInfo.getCompressionFormat()).isEqualTo(imagePlusInfo.getFileInfo().getCompressionFormat());
+        assertThat(fileInfo.getWidth()).isEqualTo(imagePlusInfo.getImage().getWidth());
+        assertThat(fileInfo.getHeight()).isEqualTo(imagePlusInfo.getImage().getHeight());
+    }
+
+    @Test
+    void fetchFileInfo_works_with_gif() throws Exception {
+
+        /// arrange
+        File testFile = TestFileHelper.cloneTestFile(TEST_FILE_GIF_01);
+
+        /// act
+        FileInfo fileInfo = providerUnderTest.fetchFileInfo(testFile);
+
+        /// assert
+        assertThat(fileInfo.getMimeType()).isEqualTo(IMAGE_GIF);
+        assertThat(fileInfo.getCompressionFormat()).isEqualTo(FileInfo.COMPRESSION_FORMAT_LZW);
+        assertThat(fileInfo.getBitsPerPixel()).isEqualTo(8);
+        assertThat(fileInfo.getWidth()).isEqualTo(100);
+        assertThat(fileInfo.getHeight()).isEqualTo(75);
+    }
+
+    @Test
+    void fetchFileInfo_works_with_palette_png() throws Exception {
+
+        /// arrange
+        File testFile = supportedTestFiles.get(TEST_FILE_PNG_WIDE);
+
+        /// act
+        FileInfo fileInfo = providerUnderTest.fetchFileInfo(testFile);
+
+        /// assert
+        assertThat(fileInfo.getMimeType()).isEqualTo(IMAGE_PNG);
+        assertThat(fileInfo.getCompressionFormat()).isEqualTo(FileInfo.COMPRESSION_FORMAT_LZ77);
+        assertThat(fileInfo.getBitsPerPixel()).isEqualTo(8);
+        assertThat(fileInfo.getWidth()).isEqualTo(797);
+        assertThat(fileInfo.getHeight()).isEqualTo(157);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
 
     private static Stream<Arguments> provideTestFiles() {
@@ -0,0 +1,226 @@
+package com.giraone.imaging.cache;
+
+import com.giraone.imaging.ByteBufferOutputSink;
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.ImagingProvider;
+import com.giraone.imaging.TestFileHelper;
+import com.giraone.imaging.ThumbnailProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
+import static com.giraone.imaging.MimeTypes.IMAGE_PNG;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the content-addressed thumbnail cache.
+ */
+class CachingThumbnailProviderTest {
+
+    private static final String TEST_FILE_JPEG_01 = "image-01.jpg";
+    private static final String TEST_FILE_JPEG_02 = "image-02.jpg";
+
+    private static File testFileJpeg01;
+    private static File testFileJpeg02;
+
+    @TempDir
+    Path tempDir;
+
+    // -----------------------------------------------------------------------
+
+    @BeforeAll
+    static void initializeTestFiles() {
+        testFileJpeg01 = TestFileHelper.cloneTestFile(TEST_FILE_JPEG_01);
+        testFileJpeg02 = TestFileHelper.cloneTestFile(TEST_FILE_JPEG_02);
+    }
+
+    @Test
+    void createThumbnail_hit_does_not_call_delegate() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), 10_000_000L);
+        ConversionCommand command1 = buildCommand("out-1.jpg", IMAGE_JPEG, 200);
+        ConversionCommand command2 = buildCommand("out-2.jpg", IMAGE_JPEG, 200);
+
+        /// act
+        provider.createThumbnail(testFileJpeg01, command1);
+        provider.createThumbnail(testFileJpeg01, command2);
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(1);
+        assertThat(provider.getHitCount()).isEqualTo(1L);
+        assertThat(provider.getMissCount()).isEqualTo(1L);
+        assertThat(provider.getEntryCount()).isEqualTo(1);
+        assertThat(Files.readAllBytes(command2.getOutputFile().toPath()))
+            .isEqualTo(Files.readAllBytes(command1.getOutputFile().toPath()));
+    }
+
+    @Test
+    void createThumbnails_passes_only_misses_to_delegate() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), 10_000_000L);
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-0.jpg", IMAGE_JPEG, 100));
+        ConversionCommand[] commands = {
+            buildCommand("out-1.jpg", IMAGE_JPEG, 100),
+            buildCommand("out-2.jpg", IMAGE_JPEG, 150),
+            buildCommand("out-3.png", IMAGE_PNG, 100)
+        };
+
+        /// act
+        provider.createThumbnails(testFileJpeg01, commands);
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(2);
+        assertThat(delegate.commands.get()).isEqualTo(3);
+        assertThat(provider.getHitCount()).isEqualTo(1L);
+        assertThat(provider.getEntryCount()).isEqualTo(3);
+        for (ConversionCommand command : commands) {
+            assertThat(command.getOutputFile()).isNotEmpty();
+        }
+    }
+
+    @Test
+    void different_input_or_command_is_a_miss() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), 10_000_000L);
+        ConversionCommand command = buildCommand("out-1.jpg", IMAGE_JPEG, 200);
+        ConversionCommand otherQuality = buildCommand("out-2.jpg", IMAGE_JPEG, 200);
+        otherQuality.setQuality(ConversionCommand.CompressionQuality.LOSSY_SPEED);
+
+        /// act
+        provider.createThumbnail(testFileJpeg01, command);
+        provider.createThumbnail(testFileJpeg02, command);
+        provider.createThumbnail(testFileJpeg01, otherQuality);
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(3);
+        assertThat(provider.getHitCount()).isZero();
+        assertThat(CachingThumbnailProvider.normalize(command)).isNotEqualTo(CachingThumbnailProvider.normalize(otherQuality));
+    }
+
+    @Test
+    void cache_is_size_bounded_and_evicts_least_recently_used() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider unbounded = new CachingThumbnailProvider(delegate, tempDir.resolve("probe"), Long.MAX_VALUE);
+        unbounded.createThumbnail(testFileJpeg01, buildCommand("probe.jpg", IMAGE_JPEG, 120));
+        long entrySize = unbounded.getCacheBytes();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), entrySize * 5 / 2);
+
+        /// act
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-1.jpg", IMAGE_JPEG, 120));
+        provider.createThumbnail(testFileJpeg02, buildCommand("out-2.jpg", IMAGE_JPEG, 120));
+        Thread.sleep(20);
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-3.jpg", IMAGE_JPEG, 120)); // hit, touches entry 1
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-4.jpg", IMAGE_JPEG, 121));
+
+        /// assert
+        assertThat(provider.getCacheBytes()).isLessThanOrEqualTo(provider.getMaxCacheBytes());
+        assertThat(provider.getEvictionCount()).isGreaterThanOrEqualTo(1L);
+        int calls = delegate.calls.get();
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-5.jpg", IMAGE_JPEG, 120));
+        assertThat(delegate.calls.get()).isEqualTo(calls);
+    }
+
+    @Test
+    void existing_entries_are_reused_after_restart() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        Path cacheDirectory = tempDir.resolve("cache");
+        new CachingThumbnailProvider(delegate, cacheDirectory, 10_000_000L)
+            .createThumbnail(testFileJpeg01, buildCommand("out-1.jpg", IMAGE_JPEG, 200));
+        Files.writeString(cacheDirectory.resolve("partial.jpg.tmp"), "partial");
+
+        /// act
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, cacheDirectory, 10_000_000L);
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-2.jpg", IMAGE_JPEG, 200));
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(1);
+        assertThat(provider.getEntryCount()).isEqualTo(1);
+        assertThat(cacheDirectory.resolve("partial.jpg.tmp")).doesNotExist();
+    }
+
+    @Test
+    void byte_input_shares_entries_with_file_input() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), 10_000_000L);
+        provider.createThumbnail(testFileJpeg01, buildCommand("out-1.jpg", IMAGE_JPEG, 200));
+
+        /// act
+        provider.createThumbnail(Files.readAllBytes(testFileJpeg01.toPath()), buildCommand("out-2.jpg", IMAGE_JPEG, 200));
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(1);
+        assertThat(provider.getHitCount()).isEqualTo(1L);
+        assertThat(tempDir.resolve("out-2.jpg")).isNotEmptyFile();
+    }
+
+    @Test
+    void output_sink_is_served_on_miss_and_hit() throws Exception {
+
+        /// arrange
+        CountingProvider delegate = new CountingProvider();
+        CachingThumbnailProvider provider = new CachingThumbnailProvider(delegate, tempDir.resolve("cache"), 10_000_000L);
+        ByteBufferOutputSink missSink = new ByteBufferOutputSink();
+        ByteBufferOutputSink hitSink = new ByteBufferOutputSink();
+        ConversionCommand miss = buildCommand("unused.jpg", IMAGE_JPEG, 200);
+        miss.setOutputSink(missSink);
+        ConversionCommand hit = buildCommand("unused.jpg", IMAGE_JPEG, 200);
+        hit.setOutputSink(hitSink);
+
+        /// act
+        provider.createThumbnail(testFileJpeg01, miss);
+        provider.createThumbnail(testFileJpeg01, hit);
+
+        /// assert
+        assertThat(delegate.calls.get()).isEqualTo(1);
+        assertThat(provider.getHitCount()).isEqualTo(1L);
+        assertThat(missSink.size()).isPositive();
+        assertThat(hitSink.toByteArray()).isEqualTo(missSink.toByteArray());
+        assertThat(provider.getCacheBytes()).isEqualTo(missSink.size());
+        assertThat(tempDir.resolve("unused.jpg")).doesNotExist();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private ConversionCommand buildCommand(String fileName, String format, int size) {
+        return ConversionCommand.buildConversionCommand(tempDir.resolve(fileName).toFile(), format, size, size,
+            ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+    }
+
+    private static class CountingProvider implements ThumbnailProvider {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger commands = new AtomicInteger();
+
+        @Override
+        public void createThumbnail(File inputFile, ConversionCommand conversionCommand) throws Exception {
+            calls.incrementAndGet();
+            commands.incrementAndGet();
+            ImagingProvider.getInstance().createThumbnail(inputFile, conversionCommand);
+        }
+
+        @Override
+        public void createThumbnails(File inputFile, ConversionCommand[] conversionCommands) throws Exception {
+            calls.incrementAndGet();
+            commands.addAndGet(conversionCommands.length);
+            ImagingProvider.getInstance().createThumbnails(inputFile, conversionCommands);
+        }
+    }
+}
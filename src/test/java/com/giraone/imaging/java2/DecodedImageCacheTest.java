@@ -0,0 +1,129 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.FileInfo;
+import com.giraone.imaging.TestFileHelper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the in-memory cache of decoded images.
+ */
+class DecodedImageCacheTest {
+
+    private static final String TEST_FILE_JPEG_02 = "image-02.jpg";
+
+    private static File testFileJpeg02;
+
+    // -----------------------------------------------------------------------
+
+    @BeforeAll
+    static void initializeTestFiles() {
+        testFileJpeg02 = TestFileHelper.cloneTestFile(TEST_FILE_JPEG_02);
+    }
+
+    @Test
+    void get_accepts_entries_with_smaller_subsampling() {
+
+        /// arrange
+        DecodedImageCache cache = new DecodedImageCache(1_000_000L);
+        DecodedImageCache.FileKey fileKey = new DecodedImageCache.FileKey(Path.of("/a.jpg"), 1L, 2L);
+        ImagePlusInfo imagePlusInfo = buildImage(100, 100);
+
+        /// act
+        cache.put(fileKey, 2, imagePlusInfo);
+
+        /// assert
+        assertThat(cache.get(fileKey, 4)).isSameAs(imagePlusInfo);
+        assertThat(cache.get(fileKey, 2)).isSameAs(imagePlusInfo);
+        assertThat(cache.get(fileKey, 1)).isNull();
+        assertThat(cache.get(new DecodedImageCache.FileKey(Path.of("/a.jpg"), 3L, 2L), 2)).isNull();
+        assertThat(cache.getHitCount()).isEqualTo(2L);
+        assertThat(cache.getMissCount()).isEqualTo(2L);
+    }
+
+    @Test
+    void put_evicts_least_recently_used_by_pixel_bytes() {
+
+        /// arrange
+        DecodedImageCache cache = new DecodedImageCache(100L * 100 * 4 * 2);
+        DecodedImageCache.FileKey key1 = new DecodedImageCache.FileKey(Path.of("/1.jpg"), 1L, 1L);
+        DecodedImageCache.FileKey key2 = new DecodedImageCache.FileKey(Path.of("/2.jpg"), 1L, 1L);
+        DecodedImageCache.FileKey key3 = new DecodedImageCache.FileKey(Path.of("/3.jpg"), 1L, 1L);
+        ImagePlusInfo image1 = buildImage(100, 100);
+
+        /// act
+        cache.put(key1, 1, image1);
+        cache.put(key2, 1, buildImage(100, 100));
+        cache.get(key1, 1);
+        cache.put(key3, 1, buildImage(100, 100));
+
+        /// assert
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+        assertThat(cache.getBytes()).isEqualTo(100L * 100 * 4 * 2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1L);
+        assertThat(cache.get(key1, 1)).isSameAs(image1);
+        // the evicted entry is still softly reachable
+        ImagePlusInfo evicted = cache.get(key2, 1);
+        if (evicted != null) {
+            assertThat(cache.getSoftHitCount()).isEqualTo(1L);
+        }
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(cache.getMaxBytes());
+    }
+
+    @Test
+    void provider_decodes_only_once_and_detects_changed_files() throws Exception {
+
+        /// arrange
+        File inputFile = File.createTempFile("decoded-cache-", ".jpg");
+        inputFile.deleteOnExit();
+        Files.copy(testFileJpeg02.toPath(), inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ProviderJava2D provider = new ProviderJava2D();
+        DecodedImageCache cache = new DecodedImageCache(64L * 1024 * 1024);
+        provider.setDecodedImageCache(cache);
+
+        /// act
+        convert(provider, inputFile, 300);
+        convert(provider, inputFile, 200);
+        Files.setLastModifiedTime(inputFile.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 10_000L));
+        convert(provider, inputFile, 200);
+
+        /// assert
+        assertThat(cache.getMissCount()).isEqualTo(2L);
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+        assertThat(cache.getEntryCount()).isEqualTo(2);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static ImagePlusInfo buildImage(int width, int height) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setWidth(width);
+        fileInfo.setHeight(height);
+        return new ImagePlusInfo(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), fileInfo);
+    }
+
+    private static void convert(ProviderJava2D provider, File inputFile, int size) throws Exception {
+        File outFile = File.createTempFile("decoded-cache-out-", ".jpg");
+        outFile.deleteOnExit();
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(size, size));
+        try (FileOutputStream out = new FileOutputStream(outFile)) {
+            provider.convertImage(inputFile, out, command);
+        }
+        assertThat(provider.fetchFileInfo(outFile).getWidth()).isEqualTo(size);
+    }
+}
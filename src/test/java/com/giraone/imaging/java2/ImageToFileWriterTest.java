@@ -0,0 +1,230 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ByteArrayPool;
+import com.giraone.imaging.ConversionCommand;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for the image output stream strategies of the image writers.
+ */
+class ImageToFileWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(ImageToFileWriter.OutputStreamStrategy.class)
+    void all_strategies_produce_the_same_output(ImageToFileWriter.OutputStreamStrategy strategy) throws Exception {
+
+        /// arrange
+        BufferedImage image = buildImage();
+        ByteArrayOutputStream expectedJpeg = new ByteArrayOutputStream();
+        ByteArrayOutputStream expectedPng = new ByteArrayOutputStream();
+        ImageToFileWriter.saveJpeg(image, expectedJpeg, 0.8f, ImageToFileWriter.OutputStreamStrategy.MEMORY_CACHED);
+        ImageToFileWriter.savePng(image, expectedPng, ImageToFileWriter.OutputStreamStrategy.MEMORY_CACHED);
+        File jpegFile = tempDir.resolve("out.jpg").toFile();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+
+        /// act
+        try (FileOutputStream out = new FileOutputStream(jpegFile)) {
+            ImageToFileWriter.saveJpeg(image, out, 0.8f, strategy);
+        }
+        ImageToFileWriter.savePng(image, png, strategy);
+
+        /// assert
+        assertThat(Files.readAllBytes(jpegFile.toPath())).isEqualTo(expectedJpeg.toByteArray());
+        assertThat(png.toByteArray()).isEqualTo(expectedPng.toByteArray());
+    }
+
+    @Test
+    void direct_strategy_appends_at_the_position_of_the_channel() throws Exception {
+
+        /// arrange
+        BufferedImage image = buildImage();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ImageToFileWriter.saveGif(image, expected, ImageToFileWriter.OutputStreamStrategy.MEMORY_CACHED);
+        File file = tempDir.resolve("out.bin").toFile();
+
+        /// act
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] { 1, 2, 3 });
+            ImageToFileWriter.saveGif(image, out, ImageToFileWriter.OutputStreamStrategy.DIRECT);
+            out.write(4);
+        }
+
+        /// assert
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertThat(content).hasSize(expected.size() + 4);
+        assertThat(Arrays.copyOfRange(content, 3, 3 + expected.size())).isEqualTo(expected.toByteArray());
+        assertThat(content[content.length - 1]).isEqualTo((byte) 4);
+    }
+
+    @Test
+    void pooled_buffer_writes_only_committed_content() throws Exception {
+
+        /// arrange
+        ByteArrayOutputStream failed = new ByteArrayOutputStream();
+        ByteArrayOutputStream committed = new ByteArrayOutputStream();
+
+        /// act
+        // an encoding, that fails after writing a part of the image, does not commit
+        try (ByteArrayImageOutputStream ios = new ByteArrayImageOutputStream(failed, 16)) {
+            ios.write(new byte[] { 1, 2, 3 });
+        }
+        try (ByteArrayImageOutputStream ios = new ByteArrayImageOutputStream(committed, 16)) {
+            ios.write(new byte[] { 1, 2, 3 });
+            ios.commit();
+        }
+
+        /// assert
+        assertThat(failed.size()).isZero();
+        assertThat(committed.toByteArray()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void channel_stream_buffers_writes_and_patches_earlier_content() throws Exception {
+
+        /// arrange
+        File file = tempDir.resolve("channel.bin").toFile();
+        byte[] large = new byte[ChannelImageOutputStream.BLOCK_SIZE + 10];
+        Arrays.fill(large, (byte) 7);
+
+        /// act
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(9);
+            ChannelImageOutputStream ios = new ChannelImageOutputStream(out.getChannel());
+            ios.write(1);
+            ios.writeInt(0);
+            ios.write(large);
+            ios.write(2);
+            // patch the length field written before, like the image writers do
+            ios.seek(1);
+            ios.writeInt(large.length);
+            ios.seek(ios.length());
+            ios.write(3);
+            ios.close();
+            assertThatThrownBy(() -> ios.write(4)).isInstanceOf(IOException.class);
+            out.write(5);
+        }
+
+        /// assert
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertThat(content).hasSize(1 + 5 + large.length + 2 + 1);
+        assertThat(Arrays.copyOfRange(content, 0, 6)).containsExactly(9, 1, 0, 1, 0, 10);
+        assertThat(Arrays.copyOfRange(content, 6, 6 + large.length)).isEqualTo(large);
+        assertThat(Arrays.copyOfRange(content, 6 + large.length, content.length)).containsExactly(2, 3, 5);
+    }
+
+    @Test
+    void auto_strategy_does_not_write_cache_files_for_thumbnails() throws Exception {
+
+        /// arrange
+        File cacheDirectory = Files.createDirectory(tempDir.resolve("cache")).toFile();
+        File previousCacheDirectory = ImageIO.getCacheDirectory();
+        boolean previousUseCache = ImageIO.getUseCache();
+        ImageIO.setCacheDirectory(cacheDirectory);
+        ImageIO.setUseCache(true);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            /// act
+            ImageToFileWriter.saveJpeg(buildImage(), out, 0.8f);
+
+            /// assert
+            assertThat(out.size()).isPositive();
+            assertThat(cacheDirectory.list()).isEmpty();
+        } finally {
+            ImageIO.setCacheDirectory(previousCacheDirectory);
+            ImageIO.setUseCache(previousUseCache);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConversionCommand.JpegEncoding.class)
+    void jpeg_encodings_produce_the_same_image(ConversionCommand.JpegEncoding jpegEncoding) throws Exception {
+
+        /// arrange
+        BufferedImage image = buildImage();
+        ByteArrayOutputStream standard = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageToFileWriter.saveJpeg(image, standard, 0.8f);
+
+        /// act
+        ImageToFileWriter.saveJpeg(image, out, 0.8f, jpegEncoding, ImageToFileWriter.OutputStreamStrategy.AUTO);
+
+        /// assert
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(standard.toByteArray()));
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        for (int y = 0; y < expected.getHeight(); y += 7) {
+            for (int x = 0; x < expected.getWidth(); x += 7) {
+                assertThat(actual.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+        if (jpegEncoding == ConversionCommand.JpegEncoding.STANDARD) {
+            assertThat(out.toByteArray()).isEqualTo(standard.toByteArray());
+        } else {
+            assertThat(out.size()).isLessThan(standard.size());
+        }
+    }
+
+    @Test
+    void size_search_buffer_is_sized_from_the_raster() throws Exception {
+
+        /// arrange
+        ByteArrayPool.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        /// act
+        ConversionCommand.SizeSearchResult result = ImageToFileWriter.saveJpeg(buildImage(), out, 0.8f, 100_000_000, 0.05f);
+
+        /// assert
+        assertThat(result.withinLimit()).isTrue();
+        assertThat(out.size()).isEqualTo(result.outputBytes());
+        // the buffer is small enough to be returned to the pool - a buffer of maxOutputBytes would not be pooled
+        assertThat(ByteArrayPool.getPooledBytes()).isBetween(1L, (long) ByteArrayPool.MAX_POOLED_ARRAY_SIZE);
+    }
+
+    @Test
+    void auto_jpeg_encoding_depends_on_the_image_size() {
+
+        /// act
+        ConversionCommand.JpegEncoding small = ImageToFileWriter.resolveJpegEncoding(ConversionCommand.JpegEncoding.AUTO, 180, 120);
+        ConversionCommand.JpegEncoding large = ImageToFileWriter.resolveJpegEncoding(ConversionCommand.JpegEncoding.AUTO, 640, 480);
+
+        /// assert
+        assertThat(small).isEqualTo(ConversionCommand.JpegEncoding.OPTIMIZED);
+        assertThat(large).isEqualTo(ConversionCommand.JpegEncoding.PROGRESSIVE);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static BufferedImage buildImage() {
+        BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42L);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 2) << 16 | (y * 3) << 8 | random.nextInt(32));
+            }
+        }
+        return image;
+    }
+}
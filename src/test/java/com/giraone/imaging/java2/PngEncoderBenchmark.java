@@ -0,0 +1,130 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.java2.resample.Resampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * JMH comparison of the ImageIO PNG writer and the Java {@link PngEncoder}: encoding time of all JPEG and PNG images
+ * of the test corpus in src/test/resources scaled to the given size. The total output size of each writer is printed
+ * during the setup. Run it like {@code PixelKernelsBenchmark} from the project directory:
+ * <pre>
+ * java -cp "target/test-classes:target/classes:$(cat cp.txt)" com.giraone.imaging.java2.PngEncoderBenchmark
+ * </pre>
+ * <pre>
+ * Typical results (Java 21.0.1, 1 core, 10 images, ms/op and total bytes):
+ * Benchmark   (size)             (writer)    Score       Bytes
+ * encode         640              IMAGEIO    229.2     3282406
+ * encode         640                 FAST    219.2     2550908  (-22.3%)
+ * encode         640              DEFAULT    470.7     2349436  (-28.4%)
+ * encode         640                SMALL   2264.8     2307133  (-29.7%)
+ * encode         640   DEFAULT_SEQUENTIAL    442.5     2349436  (-28.4%)
+ * encode        2000              IMAGEIO   2536.6    27775434
+ * encode        2000                 FAST   2160.6    17131338  (-38.3%)
+ * encode        2000              DEFAULT   3886.0    15250280  (-45.1%)
+ * encode        2000                SMALL  38900.2    14356209  (-48.3%)
+ * encode        2000   DEFAULT_SEQUENTIAL   2517.1    15250280  (-45.1%)
+ * Level 9 is rarely worth its time. On a single core the parallel chunks only add overhead; on n cores the deflate
+ * time drops to about 1/n.
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PngEncoderBenchmark {
+
+    private static final File CORPUS_DIRECTORY = new File("src/test/resources");
+
+    @Param({ "640", "2000" })
+    public int size;
+
+    @Param({ "IMAGEIO", "FAST", "DEFAULT", "SMALL", "DEFAULT_SEQUENTIAL" })
+    public String writer;
+
+    private final List<BufferedImage> images = new ArrayList<>();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(4 * 1024 * 1024);
+    private PngEncoder pngEncoder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final File[] files = CORPUS_DIRECTORY.listFiles((dir, name) -> name.endsWith(".jpg") || name.endsWith(".png"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No test images in " + CORPUS_DIRECTORY.getAbsolutePath());
+        }
+        final Resampler resampler = Resampler.forSpeedHint(ConversionCommand.SpeedHint.QUALITY);
+        final ConversionCommand command = new ConversionCommand();
+        command.setDimension(new Dimension(size, size));
+        for (File file : files) {
+            final BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                continue;
+            }
+            final Dimension target = command.getTargetDimension(image.getWidth(), image.getHeight());
+            images.add(ImageOpener.toIntRgb(resampler.resample(image, target.width, target.height)));
+        }
+        pngEncoder = switch (writer) {
+            case "IMAGEIO" -> null;
+            case "FAST" -> createEncoder(Deflater.BEST_SPEED);
+            case "SMALL" -> createEncoder(Deflater.BEST_COMPRESSION);
+            default -> createEncoder(PngEncoder.DEFAULT_COMPRESSION_LEVEL);
+        };
+        if ("DEFAULT_SEQUENTIAL".equals(writer)) {
+            pngEncoder.setExecutor(null);
+        }
+        System.out.println("\nTotal output of " + images.size() + " images with " + writer + " at " + size
+            + ": " + encode() + " bytes");
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        int bytes = 0;
+        for (BufferedImage image : images) {
+            out.reset();
+            if (pngEncoder == null) {
+                ImageToFileWriter.savePng(image, out, ImageToFileWriter.OutputStreamStrategy.POOLED_BUFFER);
+            } else {
+                ImageToFileWriter.savePng(image, out, pngEncoder);
+            }
+            bytes += out.size();
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PngEncoderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static PngEncoder createEncoder(int compressionLevel) {
+        final PngEncoder encoder = new PngEncoder();
+        encoder.setCompressionLevel(compressionLevel);
+        return encoder;
+    }
+}
@@ -0,0 +1,228 @@
+package com.giraone.imaging.java2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the Java PNG encoder. The output is decoded with ImageIO and compared pixel by pixel.
+ */
+class PngEncoderTest {
+
+    @ParameterizedTest
+    @EnumSource(PngEncoder.Filter.class)
+    void rgb_image_is_lossless_for_all_filters(PngEncoder.Filter filter) throws IOException {
+
+        /// arrange
+        BufferedImage image = createPhotoLikeImage(BufferedImage.TYPE_INT_RGB, 301, 257);
+        PngEncoder encoder = new PngEncoder();
+        encoder.setFilter(filter);
+
+        /// act
+        BufferedImage decoded = encodeAndDecode(encoder, image);
+
+        /// assert
+        assertSamePixels(decoded, image);
+    }
+
+    @Test
+    void parallel_chunks_produce_a_valid_stream() throws IOException {
+
+        /// arrange
+        BufferedImage image = createPhotoLikeImage(BufferedImage.TYPE_INT_ARGB, 640, 480);
+        PngEncoder encoder = new PngEncoder();
+        encoder.setChunkBytes(32 * 1024);
+        encoder.setCompressionLevel(Deflater.BEST_SPEED);
+
+        /// act
+        BufferedImage decoded = encodeAndDecode(encoder, image);
+
+        /// assert
+        assertThat(decoded.getColorModel().hasAlpha()).isTrue();
+        assertSamePixels(decoded, image);
+    }
+
+    @Test
+    void sequential_and_parallel_output_are_equal() throws IOException {
+
+        /// arrange
+        BufferedImage image = createPhotoLikeImage(BufferedImage.TYPE_3BYTE_BGR, 500, 400);
+        PngEncoder parallel = new PngEncoder();
+        PngEncoder sequential = new PngEncoder();
+        sequential.setExecutor(null);
+
+        /// act
+        byte[] parallelBytes = encode(parallel, image);
+        byte[] sequentialBytes = encode(sequential, image);
+
+        /// assert
+        assertThat(parallelBytes).isEqualTo(sequentialBytes);
+    }
+
+    @Test
+    void best_compression_is_not_larger_than_best_speed() throws IOException {
+
+        /// arrange
+        BufferedImage image = createPhotoLikeImage(BufferedImage.TYPE_INT_RGB, 400, 300);
+        PngEncoder fast = new PngEncoder();
+        fast.setCompressionLevel(Deflater.BEST_SPEED);
+        PngEncoder small = new PngEncoder();
+        small.setCompressionLevel(Deflater.BEST_COMPRESSION);
+
+        /// act
+        int fastSize = encode(fast, image).length;
+        int smallSize = encode(small, image).length;
+
+        /// assert
+        assertThat(smallSize).isLessThanOrEqualTo(fastSize);
+    }
+
+    @Test
+    void gray_pixels_are_written_as_grayscale() throws IOException {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.BLACK, 200, 0, Color.WHITE));
+        g.fillRect(0, 0, 200, 100);
+        g.dispose();
+
+        /// act
+        BufferedImage decoded = encodeAndDecode(new PngEncoder(), image);
+
+        /// assert
+        assertThat(decoded.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        // the samples are compared, because getRGB of TYPE_BYTE_GRAY converts from the linear gray color space
+        for (int x = 0; x < 200; x++) {
+            assertThat(decoded.getRaster().getSample(x, 50, 0)).isEqualTo(image.getRGB(x, 50) & 0xFF);
+        }
+    }
+
+    @Test
+    void few_colors_are_written_as_palette() throws IOException {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 60, 80);
+        g.setColor(new Color(0, 0, 255, 128));
+        g.fillRect(60, 0, 30, 80);
+        g.dispose();
+
+        /// act
+        BufferedImage decoded = encodeAndDecode(new PngEncoder(), image);
+
+        /// assert
+        assertThat(decoded.getColorModel()).isInstanceOf(IndexColorModel.class);
+        assertSamePixels(decoded, image);
+    }
+
+    @Test
+    void color_reduction_can_be_disabled() throws IOException {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        PngEncoder encoder = new PngEncoder();
+        encoder.setColorReduction(false);
+
+        /// act
+        BufferedImage decoded = encodeAndDecode(encoder, image);
+
+        /// assert
+        assertThat(decoded.getColorModel()).isNotInstanceOf(IndexColorModel.class);
+        assertThat(decoded.getColorModel().getNumComponents()).isEqualTo(3);
+        assertSamePixels(decoded, image);
+    }
+
+    @Test
+    void indexed_and_gray_images_are_written_directly() throws IOException {
+
+        /// arrange
+        BufferedImage indexed = createPhotoLikeImage(BufferedImage.TYPE_BYTE_INDEXED, 150, 100);
+        BufferedImage gray = createPhotoLikeImage(BufferedImage.TYPE_BYTE_GRAY, 150, 100);
+
+        /// act
+        BufferedImage decodedIndexed = encodeAndDecode(new PngEncoder(), indexed);
+        BufferedImage decodedGray = encodeAndDecode(new PngEncoder(), gray);
+
+        /// assert
+        assertThat(decodedIndexed.getColorModel()).isInstanceOf(IndexColorModel.class);
+        assertSamePixels(decodedIndexed, indexed);
+        assertThat(decodedGray.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        assertThat(decodedGray.getRaster().getDataElements(0, 0, 150, 100, null))
+            .isEqualTo(gray.getRaster().getDataElements(0, 0, 150, 100, null));
+    }
+
+    @Test
+    void adler32_checksums_are_combined() {
+
+        /// arrange
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + (i >> 7));
+        }
+        Adler32 all = new Adler32();
+        all.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 40_000);
+        Adler32 second = new Adler32();
+        second.update(data, 40_000, 60_000);
+
+        /// act
+        long combined = PngEncoder.combineAdler32(first.getValue(), second.getValue(), 60_000);
+
+        /// assert
+        assertThat(combined).isEqualTo(all.getValue());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static BufferedImage createPhotoLikeImage(int type, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + (x * y) % 7) & 0xFF;
+                int g = (y * 255 / height + (x ^ y) % 5) & 0xFF;
+                int b = ((x + y) * 3) & 0xFF;
+                int a = type == BufferedImage.TYPE_INT_ARGB ? (x * 5 + y) & 0xFF : 0xFF;
+                image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(PngEncoder encoder, BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage encodeAndDecode(PngEncoder encoder, BufferedImage image) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encode(encoder, image)));
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            assertThat(actual.getRGB(0, y, actual.getWidth(), 1, null, 0, actual.getWidth()))
+                .as("row %d", y)
+                .isEqualTo(expected.getRGB(0, y, expected.getWidth(), 1, null, 0, expected.getWidth()));
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.giraone.imaging.java2;
+
+import com.giraone.imaging.ByteBufferOutputSink;
+import com.giraone.imaging.ConversionCommand;
+import com.giraone.imaging.FileInfo;
+import com.giraone.imaging.FileTypeDetector;
+import com.giraone.imaging.MemoryBudget;
+import com.giraone.imaging.MemoryBudgetExceededException;
+import com.giraone.imaging.MemoryMappedFiles;
+import com.giraone.imaging.OutputSink;
+import com.giraone.imaging.TestFileHelper;
+import com.giraone.imaging.java2.resample.Resampler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
+import static com.giraone.imaging.MimeTypes.IMAGE_PNG;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for internals of the Java2D provider implementation.
+ */
+class ProviderJava2DTest {
+
+    private static final String TEST_FILE_JPEG_02 = "image-02.jpg";
+
+    private static File testFileJpeg02;
+
+    // -----------------------------------------------------------------------
+
+    @BeforeAll
+    static void initializeTestFiles() {
+        testFileJpeg02 = TestFileHelper.cloneTestFile(TEST_FILE_JPEG_02);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "6000, 4000, 180, 120, 23",
+        "6000, 4000, 1800, 1200, 2",
+        "1440, 900, 180, 112, 5",
+        "1440, 900, 1440, 900, 1",
+        "1440, 900, 2000, 2000, 1",
+        "1000, 1000, 100, 1000, 1",
+        "1000, 1000, 0, 0, 1"
+    })
+    void getSubsampling_works(int width, int height, int targetWidth, int targetHeight, int expected) {
+
+        /// act
+        int subsampling = ProviderJava2D.getSubsampling(width, height, targetWidth, targetHeight);
+
+        /// assert
+        assertThat(subsampling).isEqualTo(expected);
+        if (subsampling > 1) {
+            assertThat((width + subsampling - 1) / subsampling).isGreaterThanOrEqualTo(targetWidth);
+            assertThat((height + subsampling - 1) / subsampling).isGreaterThanOrEqualTo(targetHeight);
+        }
+    }
+
+    @Test
+    void openImage_with_subsampling_keeps_original_dimensions_in_file_info() throws Exception {
+
+        /// act
+        ImagePlusInfo imagePlusInfo = ImageOpener.openImage(testFileJpeg02, ImageOpener.DecodeEngine.IMAGE_IO, (w, h) -> 4);
+
+        /// assert
+        FileInfo fileInfo = imagePlusInfo.getFileInfo();
+        assertThat(fileInfo.getWidth()).isEqualTo(1440);
+        assertThat(fileInfo.getHeight()).isEqualTo(900);
+        assertThat(imagePlusInfo.getImage().getWidth()).isEqualTo(360);
+        assertThat(imagePlusInfo.getImage().getHeight()).isEqualTo(225);
+    }
+
+    @Test
+    void convertImage_with_and_without_subsampling_produce_same_dimensions() throws Exception {
+
+        /// arrange
+        ProviderJava2D subsampledProvider = new ProviderJava2D();
+        ProviderJava2D fullProvider = new ProviderJava2D();
+        fullProvider.setSubsampledDecoding(false);
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(180, 180));
+        File outFile1 = File.createTempFile("provider-java2d-subsampled-", ".jpg");
+        File outFile2 = File.createTempFile("provider-java2d-full-", ".jpg");
+        outFile1.deleteOnExit();
+        outFile2.deleteOnExit();
+
+        /// act
+        try (FileOutputStream outputStream = new FileOutputStream(outFile1)) {
+            subsampledProvider.convertImage(testFileJpeg02, outputStream, command);
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(outFile2)) {
+            fullProvider.convertImage(testFileJpeg02, outputStream, command);
+        }
+
+        /// assert
+        FileInfo fileInfo1 = subsampledProvider.fetchFileInfo(outFile1);
+        FileInfo fileInfo2 = fullProvider.fetchFileInfo(outFile2);
+        assertThat(fileInfo1.getWidth()).isEqualTo(180).isEqualTo(fileInfo2.getWidth());
+        assertThat(fileInfo1.getHeight()).isEqualTo(112).isEqualTo(fileInfo2.getHeight());
+    }
+
+    @Test
+    void createThumbnails_derives_all_sizes_from_one_decode() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        int[] sizes = { 128, 1024, 256, 90, 512 };
+        ConversionCommand[] commands = new ConversionCommand[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            File outFile = File.createTempFile("provider-java2d-rendition-" + sizes[i] + "-", ".jpg");
+            outFile.deleteOnExit();
+            commands[i] = ConversionCommand.buildConversionCommand(outFile, IMAGE_JPEG, sizes[i], sizes[i],
+                ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+        }
+
+        /// act
+        provider.createThumbnails(testFileJpeg02, commands);
+
+        /// assert
+        for (int i = 0; i < sizes.length; i++) {
+            FileInfo fileInfo = provider.fetchFileInfo(commands[i].getOutputFile());
+            Dimension expected = commands[i].getTargetDimension(1440, 900);
+            assertThat(fileInfo.getWidth()).isEqualTo(expected.width);
+            assertThat(fileInfo.getHeight()).isEqualTo(expected.height);
+        }
+    }
+
+    @Test
+    void createThumbnails_writes_nothing_after_a_scale_failure() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        ExecutorService encodeExecutor = Executors.newSingleThreadExecutor();
+        provider.setEncodeExecutor(encodeExecutor);
+        Resampler resampler = provider.getResampler(ConversionCommand.SpeedHint.QUALITY);
+        AtomicInteger resampleCount = new AtomicInteger();
+        provider.setResampler(ConversionCommand.SpeedHint.QUALITY, (source, width, height) -> {
+            if (resampleCount.incrementAndGet() == 3) {
+                throw new IllegalStateException("scale failed");
+            }
+            return resampler.resample(source, width, height);
+        });
+        AtomicInteger openStreams = new AtomicInteger();
+        AtomicInteger closedStreams = new AtomicInteger();
+        int[] sizes = { 512, 256, 128 };
+        ConversionCommand[] commands = new ConversionCommand[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            commands[i] = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, sizes[i], sizes[i],
+                ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+            commands[i].setOutputSink(() -> {
+                openStreams.incrementAndGet();
+                return new ByteArrayOutputStream() {
+                    @Override
+                    public void close() {
+                        try {
+                            Thread.sleep(100L);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        closedStreams.incrementAndGet();
+                    }
+                };
+            });
+        }
+
+        /// act
+        try {
+            assertThatThrownBy(() -> provider.createThumbnails(testFileJpeg02, commands))
+                .isInstanceOf(IllegalStateException.class);
+            int closedAtFailure = closedStreams.get();
+
+            /// assert
+            assertThat(openStreams.get()).isEqualTo(closedAtFailure);
+            encodeExecutor.shutdown();
+            assertThat(encodeExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(openStreams.get()).isEqualTo(closedAtFailure);
+        } finally {
+            encodeExecutor.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConversionCommand.SpeedHint.class)
+    void convertImage_works_with_all_speed_hints(ConversionCommand.SpeedHint speedHint) throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        File outFile = File.createTempFile("provider-java2d-speed-" + speedHint + "-", ".jpg");
+        outFile.deleteOnExit();
+        ConversionCommand command = ConversionCommand.buildConversionCommand(outFile, IMAGE_JPEG, 200, 200,
+            ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+        command.setSpeedHint(speedHint);
+
+        /// act
+        try (FileOutputStream out = new FileOutputStream(outFile)) {
+            provider.convertImage(testFileJpeg02, out, command);
+        }
+
+        /// assert
+        FileInfo fileInfo = provider.fetchFileInfo(outFile);
+        assertThat(fileInfo.getWidth()).isEqualTo(200);
+        assertThat(fileInfo.getHeight()).isEqualTo(125);
+    }
+
+    @Test
+    void estimatePeakBytes_uses_subsampled_size_and_renditions() {
+
+        /// arrange
+        ConversionCommand command = new ConversionCommand();
+        command.setDimension(new Dimension(180, 180));
+
+        /// act
+        long full = ProviderJava2D.estimatePeakBytes(1440, 900, 1, 3, new ConversionCommand[] { command });
+        long subsampled = ProviderJava2D.estimatePeakBytes(1440, 900, 5, 3, new ConversionCommand[] { command });
+
+        /// assert
+        long rendition = 180L * 112 * ProviderJava2D.BYTES_PER_RENDITION_PIXEL;
+        assertThat(full).isEqualTo(1440L * 900 * (3 + ProviderJava2D.BYTES_PER_INTERMEDIATE_PIXEL) + rendition);
+        assertThat(subsampled).isEqualTo(288L * 180 * (3 + ProviderJava2D.BYTES_PER_INTERMEDIATE_PIXEL) + rendition);
+    }
+
+    @Test
+    void getDecodedBytesPerPixel_follows_native_layout() {
+
+        /// assert
+        assertThat(ProviderJava2D.getDecodedBytesPerPixel(FileTypeDetector.FileType.JPEG, 8)).isEqualTo(1);
+        assertThat(ProviderJava2D.getDecodedBytesPerPixel(FileTypeDetector.FileType.JPEG, 24)).isEqualTo(3);
+        assertThat(ProviderJava2D.getDecodedBytesPerPixel(FileTypeDetector.FileType.PNG, 8)).isEqualTo(3);
+        assertThat(ProviderJava2D.getDecodedBytesPerPixel(FileTypeDetector.FileType.PNG, 32)).isEqualTo(4);
+        assertThat(ProviderJava2D.getDecodedBytesPerPixel(FileTypeDetector.FileType.TIFF, 0)).isEqualTo(4);
+    }
+
+    @Test
+    void convertImage_reserves_and_releases_memory_budget() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        MemoryBudget memoryBudget = new MemoryBudget(64L * 1024 * 1024);
+        provider.setMemoryBudget(memoryBudget);
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(180, 180));
+        File outFile = File.createTempFile("provider-java2d-budget-", ".jpg");
+        outFile.deleteOnExit();
+
+        /// act
+        try (FileOutputStream out = new FileOutputStream(outFile)) {
+            provider.convertImage(testFileJpeg02, out, command);
+        }
+
+        /// assert
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getPeakUsedBytes()).isEqualTo(ProviderJava2D.estimatePeakBytes(1440, 900,
+            ProviderJava2D.getSubsampling(1440, 900, 180, 112), 3, new ConversionCommand[] { command }));
+    }
+
+    @Test
+    void convertImage_fails_fast_when_memory_budget_is_exhausted() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        MemoryBudget memoryBudget = new MemoryBudget(64L * 1024 * 1024);
+        memoryBudget.setPolicy(MemoryBudget.Policy.FAIL_FAST);
+        provider.setMemoryBudget(memoryBudget);
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(180, 180));
+        File outFile = File.createTempFile("provider-java2d-budget-", ".jpg");
+        outFile.deleteOnExit();
+
+        /// act
+        try (MemoryBudget.Reservation ignored = memoryBudget.reserve(memoryBudget.getCapacityBytes());
+             FileOutputStream out = new FileOutputStream(outFile)) {
+            /// assert
+            assertThatThrownBy(() -> provider.convertImage(testFileJpeg02, out, command))
+                .isInstanceOf(MemoryBudgetExceededException.class);
+        }
+        assertThat(memoryBudget.getRejectedCount()).isEqualTo(1);
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void convertImage_from_buffer_and_stream_is_equal_to_file() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(180, 180));
+        byte[] bytes = Files.readAllBytes(testFileJpeg02.toPath());
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 7);
+        direct.put(new byte[7]).put(bytes).flip().position(7);
+        ByteArrayOutputStream fromFile = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromBuffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+
+        /// act
+        provider.convertImage(testFileJpeg02, fromFile, command);
+        provider.convertImage(direct, fromBuffer, command);
+        try (FileInputStream in = new FileInputStream(testFileJpeg02)) {
+            provider.convertImage(in, fromStream, command);
+        }
+
+        /// assert
+        assertThat(fromBuffer.toByteArray()).isEqualTo(fromFile.toByteArray());
+        assertThat(fromStream.toByteArray()).isEqualTo(fromFile.toByteArray());
+        assertThat(direct.position()).isEqualTo(7);
+        FileInfo fileInfo = provider.fetchFileInfo(direct);
+        assertThat(fileInfo.getWidth()).isEqualTo(1440);
+        assertThat(fileInfo.getHeight()).isEqualTo(900);
+    }
+
+    @Test
+    void memory_mapped_input_is_equal_to_file_input() throws Exception {
+
+        /// arrange
+        ProviderJava2D streamProvider = new ProviderJava2D();
+        streamProvider.setMappedInputThreshold(MemoryMappedFiles.DISABLED);
+        ProviderJava2D mappedProvider = new ProviderJava2D();
+        mappedProvider.setMappedInputThreshold(0L);
+        mappedProvider.setDecodedImageCache(new DecodedImageCache(100_000_000L));
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setDimension(new Dimension(180, 180));
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromMapping = new ByteArrayOutputStream();
+
+        /// act
+        streamProvider.convertImage(testFileJpeg02, fromStream, command);
+        mappedProvider.convertImage(testFileJpeg02, fromMapping, command);
+        mappedProvider.convertImage(testFileJpeg02, new ByteArrayOutputStream(), command);
+        FileInfo fileInfo = mappedProvider.fetchFileInfo(testFileJpeg02);
+
+        /// assert
+        assertThat(fromMapping.toByteArray()).isEqualTo(fromStream.toByteArray());
+        assertThat(mappedProvider.getDecodedImageCache().getHitCount()).isEqualTo(1L);
+        assertThat(fileInfo.getWidth()).isEqualTo(1440);
+        assertThat(fileInfo.getHeight()).isEqualTo(900);
+    }
+
+    @Test
+    void byteBufferImageInputStream_reads_and_seeks() throws Exception {
+
+        /// arrange
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3, 4, 5 }).position(1);
+
+        /// act
+        try (ByteBufferImageInputStream in = new ByteBufferImageInputStream(buffer)) {
+            byte[] b = new byte[10];
+            int read = in.read(b, 0, 10);
+            in.seek(2);
+
+            /// assert
+            assertThat(read).isEqualTo(5);
+            assertThat(in.length()).isEqualTo(5);
+            assertThat(in.read()).isEqualTo(3);
+            assertThat(in.readUnsignedShort()).isEqualTo(0x0405);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void createThumbnails_writes_to_output_sinks() throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        ByteBufferOutputSink bufferSink = new ByteBufferOutputSink(1024);
+        ByteArrayOutputStream channelTarget = new ByteArrayOutputStream();
+        ConversionCommand toBuffer = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 160, 160,
+            ConversionCommand.CompressionQuality.LOSSY_MEDIUM);
+        toBuffer.setOutputSink(bufferSink);
+        ConversionCommand toChannel = new ConversionCommand(toBuffer);
+        toChannel.setOutputSink(OutputSink.toChannel(Channels.newChannel(channelTarget)));
+
+        /// act
+        provider.createThumbnails(testFileJpeg02, new ConversionCommand[] { toBuffer, toChannel });
+
+        /// assert
+        assertThat(bufferSink.size()).isPositive();
+        assertThat(bufferSink.toByteArray()).isEqualTo(channelTarget.toByteArray());
+        FileInfo fileInfo = provider.fetchFileInfo(bufferSink.toByteBuffer());
+        assertThat(fileInfo.getWidth()).isEqualTo(160);
+        assertThat(fileInfo.getHeight()).isEqualTo(100);
+        bufferSink.release();
+        assertThat(bufferSink.size()).isZero();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "1000000, true",
+        "12000, true",
+        "300, false"
+    })
+    void createThumbnail_with_maxOutputBytes_searches_jpeg_quality(int maxOutputBytes, boolean withinLimit) throws Exception {
+
+        /// arrange
+        ProviderJava2D provider = new ProviderJava2D();
+        ByteBufferOutputSink sink = new ByteBufferOutputSink();
+        ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 480, 480,
+            ConversionCommand.CompressionQuality.LOSSY_BEST);
+        command.setOutputSink(sink);
+        command.setMaxOutputBytes(maxOutputBytes);
+        command.setMaxOutputBytesTolerance(0.2f);
+
+        /// act
+        provider.createThumbnail(testFileJpeg02, command);
+
+        /// assert
+        ConversionCommand.SizeSearchResult result = command.getSizeSearchResult();
+        assertThat(result).isNotNull();
+        assertThat(result.withinLimit()).isEqualTo(withinLimit);
+        assertThat(result.outputBytes()).isEqualTo(sink.size());
+        assertThat(result.iterations()).isBetween(1, 10);
+        if (withinLimit) {
+            assertThat(sink.size()).isLessThanOrEqualTo(maxOutputBytes);
+        } else {
+            assertThat(result.quality()).isEqualTo(ImageToFileWriter.MIN_SEARCH_QUALITY);
+        }
+        if (maxOutputBytes == 1000000) {
+            assertThat(result.iterations()).isEqualTo(1);
+        }
+        FileInfo fileInfo = provider.fetchFileInfo(sink.toByteBuffer());
+        assertThat(fileInfo.getWidth()).isEqualTo(480);
+    }
+
+    @Test
+    void openImage_keeps_native_jpeg_layout() throws Exception {
+
+        /// act
+        ImagePlusInfo imagePlusInfo = ImageOpener.openImage(testFileJpeg02);
+
+        /// assert
+        assertThat(imagePlusInfo.getImage().getType()).isEqualTo(BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    void convertImage_keeps_png_transparency() throws Exception {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics2D = image.createGraphics();
+        graphics2D.setColor(Color.RED);
+        graphics2D.fillOval(100, 50, 200, 200);
+        graphics2D.dispose();
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_PNG, 200, 150,
+            ConversionCommand.CompressionQuality.LOSSLESS);
+
+        /// act
+        new ProviderJava2D().convertImage(ByteBuffer.wrap(input.toByteArray()), out, command);
+
+        /// assert
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(result.getColorModel().hasAlpha()).isTrue();
+        assertThat(result.getRGB(0, 0) >>> 24).isZero();
+        assertThat(result.getRGB(100, 75)).isEqualTo(0xFFFF0000);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "image/jpeg",
+        "image/png"
+    })
+    void convertImage_keeps_gray_images_gray(String outputFormat) throws Exception {
+
+        /// arrange
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics2D = image.createGraphics();
+        graphics2D.setPaint(new GradientPaint(0, 0, Color.BLACK, 400, 300, Color.WHITE));
+        graphics2D.fillRect(0, 0, 400, 300);
+        graphics2D.dispose();
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, outputFormat, 200, 150,
+            ConversionCommand.CompressionQuality.LOSSY_BEST);
+
+        /// act
+        new ProviderJava2D().convertImage(ByteBuffer.wrap(input.toByteArray()), out, command);
+
+        /// assert
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(result.getWidth()).isEqualTo(200);
+        assertThat(result.getColorModel().getNumComponents()).isEqualTo(1);
+    }
+}
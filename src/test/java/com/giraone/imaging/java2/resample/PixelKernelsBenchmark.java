@@ -0,0 +1,146 @@
+package com.giraone.imaging.java2.resample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the scalar and the Vector API pixel kernels. Run it from the IDE or with
+ * <pre>
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector -cp "target/test-classes:target/classes:$(cat cp.txt)" \
+ *   com.giraone.imaging.java2.resample.PixelKernelsBenchmark
+ * </pre>
+ * where cp.txt is created by {@code mvn dependency:build-classpath -Dmdep.outputFile=cp.txt}.
+ * <pre>
+ * Typical results (Java 21.0.1, 1 core with AVX-512, 1920 pixels per row, ops/ms):
+ * Benchmark                (kernels)   Score
+ * convolveHorizontal          scalar      53  (5 taps - the vector kernels use the scalar loop)
+ * convolveHorizontal          vector      48
+ * convolveHorizontalWide      scalar      58  (25 taps)
+ * convolveHorizontalWide      vector      92
+ * convolveVertical            scalar      18
+ * convolveVertical            vector     208
+ * packedToBgr                 scalar     407
+ * packedToBgr                 vector    2810
+ * premultiply                 scalar     108
+ * premultiply                 vector     587
+ * unpremultiply               scalar      58
+ * unpremultiply               vector     289
+ * resampleBilinear            scalar   0.034  (1920x1280 to 640x427)
+ * resampleBilinear            vector   0.087
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PixelKernelsBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int ROWS = 8;
+
+    @Param({ "scalar", "vector" })
+    public String kernels;
+
+    private PixelKernels pixelKernels;
+    private int[] pixels;
+    private int[] work;
+    private int[] target;
+    private byte[] bgr;
+    private Coefficients horizontal;
+    private Coefficients horizontalWide;
+    private Coefficients vertical;
+    private BufferedImage image;
+    private AbstractResampler resampler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pixelKernels = "vector".equals(kernels) ? PixelKernels.getInstance() : new ScalarPixelKernels();
+        if ("vector".equals(kernels) && !(pixelKernels instanceof VectorPixelKernels)) {
+            throw new IllegalStateException("Vector API not available - use --add-modules=jdk.incubator.vector");
+        }
+        final Random random = new Random(42L);
+        pixels = new int[WIDTH * ROWS];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        work = new int[pixels.length];
+        target = new int[WIDTH];
+        bgr = new byte[WIDTH * 3];
+        horizontal = Coefficients.compute(new BilinearResampler().getFilter(), WIDTH, WIDTH / 3);
+        horizontalWide = Coefficients.compute(new Lanczos3Resampler().getFilter(), WIDTH, WIDTH / 8);
+        vertical = Coefficients.compute(new BilinearResampler().getFilter(), ROWS, ROWS / 3);
+        image = new BufferedImage(WIDTH, 1280, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, WIDTH, ROWS, pixels, 0, WIDTH);
+        resampler = new BilinearResampler();
+        resampler.setParallelThreshold(Long.MAX_VALUE);
+        resampler.setPixelKernels(pixelKernels);
+    }
+
+    @Benchmark
+    public int[] convolveHorizontal() {
+        pixelKernels.convolveHorizontal(pixels, 0, target, 0, horizontal, true);
+        return target;
+    }
+
+    @Benchmark
+    public int[] convolveHorizontalWide() {
+        pixelKernels.convolveHorizontal(pixels, 0, target, 0, horizontalWide, true);
+        return target;
+    }
+
+    @Benchmark
+    public int[] convolveVertical() {
+        pixelKernels.convolveVertical(pixels, WIDTH, 0, vertical.count[1], vertical.weights, vertical.kernelSize,
+            target, 0, true);
+        return target;
+    }
+
+    @Benchmark
+    public int[] premultiply() {
+        System.arraycopy(pixels, 0, work, 0, WIDTH);
+        pixelKernels.premultiply(work, 0, WIDTH);
+        return work;
+    }
+
+    @Benchmark
+    public int[] unpremultiply() {
+        System.arraycopy(pixels, 0, work, 0, WIDTH);
+        pixelKernels.unpremultiply(work, 0, WIDTH);
+        return work;
+    }
+
+    @Benchmark
+    public byte[] packedToBgr() {
+        pixelKernels.packedToBgr(pixels, 0, bgr, 0, WIDTH);
+        return bgr;
+    }
+
+    @Benchmark
+    public BufferedImage resampleBilinear() {
+        return resampler.resample(image, 640, 427);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PixelKernelsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package com.giraone.imaging.java2.resample;
+
+import com.giraone.imaging.ConversionCommand;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests comparing the Vector API kernels with the scalar kernels. Skipped, if the Vector API is not available.
+ */
+class PixelKernelsTest {
+
+    private static final PixelKernels SCALAR = new ScalarPixelKernels();
+    private static PixelKernels vector;
+
+    @BeforeAll
+    static void selectVectorKernels() {
+        vector = PixelKernels.getInstance();
+    }
+
+    @Test
+    void vector_kernels_are_selected_when_module_is_present() {
+
+        /// arrange
+        boolean modulePresent = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+        /// act
+        PixelKernels kernels = PixelKernels.getInstance();
+
+        /// assert
+        assertThat(kernels.getClass().getSimpleName()).isEqualTo(modulePresent ? "VectorPixelKernels" : "ScalarPixelKernels");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 7, 64, 1001 })
+    void premultiply_and_unpremultiply_are_equal(int length) {
+
+        assumeVectorKernels();
+
+        /// arrange
+        int[] pixels = randomPixels(length + 3, length);
+        int[] expected = pixels.clone();
+        int[] actual = pixels.clone();
+
+        /// act + assert
+        SCALAR.premultiply(expected, 3, length);
+        vector.premultiply(actual, 3, length);
+        assertThat(actual).isEqualTo(expected);
+        SCALAR.unpremultiply(expected, 3, length);
+        vector.unpremultiply(actual, 3, length);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void unpremultiply_is_equal_for_all_channel_and_alpha_values() {
+
+        assumeVectorKernels();
+
+        /// arrange
+        int[] pixels = new int[256 * 256];
+        for (int a = 0; a < 256; a++) {
+            for (int c = 0; c < 256; c++) {
+                pixels[a * 256 + c] = a << 24 | c << 16 | (255 - c) << 8 | (c * 7 & 0xff);
+            }
+        }
+        int[] expected = pixels.clone();
+        int[] actual = pixels.clone();
+
+        /// act
+        SCALAR.unpremultiply(expected, 0, expected.length);
+        vector.unpremultiply(actual, 0, actual.length);
+
+        /// assert
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 5, 33, 1001 })
+    void packedToBgr_is_equal(int length) {
+
+        assumeVectorKernels();
+
+        /// arrange
+        int[] pixels = randomPixels(length + 2, length);
+        byte[] expected = new byte[length * 3 + 4];
+        byte[] actual = new byte[length * 3 + 4];
+
+        /// act
+        SCALAR.packedToBgr(pixels, 2, expected, 1, length);
+        vector.packedToBgr(pixels, 2, actual, 1, length);
+
+        /// assert
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConversionCommand.SpeedHint.class)
+    void resamplers_are_equal_with_scalar_and_vector_kernels(ConversionCommand.SpeedHint speedHint) {
+
+        assumeVectorKernels();
+
+        /// arrange
+        AbstractResampler scalarResampler = (AbstractResampler) Resampler.forSpeedHint(speedHint);
+        scalarResampler.setPixelKernels(SCALAR);
+        AbstractResampler vectorResampler = (AbstractResampler) Resampler.forSpeedHint(speedHint);
+        vectorResampler.setPixelKernels(vector);
+
+        for (int type : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB }) {
+            BufferedImage source = new BufferedImage(503, 301, type);
+            int[] pixels = randomPixels(503 * 301, 503 * 301);
+            source.setRGB(0, 0, 503, 301, pixels, 0, 503);
+            for (int[] size : new int[][] { { 97, 61 }, { 503, 77 }, { 211, 301 }, { 800, 600 } }) {
+
+                /// act
+                BufferedImage expected = scalarResampler.resample(source, size[0], size[1]);
+                BufferedImage actual = vectorResampler.resample(source, size[0], size[1]);
+
+                /// assert
+                assertThat(actual.getRGB(0, 0, size[0], size[1], null, 0, size[0]))
+                    .isEqualTo(expected.getRGB(0, 0, size[0], size[1], null, 0, size[0]));
+            }
+        }
+    }
+
+    @Test
+    void toBgr_blends_alpha_onto_black() {
+
+        /// arrange
+        BufferedImage source = new BufferedImage(3, 1, BufferedImage.TYPE_INT_ARGB);
+        source.setRGB(0, 0, 0xff102030);
+        source.setRGB(1, 0, 0x80ff8000);
+        source.setRGB(2, 0, 0x00ffffff);
+
+        /// act
+        BufferedImage bgr = PixelFormats.toBgr(source);
+
+        /// assert
+        assertThat(bgr.getType()).isEqualTo(BufferedImage.TYPE_3BYTE_BGR);
+        byte[] bytes = ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
+        assertThat(bytes).containsExactly(0x30, 0x20, 0x10, 0x00, 0x40, 0x80, 0x00, 0x00, 0x00);
+    }
+
+    private static void assumeVectorKernels() {
+        assumeTrue(vector instanceof VectorPixelKernels, "Vector API not available");
+    }
+
+    private static int[] randomPixels(int size, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
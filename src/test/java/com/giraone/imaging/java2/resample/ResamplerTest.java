@@ -0,0 +1,174 @@
+package com.giraone.imaging.java2.resample;
+
+import com.giraone.imaging.ConversionCommand;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the resampler implementations.
+ */
+class ResamplerTest {
+
+    private static final int[] IMAGE_TYPES = {
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR,
+        BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_BYTE_INDEXED
+    };
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    static Stream<Arguments> speedHintsAndImageTypes() {
+        return Stream.of(ConversionCommand.SpeedHint.values())
+            .flatMap(speedHint -> Arrays.stream(IMAGE_TYPES).mapToObj(type -> Arguments.of(speedHint, type)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("speedHintsAndImageTypes")
+    void resample_produces_exact_size_and_keeps_uniform_color(ConversionCommand.SpeedHint speedHint, int imageType) {
+
+        /// arrange
+        Resampler resampler = Resampler.forSpeedHint(speedHint);
+        BufferedImage source = new BufferedImage(1001, 667, imageType);
+        int color = imageType == BufferedImage.TYPE_BYTE_GRAY ? 0xff808080 : 0xff336699;
+        fill(source, color);
+        // gray values are used as they are (like drawImage does) and not gamma converted like getRGB does
+        int expected = imageType == BufferedImage.TYPE_BYTE_GRAY
+            ? 0xff000000 | source.getRaster().getSample(0, 0, 0) * 0x010101 : source.getRGB(0, 0);
+
+        /// act
+        BufferedImage smaller = resampler.resample(source, 120, 80);
+        BufferedImage larger = resampler.resample(source, 1500, 1000);
+        BufferedImage onlyHeight = resampler.resample(source, 1001, 333);
+
+        /// assert
+        assertThat(smaller.getWidth()).isEqualTo(120);
+        assertThat(smaller.getHeight()).isEqualTo(80);
+        assertThat(larger.getWidth()).isEqualTo(1500);
+        assertThat(larger.getHeight()).isEqualTo(1000);
+        assertThat(onlyHeight.getWidth()).isEqualTo(1001);
+        assertThat(onlyHeight.getHeight()).isEqualTo(333);
+        assertThat(getPixel(smaller, 60, 40)).isEqualTo(expected);
+        assertThat(getPixel(larger, 1499, 999)).isEqualTo(expected);
+        assertThat(getPixel(onlyHeight, 500, 0)).isEqualTo(expected);
+        if (imageType == BufferedImage.TYPE_BYTE_GRAY) {
+            assertThat(smaller.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConversionCommand.SpeedHint.class)
+    void resample_returns_source_for_same_size(ConversionCommand.SpeedHint speedHint) {
+
+        /// arrange
+        BufferedImage source = new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB);
+
+        /// act
+        BufferedImage result = Resampler.forSpeedHint(speedHint).resample(source, 100, 50);
+
+        /// assert
+        assertThat(result).isSameAs(source);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConversionCommand.SpeedHint.class)
+    void resample_does_not_bleed_color_of_transparent_pixels(ConversionCommand.SpeedHint speedHint) {
+
+        /// arrange - left half opaque red, right half fully transparent green
+        BufferedImage source = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                source.setRGB(x, y, x < 32 ? 0xffff0000 : 0x0000ff00);
+            }
+        }
+
+        /// act
+        BufferedImage result = Resampler.forSpeedHint(speedHint).resample(source, 16, 16);
+
+        /// assert
+        assertThat(result.getColorModel().hasAlpha()).isTrue();
+        for (int x = 0; x < 16; x++) {
+            int argb = result.getRGB(x, 8);
+            if ((argb >>> 24) != 0) {
+                assertThat(argb & 0x00ffffff).isEqualTo(0x00ff0000);
+            }
+        }
+        assertThat(result.getRGB(0, 8)).isEqualTo(0xffff0000);
+        assertThat(result.getRGB(15, 8) >>> 24).isZero();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ConversionCommand.SpeedHint.class, names = { "BALANCED", "QUALITY", "ULTRA_QUALITY" })
+    void resample_averages_fine_patterns(ConversionCommand.SpeedHint speedHint) {
+
+        /// arrange - one pixel black and white checkerboard
+        BufferedImage source = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                source.setRGB(x, y, ((x + y) & 1) == 0 ? 0xffffffff : 0xff000000);
+            }
+        }
+
+        /// act
+        BufferedImage result = Resampler.forSpeedHint(speedHint).resample(source, 32, 32);
+
+        /// assert
+        int gray = result.getRGB(16, 16) & 0xff;
+        assertThat(gray).isBetween(120, 135);
+    }
+
+    @ParameterizedTest
+    @MethodSource("speedHintsAndImageTypes")
+    void resample_parallel_is_bit_identical_to_sequential(ConversionCommand.SpeedHint speedHint, int imageType) {
+
+        /// arrange
+        BufferedImage source = new BufferedImage(701, 523, imageType);
+        Random random = new Random(4711L);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, random.nextInt());
+            }
+        }
+        AbstractResampler sequential = (AbstractResampler) Resampler.forSpeedHint(speedHint);
+        sequential.setParallelThreshold(Long.MAX_VALUE);
+        AbstractResampler parallel = (AbstractResampler) Resampler.forSpeedHint(speedHint);
+        parallel.setParallelThreshold(0L);
+        parallel.setForkJoinPool(POOL);
+
+        for (int[] size : new int[][] { { 97, 61 }, { 350, 523 }, { 701, 200 }, { 1200, 900 } }) {
+            /// act
+            BufferedImage expected = sequential.resample(source, size[0], size[1]);
+            BufferedImage actual = parallel.resample(source, size[0], size[1]);
+
+            /// assert
+            assertThat(actual.getRGB(0, 0, size[0], size[1], null, 0, size[0]))
+                .isEqualTo(expected.getRGB(0, 0, size[0], size[1], null, 0, size[0]));
+        }
+    }
+
+    private static int getPixel(BufferedImage image, int x, int y) {
+        // gray results are compared without the gamma conversion of getRGB
+        return image.getType() == BufferedImage.TYPE_BYTE_GRAY
+            ? 0xff000000 | image.getRaster().getSample(x, y, 0) * 0x010101 : image.getRGB(x, y);
+    }
+
+    private static void fill(BufferedImage image, int argb) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+    }
+}
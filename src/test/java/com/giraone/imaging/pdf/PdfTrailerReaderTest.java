@@ -0,0 +1,277 @@
+package com.giraone.imaging.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import static com.giraone.imaging.TestFileHelper.readTestFile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for reading the page count and the document information without loading the document.
+ * The results are compared with PDFBox.
+ */
+class PdfTrailerReaderTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "document-01-PDF-1.3.pdf", "document-02-PDF-1.4.pdf" })
+    void xref_table_documents_are_equal_to_pdfbox(String fileName) throws Exception {
+
+        /// arrange
+        File pdfFile = new File("src/test/resources/" + fileName);
+
+        /// act
+        Integer pageCount = PdfTrailerReader.readPageCount(pdfFile);
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(pdfFile);
+
+        /// assert
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            assertThat(pageCount).isEqualTo(document.getNumberOfPages());
+            assertThat(documentInformation).usingRecursiveComparison()
+                .isEqualTo(PdfDocumentInformation.build(document.getDocumentInformation()));
+        }
+    }
+
+    @Test
+    void xref_and_object_streams_are_read() throws Exception {
+
+        /// arrange
+        byte[] pdf = createDocument(7, "Überschrift €", CompressParameters.DEFAULT_COMPRESSION);
+
+        /// act
+        Integer pageCount = PdfTrailerReader.readPageCount(ByteBuffer.wrap(pdf));
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(ByteBuffer.wrap(pdf));
+
+        /// assert
+        assertThat(new String(pdf, StandardCharsets.ISO_8859_1)).contains("/XRef", "/ObjStm");
+        assertThat(pageCount).isEqualTo(7);
+        assertThat(documentInformation.getTitle()).isEqualTo("Überschrift €");
+        assertThat(documentInformation.getAuthor()).isEqualTo("Author (with parentheses)");
+        assertThat(documentInformation.getCreationDate().getTimeInMillis())
+            .isEqualTo(new GregorianCalendar(2024, 1, 29, 12, 30, 15).getTimeInMillis());
+    }
+
+    @Test
+    void incremental_update_is_read() throws Exception {
+
+        /// arrange
+        byte[] original = createDocument(2, "Original", CompressParameters.NO_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument document = Loader.loadPDF(original)) {
+            document.getDocumentInformation().setTitle("Updated");
+            document.getDocumentInformation().getCOSObject().setNeedToBeUpdated(true);
+            document.saveIncremental(out);
+        }
+        byte[] updated = out.toByteArray();
+
+        /// act
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(ByteBuffer.wrap(updated));
+
+        /// assert
+        assertThat(updated).startsWith(original);
+        assertThat(documentInformation.getTitle()).isEqualTo("Updated");
+        assertThat(PdfTrailerReader.readPageCount(ByteBuffer.wrap(updated))).isEqualTo(2);
+    }
+
+    @Test
+    void damaged_document_falls_back_to_pdfbox() throws Exception {
+
+        /// arrange
+        byte[] pdf = readTestFile("document-01-PDF-1.3.pdf");
+        String content = new String(pdf, StandardCharsets.ISO_8859_1);
+        int startXref = content.lastIndexOf("startxref");
+        // point startxref to a wrong offset
+        byte[] damaged = content.substring(0, startXref).concat("startxref\n1000\n%%EOF\n").getBytes(StandardCharsets.ISO_8859_1);
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+
+        /// act
+        Integer pageCount = PdfTrailerReader.readPageCount(ByteBuffer.wrap(damaged));
+
+        /// assert
+        assertThat(pageCount).isNull();
+        assertThat(provider.countPages(ByteBuffer.wrap(damaged))).isEqualTo(3);
+    }
+
+    @Test
+    void encrypted_document_falls_back_to_pdfbox() throws Exception {
+
+        /// arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PDDocument document = Loader.loadPDF(createDocument(3, "Secret", CompressParameters.NO_COMPRESSION))) {
+            StandardProtectionPolicy policy = new StandardProtectionPolicy("owner", "", new AccessPermission());
+            policy.setEncryptionKeyLength(128);
+            document.protect(policy);
+            document.save(out);
+        }
+        byte[] encrypted = out.toByteArray();
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+
+        /// act
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(ByteBuffer.wrap(encrypted));
+
+        /// assert
+        assertThat(documentInformation).isNull();
+        assertThat(provider.getDocumentInformation(ByteBuffer.wrap(encrypted)).getTitle()).isEqualTo("Secret");
+        assertThat(provider.countPages(ByteBuffer.wrap(encrypted))).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 2, 4 })
+    void cyclic_object_streams_are_not_read(int objectStreamOfStream2) throws Exception {
+
+        /// arrange
+        // object 1 (the catalog) is stored in object stream 2, which is itself stored in an object stream
+        byte[] pdf = createXrefStreamDocument(new int[][] {
+            { 0, 0, 0 }, { 2, 2, 0 }, { 2, objectStreamOfStream2, 0 }, { 1, -1, 0 }, { 2, 2, 1 }
+        });
+
+        /// act
+        Integer pageCount = PdfTrailerReader.readPageCount(ByteBuffer.wrap(pdf));
+
+        /// assert
+        assertThat(pageCount).isNull();
+    }
+
+    @Test
+    void hybrid_xref_objects_in_object_streams_are_read() throws Exception {
+
+        /// arrange
+        byte[] pdf = createHybridDocument(true);
+
+        /// act
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(ByteBuffer.wrap(pdf));
+
+        /// assert
+        assertThat(documentInformation.getTitle()).isEqualTo("Hybrid");
+        assertThat(documentInformation.getAuthor()).isEqualTo("Me");
+        assertThat(PdfTrailerReader.readPageCount(ByteBuffer.wrap(pdf))).isEqualTo(1);
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            assertThat(documentInformation).usingRecursiveComparison()
+                .isEqualTo(PdfDocumentInformation.build(document.getDocumentInformation()));
+        }
+    }
+
+    @Test
+    void unresolved_information_dictionary_falls_back_to_pdfbox() {
+
+        /// arrange
+        // without /XRefStm the information dictionary is a free object
+        byte[] pdf = createHybridDocument(false);
+
+        /// act
+        PdfDocumentInformation documentInformation = PdfTrailerReader.readDocumentInformation(ByteBuffer.wrap(pdf));
+
+        /// assert
+        assertThat(documentInformation).isNull();
+    }
+
+    @Test
+    void provider_uses_trailer_reader_for_file_and_buffer_input() throws Exception {
+
+        /// arrange
+        File pdfFile = new File("src/test/resources/document-02-PDF-1.4.pdf");
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        PdfProviderPdfBox pdfBoxOnly = new PdfProviderPdfBox();
+        pdfBoxOnly.setTrailerReading(false);
+
+        /// act
+        int pageCount = provider.countPages(pdfFile);
+        PdfDocumentInformation documentInformation = provider.getDocumentInformation(ByteBuffer.wrap(readTestFile(pdfFile.getName())));
+
+        /// assert
+        assertThat(provider.isTrailerReading()).isTrue();
+        assertThat(pageCount).isEqualTo(pdfBoxOnly.countPages(pdfFile));
+        assertThat(documentInformation).usingRecursiveComparison().isEqualTo(pdfBoxOnly.getDocumentInformation(pdfFile));
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static byte[] createDocument(int pageCount, String title, CompressParameters compressParameters) throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pageCount; i++) {
+                document.addPage(new PDPage());
+            }
+            document.getDocumentInformation().setTitle(title);
+            document.getDocumentInformation().setAuthor("Author (with parentheses)");
+            document.getDocumentInformation().setCreationDate(new GregorianCalendar(2024, 1, 29, 12, 30, 15));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out, compressParameters);
+            byte[] pdf = out.toByteArray();
+            assertThat(Arrays.copyOf(pdf, 5)).isEqualTo("%PDF-".getBytes(StandardCharsets.US_ASCII));
+            return pdf;
+        }
+    }
+
+    /**
+     * Create a hybrid-reference document: the information dictionary (object 5) is stored in an object stream, which
+     * is listed as free in the cross-reference table and as compressed object in the stream given by /XRefStm.
+     * @param withXrefStm false to omit /XRefStm from the trailer
+     */
+    private static byte[] createHybridDocument(boolean withXrefStm) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] offsets = new long[7];
+        out.writeBytes("%PDF-1.5\n".getBytes(StandardCharsets.US_ASCII));
+        String objectStreamContent = "5 0 << /Title (Hybrid) /Author (Me) >>";
+        String[] objects = {
+            null,
+            "<< /Type /Catalog /Pages 2 0 R >>",
+            "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+            "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 200] >>",
+            "<< /Type /ObjStm /N 1 /First 4 /Length " + objectStreamContent.length() + " >>\nstream\n"
+                + objectStreamContent + "\nendstream"
+        };
+        for (int number = 1; number < objects.length; number++) {
+            offsets[number] = out.size();
+            out.writeBytes((number + " 0 obj\n" + objects[number] + "\nendobj\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        offsets[6] = out.size();
+        out.writeBytes("6 0 obj\n<< /Type /XRef /Size 7 /Index [5 1] /W [1 2 1] /Length 4 >>\nstream\n"
+            .getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[] { 2, 0, 4, 0 });
+        out.writeBytes("\nendstream\nendobj\n".getBytes(StandardCharsets.US_ASCII));
+        long xrefOffset = out.size();
+        StringBuilder xref = new StringBuilder("xref\n0 7\n0000000000 65535 f \n");
+        for (int number = 1; number < offsets.length; number++) {
+            xref.append(number == 5 ? "0000000000 00000 f \n" : String.format("%010d 00000 n \n", offsets[number]));
+        }
+        xref.append("trailer\n<< /Size 7 /Root 1 0 R /Info 5 0 R")
+            .append(withXrefStm ? " /XRefStm " + offsets[6] : "")
+            .append(" >>\nstartxref\n").append(xrefOffset).append("\n%%EOF\n");
+        out.writeBytes(xref.toString().getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    /**
+     * Create a document consisting of an uncompressed cross-reference stream (object 3) only.
+     * @param entries the entries (type, field 2, field 3) - field 2 of -1 is replaced by the offset of object 3
+     */
+    private static byte[] createXrefStreamDocument(int[][] entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("%PDF-1.5\n".getBytes(StandardCharsets.US_ASCII));
+        int xrefOffset = out.size();
+        out.writeBytes(("3 0 obj\n<< /Type /XRef /Size " + entries.length + " /W [1 2 1] /Root 1 0 R /Length "
+            + entries.length * 4 + " >>\nstream\n").getBytes(StandardCharsets.US_ASCII));
+        for (int[] entry : entries) {
+            int field2 = entry[1] < 0 ? xrefOffset : entry[1];
+            out.write(entry[0]);
+            out.write(field2 >> 8);
+            out.write(field2);
+            out.write(entry[2]);
+        }
+        out.writeBytes(("\nendstream\nendobj\nstartxref\n" + xrefOffset + "\n%%EOF\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+}
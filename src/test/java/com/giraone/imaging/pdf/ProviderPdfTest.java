@@ -4,25 +4,40 @@ import com.giraone.imaging.ConversionCommand;
 import com.giraone.imaging.FileInfo;
 import com.giraone.imaging.ImagingFactory;
 import com.giraone.imaging.ImagingProvider;
+import com.giraone.imaging.MemoryBudget;
 import com.giraone.imaging.TestFileHelper;
+import com.giraone.imaging.java2.ProviderJava2D;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
 
 import static com.giraone.imaging.ConversionCommand.CompressionQuality.LOSSY_MEDIUM;
 import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
 import static com.giraone.imaging.TestFileHelper.cloneTestFile;
 import static com.giraone.imaging.TestFileHelper.readTestFile;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 /**
  * Tests for the Provider PDF implementation.
@@ -77,6 +92,43 @@ class ProviderPdfTest {
         assertThat(pages2).isEqualTo(1);
     }
 
+    @Test
+    void countPages_and_getDocumentInformation_work_for_byte_input() throws Exception {
+
+        /// arrange
+        byte[] pdf1 = readTestFile(TEST_FILE_PDF_01);
+        ByteBuffer pdf2 = ByteBuffer.allocateDirect(readTestFile(TEST_FILE_PDF_02).length + 3);
+        pdf2.put(new byte[3]).put(readTestFile(TEST_FILE_PDF_02)).flip().position(3);
+
+        /// act
+        int pages1 = providerUnderTest.countPages(pdf1);
+        int pages2 = providerUnderTest.countPages(pdf2);
+        PdfDocumentInformation info1 = providerUnderTest.getDocumentInformation(new ByteArrayInputStream(pdf1));
+
+        /// assert
+        assertThat(pages1).isEqualTo(3);
+        assertThat(pages2).isEqualTo(1);
+        assertThat(pdf2.position()).isEqualTo(3);
+        assertThat(info1.getProducer()).isEqualTo("FPDF 1.53");
+    }
+
+    @Test
+    void memory_mapped_input_is_equal_to_file_input() throws Exception {
+
+        /// arrange
+        PdfProviderPdfBox mappedProvider = new PdfProviderPdfBox();
+        mappedProvider.setMappedInputThreshold(0L);
+        File pdfFile = testFiles.get(TEST_FILE_PDF_01);
+
+        /// act
+        int pages = mappedProvider.countPages(pdfFile);
+        PdfDocumentInformation info = mappedProvider.getDocumentInformation(pdfFile);
+
+        /// assert
+        assertThat(pages).isEqualTo(providerUnderTest.countPages(pdfFile));
+        assertThat(info.getProducer()).isEqualTo("FPDF 1.53");
+    }
+
     @Test
     void getDocumentInformation_works_for_all_test_files() throws Exception {
 
@@ -130,6 +182,282 @@ class ProviderPdfTest {
         assertThat(fileInfo2.getHeight()).isEqualTo(300);
     }
 
+    @Test
+    void createThumbnails_works_for_byte_input() throws Exception {
+
+        /// arrange
+        File outputFile = File.createTempFile("pdf-bytes-to-thumb-", ".jpg");
+        outputFile.deleteOnExit();
+        ConversionCommand conversionCommand = ConversionCommand.buildConversionCommand(
+            outputFile, IMAGE_JPEG, 300, 300, LOSSY_MEDIUM);
+        /// act
+        providerUnderTest.createThumbnail(readTestFile(TEST_FILE_PDF_01), conversionCommand);
+        /// assert
+        FileInfo fileInfo = imagingProvider.fetchFileInfo(outputFile);
+        assertThat(fileInfo.getWidth()).isEqualTo(212);
+        assertThat(fileInfo.getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    void getRenderScale_uses_largest_rendition() throws Exception {
+
+        /// arrange
+        ConversionCommand small = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 300, 300, LOSSY_MEDIUM);
+        ConversionCommand large = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 1600, 1600, LOSSY_MEDIUM);
+        ConversionCommand original = new ConversionCommand();
+
+        try (PDDocument document = Loader.loadPDF(new File("src/test/resources/" + TEST_FILE_PDF_01))) {
+            PDPage page = document.getPage(0);
+            float pageHeight = page.getCropBox().getHeight();
+
+            /// act
+            float scaleSmall = PdfProviderPdfBox.getRenderScale(page, new ConversionCommand[] { small });
+            float scaleBoth = PdfProviderPdfBox.getRenderScale(page, new ConversionCommand[] { small, large });
+            float scaleOriginal = PdfProviderPdfBox.getRenderScale(page, new ConversionCommand[] { original });
+
+            /// assert
+            assertThat(scaleSmall).isCloseTo(300 / pageHeight, within(0.001f));
+            assertThat(scaleBoth).isCloseTo(1600 / pageHeight, within(0.001f));
+            assertThat(scaleOriginal).isCloseTo(1.0f, within(0.001f));
+        }
+    }
+
+    @Test
+    void createThumbnail_renders_large_preview_at_target_resolution() throws Exception {
+
+        /// arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand conversionCommand = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 1600, 1600, LOSSY_MEDIUM);
+        conversionCommand.setOutputSink(() -> out);
+
+        /// act
+        providerUnderTest.createThumbnail(new File("src/test/resources/" + TEST_FILE_PDF_01), conversionCommand);
+
+        /// assert
+        FileInfo fileInfo = imagingProvider.fetchFileInfo(ByteBuffer.wrap(out.toByteArray()));
+        assertThat(fileInfo.getHeight()).isEqualTo(1600);
+        assertThat(fileInfo.getWidth()).isEqualTo(1131);
+    }
+
+    @Test
+    void createPageThumbnails_renders_all_pages_in_parallel() throws Exception {
+
+        /// arrange
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        provider.setRenderParallelism(3);
+        Map<Integer, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        IntFunction<ConversionCommand> commandForPage = pageIndex -> {
+            ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 200, 200, LOSSY_MEDIUM);
+            command.setOutputSink(() -> outputs.computeIfAbsent(pageIndex, index -> new ByteArrayOutputStream()));
+            return command;
+        };
+
+        /// act
+        int pageCount = provider.createPageThumbnails(new File("src/test/resources/" + TEST_FILE_PDF_01), 0, Integer.MAX_VALUE, commandForPage);
+
+        /// assert
+        assertThat(pageCount).isEqualTo(3);
+        assertThat(outputs).containsOnlyKeys(0, 1, 2);
+        for (ByteArrayOutputStream out : outputs.values()) {
+            FileInfo fileInfo = imagingProvider.fetchFileInfo(ByteBuffer.wrap(out.toByteArray()));
+            assertThat(fileInfo.getHeight()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void createPageThumbnails_reserves_rendered_pages_from_memory_budget() throws Exception {
+
+        /// arrange
+        File pdfFile = new File("src/test/resources/" + TEST_FILE_PDF_01);
+        ConversionCommand[] commands = { ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 400, 400, LOSSY_MEDIUM) };
+        long maxPageBytes = 0L;
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            for (PDPage page : document.getPages()) {
+                Dimension size = PdfProviderPdfBox.getRenderSize(page, PdfProviderPdfBox.getRenderScale(page, commands));
+                maxPageBytes = Math.max(maxPageBytes, ProviderJava2D.estimatePeakBytes(size.width, size.height, 1, 4, commands));
+            }
+        }
+        // the budget allows only one page at a time
+        MemoryBudget memoryBudget = new MemoryBudget(maxPageBytes);
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        provider.setRenderParallelism(3);
+        provider.getImagingProvider().setMemoryBudget(memoryBudget);
+        Map<Integer, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        IntFunction<ConversionCommand> commandForPage = pageIndex -> {
+            ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 400, 400, LOSSY_MEDIUM);
+            command.setOutputSink(() -> outputs.computeIfAbsent(pageIndex, index -> new ByteArrayOutputStream()));
+            return command;
+        };
+
+        /// act
+        int pageCount = provider.createPageThumbnails(pdfFile, 0, Integer.MAX_VALUE, commandForPage);
+
+        /// assert
+        assertThat(pageCount).isEqualTo(3);
+        assertThat(outputs).containsOnlyKeys(0, 1, 2);
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(memoryBudget.getPeakUsedBytes()).isPositive().isLessThanOrEqualTo(maxPageBytes);
+    }
+
+    @Test
+    void createPageThumbnails_is_limited_to_page_range() throws Exception {
+
+        /// arrange
+        Map<Integer, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        IntFunction<ConversionCommand> commandForPage = pageIndex -> {
+            ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 100, 100, LOSSY_MEDIUM);
+            command.setOutputSink(() -> outputs.computeIfAbsent(pageIndex, index -> new ByteArrayOutputStream()));
+            return command;
+        };
+
+        /// act
+        int pageCount = providerUnderTest.createPageThumbnails(ByteBuffer.wrap(readTestFile(TEST_FILE_PDF_01)), 1, 5, commandForPage);
+
+        /// assert
+        assertThat(pageCount).isEqualTo(2);
+        assertThat(outputs).containsOnlyKeys(1, 2);
+    }
+
+    @Test
+    void createContactSheet_places_pages_in_grid() throws Exception {
+
+        /// arrange
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        provider.setRenderParallelism(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand command = new ConversionCommand();
+        command.setOutputFormat(IMAGE_JPEG);
+        command.setOutputSink(() -> out);
+
+        /// act
+        int pageCount = provider.createContactSheet(new File("src/test/resources/" + TEST_FILE_PDF_01), 0, Integer.MAX_VALUE,
+            2, 150, command);
+
+        /// assert
+        assertThat(pageCount).isEqualTo(3);
+        FileInfo fileInfo = imagingProvider.fetchFileInfo(ByteBuffer.wrap(out.toByteArray()));
+        int gap = PdfProviderPdfBox.CONTACT_SHEET_GAP;
+        assertThat(fileInfo.getWidth()).isEqualTo(2 * (150 + gap) + gap);
+        assertThat(fileInfo.getHeight()).isEqualTo(2 * (150 + gap) + gap);
+    }
+
+    @Test
+    void pdfHandle_loads_document_once_for_all_operations() throws Exception {
+
+        /// arrange
+        File inputFile = new File("src/test/resources/" + TEST_FILE_PDF_01);
+        ByteArrayOutputStream firstPage = new ByteArrayOutputStream();
+        ByteArrayOutputStream lastPage = new ByteArrayOutputStream();
+        ConversionCommand firstCommand = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 300, 300, LOSSY_MEDIUM);
+        firstCommand.setOutputSink(() -> firstPage);
+        ConversionCommand lastCommand = new ConversionCommand(firstCommand);
+        lastCommand.setOutputSink(() -> lastPage);
+
+        /// act
+        try (PdfHandle handle = PdfProviderPdfBox.getInstance().open(inputFile)) {
+            int pageCount = handle.getPageCount();
+            PdfDocumentInformation documentInformation = handle.getDocumentInformation();
+            List<PdfHandle.PageSize> pageSizes = handle.getPageSizes();
+            handle.createThumbnails(firstCommand);
+            handle.createPageThumbnails(2, lastCommand);
+
+            /// assert
+            assertThat(pageCount).isEqualTo(providerUnderTest.countPages(inputFile));
+            assertThat(documentInformation.getTitle()).isEqualTo(providerUnderTest.getDocumentInformation(inputFile).getTitle());
+            assertThat(pageSizes).hasSize(pageCount);
+            assertThat(pageSizes.get(0).width()).isCloseTo(595.28f, within(0.01f));
+            assertThat(pageSizes.get(0).getHeight(72.0f)).isEqualTo(841);
+            assertThat(imagingProvider.fetchFileInfo(ByteBuffer.wrap(firstPage.toByteArray())).getHeight()).isEqualTo(300);
+            assertThat(imagingProvider.fetchFileInfo(ByteBuffer.wrap(lastPage.toByteArray())).getHeight()).isEqualTo(300);
+        }
+    }
+
+    @Test
+    void streamCachePolicy_reserves_main_memory_until_document_is_closed() throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(10L * 1024L * 1024L);
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        provider.getStreamCachePolicy().setMaxMainMemoryBytes(4L * 1024L * 1024L);
+        provider.getStreamCachePolicy().setMemoryBudget(memoryBudget);
+        File inputFile = new File("src/test/resources/" + TEST_FILE_PDF_01);
+
+        /// act
+        try (PdfHandle first = provider.open(inputFile); PdfHandle second = provider.open(inputFile)) {
+
+            /// assert
+            assertThat(first.getPageCount()).isEqualTo(3);
+            assertThat(second.getPageCount()).isEqualTo(3);
+            assertThat(memoryBudget.getUsedBytes()).isEqualTo(8L * 1024L * 1024L);
+        }
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void open_documents_do_not_block_concurrent_image_conversion() throws Exception {
+
+        /// arrange
+        File inputFile = new File("src/test/resources/" + TEST_FILE_PDF_01);
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        // the image provider reserves from the global budget
+        ProviderJava2D imageProvider = new ProviderJava2D();
+        long globalUsedBefore = MemoryBudget.getGlobal().getUsedBytes();
+        List<PdfHandle> handles = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 200, 200, LOSSY_MEDIUM);
+        command.setOutputSink(() -> out);
+
+        try {
+            for (int i = 0; i < 16; i++) {
+                handles.add(provider.open(inputFile));
+            }
+
+            /// act
+            imageProvider.createThumbnails(ByteBuffer.wrap(readTestFile(TEST_FILE_JPEG_01)), new ConversionCommand[] { command });
+
+            /// assert
+            assertThat(provider.getStreamCachePolicy().getMemoryBudget()).isSameAs(PdfStreamCachePolicy.getSharedBudget());
+            assertThat(MemoryBudget.getGlobal().getUsedBytes()).isEqualTo(globalUsedBefore);
+            assertThat(out.size()).isPositive();
+        } finally {
+            for (PdfHandle handle : handles) {
+                handle.close();
+            }
+        }
+    }
+
+    @Test
+    void streamCachePolicy_spills_to_scratch_file_when_budget_is_exhausted(@TempDir File scratchDirectory) throws Exception {
+
+        /// arrange
+        MemoryBudget memoryBudget = new MemoryBudget(1024L * 1024L);
+        PdfProviderPdfBox provider = new PdfProviderPdfBox();
+        provider.getStreamCachePolicy().setMemoryBudget(memoryBudget);
+        provider.getStreamCachePolicy().setScratchDirectory(scratchDirectory);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConversionCommand command = ConversionCommand.buildConversionCommand((File) null, IMAGE_JPEG, 200, 200, LOSSY_MEDIUM);
+        command.setOutputSink(() -> out);
+        byte[] pdf;
+        try (MemoryBudget.Reservation ignored = memoryBudget.reserve(1024L * 1024L)) {
+            ByteArrayOutputStream pdfOut = new ByteArrayOutputStream();
+            provider.createPdfFromImages(new byte[][] { readTestFile(TEST_FILE_JPEG_01) },
+                new PdfDocumentInformation(), 400, 300, pdfOut);
+            pdf = pdfOut.toByteArray();
+
+            /// act
+            try (PdfHandle handle = provider.open(ByteBuffer.wrap(pdf))) {
+                handle.createThumbnails(command);
+
+                /// assert
+                assertThat(memoryBudget.getUsedBytes()).isEqualTo(1024L * 1024L);
+            }
+        }
+        assertThat(memoryBudget.getUsedBytes()).isZero();
+        assertThat(providerUnderTest.countPages(ByteBuffer.wrap(pdf))).isEqualTo(1);
+        assertThat(imagingProvider.fetchFileInfo(ByteBuffer.wrap(out.toByteArray())).getWidth()).isEqualTo(200);
+        assertThat(scratchDirectory.listFiles()).isEmpty();
+    }
+
     @Test
     void createPdfFromImages_works() throws Exception {
 
@@ -8,9 +8,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import java.io.File;
+import java.nio.file.Files;
 
 import static com.giraone.imaging.MimeTypes.APPLICATION_PDF;
 import static com.giraone.imaging.MimeTypes.IMAGE_JPEG;
+import static com.giraone.imaging.MimeTypes.IMAGE_PNG;
 import static com.giraone.imaging.text.MarkdownProviderFlexmark.*;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -43,6 +45,29 @@ class ProviderMarkdownTest {
         assertThat(fileInfo.getHeight()).isEqualTo(565);
     }
 
+    @ParameterizedTest
+    @CsvSource({
+        "document-01.md",
+        "document-02.md",
+    })
+    void createThumbnail_from_bytes_is_equal_to_file(String fileName) throws Exception {
+        /// arrange
+        File inputFile = new File("src/test/resources/" + fileName);
+        File outputFile1 = File.createTempFile("md-to-thumb-" + fileName + "-", ".png");
+        File outputFile2 = File.createTempFile("md-bytes-to-thumb-" + fileName + "-", ".png");
+        outputFile1.deleteOnExit();
+        outputFile2.deleteOnExit();
+        ConversionCommand command1 = ConversionCommand.buildConversionCommand(outputFile1, IMAGE_PNG, 200, 283,
+            ConversionCommand.CompressionQuality.LOSSLESS);
+        ConversionCommand command2 = ConversionCommand.buildConversionCommand(outputFile2, IMAGE_PNG, 200, 283,
+            ConversionCommand.CompressionQuality.LOSSLESS);
+        /// act
+        markdownProviderUnderTest.createThumbnail(inputFile, command1);
+        markdownProviderUnderTest.createThumbnail(Files.readAllBytes(inputFile.toPath()), command2);
+        /// assert
+        assertThat(Files.readAllBytes(outputFile2.toPath())).isEqualTo(Files.readAllBytes(outputFile1.toPath()));
+    }
+
     @ParameterizedTest
     @CsvSource({
         "document-01.md",